@@ -0,0 +1,93 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.BatchSpanProcessor;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.ShardedBatchSpanProcessor;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Tracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spans ended concurrently by several threads, like event loops, into the single queue of the
+ * {@link BatchSpanProcessor} or the per-thread shards of the {@link ShardedBatchSpanProcessor}.
+ * <p>
+ * The exporter discards the spans, the queues are large enough for the workers to keep up so that the measure is the
+ * hand-off rather than the drops. Run with {@code -t} to change the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class BatchProcessorBenchmark {
+
+  @Param({"batch", "sharded"})
+  public String processor;
+
+  private TracerSdkProvider provider;
+  private Tracer tracer;
+
+  @Setup
+  public void setup() {
+    BatchOptions options = new BatchOptions()
+      .setMaxQueueSize(65_536)
+      .setScheduleDelay(10);
+    SpanProcessor spanProcessor;
+    switch (processor) {
+      case "batch":
+        spanProcessor = new BatchSpanProcessor(new DiscardingExporter(), options);
+        break;
+      case "sharded":
+        options.setSharded(true).setExportWorkers(2);
+        // the benchmark threads are not event loops, give them a shard each as the event loops get
+        spanProcessor = new ShardedBatchSpanProcessor(new DiscardingExporter(), options, thread -> true);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown processor " + processor);
+    }
+    provider = TracerSdkProvider.builder().build();
+    provider.addSpanProcessor(spanProcessor);
+    tracer = provider.get("benchmark");
+  }
+
+  @TearDown
+  public void tearDown() {
+    provider.shutdown();
+  }
+
+  @Benchmark
+  public void endSpan() {
+    tracer.spanBuilder("span").startSpan().end();
+  }
+
+  private static class DiscardingExporter implements SpanExporter {
+
+    @Override
+    public ResultCode export(Collection<SpanData> spans) {
+      return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event bus request/reply round trips, the consumer of the {@code frontend} address starting a trace and requesting
+ * the {@code backend} address, so that each round trip creates a producer and two consumer spans.
+ * <ul>
+ *   <li>{@code disabled}: no tracing options</li>
+ *   <li>{@code sdk}: the SDK tracer without exporter, the context propagated in the binary header</li>
+ *   <li>{@code w3c}: the same with the W3C text headers</li>
+ *   <li>{@code unsampled}: the {@code frontend} address sampled with a probability of 0</li>
+ *   <li>{@code excluded}: both addresses excluded</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventBusBenchmark {
+
+  @Param({"disabled", "sdk", "w3c", "unsampled", "excluded"})
+  public String tracing;
+
+  private Vertx vertx;
+
+  @Setup
+  public void setup() {
+    VertxOptions options = new VertxOptions();
+    switch (tracing) {
+      case "disabled":
+        break;
+      case "sdk":
+        options.setTracingOptions(new OpenTelemetryOptions().setEnabled(true));
+        break;
+      case "w3c":
+        options.setTracingOptions(new OpenTelemetryOptions()
+          .setEventBus(new EventBusTracingOptions().setBinaryPropagation(false))
+          .setEnabled(true));
+        break;
+      case "unsampled":
+        options.setTracingOptions(new OpenTelemetryOptions()
+          .setEventBus(new EventBusTracingOptions().addSampling("frontend", 0))
+          .setEnabled(true));
+        break;
+      case "excluded":
+        options.setTracingOptions(new OpenTelemetryOptions()
+          .setEventBus(new EventBusTracingOptions().addExcludedAddress("frontend").addExcludedAddress("backend"))
+          .setEnabled(true));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown tracing " + tracing);
+    }
+    vertx = Vertx.vertx(options);
+    vertx.eventBus().consumer("backend", msg -> msg.reply("pong"));
+    vertx.eventBus().consumer("frontend", msg ->
+      vertx.eventBus().request("backend", msg.body(), ar -> {
+        if (ar.succeeded()) {
+          msg.reply(ar.result().body());
+        } else {
+          msg.fail(500, ar.cause().getMessage());
+        }
+      }));
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    CompletableFuture<Void> close = new CompletableFuture<>();
+    vertx.close(ar -> close.complete(null));
+    close.get(10, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public Object roundTrip() throws Exception {
+    CompletableFuture<Object> result = new CompletableFuture<>();
+    vertx.eventBus().request("frontend", "ping", ar -> {
+      if (ar.succeeded()) {
+        result.complete(ar.result().body());
+      } else {
+        result.completeExceptionally(ar.cause());
+      }
+    });
+    return result.get(10, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,132 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.FileExporter;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.Tracer;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Spans exported by batches of {@value #BATCH} to the {@link FileExporter}, each invocation waits for the writer
+ * thread to have written the batch so that the score is the spans written per second rather than queued.
+ * <p>
+ * The {@code writtenBytes} secondary score is the number of bytes written per second. The spans are HTTP server spans with
+ * the usual attributes, about 370 bytes per line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileExporterBenchmark {
+
+  private static final int BATCH = 512;
+
+  @Param({"false", "true"})
+  public boolean compression;
+
+  private Vertx vertx;
+  private Path directory;
+  private FileExporter exporter;
+  private List<SpanData> spans;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Written {
+    public long writtenBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      writtenBytes = 0;
+    }
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("spans");
+    exporter = FileExporter.newBuilder()
+      .setDirectory(directory)
+      .setMaxFileSize(16 * 1024 * 1024)
+      .setCompression(compression)
+      .setMaxFiles(2)
+      .build();
+    vertx = Vertx.vertx();
+    exporter.start(vertx);
+    List<SpanData> finished = new ArrayList<>();
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    provider.addSpanProcessor(SimpleSpansProcessor.newBuilder(new SpanExporter() {
+      @Override
+      public ResultCode export(Collection<SpanData> batch) {
+        finished.addAll(batch);
+        return ResultCode.SUCCESS;
+      }
+
+      @Override
+      public void shutdown() {
+      }
+    }).build());
+    Tracer tracer = provider.get("benchmark");
+    for (int i = 0; i < BATCH; i++) {
+      Span span = tracer.spanBuilder("/api/orders/" + i).setSpanKind(Span.Kind.SERVER).startSpan();
+      span.setAttribute("http.method", "GET");
+      span.setAttribute("http.url", "http://localhost:8080/api/orders/" + i + "?page=1");
+      span.setAttribute("http.status_code", 200L);
+      span.setAttribute("http.flavor", "1.1");
+      span.setAttribute("net.peer.ip", "127.0.0.1");
+      span.setAttribute("component", "vertx");
+      span.end();
+    }
+    provider.shutdown();
+    spans = finished;
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    exporter.getSpanExporter().shutdown();
+    vertx.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void export(Written written) {
+    long before = exporter.getWrittenBytes();
+    long expected = exporter.getExportedSpans() + BATCH;
+    exporter.getSpanExporter().export(spans);
+    while (exporter.getExportedSpans() < expected) {
+      Thread.yield();
+    }
+    written.writtenBytes += exporter.getWrittenBytes() - before;
+  }
+}
@@ -0,0 +1,108 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.context.propagation.HttpTextFormat;
+import io.opentelemetry.trace.propagation.HttpTraceContext;
+import io.vertx.core.MultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+/**
+ * Context extraction from the inbound headers, compares the stream based getter formerly allocated by
+ * {@link OpenTelemetryTracer#receiveRequest} with {@link HeadersGetter}.
+ * <p>
+ * Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeadersGetterBenchmark {
+
+  private final HttpTextFormat format = new HttpTraceContext();
+  private final List<String> fields = format.fields();
+  private MultiMap multiMap;
+  private List<Map.Entry<String, String>> entries;
+
+  @Setup
+  public void setup() {
+    multiMap = MultiMap.caseInsensitiveMultiMap()
+      .add("host", "localhost:8080")
+      .add("user-agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)")
+      .add("accept", "application/json")
+      .add("accept-encoding", "gzip, deflate")
+      .add("accept-language", "en-US,en;q=0.9")
+      .add("connection", "keep-alive")
+      .add("content-type", "application/json")
+      .add("content-length", "128")
+      .add("x-request-id", "4b2e6a1c-93f1-4d8e-a1c7-5e0f2d3b9a11")
+      .add("traceparent", "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01")
+      .add("tracestate", "congo=t61rcWkgMzE");
+    entries = new ArrayList<>(multiMap.entries());
+  }
+
+  private static HttpTextFormat.Getter<Iterable<Map.Entry<String, String>>> streamGetter() {
+    return new HttpTextFormat.Getter<Iterable<Map.Entry<String, String>>>() {
+      @Override
+      public String get(Iterable<Map.Entry<String, String>> headers, String s) {
+        return StreamSupport.stream(headers.spliterator(), false)
+          .filter(entry -> entry.getKey().equals(s))
+          .findFirst()
+          .map(Map.Entry::getValue)
+          .orElse(null);
+      }
+    };
+  }
+
+  private void lookup(Iterable<Map.Entry<String, String>> headers, HttpTextFormat.Getter<Iterable<Map.Entry<String, String>>> getter, Blackhole blackhole) {
+    for (String field : fields) {
+      blackhole.consume(getter.get(headers, field));
+    }
+  }
+
+  @Benchmark
+  public void lookupStreamGetter(Blackhole blackhole) {
+    lookup(multiMap, streamGetter(), blackhole);
+  }
+
+  @Benchmark
+  public void lookupMultiMap(Blackhole blackhole) {
+    lookup(multiMap, HeadersGetter.INSTANCE, blackhole);
+  }
+
+  @Benchmark
+  public void lookupIterable(Blackhole blackhole) {
+    lookup(entries, HeadersGetter.INSTANCE, blackhole);
+  }
+
+  @Benchmark
+  public io.grpc.Context extractStreamGetter() {
+    return format.extract(io.grpc.Context.ROOT, multiMap, streamGetter());
+  }
+
+  @Benchmark
+  public io.grpc.Context extractMultiMap() {
+    return format.extract(io.grpc.Context.ROOT, multiMap, HeadersGetter.INSTANCE);
+  }
+
+  @Benchmark
+  public io.grpc.Context extractIterable() {
+    return format.extract(io.grpc.Context.ROOT, entries, HeadersGetter.INSTANCE);
+  }
+}
@@ -0,0 +1,149 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.JaegerExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.LoggingExporter;
+import io.opentelemetry.trace.DefaultTracer;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP round trips between a Vert.x client and server of the same instance, the server handler calling a second
+ * server so that the four tracer callbacks are involved.
+ * <ul>
+ *   <li>{@code disabled}: no tracing options</li>
+ *   <li>{@code noop}: the OpenTelemetry no-op tracer</li>
+ *   <li>{@code sdk}: the SDK tracer without exporter</li>
+ *   <li>{@code inmemory}, {@code logging}: the corresponding exporter</li>
+ *   <li>{@code clientTimings}: the in memory exporter with the timings of the client requests</li>
+ *   <li>{@code jaeger}: the Jaeger exporter with batching, towards {@code -Djaeger.port} (14250 by default)</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpServerBenchmark {
+
+  private static final int FRONTEND_PORT = 8180;
+  private static final int BACKEND_PORT = 8181;
+
+  @Param({"disabled", "noop", "sdk", "inmemory", "clientTimings", "logging", "jaeger"})
+  public String tracing;
+
+  private Vertx vertx;
+  private HttpClient client;
+  private InMemoryExporter inMemoryExporter;
+
+  @Setup
+  public void setup() throws Exception {
+    VertxOptions options = new VertxOptions();
+    switch (tracing) {
+      case "disabled":
+        break;
+      case "noop":
+        options.setTracingOptions(new OpenTelemetryOptions(DefaultTracer.getInstance()).setEnabled(true));
+        break;
+      case "sdk":
+        options.setTracingOptions(new OpenTelemetryOptions().setEnabled(true));
+        break;
+      case "inmemory":
+        inMemoryExporter = InMemoryExporter.newBuilder().build();
+        options.setTracingOptions(new OpenTelemetryOptions().addExporter(inMemoryExporter).setEnabled(true));
+        break;
+      case "clientTimings":
+        inMemoryExporter = InMemoryExporter.newBuilder().build();
+        options.setMetricsOptions(ClientTimingMetrics.options());
+        options.setTracingOptions(new OpenTelemetryOptions()
+          .setClientTimings(true)
+          .addExporter(inMemoryExporter)
+          .setEnabled(true));
+        break;
+      case "logging":
+        options.setTracingOptions(new OpenTelemetryOptions()
+          .addExporter(LoggingExporter.newBuilder().build())
+          .setEnabled(true));
+        break;
+      case "jaeger":
+        options.setTracingOptions(new OpenTelemetryOptions()
+          .addExporter(JaegerExporter.newBuilder()
+            .setServiceName("benchmark")
+            .setIp("127.0.0.1")
+            .setPort(Integer.getInteger("jaeger.port", 14250))
+            .build(), new BatchOptions())
+          .setEnabled(true));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown tracing " + tracing);
+    }
+    vertx = Vertx.vertx(options);
+    client = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true));
+
+    HttpServer backend = vertx.createHttpServer().requestHandler(req -> req.response().end("pong"));
+    HttpServer frontend = vertx.createHttpServer().requestHandler(req ->
+      client.get(BACKEND_PORT, "localhost", "/backend", ar -> {
+        if (ar.succeeded()) {
+          ar.result().bodyHandler(body -> req.response().end(body));
+        } else {
+          req.response().setStatusCode(500).end();
+        }
+      }));
+    CompletableFuture<Void> listen = new CompletableFuture<>();
+    backend.listen(BACKEND_PORT, ar1 -> frontend.listen(FRONTEND_PORT, ar2 -> {
+      if (ar1.succeeded() && ar2.succeeded()) {
+        listen.complete(null);
+      } else {
+        listen.completeExceptionally(ar1.failed() ? ar1.cause() : ar2.cause());
+      }
+    }));
+    listen.get(10, TimeUnit.SECONDS);
+  }
+
+  @TearDown(Level.Iteration)
+  public void resetExporter() {
+    if (inMemoryExporter != null) {
+      inMemoryExporter.getSpanExporter().reset();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    CompletableFuture<Void> close = new CompletableFuture<>();
+    vertx.close(ar -> close.complete(null));
+    close.get(10, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public int roundTrip() throws Exception {
+    CompletableFuture<Integer> result = new CompletableFuture<>();
+    client.get(FRONTEND_PORT, "localhost", "/frontend", ar -> {
+      if (ar.succeeded()) {
+        ar.result().bodyHandler(body -> result.complete(body.length()));
+      } else {
+        result.completeExceptionally(ar.cause());
+      }
+    });
+    return result.get(10, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,105 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.sdk.trace.IdsGenerator;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Constructor;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trace and span ids generated by 8 threads, as by the event loops of a server: with a {@link Random} shared by the
+ * threads, with the generator of the SDK (set when no generator is given to the provider) and with
+ * {@link ThreadLocalIdsGenerator}, random or timestamped.
+ * <p>
+ * Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class IdsGeneratorBenchmark {
+
+  /**
+   * A generator shared by the threads, each id contends on the seed of the {@link Random}.
+   */
+  private static final class SharedRandomIdsGenerator implements IdsGenerator {
+
+    private final Random random = new Random();
+
+    @Override
+    public SpanId generateSpanId() {
+      return new SpanId(random.nextLong());
+    }
+
+    @Override
+    public TraceId generateTraceId() {
+      return new TraceId(random.nextLong(), random.nextLong());
+    }
+  }
+
+  @Param({"shared", "sdk", "threadLocal", "timestamped"})
+  public String generator;
+
+  private IdsGenerator ids;
+
+  @Setup
+  public void setup() {
+    switch (generator) {
+      case "shared":
+        ids = new SharedRandomIdsGenerator();
+        break;
+      case "sdk":
+        ids = sdkIdsGenerator();
+        break;
+      case "threadLocal":
+        ids = new ThreadLocalIdsGenerator(false);
+        break;
+      case "timestamped":
+        ids = new ThreadLocalIdsGenerator(true);
+        break;
+      default:
+        throw new IllegalArgumentException(generator);
+    }
+  }
+
+  /**
+   * @return the generator of a provider built without one, the class is not public
+   */
+  private static IdsGenerator sdkIdsGenerator() {
+    try {
+      Class<?> type = Class.forName("io.opentelemetry.sdk.trace.RandomIdsGenerator");
+      Constructor<?> constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return (IdsGenerator) constructor.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Benchmark
+  public TraceId traceId() {
+    return ids.generateTraceId();
+  }
+
+  @Benchmark
+  public SpanId spanId() {
+    return ids.generateSpanId();
+  }
+}
@@ -0,0 +1,93 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.HttpTextFormat;
+import io.opentelemetry.trace.DefaultSpan;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.TracingContextUtils;
+import io.opentelemetry.trace.propagation.HttpTraceContext;
+import io.vertx.core.MultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * The trace context headers read from an inbound request and written to an outbound one, with the W3C format of the
+ * OpenTelemetry API as the tracer uses it and with {@link TracePropagation}.
+ * <p>
+ * Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropagationBenchmark {
+
+  private final HttpTextFormat format = new HttpTraceContext();
+  private final TracePropagation w3c = new TracePropagation(Collections.singletonList(PropagationFormat.W3C));
+  private final TracePropagation b3 = new TracePropagation(Collections.singletonList(PropagationFormat.B3));
+  private MultiMap w3cHeaders;
+  private MultiMap b3Headers;
+  private Span span;
+
+  @Setup
+  public void setup() {
+    w3cHeaders = MultiMap.caseInsensitiveMultiMap()
+      .add("host", "localhost:8080")
+      .add("accept", "application/json")
+      .add("traceparent", "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+    b3Headers = MultiMap.caseInsensitiveMultiMap()
+      .add("host", "localhost:8080")
+      .add("accept", "application/json")
+      .add("b3", "0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-1");
+    span = DefaultSpan.create(TracePropagation.parseTraceparent(w3cHeaders.get("traceparent"), null));
+  }
+
+  @Benchmark
+  public Span extractHttpTextFormat() {
+    io.grpc.Context context = format.extract(io.grpc.Context.current(), w3cHeaders, HeadersGetter.INSTANCE);
+    return TracingContextUtils.getSpanWithoutDefault(context);
+  }
+
+  @Benchmark
+  public SpanContext extractW3C() {
+    return w3c.extract(w3cHeaders);
+  }
+
+  @Benchmark
+  public SpanContext extractB3() {
+    return b3.extract(b3Headers);
+  }
+
+  @Benchmark
+  public void injectHttpTextFormat(Blackhole blackhole) {
+    BiConsumer<String, String> headers = (name, value) -> blackhole.consume(value);
+    try (Scope scope = TracingContextUtils.currentContextWith(span)) {
+      format.inject(io.grpc.Context.current(), headers, BiConsumer::accept);
+    }
+  }
+
+  @Benchmark
+  public void injectW3C(Blackhole blackhole) {
+    w3c.inject(span.getContext(), (name, value) -> blackhole.consume(value));
+  }
+
+  @Benchmark
+  public void injectB3(Blackhole blackhole) {
+    b3.inject(span.getContext(), (name, value) -> blackhole.consume(value));
+  }
+}
@@ -0,0 +1,56 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.JaegerExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.OtlpExporter;
+import io.vertx.core.spi.tracing.VertxTracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of enabling tracing on a Vert.x instance: the exporters are built and the tracer is created then closed, as
+ * by a Vert.x instance which never traces a request.
+ * <p>
+ * Each fork measures a single cold invocation, class loading included, which is what an application pays at startup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+  @Param({"inmemory", "jaeger", "otlp"})
+  public String exporter;
+
+  @Benchmark
+  public void buildTracer() {
+    OpenTelemetryOptions options = new OpenTelemetryOptions();
+    switch (exporter) {
+      case "inmemory":
+        options.addExporter(InMemoryExporter.newBuilder().build());
+        break;
+      case "jaeger":
+        options.addExporter(JaegerExporter.newBuilder().setServiceName("benchmark").build(), new BatchOptions());
+        break;
+      case "otlp":
+        options.addExporter(OtlpExporter.newBuilder().build(), new BatchOptions());
+        break;
+      default:
+        throw new IllegalArgumentException(exporter);
+    }
+    VertxTracer<?, ?> tracer = options.buildTracer();
+    tracer.close();
+  }
+}
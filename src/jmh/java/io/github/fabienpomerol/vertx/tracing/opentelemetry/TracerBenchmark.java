@@ -0,0 +1,209 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.trace.Span;
+import io.vertx.core.Context;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.spi.tracing.TagExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * The four {@link io.vertx.core.spi.tracing.VertxTracer} callbacks invoked by Vert.x on each HTTP exchange, called
+ * directly with tag extractors and headers similar to the ones of the Vert.x HTTP server and client.
+ * <p>
+ * A span is measured from its creation to its end, the server side with receiveRequest / sendResponse and the client
+ * side with sendRequest / receiveResponse. Spans are ended without any exporter, see {@link HttpServerBenchmark} for
+ * the exporters.
+ * <p>
+ * The {@code spans} parameter compares the SDK spans with the {@link LeanSpan}s, run with {@code -prof gc} to compare
+ * the bytes allocated per span. Without exporter a lean span is recycled as soon as it ends, as it is once converted
+ * by the batch worker.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracerBenchmark {
+
+  static final TagExtractor<Request> REQUEST_TAG_EXTRACTOR = new TagExtractor<Request>() {
+    @Override
+    public int len(Request req) {
+      return 2;
+    }
+
+    @Override
+    public String name(Request req, int index) {
+      switch (index) {
+        case 0:
+          return "http.url";
+        case 1:
+          return "http.method";
+      }
+      throw new IndexOutOfBoundsException("Invalid tag index " + index);
+    }
+
+    @Override
+    public String value(Request req, int index) {
+      switch (index) {
+        case 0:
+          return req.absoluteURI();
+        case 1:
+          return req.method;
+      }
+      throw new IndexOutOfBoundsException("Invalid tag index " + index);
+    }
+  };
+
+  static final TagExtractor<Response> RESPONSE_TAG_EXTRACTOR = new TagExtractor<Response>() {
+    @Override
+    public int len(Response resp) {
+      return 1;
+    }
+
+    @Override
+    public String name(Response resp, int index) {
+      if (index == 0) {
+        return "http.status_code";
+      }
+      throw new IndexOutOfBoundsException("Invalid tag index " + index);
+    }
+
+    @Override
+    public String value(Response resp, int index) {
+      if (index == 0) {
+        return Integer.toString(resp.statusCode);
+      }
+      throw new IndexOutOfBoundsException("Invalid tag index " + index);
+    }
+  };
+
+  static final RuntimeException FAILURE = new RuntimeException("Internal Server Error", null, false, false) {
+  };
+
+  static final class Request {
+    final String method;
+    final String scheme;
+    final String host;
+    final String uri;
+
+    Request(String method, String scheme, String host, String uri) {
+      this.method = method;
+      this.scheme = scheme;
+      this.host = host;
+      this.uri = uri;
+    }
+
+    String absoluteURI() {
+      return scheme + "://" + host + uri;
+    }
+  }
+
+  static final class Response {
+    final int statusCode;
+
+    Response(int statusCode) {
+      this.statusCode = statusCode;
+    }
+  }
+
+  /**
+   * @return headers of a browser request carrying a W3C trace context
+   */
+  static MultiMap inboundHeaders() {
+    return MultiMap.caseInsensitiveMultiMap()
+      .add("host", "localhost:8080")
+      .add("user-agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)")
+      .add("accept", "application/json")
+      .add("accept-encoding", "gzip, deflate")
+      .add("accept-language", "en-US,en;q=0.9")
+      .add("connection", "keep-alive")
+      .add("content-type", "application/json")
+      .add("content-length", "128")
+      .add("x-request-id", "4b2e6a1c-93f1-4d8e-a1c7-5e0f2d3b9a11")
+      .add("traceparent", "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01")
+      .add("tracestate", "congo=t61rcWkgMzE");
+  }
+
+  @Param({"sdk", "lean"})
+  public String spans;
+
+  private Vertx vertx;
+  private TracerSdkProvider provider;
+  private OpenTelemetryTracer tracer;
+  private Context context;
+  private MultiMap headers;
+  private MultiMap outboundHeaders;
+  private BiConsumer<String, String> headerSetter;
+  private Request serverRequest;
+  private Request clientRequest;
+  private Response response;
+  private Response errorResponse;
+  private Span parentSpan;
+
+  @Setup
+  public void setup() {
+    vertx = Vertx.vertx();
+    provider = TracerSdkProvider.builder().build();
+    if (spans.equals("lean")) {
+      tracer = new OpenTelemetryTracer(false, new LeanTracer(provider, Collections.emptyList(),
+        LeanTracer.DEFAULT_MAX_POOLED_SPANS, null));
+    } else {
+      tracer = new OpenTelemetryTracer(false, provider.get("benchmark"));
+    }
+    context = vertx.getOrCreateContext();
+    headers = inboundHeaders();
+    outboundHeaders = MultiMap.caseInsensitiveMultiMap();
+    headerSetter = outboundHeaders::set;
+    serverRequest = new Request("GET", "http", "localhost:8080", "/api/users/42?fields=name,email");
+    clientRequest = new Request("GET", "http", "localhost:8081", "/api/accounts/42");
+    response = new Response(200);
+    errorResponse = new Response(500);
+    parentSpan = tracer.receiveRequest(context, serverRequest, "GET", headers, REQUEST_TAG_EXTRACTOR);
+  }
+
+  @TearDown
+  public void tearDown() {
+    parentSpan.end();
+    provider.shutdown();
+    vertx.close();
+  }
+
+  @Benchmark
+  public Span serverSpan() {
+    Span span = tracer.receiveRequest(context, serverRequest, "GET", headers, REQUEST_TAG_EXTRACTOR);
+    tracer.sendResponse(context, response, span, null, RESPONSE_TAG_EXTRACTOR);
+    return span;
+  }
+
+  @Benchmark
+  public Span clientSpan() {
+    Span span = tracer.sendRequest(context, clientRequest, "GET", headerSetter, REQUEST_TAG_EXTRACTOR);
+    tracer.receiveResponse(context, response, span, null, RESPONSE_TAG_EXTRACTOR);
+    return span;
+  }
+
+  @Benchmark
+  public Span serverSpanWithError() {
+    Span span = tracer.receiveRequest(context, serverRequest, "GET", headers, REQUEST_TAG_EXTRACTOR);
+    tracer.sendResponse(context, errorResponse, span, FAILURE, RESPONSE_TAG_EXTRACTOR);
+    return span;
+  }
+}
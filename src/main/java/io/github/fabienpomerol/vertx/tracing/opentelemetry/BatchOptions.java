@@ -0,0 +1,145 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Batching configuration of a {@link io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.BackendExporter}.
+ * <p>
+ * Finished spans are queued and exported from a background worker instead of the thread ending the span.
+ * When the queue is full, new spans are dropped and counted.
+ * <p>
+ * In sharded mode each thread ending spans, i.e. each event loop, gets its own queue of {@code maxQueueSize} spans
+ * drained by {@code exportWorkers} workers, the event loops do not contend on a single queue.
+ * <p>
+ * JSON form: <pre>{ "maxQueueSize": 2048, "maxExportBatchSize": 512, "scheduleDelay": 5000, "sharded": false,
+ * "exportWorkers": 1 }</pre>
+ */
+public class BatchOptions {
+
+  public static final int DEFAULT_MAX_QUEUE_SIZE = 2048;
+  public static final int DEFAULT_MAX_EXPORT_BATCH_SIZE = 512;
+  public static final long DEFAULT_SCHEDULE_DELAY = 5_000; // ms
+  public static final boolean DEFAULT_SHARDED = false;
+  public static final int DEFAULT_EXPORT_WORKERS = 1;
+
+  private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+  private int maxExportBatchSize = DEFAULT_MAX_EXPORT_BATCH_SIZE;
+  private long scheduleDelay = DEFAULT_SCHEDULE_DELAY;
+  private boolean sharded = DEFAULT_SHARDED;
+  private int exportWorkers = DEFAULT_EXPORT_WORKERS;
+
+  public BatchOptions() {
+  }
+
+  public BatchOptions(BatchOptions other) {
+    this.maxQueueSize = other.maxQueueSize;
+    this.maxExportBatchSize = other.maxExportBatchSize;
+    this.scheduleDelay = other.scheduleDelay;
+    this.sharded = other.sharded;
+    this.exportWorkers = other.exportWorkers;
+  }
+
+  public BatchOptions(JsonObject json) {
+    setMaxQueueSize(json.getInteger("maxQueueSize", DEFAULT_MAX_QUEUE_SIZE));
+    setMaxExportBatchSize(json.getInteger("maxExportBatchSize", DEFAULT_MAX_EXPORT_BATCH_SIZE));
+    setScheduleDelay(json.getLong("scheduleDelay", DEFAULT_SCHEDULE_DELAY));
+    setSharded(json.getBoolean("sharded", DEFAULT_SHARDED));
+    setExportWorkers(json.getInteger("exportWorkers", DEFAULT_EXPORT_WORKERS));
+  }
+
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  /**
+   * Set the maximum number of finished spans waiting to be exported, spans ended while the queue is full are dropped.
+   *
+   * @param maxQueueSize the queue capacity
+   * @return a reference to this, so the API can be used fluently
+   */
+  public BatchOptions setMaxQueueSize(int maxQueueSize) {
+    if (maxQueueSize < 1) {
+      throw new IllegalArgumentException("maxQueueSize must be > 0");
+    }
+    this.maxQueueSize = maxQueueSize;
+    return this;
+  }
+
+  public int getMaxExportBatchSize() {
+    return maxExportBatchSize;
+  }
+
+  /**
+   * Set the maximum number of spans sent to the exporter in a single call.
+   *
+   * @param maxExportBatchSize the batch size
+   * @return a reference to this, so the API can be used fluently
+   */
+  public BatchOptions setMaxExportBatchSize(int maxExportBatchSize) {
+    if (maxExportBatchSize < 1) {
+      throw new IllegalArgumentException("maxExportBatchSize must be > 0");
+    }
+    this.maxExportBatchSize = maxExportBatchSize;
+    return this;
+  }
+
+  public long getScheduleDelay() {
+    return scheduleDelay;
+  }
+
+  /**
+   * Set the maximum delay in ms between two exports, a batch is exported sooner when it is full.
+   *
+   * @param scheduleDelay the delay in ms
+   * @return a reference to this, so the API can be used fluently
+   */
+  public BatchOptions setScheduleDelay(long scheduleDelay) {
+    if (scheduleDelay < 1) {
+      throw new IllegalArgumentException("scheduleDelay must be > 0");
+    }
+    this.scheduleDelay = scheduleDelay;
+    return this;
+  }
+
+  public boolean isSharded() {
+    return sharded;
+  }
+
+  /**
+   * Set whether each thread ending spans gets its own queue, {@code maxQueueSize} is then the capacity of each queue.
+   *
+   * @param sharded {@code true} to shard the queue per thread
+   * @return a reference to this, so the API can be used fluently
+   */
+  public BatchOptions setSharded(boolean sharded) {
+    this.sharded = sharded;
+    return this;
+  }
+
+  public int getExportWorkers() {
+    return exportWorkers;
+  }
+
+  /**
+   * Set the number of workers draining the queues in sharded mode.
+   *
+   * @param exportWorkers the number of workers
+   * @return a reference to this, so the API can be used fluently
+   */
+  public BatchOptions setExportWorkers(int exportWorkers) {
+    if (exportWorkers < 1) {
+      throw new IllegalArgumentException("exportWorkers must be > 0");
+    }
+    this.exportWorkers = exportWorkers;
+    return this;
+  }
+
+  public JsonObject toJson() {
+    return new JsonObject()
+      .put("maxQueueSize", maxQueueSize)
+      .put("maxExportBatchSize", maxExportBatchSize)
+      .put("scheduleDelay", scheduleDelay)
+      .put("sharded", sharded)
+      .put("exportWorkers", exportWorkers);
+  }
+}
@@ -0,0 +1,125 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.metrics.MetricsOptions;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.spi.metrics.HttpClientMetrics;
+import io.vertx.core.spi.metrics.VertxMetrics;
+
+/**
+ * Vert.x metrics measuring the phases of the HTTP client requests for the {@link OpenTelemetryTracer}: the wait for a
+ * pooled connection, the connection opened for the request, the request written and the first byte of the response.
+ * The tracer starts the CLIENT span of a request when it asked the pool for a connection and adds the phases as
+ * events, see {@link OpenTelemetryTracer#setClientTimingsEnabled}.
+ * <p>
+ * The connection is reported once connected, its DNS resolution and TLS handshake included: Vert.x does not report
+ * them separately. Install the metrics with {@link #options()}, they replace the metrics of another implementation.
+ */
+public class ClientTimingMetrics implements VertxMetrics {
+
+  /**
+   * @return the metrics options installing these metrics, e.g. in {@link io.vertx.core.VertxOptions#setMetricsOptions}
+   */
+  public static MetricsOptions options() {
+    return new MetricsOptions()
+      .setEnabled(true)
+      .setFactory(options -> new ClientTimingMetrics());
+  }
+
+  // off until the tracer turns it on, the requests of a tracer without client timings are not measured
+  private volatile boolean enabled;
+
+  /**
+   * @return {@code true} when the requests are measured
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Turn the measures off or on, set by the tracer with its own switch. The requests being sent are not blocked.
+   *
+   * @param enabled {@code false} to stop measuring the requests
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Override
+  public HttpClientMetrics<?, ?, ?, ?, ?> createHttpClientMetrics(HttpClientOptions options) {
+    return new ClientMetrics();
+  }
+
+  /**
+   * The endpoint metric is the identity of the endpoint.
+   */
+  private class ClientMetrics
+    implements HttpClientMetrics<ClientTimings, Void, ClientTimings.Connection, Object, ClientTimings> {
+
+    @Override
+    public Object createEndpoint(String host, int port, int maxPoolSize) {
+      return new Object();
+    }
+
+    @Override
+    public ClientTimings enqueueRequest(Object endpoint) {
+      return enabled ? new ClientTimings(endpoint) : null;
+    }
+
+    @Override
+    public void dequeueRequest(Object endpoint, ClientTimings timings) {
+      if (timings != null) {
+        timings.acquired();
+      }
+    }
+
+    @Override
+    public ClientTimings.Connection connected(SocketAddress remoteAddress, String remoteName) {
+      return enabled ? new ClientTimings.Connection() : null;
+    }
+
+    @Override
+    public ClientTimings requestBegin(Object endpoint, ClientTimings.Connection socket, SocketAddress localAddress,
+                                      SocketAddress remoteAddress, HttpClientRequest request) {
+      if (!enabled) {
+        return null;
+      }
+      ClientTimings timings = ClientTimings.acquired(endpoint);
+      if (timings == null) {
+        timings = new ClientTimings(endpoint);
+      }
+      timings.begin(request, socket);
+      return timings;
+    }
+
+    @Override
+    public void requestEnd(ClientTimings timings) {
+      if (timings != null) {
+        timings.written();
+      }
+    }
+
+    @Override
+    public void responseBegin(ClientTimings timings, HttpClientResponse response) {
+      if (timings != null) {
+        timings.responded();
+      }
+    }
+
+    @Override
+    public void requestReset(ClientTimings timings) {
+      if (timings != null) {
+        timings.ended();
+      }
+    }
+
+    @Override
+    public void responseEnd(ClientTimings timings, HttpClientResponse response) {
+      if (timings != null) {
+        timings.ended();
+      }
+    }
+  }
+}
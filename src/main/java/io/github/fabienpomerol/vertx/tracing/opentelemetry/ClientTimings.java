@@ -0,0 +1,190 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.trace.Span;
+import io.vertx.core.http.HttpClientRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The phases of an HTTP client request measured by {@link ClientTimingMetrics} and added as events to the CLIENT span
+ * of the request.
+ * <p>
+ * Vert.x calls the metrics then the tracer in a row on the same thread: the pool hands the connection over
+ * ({@code dequeueRequest}) and the request head is written ({@code requestBegin} then {@code sendRequest}), the
+ * response begins ({@code responseBegin}) and ends ({@code receiveResponse}). The timings are handed over from one
+ * callback to the next by a thread local slot, each taker checks they are the ones of its request or of its span.
+ * <p>
+ * The phases are measured with {@link System#nanoTime()} and converted to epoch nanos from the wall clock read when the
+ * timings are created, the span and its events are consistent with each other.
+ */
+final class ClientTimings {
+
+  static final String CONNECTION_CONNECTED = "connection.connected";
+  static final String CONNECTION_ACQUIRED = "connection.acquired";
+  static final String REQUEST_WRITTEN = "request.written";
+  static final String RESPONSE_FIRST_BYTE = "response.first_byte";
+
+  private static final ThreadLocal<ClientTimings> CURRENT = new ThreadLocal<>();
+
+  private final Object endpoint;
+  private final long epochNanos;
+  private final long nanoTime;
+  private long acquired;
+  private HttpClientRequest request;
+  private long connected;
+  private Span span;
+  private int events;
+
+  /**
+   * @param endpoint the endpoint of the request
+   */
+  ClientTimings(Object endpoint) {
+    this.endpoint = endpoint;
+    this.epochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    this.nanoTime = System.nanoTime();
+  }
+
+  /**
+   * The pool handed a connection to the request.
+   */
+  void acquired() {
+    acquired = System.nanoTime();
+    CURRENT.set(this);
+  }
+
+  /**
+   * @return the timings of the last request given a connection of the endpoint on this thread and not begun yet
+   */
+  static ClientTimings acquired(Object endpoint) {
+    ClientTimings timings = CURRENT.get();
+    if (timings != null && timings.endpoint == endpoint && timings.request == null) {
+      return timings;
+    }
+    return null;
+  }
+
+  /**
+   * The head of the request is about to be written, the connection is ready.
+   *
+   * @param request    the request
+   * @param connection the connection, its opening is counted for the first request waiting for it
+   */
+  void begin(HttpClientRequest request, Connection connection) {
+    this.request = request;
+    if (connection != null && !connection.used) {
+      connection.used = true;
+      if (acquired != 0 && connection.connected - nanoTime >= 0) {
+        this.connected = connection.connected;
+      }
+    }
+    CURRENT.set(this);
+  }
+
+  /**
+   * @return the timings of {@code request} begun on this thread, when measured
+   */
+  static ClientTimings begun(Object request) {
+    ClientTimings timings = CURRENT.get();
+    if (timings != null && timings.request == request) {
+      CURRENT.set(null);
+      return timings;
+    }
+    return null;
+  }
+
+  /**
+   * @return the time the request asked the pool for a connection, or the time it began when it did not go through
+   * the pool
+   */
+  long startEpochNanos() {
+    return epochNanos;
+  }
+
+  /**
+   * Add the connection phases to the span of the request, the following phases are added as they happen.
+   *
+   * @param span the recording span of the request
+   */
+  void attach(Span span) {
+    this.span = span;
+    if (connected != 0) {
+      event(CONNECTION_CONNECTED, connected);
+    }
+    if (acquired != 0) {
+      event(CONNECTION_ACQUIRED, acquired);
+    }
+  }
+
+  /**
+   * The request has been written.
+   */
+  void written() {
+    event(REQUEST_WRITTEN, System.nanoTime());
+  }
+
+  /**
+   * The first byte of the response has been received.
+   */
+  void responded() {
+    event(RESPONSE_FIRST_BYTE, System.nanoTime());
+    CURRENT.set(this);
+  }
+
+  /**
+   * @return the timings of {@code span} whose response began on this thread, when measured, they no longer add events
+   * to the span which is ending
+   */
+  static ClientTimings responded(Span span) {
+    ClientTimings timings = CURRENT.get();
+    if (timings != null && timings.span == span) {
+      CURRENT.set(null);
+      timings.span = null;
+      return timings;
+    }
+    return null;
+  }
+
+  /**
+   * The request is over, the slot does not retain it.
+   */
+  void ended() {
+    span = null;
+    if (CURRENT.get() == this) {
+      CURRENT.set(null);
+    }
+  }
+
+  /**
+   * @return the number of events added to the span
+   */
+  int events() {
+    return events;
+  }
+
+  /**
+   * @return the current time in epoch nanos, to end the span
+   */
+  long nowEpochNanos() {
+    return epochNanos(System.nanoTime());
+  }
+
+  private void event(String name, long nanoTime) {
+    if (span != null) {
+      span.addEvent(name, epochNanos(nanoTime));
+      events++;
+    }
+  }
+
+  private long epochNanos(long nanoTime) {
+    return epochNanos + nanoTime - this.nanoTime;
+  }
+
+  /**
+   * A connection of the pool, confined to its event loop.
+   */
+  static final class Connection {
+
+    private final long connected = System.nanoTime();
+    private boolean used;
+  }
+}
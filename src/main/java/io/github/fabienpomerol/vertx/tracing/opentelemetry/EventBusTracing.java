@@ -0,0 +1,170 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.TraceState;
+import io.vertx.core.MultiMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The event bus side of the tracer: the rule of each address and the binary trace context header.
+ * <p>
+ * The rule of an address is resolved once and cached, a message to an excluded address then costs a map lookup. The
+ * binary header holds a version byte, the trace id, the span id and the trace flags, 26 bytes carried as an ISO-8859-1
+ * string instead of the 55 characters of a W3C {@code traceparent}, and it is decoded without parsing hex.
+ */
+final class EventBusTracing {
+
+  static final String HEADER = "otel-bin";
+
+  private static final char VERSION = 0;
+  private static final int TRACE_ID_OFFSET = 1;
+  private static final int SPAN_ID_OFFSET = TRACE_ID_OFFSET + TraceId.getSize();
+  private static final int FLAGS_OFFSET = SPAN_ID_OFFSET + SpanId.getSize();
+  private static final int LENGTH = FLAGS_OFFSET + 1;
+
+  // the addresses built per request, e.g. reply addresses, must not grow the cache forever
+  private static final int MAX_CACHED_ADDRESSES = 10_000;
+
+  static final Rule TRACED = new Rule(false, 1);
+  static final Rule EXCLUDED = new Rule(true, 0);
+
+  private final boolean binaryPropagation;
+  private final Map<String, Rule> exact = new HashMap<>();
+  // longest prefix first
+  private final List<Map.Entry<String, Rule>> prefixes = new ArrayList<>();
+  private final ConcurrentHashMap<String, Rule> cache = new ConcurrentHashMap<>();
+
+  EventBusTracing(EventBusTracingOptions options) {
+    this.binaryPropagation = options.isBinaryPropagation();
+    Map<String, Rule> prefixes = new HashMap<>();
+    options.getSampling().forEach((pattern, probability) ->
+      add(pattern, probability == 1 ? TRACED : new Rule(false, probability), prefixes));
+    // an exclusion wins over a sampling probability of the same pattern
+    options.getExcludedAddresses().forEach(pattern -> add(pattern, EXCLUDED, prefixes));
+    this.prefixes.addAll(prefixes.entrySet());
+    this.prefixes.sort(Comparator.comparingInt((Map.Entry<String, Rule> e) -> e.getKey().length()).reversed());
+  }
+
+  private void add(String pattern, Rule rule, Map<String, Rule> prefixes) {
+    if (pattern.endsWith("*")) {
+      prefixes.put(pattern.substring(0, pattern.length() - 1), rule);
+    } else {
+      exact.put(pattern, rule);
+    }
+  }
+
+  boolean isBinaryPropagation() {
+    return binaryPropagation;
+  }
+
+  /**
+   * @return the rule of {@code address}, {@link #TRACED} when no pattern matches
+   */
+  Rule rule(String address) {
+    if (address == null) {
+      return TRACED;
+    }
+    Rule rule = cache.get(address);
+    if (rule == null) {
+      rule = resolve(address);
+      if (cache.size() < MAX_CACHED_ADDRESSES) {
+        cache.put(address, rule);
+      }
+    }
+    return rule;
+  }
+
+  private Rule resolve(String address) {
+    Rule rule = exact.get(address);
+    if (rule != null) {
+      return rule;
+    }
+    for (Map.Entry<String, Rule> prefix : prefixes) {
+      if (address.startsWith(prefix.getKey())) {
+        return prefix.getValue();
+      }
+    }
+    return TRACED;
+  }
+
+  /**
+   * @return the binary header value of {@code spanContext}
+   */
+  static String encode(SpanContext spanContext) {
+    byte[] bytes = new byte[LENGTH];
+    bytes[0] = VERSION;
+    spanContext.getTraceId().copyBytesTo(bytes, TRACE_ID_OFFSET);
+    spanContext.getSpanId().copyBytesTo(bytes, SPAN_ID_OFFSET);
+    spanContext.getTraceFlags().copyBytesTo(bytes, FLAGS_OFFSET);
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * @return the remote span context of the binary header of {@code headers} or {@code null} when there is none
+   */
+  static SpanContext decode(Iterable<Map.Entry<String, String>> headers) {
+    String value;
+    if (headers instanceof MultiMap) {
+      value = ((MultiMap) headers).get(HEADER);
+    } else {
+      value = HeadersGetter.INSTANCE.get(headers, HEADER);
+    }
+    return value == null ? null : decode(value);
+  }
+
+  /**
+   * @return the remote span context of the binary header value or {@code null} when it is malformed
+   */
+  static SpanContext decode(String value) {
+    if (value.length() != LENGTH || value.charAt(0) != VERSION) {
+      return null;
+    }
+    TraceId traceId = new TraceId(readLong(value, TRACE_ID_OFFSET), readLong(value, TRACE_ID_OFFSET + 8));
+    SpanId spanId = new SpanId(readLong(value, SPAN_ID_OFFSET));
+    if (!traceId.isValid() || !spanId.isValid()) {
+      return null;
+    }
+    TraceFlags flags = TraceFlags.fromByte((byte) value.charAt(FLAGS_OFFSET));
+    return SpanContext.createFromRemoteParent(traceId, spanId, flags, TraceState.getDefault());
+  }
+
+  private static long readLong(String value, int offset) {
+    long l = 0;
+    for (int idx = offset; idx < offset + 8; idx++) {
+      l = (l << 8) | (value.charAt(idx) & 0xFF);
+    }
+    return l;
+  }
+
+  /**
+   * How the messages of an address are traced.
+   */
+  static final class Rule {
+
+    final boolean excluded;
+    final double probability;
+
+    private Rule(boolean excluded, double probability) {
+      this.excluded = excluded;
+      this.probability = probability;
+    }
+
+    /**
+     * @return whether a message starting a new trace is traced
+     */
+    boolean sample() {
+      return probability >= 1 || (probability > 0 && ThreadLocalRandom.current().nextDouble() < probability);
+    }
+  }
+}
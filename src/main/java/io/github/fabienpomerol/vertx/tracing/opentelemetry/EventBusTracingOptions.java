@@ -0,0 +1,119 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Event bus tracing configuration: how the trace context travels in the message headers and which addresses are
+ * traced.
+ * <p>
+ * An address pattern is either an exact address or a prefix followed by {@code *}, e.g. {@code metrics.*}; an exact
+ * address wins over a prefix and a longer prefix over a shorter one.
+ * <ul>
+ *   <li>Excluded addresses are never traced: sending or receiving their messages creates no span and adds no
+ *   header.</li>
+ *   <li>A sampling probability applies to the messages starting a trace, received without a trace context. The
+ *   messages of a trace already sampled are always traced.</li>
+ * </ul>
+ * JSON form: <pre>{ "binaryPropagation": true, "excludedAddresses": [ "metrics.*" ],
+ * "sampling": { "orders.created": 0.1 } }</pre>
+ */
+public class EventBusTracingOptions {
+
+  public static final boolean DEFAULT_BINARY_PROPAGATION = true;
+
+  private boolean binaryPropagation = DEFAULT_BINARY_PROPAGATION;
+  private Set<String> excludedAddresses = new LinkedHashSet<>();
+  private Map<String, Double> sampling = new LinkedHashMap<>();
+
+  public EventBusTracingOptions() {
+  }
+
+  public EventBusTracingOptions(EventBusTracingOptions other) {
+    this.binaryPropagation = other.binaryPropagation;
+    this.excludedAddresses = new LinkedHashSet<>(other.excludedAddresses);
+    this.sampling = new LinkedHashMap<>(other.sampling);
+  }
+
+  public EventBusTracingOptions(JsonObject json) {
+    setBinaryPropagation(json.getBoolean("binaryPropagation", DEFAULT_BINARY_PROPAGATION));
+    JsonArray excludedAddresses = json.getJsonArray("excludedAddresses");
+    if (excludedAddresses != null) {
+      excludedAddresses.forEach(address -> addExcludedAddress((String) address));
+    }
+    JsonObject sampling = json.getJsonObject("sampling");
+    if (sampling != null) {
+      sampling.forEach(entry -> addSampling(entry.getKey(), ((Number) entry.getValue()).doubleValue()));
+    }
+  }
+
+  public boolean isBinaryPropagation() {
+    return binaryPropagation;
+  }
+
+  /**
+   * Set whether the trace context is sent in a single compact binary header instead of the W3C text headers. The
+   * receiving side reads both forms.
+   *
+   * @param binaryPropagation {@code true} to send the binary header
+   * @return a reference to this, so the API can be used fluently
+   */
+  public EventBusTracingOptions setBinaryPropagation(boolean binaryPropagation) {
+    this.binaryPropagation = binaryPropagation;
+    return this;
+  }
+
+  public Set<String> getExcludedAddresses() {
+    return Collections.unmodifiableSet(excludedAddresses);
+  }
+
+  /**
+   * Exclude an address from the tracing.
+   *
+   * @param pattern an address or a prefix followed by {@code *}
+   * @return a reference to this, so the API can be used fluently
+   */
+  public EventBusTracingOptions addExcludedAddress(String pattern) {
+    if (pattern == null || pattern.isEmpty()) {
+      throw new IllegalArgumentException("pattern must not be empty");
+    }
+    this.excludedAddresses.add(pattern);
+    return this;
+  }
+
+  public Map<String, Double> getSampling() {
+    return Collections.unmodifiableMap(sampling);
+  }
+
+  /**
+   * Set the probability to trace a message sent to an address when it starts a new trace.
+   *
+   * @param pattern     an address or a prefix followed by {@code *}
+   * @param probability the probability between 0 and 1
+   * @return a reference to this, so the API can be used fluently
+   */
+  public EventBusTracingOptions addSampling(String pattern, double probability) {
+    if (pattern == null || pattern.isEmpty()) {
+      throw new IllegalArgumentException("pattern must not be empty");
+    }
+    if (probability < 0 || probability > 1) {
+      throw new IllegalArgumentException("probability must be between 0 and 1");
+    }
+    this.sampling.put(pattern, probability);
+    return this;
+  }
+
+  public JsonObject toJson() {
+    return new JsonObject()
+      .put("binaryPropagation", binaryPropagation)
+      .put("excludedAddresses", new JsonArray(new ArrayList<>(excludedAddresses)))
+      .put("sampling", new JsonObject(new LinkedHashMap<>(sampling)));
+  }
+}
@@ -0,0 +1,35 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.context.propagation.HttpTextFormat;
+import io.vertx.core.MultiMap;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Stateless {@link HttpTextFormat.Getter} reading the propagation fields from the headers of an inbound request.
+ * <p>
+ * Vert.x hands over its headers as a {@link MultiMap}, they are looked up directly without iterating, other carriers
+ * are scanned with a plain loop.
+ */
+final class HeadersGetter implements HttpTextFormat.Getter<Iterable<Map.Entry<String, String>>> {
+
+  static final HeadersGetter INSTANCE = new HeadersGetter();
+
+  private HeadersGetter() {
+  }
+
+  @Nullable
+  @Override
+  public String get(Iterable<Map.Entry<String, String>> headers, String key) {
+    if (headers instanceof MultiMap) {
+      return ((MultiMap) headers).get(key);
+    }
+    for (Map.Entry<String, String> header : headers) {
+      if (key.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,237 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.SpanContext;
+import io.vertx.core.spi.tracing.TagExtractor;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link SpanProcessor} building the attributes of the Vert.x tags of a span only when the span is exported.
+ * <p>
+ * The tracer copies the values of the kept tags on the {@link RequestSpan} while the request and the response are
+ * alive, and reports the span it is about to end: the ended span is forwarded to the exporter processors wrapped so
+ * that {@link ReadableSpan#toSpanData()} adds the tags. With batching the attribute values are then limited and the
+ * attributes built by the exporter worker and not on the event loop. Nothing is kept for the spans not ended yet.
+ */
+final class LazyTagsSpanProcessor implements SpanProcessor {
+
+  private final List<SpanProcessor> processors;
+  private final Set<String> tagAllowlist;
+  private final SpanLimits limits;
+  // the tags of the span being ended on the thread, until its processors are called
+  private final ThreadLocal<Tags> ending = new ThreadLocal<>();
+
+  /**
+   * @param processors the processors of the exporters
+   * @param tagAllowlist the names of the tags to keep, all the tags are kept when empty
+   * @param limits the limits applied to the resolved attributes
+   */
+  LazyTagsSpanProcessor(List<SpanProcessor> processors, Set<String> tagAllowlist, SpanLimits limits) {
+    this.processors = processors;
+    this.tagAllowlist = tagAllowlist;
+    this.limits = limits;
+  }
+
+  /**
+   * Copy the values of the kept tags of {@code obj} to {@code span}, they are added to the span when it is exported.
+   * The values of the tags beyond the attribute limit are not extracted.
+   */
+  <T> void defer(RequestSpan span, T obj, TagExtractor<T> tagExtractor) {
+    Tags tags = span.tags;
+    if (tags == null) {
+      tags = span.tags = new Tags(span.getContext());
+    }
+    int len = tagExtractor.len(obj);
+    for (int idx = 0; idx < len; idx++) {
+      String name = tagExtractor.name(obj, idx);
+      if (tagAllowlist.isEmpty() || tagAllowlist.contains(name)) {
+        if (tags.size == limits.maxAttributes) {
+          tags.skipped++;
+        } else {
+          tags.add(name, tagExtractor.value(obj, idx));
+        }
+      }
+    }
+  }
+
+  /**
+   * Hand the tags of {@code span} over to the processor, called on the thread ending the span right before it ends.
+   */
+  void ending(RequestSpan span) {
+    if (span.tags != null) {
+      ending.set(span.tags);
+    }
+  }
+
+  @Override
+  public void onStart(ReadableSpan span) {
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    Tags tags = ending.get();
+    ReadableSpan tagged = span;
+    if (tags != null) {
+      ending.remove();
+      if (tags.context == span.getSpanContext()) {
+        tagged = new TaggedSpan(span, tags);
+      }
+    }
+    for (SpanProcessor processor : processors) {
+      processor.onEnd(tagged);
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+
+  @Override
+  public void shutdown() {
+    for (SpanProcessor processor : processors) {
+      processor.shutdown();
+    }
+  }
+
+  @Override
+  public void forceFlush() {
+    for (SpanProcessor processor : processors) {
+      processor.forceFlush();
+    }
+  }
+
+  /**
+   * The names and values of the tags of a span, written by the thread of its request before the span ends, then only
+   * read.
+   */
+  static final class Tags {
+
+    private final SpanContext context;
+    private String[] names = new String[8];
+    private String[] values = new String[8];
+    private int size;
+    // the tags beyond the limit, counted in the total but not extracted
+    private int skipped;
+
+    Tags(SpanContext context) {
+      this.context = context;
+    }
+
+    private void add(String name, String value) {
+      if (size == names.length) {
+        names = Arrays.copyOf(names, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      names[size] = name;
+      values[size] = value;
+      size++;
+    }
+  }
+
+  private final class TaggedSpan implements ReadableSpan {
+
+    private final ReadableSpan span;
+    private final Tags tags;
+    // guarded by this
+    private SpanData data;
+
+    TaggedSpan(ReadableSpan span, Tags tags) {
+      this.span = span;
+      this.tags = tags;
+    }
+
+    @Override
+    public SpanContext getSpanContext() {
+      return span.getSpanContext();
+    }
+
+    @Override
+    public String getName() {
+      return span.getName();
+    }
+
+    @Override
+    public synchronized SpanData toSpanData() {
+      if (data == null) {
+        data = resolve(span.toSpanData());
+      }
+      return data;
+    }
+
+    @Override
+    public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+      return span.getInstrumentationLibraryInfo();
+    }
+
+    @Override
+    public boolean hasEnded() {
+      return span.hasEnded();
+    }
+
+    @Override
+    public long getLatencyNanos() {
+      return span.getLatencyNanos();
+    }
+
+    private SpanData resolve(SpanData data) {
+      Map<String, AttributeValue> attributes = new LinkedHashMap<>(data.getAttributes());
+      // the tags beyond the limit are counted in the total but not kept
+      int added = addTags(attributes);
+      if (added == 0) {
+        return data;
+      }
+      return SpanData.newBuilder()
+        .setTraceId(data.getTraceId())
+        .setSpanId(data.getSpanId())
+        .setTraceFlags(data.getTraceFlags())
+        .setTraceState(data.getTraceState())
+        .setParentSpanId(data.getParentSpanId())
+        .setResource(data.getResource())
+        .setInstrumentationLibraryInfo(data.getInstrumentationLibraryInfo())
+        .setName(data.getName())
+        .setKind(data.getKind())
+        .setStartEpochNanos(data.getStartEpochNanos())
+        .setEndEpochNanos(data.getEndEpochNanos())
+        .setAttributes(attributes)
+        .setTimedEvents(data.getTimedEvents())
+        .setLinks(data.getLinks())
+        .setStatus(data.getStatus())
+        .setHasRemoteParent(data.getHasRemoteParent())
+        .setHasEnded(data.getHasEnded())
+        .setTotalRecordedEvents(data.getTotalRecordedEvents())
+        .setTotalRecordedLinks(data.getTotalRecordedLinks())
+        .setTotalAttributeCount(data.getTotalAttributeCount() + added)
+        .build();
+    }
+
+    private int addTags(Map<String, AttributeValue> attributes) {
+      for (int idx = 0; idx < tags.size; idx++) {
+        String name = tags.names[idx];
+        if (attributes.size() < limits.maxAttributes || attributes.containsKey(name)) {
+          attributes.put(name, AttributeValue.stringAttributeValue(limits.value(name, tags.values[idx])));
+        } else {
+          limits.attributesDropped(1);
+        }
+      }
+      if (tags.skipped > 0) {
+        limits.attributesDropped(tags.skipped);
+      }
+      return tags.size + tags.skipped;
+    }
+  }
+}
@@ -0,0 +1,516 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.EndSpanOptions;
+import io.opentelemetry.trace.Event;
+import io.opentelemetry.trace.Link;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A sampled span of the {@link LeanTracer}, recycled once exported.
+ * <p>
+ * The attributes are kept in parallel arrays, the primitive values as raw bits, and the error events as their kind and
+ * message: nothing is boxed nor copied into maps until {@link #toSpanData()} converts the span, at export time.
+ * <p>
+ * A span is referenced by each processor receiving it and by its tracer until it ends, the last reference released
+ * returns it to the pool of the thread that started it. A processor converts the span once with {@link #toSpanData()},
+ * after which it must not read it anymore, and a span must not be used once ended.
+ */
+final class LeanSpan implements Span, ReadableSpan {
+
+  private static final byte STRING = 0;
+  private static final byte LONG = 1;
+  private static final byte DOUBLE = 2;
+  private static final byte BOOLEAN = 3;
+
+  private static final String ERROR = "error";
+
+  private final Pool pool;
+  private final AtomicInteger references = new AtomicInteger();
+  // the next span of the pool
+  private LeanSpan next;
+
+  private LeanTracer tracer;
+  private String name;
+  private Kind kind;
+  private SpanContext context;
+  private SpanId parentSpanId;
+  private boolean hasRemoteParent;
+  private long startEpochNanos;
+  private long startNanoTime;
+  private long endEpochNanos;
+  private boolean ended;
+  private Status status;
+  private int maxAttributes;
+  private int maxEvents;
+
+  private String[] keys = new String[8];
+  private byte[] types = new byte[8];
+  // the strings, the primitives are in bits
+  private String[] strings = new String[8];
+  private long[] bits = new long[8];
+  private int attributeCount;
+  private int totalAttributeCount;
+
+  private String[] eventNames;
+  private long[] eventTimes;
+  // the kind and message of an error event, the attributes of another event
+  private String[] errorKinds;
+  private String[] errorMessages;
+  private Map<String, AttributeValue>[] eventAttributes;
+  private int eventCount;
+  private int totalEventCount;
+
+  private List<SpanData.Link> links;
+
+  private LeanSpan(Pool pool) {
+    this.pool = pool;
+  }
+
+  void start(LeanTracer tracer, String name, Kind kind, SpanContext context, SpanId parentSpanId,
+             boolean hasRemoteParent, long startEpochNanos, long startNanoTime, int maxAttributes, int maxEvents,
+             int references) {
+    this.tracer = tracer;
+    this.name = name;
+    this.kind = kind;
+    this.context = context;
+    this.parentSpanId = parentSpanId;
+    this.hasRemoteParent = hasRemoteParent;
+    this.startNanoTime = startNanoTime;
+    this.startEpochNanos = startEpochNanos;
+    this.maxAttributes = maxAttributes;
+    this.maxEvents = maxEvents;
+    this.references.set(references);
+  }
+
+  void addLinks(List<Link> links) {
+    this.links = new ArrayList<>(links.size());
+    for (Link link : links) {
+      this.links.add(SpanData.Link.create(link.getContext(), link.getAttributes()));
+    }
+  }
+
+  /**
+   * Add an error event without building its attribute map, see {@code OpenTelemetryTracer#reportError}.
+   */
+  void addErrorEvent(String errorKind, String message) {
+    int idx = nextEvent();
+    if (idx >= 0) {
+      eventNames[idx] = ERROR;
+      eventTimes[idx] = now();
+      errorKinds[idx] = errorKind;
+      errorMessages[idx] = message;
+    }
+  }
+
+  @Override
+  public void setAttribute(String key, String value) {
+    if (value == null) {
+      return;
+    }
+    int idx = attributeIndex(key);
+    if (idx >= 0) {
+      types[idx] = STRING;
+      strings[idx] = value;
+    }
+  }
+
+  @Override
+  public void setAttribute(String key, long value) {
+    setBits(key, LONG, value);
+  }
+
+  @Override
+  public void setAttribute(String key, double value) {
+    setBits(key, DOUBLE, Double.doubleToRawLongBits(value));
+  }
+
+  @Override
+  public void setAttribute(String key, boolean value) {
+    setBits(key, BOOLEAN, value ? 1 : 0);
+  }
+
+  @Override
+  public void setAttribute(String key, AttributeValue value) {
+    if (value == null) {
+      return;
+    }
+    switch (value.getType()) {
+      case STRING:
+        setAttribute(key, value.getStringValue());
+        break;
+      case LONG:
+        setAttribute(key, value.getLongValue());
+        break;
+      case DOUBLE:
+        setAttribute(key, value.getDoubleValue());
+        break;
+      case BOOLEAN:
+        setAttribute(key, value.getBooleanValue());
+        break;
+    }
+  }
+
+  private void setBits(String key, byte type, long value) {
+    int idx = attributeIndex(key);
+    if (idx >= 0) {
+      types[idx] = type;
+      strings[idx] = null;
+      bits[idx] = value;
+    }
+  }
+
+  /**
+   * @return the index of the attribute {@code key}, added when missing, or {@code -1} when the span is full or ended
+   */
+  private int attributeIndex(String key) {
+    if (ended) {
+      return -1;
+    }
+    totalAttributeCount++;
+    for (int idx = 0; idx < attributeCount; idx++) {
+      if (keys[idx].equals(key)) {
+        return idx;
+      }
+    }
+    if (attributeCount == maxAttributes) {
+      return -1;
+    }
+    if (attributeCount == keys.length) {
+      int capacity = Math.min(attributeCount * 2, maxAttributes);
+      keys = copyOf(keys, new String[capacity]);
+      strings = copyOf(strings, new String[capacity]);
+      byte[] types = new byte[capacity];
+      System.arraycopy(this.types, 0, types, 0, attributeCount);
+      this.types = types;
+      long[] bits = new long[capacity];
+      System.arraycopy(this.bits, 0, bits, 0, attributeCount);
+      this.bits = bits;
+    }
+    keys[attributeCount] = key;
+    return attributeCount++;
+  }
+
+  @Override
+  public void addEvent(String name) {
+    addEvent(name, Collections.emptyMap(), now());
+  }
+
+  @Override
+  public void addEvent(String name, long timestamp) {
+    addEvent(name, Collections.emptyMap(), timestamp);
+  }
+
+  @Override
+  public void addEvent(String name, Map<String, AttributeValue> attributes) {
+    addEvent(name, attributes, now());
+  }
+
+  @Override
+  public void addEvent(String name, Map<String, AttributeValue> attributes, long timestamp) {
+    int idx = nextEvent();
+    if (idx >= 0) {
+      eventNames[idx] = name;
+      eventTimes[idx] = timestamp;
+      eventAttributes[idx] = Collections.unmodifiableMap(new HashMap<>(attributes));
+    }
+  }
+
+  @Override
+  public void addEvent(Event event) {
+    addEvent(event.getName(), event.getAttributes(), now());
+  }
+
+  @Override
+  public void addEvent(Event event, long timestamp) {
+    addEvent(event.getName(), event.getAttributes(), timestamp);
+  }
+
+  /**
+   * @return the index of the new event or {@code -1} when the span is full or ended
+   */
+  private int nextEvent() {
+    if (ended) {
+      return -1;
+    }
+    totalEventCount++;
+    if (eventCount == maxEvents) {
+      return -1;
+    }
+    if (eventNames == null) {
+      // most spans have no event
+      int capacity = Math.min(2, maxEvents);
+      eventNames = new String[capacity];
+      eventTimes = new long[capacity];
+      errorKinds = new String[capacity];
+      errorMessages = new String[capacity];
+      eventAttributes = newMapArray(capacity);
+    } else if (eventCount == eventNames.length) {
+      int capacity = Math.min(eventCount * 2, maxEvents);
+      eventNames = copyOf(eventNames, new String[capacity]);
+      long[] eventTimes = new long[capacity];
+      System.arraycopy(this.eventTimes, 0, eventTimes, 0, eventCount);
+      this.eventTimes = eventTimes;
+      errorKinds = copyOf(errorKinds, new String[capacity]);
+      errorMessages = copyOf(errorMessages, new String[capacity]);
+      eventAttributes = copyOf(eventAttributes, newMapArray(capacity));
+    }
+    return eventCount++;
+  }
+
+  @Override
+  public void setStatus(Status status) {
+    if (!ended && status != null) {
+      this.status = status;
+    }
+  }
+
+  @Override
+  public void updateName(String name) {
+    if (!ended && name != null) {
+      this.name = name;
+    }
+  }
+
+  @Override
+  public void end() {
+    endAt(now());
+  }
+
+  @Override
+  public void end(EndSpanOptions endOptions) {
+    endAt(endOptions.getEndTimestamp() != 0 ? endOptions.getEndTimestamp() : now());
+  }
+
+  private void endAt(long endEpochNanos) {
+    if (ended) {
+      return;
+    }
+    this.endEpochNanos = endEpochNanos;
+    ended = true;
+    tracer.onEnd(this);
+    // the reference of the tracer
+    release();
+  }
+
+  private long now() {
+    return startEpochNanos + System.nanoTime() - startNanoTime;
+  }
+
+  @Override
+  public SpanContext getContext() {
+    return context;
+  }
+
+  @Override
+  public boolean isRecording() {
+    return true;
+  }
+
+  @Override
+  public SpanContext getSpanContext() {
+    return context;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+    return tracer.instrumentationLibraryInfo;
+  }
+
+  @Override
+  public boolean hasEnded() {
+    return ended;
+  }
+
+  @Override
+  public long getLatencyNanos() {
+    return (ended ? endEpochNanos : now()) - startEpochNanos;
+  }
+
+  /**
+   * Convert the span, the reference of the calling processor is released: the span must not be read afterwards.
+   */
+  @Override
+  public SpanData toSpanData() {
+    Map<String, AttributeValue> attributes = new LinkedHashMap<>(attributeCount * 2);
+    for (int idx = 0; idx < attributeCount; idx++) {
+      attributes.put(keys[idx], attributeValue(idx));
+    }
+    List<SpanData.TimedEvent> events;
+    if (eventCount == 0) {
+      events = Collections.emptyList();
+    } else {
+      events = new ArrayList<>(eventCount);
+      for (int idx = 0; idx < eventCount; idx++) {
+        Map<String, AttributeValue> eventAttributes = this.eventAttributes[idx];
+        if (eventAttributes == null) {
+          eventAttributes = new HashMap<>(4);
+          eventAttributes.put("event", AttributeValue.stringAttributeValue(ERROR));
+          eventAttributes.put("error.kind", AttributeValue.stringAttributeValue(errorKinds[idx]));
+          eventAttributes.put("message", AttributeValue.stringAttributeValue(errorMessages[idx]));
+        }
+        events.add(SpanData.TimedEvent.create(eventTimes[idx], eventNames[idx], eventAttributes));
+      }
+    }
+    SpanData data = SpanData.newBuilder()
+      .setTraceId(context.getTraceId())
+      .setSpanId(context.getSpanId())
+      .setTraceFlags(context.getTraceFlags())
+      .setTraceState(context.getTraceState())
+      .setParentSpanId(parentSpanId)
+      .setResource(tracer.resource)
+      .setInstrumentationLibraryInfo(tracer.instrumentationLibraryInfo)
+      .setName(name)
+      .setKind(kind)
+      .setStartEpochNanos(startEpochNanos)
+      .setEndEpochNanos(endEpochNanos)
+      .setAttributes(attributes)
+      .setTimedEvents(events)
+      .setLinks(links != null ? links : Collections.emptyList())
+      .setStatus(status != null ? status : Status.OK)
+      .setHasRemoteParent(hasRemoteParent)
+      .setHasEnded(ended)
+      .setTotalRecordedEvents(totalEventCount)
+      .setTotalRecordedLinks(links != null ? links.size() : 0)
+      .setTotalAttributeCount(totalAttributeCount)
+      .build();
+    release();
+    return data;
+  }
+
+  private AttributeValue attributeValue(int idx) {
+    switch (types[idx]) {
+      case LONG:
+        return AttributeValue.longAttributeValue(bits[idx]);
+      case DOUBLE:
+        return AttributeValue.doubleAttributeValue(Double.longBitsToDouble(bits[idx]));
+      case BOOLEAN:
+        return AttributeValue.booleanAttributeValue(bits[idx] != 0);
+      default:
+        return AttributeValue.stringAttributeValue(strings[idx]);
+    }
+  }
+
+  private void release() {
+    if (references.decrementAndGet() == 0) {
+      clear();
+      pool.release(this);
+    }
+  }
+
+  /**
+   * Drop the references to the values of the request, the arrays are kept.
+   */
+  private void clear() {
+    for (int idx = 0; idx < attributeCount; idx++) {
+      keys[idx] = null;
+      strings[idx] = null;
+    }
+    for (int idx = 0; idx < eventCount; idx++) {
+      eventNames[idx] = null;
+      errorKinds[idx] = null;
+      errorMessages[idx] = null;
+      eventAttributes[idx] = null;
+    }
+    tracer = null;
+    name = null;
+    kind = null;
+    context = null;
+    parentSpanId = null;
+    status = null;
+    links = null;
+    attributeCount = totalAttributeCount = 0;
+    eventCount = totalEventCount = 0;
+    ended = false;
+  }
+
+  private static <T> T[] copyOf(T[] array, T[] copy) {
+    System.arraycopy(array, 0, copy, 0, Math.min(array.length, copy.length));
+    return copy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, V> Map<K, V>[] newMapArray(int length) {
+    return (Map<K, V>[]) new Map<?, ?>[length];
+  }
+
+  @Override
+  public String toString() {
+    return "LeanSpan{name=" + name + ", context=" + context + "}";
+  }
+
+  /**
+   * The spans of a thread, a span is taken by the thread and given back by the last thread releasing it.
+   * <p>
+   * The released spans are pushed on a lock-free stack linked by the spans themselves, the thread takes the whole stack
+   * when its own list is empty: neither side allocates.
+   */
+  static final class Pool {
+
+    private final int maxSize;
+    private final AtomicReference<LeanSpan> released = new AtomicReference<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // only accessed by the thread of the pool
+    private LeanSpan free;
+
+    Pool(int maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    /**
+     * @return a span, from the pool when possible, called by the thread of the pool
+     */
+    LeanSpan acquire() {
+      LeanSpan span = free;
+      if (span == null) {
+        span = released.getAndSet(null);
+        if (span == null) {
+          return new LeanSpan(this);
+        }
+      }
+      free = span.next;
+      span.next = null;
+      size.decrementAndGet();
+      return span;
+    }
+
+    /**
+     * Give back a span, called from any thread. The span is left to the garbage collector when the pool is full.
+     */
+    void release(LeanSpan span) {
+      if (size.incrementAndGet() > maxSize) {
+        size.decrementAndGet();
+        return;
+      }
+      LeanSpan head;
+      do {
+        head = released.get();
+        span.next = head;
+      } while (!released.compareAndSet(head, span));
+    }
+
+    int size() {
+      return size.get();
+    }
+  }
+}
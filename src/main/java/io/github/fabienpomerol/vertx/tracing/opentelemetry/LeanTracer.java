@@ -0,0 +1,294 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.resources.EnvVarResource;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.IdsGenerator;
+import io.opentelemetry.sdk.trace.Sampler;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.config.TraceConfig;
+import io.opentelemetry.trace.DefaultSpan;
+import io.opentelemetry.trace.Link;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.TraceState;
+import io.opentelemetry.trace.Tracer;
+import io.opentelemetry.trace.TracingContextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Tracer} starting {@link LeanSpan}s instead of the SDK spans, for the spans of the Vert.x requests.
+ * <p>
+ * The sampler and the limits are read from the active {@link TraceConfig} of the provider and the spans are handed to
+ * the given processors, as the SDK tracer does. A span not sampled is a {@link DefaultSpan} carrying its context only.
+ * <p>
+ * Each thread reuses one span builder and has its own pool of spans: a builder must be started before the thread asks
+ * for another one, which holds for the tracer callbacks.
+ * <p>
+ * A span returns to the pool only when each of the end processors calls {@link LeanSpan#toSpanData()} on it exactly
+ * once. A span a processor never converts is not recycled, e.g. a span ended while a {@link SwitchableSpanProcessor}
+ * is disabled or dropped by a full batch queue, it is then collected as garbage. A processor converting a span twice
+ * releases it while another processor may still read it, the span can then be reused by a new request.
+ */
+final class LeanTracer implements Tracer {
+
+  static final int DEFAULT_MAX_POOLED_SPANS = 1024;
+
+  private static final TraceFlags SAMPLED = TraceFlags.builder().setIsSampled(true).build();
+  private static final TraceFlags NOT_SAMPLED = TraceFlags.getDefault();
+
+  final InstrumentationLibraryInfo instrumentationLibraryInfo;
+  final Resource resource;
+  private final TracerSdkProvider provider;
+  private final IdsGenerator idsGenerator;
+  private final SpanProcessor[] startProcessors;
+  private final SpanProcessor[] endProcessors;
+  private final ThreadLocal<Builder> builders = ThreadLocal.withInitial(Builder::new);
+  private final ThreadLocal<LeanSpan.Pool> pools;
+
+  /**
+   * @param provider the provider holding the sampler and the limits, the processors are not read from it
+   * @param processors the processors receiving the spans, each of them must convert an ended span exactly once for the
+   *                   span to be recycled
+   * @param maxPooledSpans the maximum number of spans kept by the pool of a thread
+   * @param idsGenerator the generator of the trace and span ids, {@code null} for a {@link ThreadLocalIdsGenerator}
+   */
+  LeanTracer(TracerSdkProvider provider, List<SpanProcessor> processors, int maxPooledSpans,
+             IdsGenerator idsGenerator) {
+    this.instrumentationLibraryInfo = InstrumentationLibraryInfo.create(OpenTelemetryTracer.INSTRUMENTATION_NAME, null);
+    // the default resource of the provider
+    this.resource = EnvVarResource.getResource();
+    this.provider = provider;
+    this.idsGenerator = idsGenerator != null ? idsGenerator : new ThreadLocalIdsGenerator();
+    List<SpanProcessor> start = new ArrayList<>();
+    List<SpanProcessor> end = new ArrayList<>();
+    for (SpanProcessor processor : processors) {
+      if (processor.isStartRequired()) {
+        start.add(processor);
+      }
+      if (processor.isEndRequired()) {
+        end.add(processor);
+      }
+    }
+    this.startProcessors = start.toArray(new SpanProcessor[0]);
+    this.endProcessors = end.toArray(new SpanProcessor[0]);
+    this.pools = ThreadLocal.withInitial(() -> new LeanSpan.Pool(maxPooledSpans));
+  }
+
+  /**
+   * @return the number of spans pooled for the calling thread
+   */
+  int getPooledSpans() {
+    return pools.get().size();
+  }
+
+  @Override
+  public Span getCurrentSpan() {
+    return TracingContextUtils.getCurrentSpan();
+  }
+
+  @Override
+  public Scope withSpan(Span span) {
+    return TracingContextUtils.currentContextWith(span);
+  }
+
+  @Override
+  public Span.Builder spanBuilder(String spanName) {
+    return builders.get().reset(spanName);
+  }
+
+  void onEnd(LeanSpan span) {
+    for (SpanProcessor processor : endProcessors) {
+      processor.onEnd(span);
+    }
+  }
+
+  private final class Builder implements Span.Builder {
+
+    private String name;
+    private Span.Kind kind;
+    private Span parent;
+    private SpanContext parentContext;
+    private boolean noParent;
+    private long startEpochNanos;
+    private Map<String, AttributeValue> attributes;
+    private List<Link> links;
+
+    Builder reset(String name) {
+      this.name = name;
+      this.kind = Span.Kind.INTERNAL;
+      this.parent = null;
+      this.parentContext = null;
+      this.noParent = false;
+      this.startEpochNanos = 0;
+      this.attributes = null;
+      this.links = null;
+      return this;
+    }
+
+    @Override
+    public Span.Builder setParent(Span parent) {
+      this.parent = parent;
+      this.parentContext = null;
+      this.noParent = false;
+      return this;
+    }
+
+    @Override
+    public Span.Builder setParent(SpanContext parent) {
+      this.parentContext = parent;
+      this.parent = null;
+      this.noParent = false;
+      return this;
+    }
+
+    @Override
+    public Span.Builder setNoParent() {
+      this.noParent = true;
+      this.parent = null;
+      this.parentContext = null;
+      return this;
+    }
+
+    @Override
+    public Span.Builder addLink(SpanContext spanContext) {
+      return addLink(spanContext, Collections.emptyMap());
+    }
+
+    @Override
+    public Span.Builder addLink(SpanContext spanContext, Map<String, AttributeValue> attributes) {
+      return addLink(new Link() {
+        @Override
+        public SpanContext getContext() {
+          return spanContext;
+        }
+
+        @Override
+        public Map<String, AttributeValue> getAttributes() {
+          return attributes;
+        }
+      });
+    }
+
+    @Override
+    public Span.Builder addLink(Link link) {
+      if (links == null) {
+        links = new ArrayList<>(2);
+      }
+      links.add(link);
+      return this;
+    }
+
+    @Override
+    public Span.Builder setAttribute(String key, String value) {
+      return setAttribute(key, AttributeValue.stringAttributeValue(value));
+    }
+
+    @Override
+    public Span.Builder setAttribute(String key, long value) {
+      return setAttribute(key, AttributeValue.longAttributeValue(value));
+    }
+
+    @Override
+    public Span.Builder setAttribute(String key, double value) {
+      return setAttribute(key, AttributeValue.doubleAttributeValue(value));
+    }
+
+    @Override
+    public Span.Builder setAttribute(String key, boolean value) {
+      return setAttribute(key, AttributeValue.booleanAttributeValue(value));
+    }
+
+    @Override
+    public Span.Builder setAttribute(String key, AttributeValue value) {
+      if (attributes == null) {
+        attributes = new HashMap<>();
+      }
+      attributes.put(key, value);
+      return this;
+    }
+
+    @Override
+    public Span.Builder setSpanKind(Span.Kind spanKind) {
+      this.kind = spanKind;
+      return this;
+    }
+
+    @Override
+    public Span.Builder setStartTimestamp(long startTimestamp) {
+      this.startEpochNanos = startTimestamp;
+      return this;
+    }
+
+    @Override
+    public Span startSpan() {
+      SpanContext parentContext;
+      if (noParent) {
+        parentContext = null;
+      } else if (parent != null) {
+        parentContext = parent.getContext();
+      } else if (this.parentContext != null) {
+        parentContext = this.parentContext;
+      } else {
+        parentContext = TracingContextUtils.getCurrentSpan().getContext();
+      }
+      TraceId traceId;
+      TraceState traceState;
+      SpanId parentSpanId;
+      if (parentContext == null || !parentContext.isValid()) {
+        parentContext = null;
+        traceId = idsGenerator.generateTraceId();
+        traceState = TraceState.getDefault();
+        parentSpanId = SpanId.getInvalid();
+      } else {
+        traceId = parentContext.getTraceId();
+        traceState = parentContext.getTraceState();
+        parentSpanId = parentContext.getSpanId();
+      }
+      SpanId spanId = idsGenerator.generateSpanId();
+      TraceConfig config = provider.getActiveTraceConfig();
+      List<Link> links = this.links != null ? this.links : Collections.emptyList();
+      Map<String, AttributeValue> attributes = this.attributes != null ? this.attributes : Collections.emptyMap();
+      Sampler.Decision decision = config.getSampler().shouldSample(parentContext, traceId, spanId, name, kind,
+        attributes, links);
+      if (!decision.isSampled()) {
+        reset(null);
+        return DefaultSpan.create(SpanContext.create(traceId, spanId, NOT_SAMPLED, traceState));
+      }
+      long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+      long start = startEpochNanos != 0 ? startEpochNanos : now;
+      LeanSpan span = pools.get().acquire();
+      // the processors and the tracer until the span ends, a span started in the past has been running since
+      span.start(LeanTracer.this, name, kind, SpanContext.create(traceId, spanId, SAMPLED, traceState), parentSpanId,
+        parentContext != null && parentContext.isRemote(), start, System.nanoTime() - Math.max(0, now - start),
+        config.getMaxNumberOfAttributes(), config.getMaxNumberOfEvents(), endProcessors.length + 1);
+      if (this.links != null) {
+        span.addLinks(this.links);
+      }
+      if (this.attributes != null) {
+        attributes.forEach(span::setAttribute);
+      }
+      if (!decision.attributes().isEmpty()) {
+        decision.attributes().forEach(span::setAttribute);
+      }
+      for (SpanProcessor processor : startProcessors) {
+        processor.onStart(span);
+      }
+      // the builder does not retain the parent until its next use
+      reset(null);
+      return span;
+    }
+  }
+}
@@ -1,19 +1,79 @@
 package io.github.fabienpomerol.vertx.tracing.opentelemetry;
 
+import io.opentelemetry.sdk.trace.IdsGenerator;
+import io.opentelemetry.sdk.trace.MultiSpanProcessor;
+import io.opentelemetry.sdk.trace.Sampler;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
 import io.opentelemetry.trace.Tracer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.spi.tracing.VertxTracer;
 import io.vertx.core.tracing.TracingOptions;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.AdaptiveExporter;
 import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.BackendExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.BackendExporters;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.BatchSpanProcessor;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.ShardedBatchSpanProcessor;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.TailSamplingSpanProcessor;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.SpanMetrics;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers.DynamicSampler;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers.PressureSampler;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class OpenTelemetryOptions extends TracingOptions {
 
+  public static final boolean DEFAULT_LAZY_TAGS = false;
+  public static final boolean DEFAULT_LEAN_SPANS = false;
+  public static final double DEFAULT_PRESSURE_WATERMARK = 0.5;
+  public static final boolean DEFAULT_CLIENT_TIMINGS = false;
+
   private Tracer tracer;
 
-  private List<BackendExporter> exporters = new ArrayList<>();
+  private SamplerOptions sampler;
+
+  private TailSamplingOptions tailSampling;
+
+  private boolean lazyTags = DEFAULT_LAZY_TAGS;
+
+  private boolean leanSpans = DEFAULT_LEAN_SPANS;
+
+  private IdsGenerator idsGenerator;
+
+  private double pressureWatermark = DEFAULT_PRESSURE_WATERMARK;
+
+  private SpanMetrics metrics;
+
+  private EventBusTracingOptions eventBus = new EventBusTracingOptions();
+
+  private SpanLimitsOptions spanLimits = new SpanLimitsOptions();
+
+  // formats of the trace context headers, empty to use the propagators of the OpenTelemetry API
+  private Set<PropagationFormat> propagationFormats = new LinkedHashSet<>();
+
+  private boolean clientTimings = DEFAULT_CLIENT_TIMINGS;
+
+  private String statsAddress;
+
+  private long statsPeriod = TracerStats.DEFAULT_PUBLISH_PERIOD;
+
+  // names of the tags set as span attributes, empty to set all of them
+  private Set<String> tagAllowlist = new LinkedHashSet<>();
+
+  // exporters with their batch options, a null value means spans are exported synchronously
+  private Map<BackendExporter, BatchOptions> exporters = new LinkedHashMap<>();
 
   public OpenTelemetryOptions(Tracer tracer) {
     this.tracer = tracer;
@@ -24,18 +84,472 @@ public class OpenTelemetryOptions extends TracingOptions {
 
   public OpenTelemetryOptions(JsonObject json) {
     super(json);
+    JsonObject sampler = json.getJsonObject("sampler");
+    if (sampler != null) {
+      this.sampler = new SamplerOptions(sampler);
+    }
+    JsonObject tailSampling = json.getJsonObject("tailSampling");
+    if (tailSampling != null) {
+      this.tailSampling = new TailSamplingOptions(tailSampling);
+    }
+    setLazyTags(json.getBoolean("lazyTags", DEFAULT_LAZY_TAGS));
+    setLeanSpans(json.getBoolean("leanSpans", DEFAULT_LEAN_SPANS));
+    String idsGenerator = json.getString("idsGenerator");
+    if (idsGenerator != null) {
+      switch (idsGenerator.toLowerCase(Locale.ROOT)) {
+        case "random":
+          setIdsGenerator(new ThreadLocalIdsGenerator(false));
+          break;
+        case "timestamped":
+          setIdsGenerator(new ThreadLocalIdsGenerator(true));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown ids generator " + idsGenerator);
+      }
+    }
+    setPressureWatermark(json.getDouble("pressureWatermark", DEFAULT_PRESSURE_WATERMARK));
+    JsonArray tagAllowlist = json.getJsonArray("tagAllowlist");
+    if (tagAllowlist != null) {
+      tagAllowlist.forEach(tag -> addAllowedTag((String) tag));
+    }
+    JsonObject metrics = json.getJsonObject("metrics");
+    if (metrics != null) {
+      SpanMetrics.Builder builder = SpanMetrics.newBuilder()
+        .setMaxOperations(metrics.getInteger("maxOperations", SpanMetrics.DEFAULT_MAX_OPERATIONS));
+      JsonArray latencyBuckets = metrics.getJsonArray("latencyBuckets");
+      if (latencyBuckets != null) {
+        builder.setLatencyBuckets(latencyBuckets.stream().mapToLong(bucket -> ((Number) bucket).longValue()).toArray());
+      }
+      this.metrics = builder.build();
+    }
+    JsonObject eventBus = json.getJsonObject("eventBus");
+    if (eventBus != null) {
+      this.eventBus = new EventBusTracingOptions(eventBus);
+    }
+    JsonObject spanLimits = json.getJsonObject("spanLimits");
+    if (spanLimits != null) {
+      this.spanLimits = new SpanLimitsOptions(spanLimits);
+    }
+    JsonArray propagation = json.getJsonArray("propagation");
+    if (propagation != null) {
+      propagation.forEach(format -> addPropagationFormat(
+        PropagationFormat.valueOf(((String) format).toUpperCase(Locale.ROOT))));
+    }
+    setClientTimings(json.getBoolean("clientTimings", DEFAULT_CLIENT_TIMINGS));
+    setStatsAddress(json.getString("statsAddress"));
+    setStatsPeriod(json.getLong("statsPeriod", TracerStats.DEFAULT_PUBLISH_PERIOD));
+    JsonArray exporters = json.getJsonArray("exporters");
+    if (exporters != null) {
+      for (int idx = 0; idx < exporters.size(); idx++) {
+        JsonObject exporter = exporters.getJsonObject(idx);
+        JsonObject batch = exporter.getJsonObject("batch");
+        if (batch != null) {
+          addExporter(BackendExporters.fromJson(exporter), new BatchOptions(batch));
+        } else {
+          addExporter(BackendExporters.fromJson(exporter));
+        }
+      }
+    }
+  }
+
+  public SamplerOptions getSampler() {
+    return sampler;
+  }
+
+  /**
+   * Set the sampler deciding which traces are recorded, when not set every trace is recorded.
+   * <p>
+   * The sampler is installed on the tracer provider of the options, it cannot be set with a given tracer whose sampler
+   * is the one of its provider.
+   *
+   * @param sampler the sampler configuration
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setSampler(SamplerOptions sampler) {
+    this.sampler = sampler;
+    return this;
+  }
+
+  public TailSamplingOptions getTailSampling() {
+    return tailSampling;
+  }
+
+  /**
+   * Set the tail sampling rules, the finished spans are then buffered per trace and only the traces matching a rule
+   * are sent to the exporters.
+   *
+   * @param tailSampling the tail sampling configuration
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setTailSampling(TailSamplingOptions tailSampling) {
+    this.tailSampling = tailSampling;
+    return this;
+  }
+
+  public boolean isLazyTags() {
+    return lazyTags;
+  }
+
+  /**
+   * Set whether the attributes of the tags of the requests and responses are built when a span is exported instead of
+   * when it starts and ends. The tag values are still extracted with {@code TagExtractor#value} on the event loop and
+   * copied as strings on the span, the request and response objects are not kept. Only building the attribute map
+   * and its {@code AttributeValue}s is deferred, with batching to the exporter worker.
+   * <p>
+   * It only applies to the exporters added to these options and to the default tracer.
+   *
+   * @param lazyTags {@code true} to build the tag attributes at export time
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setLazyTags(boolean lazyTags) {
+    this.lazyTags = lazyTags;
+    return this;
+  }
+
+  public boolean isLeanSpans() {
+    return leanSpans;
+  }
+
+  /**
+   * Set whether the spans of the requests are lean spans instead of the SDK spans: their attributes are kept in arrays
+   * until export, they are converted to {@link io.opentelemetry.sdk.trace.data.SpanData} by the exporter processors
+   * and then reused by the event loop that started them.
+   * <p>
+   * It only applies to the default tracer without tail sampling, the exporters added to these options convert each
+   * span once. A span must not be used once its request ended.
+   *
+   * @param leanSpans {@code true} to use lean spans
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setLeanSpans(boolean leanSpans) {
+    this.leanSpans = leanSpans;
+    return this;
+  }
+
+  public IdsGenerator getIdsGenerator() {
+    return idsGenerator;
+  }
+
+  /**
+   * Set the generator of the trace and span ids, e.g. a {@link ThreadLocalIdsGenerator} starting the trace ids with a
+   * timestamp. When not set the ids are random.
+   * <p>
+   * The generator is installed on the tracer provider of the options, a given tracer keeps the one of its provider.
+   *
+   * @param idsGenerator the ids generator
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setIdsGenerator(IdsGenerator idsGenerator) {
+    this.idsGenerator = idsGenerator;
+    return this;
   }
 
+  public double getPressureWatermark() {
+    return pressureWatermark;
+  }
+
+  /**
+   * Set the pressure of the {@link AdaptiveExporter}s above which the sampling rate of the new traces is lowered,
+   * down to no new trace when an exporter sheds its spans.
+   *
+   * @param pressureWatermark a value between 0 and 1 excluded
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setPressureWatermark(double pressureWatermark) {
+    if (pressureWatermark < 0 || pressureWatermark >= 1) {
+      throw new IllegalArgumentException("pressureWatermark must be in range [0, 1)");
+    }
+    this.pressureWatermark = pressureWatermark;
+    return this;
+  }
+
+  public Set<String> getTagAllowlist() {
+    return Collections.unmodifiableSet(tagAllowlist);
+  }
+
+  /**
+   * Add the name of a tag to set as span attribute, e.g. {@code http.method}. When no tag is added all of them are set.
+   *
+   * @param name the tag name
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions addAllowedTag(String name) {
+    this.tagAllowlist.add(name);
+    return this;
+  }
+
+  public SpanMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Set the request rate, errors and latency metrics updated by the tracer when a server or client span ends, keep a
+   * reference to read their {@link SpanMetrics#snapshot() snapshot}.
+   *
+   * @param metrics the metrics, {@code null} to disable them
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setMetrics(SpanMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  public EventBusTracingOptions getEventBus() {
+    return eventBus;
+  }
+
+  /**
+   * Set how the trace context is propagated in the event bus messages and which addresses are traced.
+   *
+   * @param eventBus the event bus tracing configuration
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setEventBus(EventBusTracingOptions eventBus) {
+    this.eventBus = eventBus;
+    return this;
+  }
+
+  public SpanLimitsOptions getSpanLimits() {
+    return spanLimits;
+  }
+
+  /**
+   * Set the limits of the attributes and events recorded on a span and how the URLs are normalized.
+   *
+   * @param spanLimits the span limits
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setSpanLimits(SpanLimitsOptions spanLimits) {
+    this.spanLimits = spanLimits;
+    return this;
+  }
+
+  public Set<PropagationFormat> getPropagationFormats() {
+    return Collections.unmodifiableSet(propagationFormats);
+  }
+
+  /**
+   * Add a format of the trace context headers, read and written by the tracer instead of the propagators of the
+   * OpenTelemetry API. The context of an inbound request is read from the first format added found in its headers, an
+   * outbound request carries the headers of all of them.
+   *
+   * @param format the format
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions addPropagationFormat(PropagationFormat format) {
+    this.propagationFormats.add(format);
+    return this;
+  }
+
+  public boolean isClientTimings() {
+    return clientTimings;
+  }
+
+  /**
+   * Set whether the CLIENT spans of the HTTP requests start when the request asks the pool for a connection and get the
+   * timings of the connection, of the request and of the first byte of the response as events. The timings are
+   * measured by the {@link ClientTimingMetrics} installed in the metrics options of Vert.x, see
+   * {@link ClientTimingMetrics#options()}.
+   * <p>
+   * They can be turned off and on at runtime with {@link OpenTelemetryTracer#setClientTimingsEnabled}.
+   *
+   * @param clientTimings {@code true} to add the timings to the client spans
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setClientTimings(boolean clientTimings) {
+    this.clientTimings = clientTimings;
+    return this;
+  }
+
+  public String getStatsAddress() {
+    return statsAddress;
+  }
+
+  /**
+   * Set the event bus address where the {@link TracerStats} snapshots are published as JSON every
+   * {@link #setStatsPeriod(long) period}.
+   *
+   * @param statsAddress the address, {@code null} to not publish them
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setStatsAddress(String statsAddress) {
+    this.statsAddress = statsAddress;
+    return this;
+  }
+
+  public long getStatsPeriod() {
+    return statsPeriod;
+  }
+
+  /**
+   * Set the period in ms of the publication of the stats.
+   *
+   * @param statsPeriod the period in ms
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions setStatsPeriod(long statsPeriod) {
+    if (statsPeriod < 1) {
+      throw new IllegalArgumentException("statsPeriod must be > 0");
+    }
+    this.statsPeriod = statsPeriod;
+    return this;
+  }
+
+  /**
+   * @return the exporters with their batch options, a {@code null} value for an exporter receiving the spans
+   * synchronously
+   */
+  public Map<BackendExporter, BatchOptions> getExporters() {
+    return Collections.unmodifiableMap(exporters);
+  }
+
+  /**
+   * Add an exporter receiving each span synchronously when it ends.
+   *
+   * @param exporter the exporter
+   * @return a reference to this, so the API can be used fluently
+   */
   public OpenTelemetryOptions addExporter(BackendExporter exporter) {
-    this.exporters.add(exporter);
+    this.exporters.put(exporter, null);
     return this;
   }
 
+  /**
+   * Add an exporter receiving the spans in batches from a background worker.
+   *
+   * @param exporter the exporter
+   * @param batchOptions the batching configuration of this exporter
+   * @return a reference to this, so the API can be used fluently
+   */
+  public OpenTelemetryOptions addExporter(BackendExporter exporter, BatchOptions batchOptions) {
+    this.exporters.put(exporter, new BatchOptions(batchOptions));
+    return this;
+  }
+
+  /**
+   * Create the tracer of a Vert.x instance, called by Vert.x only when tracing is enabled.
+   * <p>
+   * Without a tracer of its own the tracer gets a {@link TracerSdkProvider} of its own holding the sampler and the
+   * processors of the exporters, shut down when Vert.x is closed: the Vert.x instances of a JVM do not share them.
+   * The provider of a given tracer belongs to the application and is left alone: the tracer hands the spans it starts
+   * and ends itself to the processors of the exporters, the spans started with the given tracer by the application are
+   * exported by the processors of its provider. Its sampler is the one of its provider.
+   * <p>
+   * The sampler is wrapped in a {@link DynamicSampler} and the processor of each exporter in a
+   * {@link SwitchableSpanProcessor}, so that {@link OpenTelemetryTracer#reconfigure} can change them at runtime.
+   * <p>
+   * The span limits are applied by the tracer to each set of tags and, for an owned provider, by the provider to the
+   * span as a whole.
+   */
   VertxTracer<?, ?> buildTracer() {
+    if (tracer != null && sampler != null) {
+      throw new IllegalStateException("The sampler of a given tracer is set on its provider");
+    }
+    TracerStats stats = new TracerStats(statsAddress, statsPeriod);
+    Map<String, SwitchableSpanProcessor> switches = new LinkedHashMap<>();
+    SpanLimits limits = new SpanLimits(spanLimits, stats);
+    List<SpanProcessor> processors = createProcessors(stats, switches);
+    TailSamplingSpanProcessor tailSampling = null;
+    if (this.tailSampling != null) {
+      // the exporters only receive the traces kept by the tail sampling
+      tailSampling = new TailSamplingSpanProcessor(processors, this.tailSampling);
+      stats.setTailSampling(tailSampling);
+      processors = Collections.singletonList(tailSampling);
+    }
+    LazyTagsSpanProcessor lazyTags = null;
+    if (this.lazyTags && tracer == null && !processors.isEmpty()) {
+      // outermost so that the tail sampling rules see the resolved tags
+      lazyTags = new LazyTagsSpanProcessor(processors, new HashSet<>(tagAllowlist), limits);
+      processors = Collections.singletonList(lazyTags);
+    }
+    List<BackendExporter> exporters = new ArrayList<>(this.exporters.keySet());
+    Set<String> tagAllowlist = new HashSet<>(this.tagAllowlist);
+    EventBusTracing eventBus = new EventBusTracing(this.eventBus);
+    TracePropagation propagation = propagationFormats.isEmpty() ? null : new TracePropagation(propagationFormats);
+    OpenTelemetryTracer vertxTracer;
     if (tracer != null) {
-      return new OpenTelemetryTracer(false, tracer);
+      // the provider of the tracer belongs to the application, it is left alone: the tracer feeds the processors with
+      // the spans it starts and ends itself
+      SpanProcessor fed = processors.isEmpty() ? null : MultiSpanProcessor.create(processors);
+      vertxTracer = new OpenTelemetryTracer(false, tracer, processors, exporters, tagAllowlist, lazyTags, tailSampling,
+        metrics, eventBus, stats, null, fed, null, switches, limits, propagation);
     } else {
-      return new OpenTelemetryTracer(true, OpenTelemetryTracer.createDefaultTracer());
+      TracerSdkProvider.Builder builder = TracerSdkProvider.builder();
+      if (idsGenerator != null) {
+        builder.setIdsGenerator(idsGenerator);
+      }
+      TracerSdkProvider provider = builder.build();
+      DynamicSampler sampler = new DynamicSampler(this.sampler != null ? this.sampler.createSampler() :
+        provider.getActiveTraceConfig().getSampler());
+      provider.updateActiveTraceConfig(provider.getActiveTraceConfig().toBuilder()
+        .setMaxNumberOfAttributes(spanLimits.getMaxAttributes())
+        .setMaxNumberOfEvents(Math.max(1, spanLimits.getMaxEvents()))
+        .setMaxNumberOfAttributesPerEvent(spanLimits.getMaxAttributes())
+        .setSampler(createSampler(sampler))
+        .build());
+      processors.forEach(provider::addSpanProcessor);
+      // the tail sampling hands a span to each exporter and drops others unconverted, they cannot be reused
+      Tracer spanTracer = leanSpans && tailSampling == null ?
+        new LeanTracer(provider, processors, LeanTracer.DEFAULT_MAX_POOLED_SPANS, idsGenerator) :
+        provider.get(OpenTelemetryTracer.INSTRUMENTATION_NAME);
+      vertxTracer = new OpenTelemetryTracer(true, spanTracer, processors, exporters, tagAllowlist, lazyTags,
+        tailSampling, metrics, eventBus, stats, provider, null, sampler, switches, limits, propagation);
+    }
+    vertxTracer.setClientTimingsEnabled(clientTimings);
+    return vertxTracer;
+  }
+
+  /**
+   * @return {@code root} lowered by the pressure of the adaptive exporters, if any
+   */
+  private Sampler createSampler(Sampler root) {
+    List<AdaptiveExporter> adaptive = new ArrayList<>();
+    for (BackendExporter exporter : exporters.keySet()) {
+      if (exporter instanceof AdaptiveExporter) {
+        adaptive.add((AdaptiveExporter) exporter);
+      }
+    }
+    if (adaptive.isEmpty()) {
+      return root;
+    }
+    return new PressureSampler(root, () -> {
+      double pressure = 0;
+      for (AdaptiveExporter exporter : adaptive) {
+        pressure = Math.max(pressure, exporter.getPressure());
+      }
+      return pressure;
+    }, pressureWatermark);
+  }
+
+  /**
+   * @param switches filled with the processor of each exporter by name, to turn them off and on at runtime
+   */
+  private List<SpanProcessor> createProcessors(TracerStats stats, Map<String, SwitchableSpanProcessor> switches) {
+    List<SpanProcessor> processors = new ArrayList<>(exporters.size());
+    Set<String> names = new HashSet<>();
+    for (Map.Entry<BackendExporter, BatchOptions> entry : exporters.entrySet()) {
+      String name = entry.getKey().getClass().getSimpleName();
+      for (int idx = 2; !names.add(name); idx++) {
+        name = entry.getKey().getClass().getSimpleName() + "-" + idx;
+      }
+      TracerStats.Exporter exporterStats = stats.addExporter(name, entry.getKey());
+      SpanExporter exporter = exporterStats.instrument(entry.getKey().getSpanExporter());
+      SpanProcessor processor;
+      if (entry.getValue() != null && entry.getValue().isSharded()) {
+        ShardedBatchSpanProcessor sharded = new ShardedBatchSpanProcessor(exporter, entry.getValue());
+        exporterStats.setDroppedSpans(sharded::getDroppedSpans);
+        processor = sharded;
+      } else if (entry.getValue() != null) {
+        BatchSpanProcessor batch = new BatchSpanProcessor(exporter, entry.getValue());
+        exporterStats.setDroppedSpans(batch::getDroppedSpans);
+        processor = batch;
+      } else {
+        processor = SimpleSpansProcessor.newBuilder(exporter).build();
+      }
+      SwitchableSpanProcessor switchable = new SwitchableSpanProcessor(exporterStats.instrument(processor));
+      switches.put(name, switchable);
+      processors.add(switchable);
     }
+    return processors;
   }
 }
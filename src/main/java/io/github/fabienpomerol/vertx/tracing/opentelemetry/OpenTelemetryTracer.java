@@ -1,23 +1,40 @@
 package io.github.fabienpomerol.vertx.tracing.opentelemetry;
 
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.BackendExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.TailSamplingSpanProcessor;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.SpanMetrics;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers.DynamicSampler;
 import io.opentelemetry.OpenTelemetry;
 import io.opentelemetry.common.AttributeValue;
 import io.opentelemetry.context.ContextUtils;
 import io.opentelemetry.context.Scope;
 import io.opentelemetry.context.propagation.HttpTextFormat;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.trace.EndSpanOptions;
 import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
 import io.opentelemetry.trace.Status;
 import io.opentelemetry.trace.Tracer;
+import io.opentelemetry.trace.TracingContextUtils;
 import io.vertx.core.Context;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.spi.metrics.VertxMetrics;
 import io.vertx.core.spi.tracing.TagExtractor;
 
-import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiConsumer;
-import java.util.stream.StreamSupport;
 
 /**
  * - https://github.com/open-telemetry/opentelemetry-specification/blob/master/specification/trace/api.md
@@ -25,15 +42,34 @@ import java.util.stream.StreamSupport;
  */
 public class OpenTelemetryTracer implements io.vertx.core.spi.tracing.VertxTracer<Span, Span> {
 
+  static final String INSTRUMENTATION_NAME = "io.vertx.tracing.opentelemetry.OpenTelemetryTracer";
+
   /**
    * Instantiate an OpenTelemetry tracer
    */
   static Tracer createDefaultTracer() {
-    return OpenTelemetry.getTracerProvider().get("io.vertx.tracing.opentelemetry.OpenTelemetryTracer");
+    return OpenTelemetry.getTracerProvider().get(INSTRUMENTATION_NAME);
   }
 
   private final boolean closeTracer;
   private final Tracer tracer;
+  private final List<SpanProcessor> processors;
+  private final List<BackendExporter> exporters;
+  private final Set<String> tagAllowlist;
+  private final LazyTagsSpanProcessor lazyTags;
+  private final TailSamplingSpanProcessor tailSampling;
+  private final SpanMetrics metrics;
+  private final EventBusTracing eventBus;
+  private final TracerStats stats;
+  private final TracerSdkProvider provider;
+  private final SpanProcessor fed;
+  private final DynamicSampler sampler;
+  private final Map<String, SwitchableSpanProcessor> switches;
+  private final SpanLimits limits;
+  private final TracePropagation propagation;
+  private volatile boolean clientTimings;
+  private volatile ClientTimingMetrics clientTimingMetrics;
+  private volatile boolean initialized;
 
   /**
    * Instantiate a OpenTelemetry tracer using the specified {@code tracer}.
@@ -42,41 +78,245 @@ public class OpenTelemetryTracer implements io.vertx.core.spi.tracing.VertxTrace
    * @param tracer      the tracer instance
    */
   public OpenTelemetryTracer(boolean closeTracer, Tracer tracer) {
+    this(closeTracer, tracer, Collections.emptyList());
+  }
+
+  /**
+   * Instantiate a OpenTelemetry tracer using the specified {@code tracer}.
+   *
+   * @param closeTracer close the tracer when necessary
+   * @param tracer      the tracer instance
+   * @param processors  the span processors of the configured exporters, flushed by {@link #flush} and shut down on close
+   */
+  public OpenTelemetryTracer(boolean closeTracer, Tracer tracer, List<SpanProcessor> processors) {
+    this(closeTracer, tracer, processors, Collections.emptyList(), Collections.emptySet(), null, null,
+      null, new EventBusTracing(new EventBusTracingOptions()), new TracerStats(), null, null, null, Collections.emptyMap(),
+      null, null);
+  }
+
+  /**
+   * @param exporters    the exporters of the processors, initialized with the Vert.x instance of the first span
+   * @param tagAllowlist the names of the tags to set as attributes, all the tags are set when empty
+   * @param lazyTags     the processor resolving the tags at export time, {@code null} to set them eagerly
+   * @param tailSampling the processor told which spans ended by the tracer are local roots or failed, {@code null}
+   *                     without tail sampling
+   * @param metrics      the metrics updated by the server and client spans, {@code null} to disable them
+   * @param eventBus     the event bus propagation and address rules
+   * @param stats        the counters of the tracer and of the exporters
+   * @param provider     the provider of {@code tracer} owned by this tracer and shut down on close, {@code null} when
+   *                     the tracer comes from a shared provider
+   * @param fed          the processor handed the spans started and ended by this tracer, when the tracer is given by
+   *                     the application and the processors are not registered on its provider, {@code null} otherwise
+   * @param sampler      the sampler of the provider replaced by {@link #setSampler}, {@code null} when not managed
+   * @param switches     the processor of each exporter by name, turned off and on by {@link #setExporterEnabled}
+   * @param limits       the limits of the attributes and events set on the spans, {@code null} for the defaults
+   * @param propagation  the formats of the trace context headers, {@code null} to use the propagators of the
+   *                     OpenTelemetry API
+   */
+  OpenTelemetryTracer(boolean closeTracer, Tracer tracer, List<SpanProcessor> processors,
+                      List<BackendExporter> exporters, Set<String> tagAllowlist, LazyTagsSpanProcessor lazyTags,
+                      TailSamplingSpanProcessor tailSampling, SpanMetrics metrics, EventBusTracing eventBus,
+                      TracerStats stats, TracerSdkProvider provider, SpanProcessor fed, DynamicSampler sampler,
+                      Map<String, SwitchableSpanProcessor> switches, SpanLimits limits, TracePropagation propagation) {
     this.closeTracer = closeTracer;
     this.tracer = tracer;
+    this.processors = processors;
+    this.exporters = exporters;
+    this.tagAllowlist = tagAllowlist;
+    this.lazyTags = lazyTags;
+    this.tailSampling = tailSampling;
+    this.metrics = metrics;
+    this.eventBus = eventBus;
+    this.stats = stats;
+    this.provider = provider;
+    this.fed = fed;
+    this.sampler = sampler;
+    this.switches = switches;
+    this.limits = limits != null ? limits : new SpanLimits(new SpanLimitsOptions(), stats);
+    this.propagation = propagation;
+  }
+
+  /**
+   * @return the span processors of the configured exporters
+   */
+  public List<SpanProcessor> getSpanProcessors() {
+    return processors;
+  }
+
+  /**
+   * Export the spans buffered by the span processors, then ask the exporters to send the spans they buffer themselves.
+   * It does not wait for the exporters to send them.
+   */
+  public void flush() {
+    for (SpanProcessor processor : processors) {
+      processor.forceFlush();
+    }
+    for (BackendExporter exporter : exporters) {
+      exporter.flush();
+    }
+  }
+
+  /**
+   * @return the counters of the spans started by the tracer and of the exporters
+   */
+  public TracerStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Replace the sampler deciding for the traces started from now on, e.g. to change the sampling rate. The requests
+   * being traced are not blocked.
+   *
+   * @param sampler the sampler configuration
+   * @throws IllegalStateException when the tracer was given by the application without a sampler configuration
+   */
+  public void setSampler(SamplerOptions sampler) {
+    if (this.sampler == null) {
+      throw new IllegalStateException("The sampler of the tracer is not managed, set OpenTelemetryOptions#setSampler");
+    }
+    this.sampler.setDelegate(sampler.createSampler());
+  }
+
+  /**
+   * @return the names of the exporters, as in the {@link TracerStats} snapshots
+   */
+  public Set<String> getExporterNames() {
+    return Collections.unmodifiableSet(switches.keySet());
+  }
+
+  public boolean isExporterEnabled(String name) {
+    return exporterSwitch(name).isEnabled();
+  }
+
+  /**
+   * Turn an exporter off or on, the spans ended while it is off are not exported. The requests being traced are not
+   * blocked.
+   *
+   * @param name    the name of the exporter, see {@link #getExporterNames()}
+   * @param enabled {@code false} to turn the exporter off
+   */
+  public void setExporterEnabled(String name, boolean enabled) {
+    exporterSwitch(name).setEnabled(enabled);
+  }
+
+  private SwitchableSpanProcessor exporterSwitch(String name) {
+    SwitchableSpanProcessor processor = switches.get(name);
+    if (processor == null) {
+      throw new IllegalArgumentException("Unknown exporter " + name);
+    }
+    return processor;
+  }
+
+  public boolean isClientTimingsEnabled() {
+    return clientTimings;
+  }
+
+  /**
+   * Turn the timings of the HTTP client requests off or on: with the {@link ClientTimingMetrics} installed the CLIENT
+   * span of a request starts when it asks the pool for a connection, and gets the {@code connection.connected},
+   * {@code connection.acquired}, {@code request.written} and {@code response.first_byte} events. The requests being
+   * sent are not blocked.
+   *
+   * @param enabled {@code true} to add the timings to the client spans
+   */
+  public void setClientTimingsEnabled(boolean enabled) {
+    clientTimings = enabled;
+    ClientTimingMetrics metrics = clientTimingMetrics;
+    if (metrics != null) {
+      metrics.setEnabled(enabled);
+    }
+  }
+
+  /**
+   * Apply a partial configuration at runtime: <pre>{ "sampler": { "type": "probability", "probability": 0.1 },
+   * "exporters": { "OtlpExporter": true, "LoggingExporter": false }, "clientTimings": true }</pre>
+   *
+   * @param json the new sampler, the exporters to turn on or off and whether to add the client timings
+   */
+  public void reconfigure(JsonObject json) {
+    JsonObject sampler = json.getJsonObject("sampler");
+    if (sampler != null) {
+      setSampler(new SamplerOptions(sampler));
+    }
+    JsonObject exporters = json.getJsonObject("exporters");
+    if (exporters != null) {
+      for (String name : exporters.fieldNames()) {
+        setExporterEnabled(name, exporters.getBoolean(name));
+      }
+    }
+    Boolean clientTimings = json.getBoolean("clientTimings");
+    if (clientTimings != null) {
+      setClientTimingsEnabled(clientTimings);
+    }
+  }
+
+  /**
+   * @return the metrics derived from the spans or {@code null} when they are disabled
+   */
+  public SpanMetrics getMetrics() {
+    return metrics;
   }
 
   @Override
   public <R> Span receiveRequest(Context context, R request, String operation, Iterable<Map.Entry<String, String>> headers, TagExtractor<R> tagExtractor) {
+    init(context);
+
+    EventBusTracing.Rule rule = null;
+    SpanContext binaryParent = null;
+    if (request instanceof Message) {
+      rule = eventBus.rule(((Message<?>) request).address());
+      if (rule.excluded) {
+        return null;
+      }
+      binaryParent = EventBusTracing.decode(headers);
+    }
+    Span.Kind kind = rule != null ? Span.Kind.CONSUMER : Span.Kind.SERVER;
 
     // when we receive a request we try to resolve the context based on headers in a HttpTextFormat
     // This format is used to share context into carriers that travel in-band across process boundaries
-    HttpTextFormat.Getter<Iterable<Map.Entry<String, String>>> getter = new HttpTextFormat.Getter<Iterable<Map.Entry<String, String>>>() {
-      @Nullable
-      @Override
-      public String get(Iterable<Map.Entry<String, String>> headers, String s) {
-        return StreamSupport.stream(headers.spliterator(), false)
-          .filter(entry -> entry.getKey().equals(s))
-          .findFirst()
-          .map(Map.Entry::getValue)
-          .orElse(null);
-      }
-    };
-
-    io.grpc.Context extractedContext = OpenTelemetry.getPropagators()
-      .getHttpTextFormat()
-      .extract(io.grpc.Context.current(), headers, getter);
-
-    Span serverSpan;
-
-    try (Scope scope = ContextUtils.withScopedContext(extractedContext)) {
-      serverSpan = tracer.spanBuilder(operation)
-        .setSpanKind(Span.Kind.SERVER)
-        .startSpan();
-      serverSpan.setAttribute("component", "vertx");
+    SpanContext parent = binaryParent;
+    io.grpc.Context extractedContext = null;
+    if (parent == null) {
+      if (propagation != null) {
+        parent = propagation.extract(headers);
+      } else {
+        extractedContext = OpenTelemetry.getPropagators()
+          .getHttpTextFormat()
+          .extract(io.grpc.Context.current(), headers, HeadersGetter.INSTANCE);
+      }
+      // the sampling of an address only decides for the messages starting a trace
+      if (rule != null && parent == null
+        && !hasParent(extractedContext != null ? extractedContext : io.grpc.Context.current()) && !rule.sample()) {
+        return null;
+      }
+    }
+
+    Span.Builder builder = tracer.spanBuilder(operation)
+      .setSpanKind(kind);
+    Span started;
+    if (extractedContext != null) {
+      try (Scope scope = ContextUtils.withScopedContext(extractedContext)) {
+        started = builder.startSpan();
+      }
+    } else {
+      if (parent != null) {
+        builder.setParent(parent);
+      }
+      started = builder.startSpan();
+    }
+    RequestSpan serverSpan = new RequestSpan(started);
+    started(serverSpan);
+    stats.spanStarted(serverSpan.getContext().getTraceFlags().isSampled());
 
-      addAttributes(serverSpan, request, tagExtractor);
-      context.putLocal(OpenTelemetryUtil.ACTIVE_SPAN, serverSpan);
+    // spans not sampled are not exported, don't pay for their attributes
+    if (serverSpan.isRecording()) {
+      serverSpan.setAttribute("component", "vertx");
+      addAttributes(serverSpan, request, tagExtractor, limits.maxAttributes - 1);
+    }
+    SpanStack.getOrCreate(context).push(serverSpan);
+    if (metrics != null) {
+      serverSpan.endpoint = metrics.start(metricsOperation(request, operation), kind);
+      serverSpan.start = System.nanoTime();
     }
 
     return serverSpan;
@@ -84,35 +324,81 @@ public class OpenTelemetryTracer implements io.vertx.core.spi.tracing.VertxTrace
 
   @Override
   public <R> void sendResponse(
-    Context context, R response, Span span, Throwable failure, TagExtractor<R> tagExtractor) {
-    if (span != null) {
-      context.removeLocal(OpenTelemetryUtil.ACTIVE_SPAN);
-
-      if (failure != null) {
-        reportError(span, failure.getClass().getName(), failure.getMessage());
+    Context context, R response, Span started, Throwable failure, TagExtractor<R> tagExtractor) {
+    if (started != null) {
+      RequestSpan span = (RequestSpan) started;
+      // only this span, other requests handled on the context keep theirs
+      SpanStack stack = SpanStack.get(context);
+      if (stack != null) {
+        stack.remove(span);
       }
 
-      reportResponseError(response, span);
-      addAttributes(span, response, tagExtractor);
+      if (span.isRecording()) {
+        int events = 0;
+        if (failure != null) {
+          reportError(span, failure.getClass().getName(), failure.getMessage(), events++);
+        }
+
+        boolean error = reportResponseError(response, span, events) || failure != null;
+        addAttributes(span, response, tagExtractor, limits.maxAttributes);
+        // the parent of a server or consumer span is remote
+        if (tailSampling != null) {
+          tailSampling.ending(span.getContext(), true, error);
+        }
+        if (lazyTags != null) {
+          lazyTags.ending(span);
+        }
+      }
       span.end();
+      ended(span);
+      stats.spanEnded();
+      if (span.endpoint != null) {
+        recordMetrics(response, span, failure);
+      }
     }
   }
 
   @Override
   public <R> Span sendRequest(Context context, R request, String operation, BiConsumer<String, String> headers, TagExtractor<R> tagExtractor) {
-    Span activeSpan = context.getLocal(OpenTelemetryUtil.ACTIVE_SPAN);
+    init(context);
+    Span activeSpan = SpanStack.active(context);
 
     if (activeSpan != null) {
-      Span span = tracer
+      boolean message = request instanceof Message;
+      if (message && eventBus.rule(((Message<?>) request).address()).excluded) {
+        return null;
+      }
+      Span.Kind kind = message ? Span.Kind.PRODUCER : Span.Kind.CLIENT;
+      Span.Builder builder = tracer
         .spanBuilder(operation)
         .setParent(activeSpan)
-        .setSpanKind(Span.Kind.CLIENT)
-        .startSpan();
+        .setSpanKind(kind);
+      ClientTimings timings = clientTimings && !message ? ClientTimings.begun(request) : null;
+      if (timings != null) {
+        // the wait for the connection is part of the request
+        builder.setStartTimestamp(timings.startEpochNanos());
+      }
+      RequestSpan span = new RequestSpan(builder.startSpan());
+      started(span);
+      stats.spanStarted(span.getContext().getTraceFlags().isSampled());
 
-      span.setAttribute("component", "vertx");
-      addAttributes(span, request, tagExtractor);
+      if (span.isRecording()) {
+        span.setAttribute("component", "vertx");
+        addAttributes(span, request, tagExtractor, limits.maxAttributes - 1);
+        if (timings != null) {
+          timings.attach(span);
+        }
+      }
+      if (metrics != null) {
+        span.endpoint = metrics.start(metricsOperation(request, operation), kind);
+        span.start = System.nanoTime();
+      }
 
-      if (headers != null) {
+      if (headers != null && message && eventBus.isBinaryPropagation()) {
+        headers.accept(EventBusTracing.HEADER, EventBusTracing.encode(span.getContext()));
+      } else if (headers != null && propagation != null) {
+        propagation.inject(span.getContext(), headers);
+      } else if (headers != null) {
         // We inject the current context in headers to cross process boundaries
         try (Scope scope = tracer.withSpan(span)) {
           OpenTelemetry.getPropagators().getHttpTextFormat().inject(io.grpc.Context.current(), headers, BiConsumer::accept);
@@ -125,31 +411,108 @@ public class OpenTelemetryTracer implements io.vertx.core.spi.tracing.VertxTrace
   }
 
   @Override
-  public <R> void receiveResponse(Context context, R response, Span span, Throwable failure,
+  public <R> void receiveResponse(Context context, R response, Span started, Throwable failure,
                                   TagExtractor<R> tagExtractor) {
-    if (span != null) {
-      if (failure != null) {
-        reportError(span, failure.getClass().getName(), failure.getMessage());
+    if (started != null) {
+      RequestSpan span = (RequestSpan) started;
+      ClientTimings timings = clientTimings && response instanceof HttpClientResponse ?
+        ClientTimings.responded(span) : null;
+      if (span.isRecording()) {
+        int events = timings != null ? timings.events() : 0;
+        if (failure instanceof ReplyException) {
+          reportReplyFailure(span, (ReplyException) failure);
+          events++;
+        } else if (failure != null) {
+          reportError(span, failure.getClass().getName(), failure.getMessage(), events++);
+        }
+
+        boolean error = reportResponseError(response, span, events) || failure != null;
+        addAttributes(span, response, tagExtractor, limits.maxAttributes);
+        if (tailSampling != null) {
+          tailSampling.ending(span.getContext(), false, error);
+        }
+        if (lazyTags != null) {
+          lazyTags.ending(span);
+        }
       }
+      if (timings != null) {
+        // on the clock of the timings the span started with
+        span.end(EndSpanOptions.builder().setEndTimestamp(timings.nowEpochNanos()).build());
+      } else {
+        span.end();
+      }
+      ended(span);
+      stats.spanEnded();
+      if (span.endpoint != null) {
+        recordMetrics(response, span, failure);
+      }
+    }
+  }
 
-      reportResponseError(response, span);
+  /**
+   * Hand a span started by the given tracer to the processors of the exporters, the spans not recorded are not readable.
+   */
+  private void started(RequestSpan span) {
+    if (fed != null && span.span instanceof ReadableSpan && fed.isStartRequired()) {
+      fed.onStart((ReadableSpan) span.span);
+    }
+  }
 
-      addAttributes(span, response, tagExtractor);
-      span.end();
+  private void ended(RequestSpan span) {
+    if (fed != null && span.span instanceof ReadableSpan && fed.isEndRequired()) {
+      fed.onEnd((ReadableSpan) span.span);
     }
   }
 
   /**
-   * Add span attributes based on the extracted tags
+   * Initialize the exporters with the Vert.x instance, the tracer is created before it
+   * @param context a context of the Vert.x instance
+   */
+  private void init(Context context) {
+    if (!initialized) {
+      synchronized (this) {
+        if (!initialized) {
+          for (BackendExporter exporter : exporters) {
+            exporter.start(context.owner());
+          }
+          stats.start(context.owner());
+          VertxMetrics vertxMetrics = ((VertxInternal) context.owner()).metricsSPI();
+          if (vertxMetrics instanceof ClientTimingMetrics) {
+            clientTimingMetrics = (ClientTimingMetrics) vertxMetrics;
+            clientTimingMetrics.setEnabled(clientTimings);
+          }
+          initialized = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Add span attributes based on the extracted tags, or defer the extraction to the export of the span. The tags
+   * beyond {@code max} are dropped without extracting their value.
    * @param span
    * @param obj
    * @param tagExtractor
+   * @param max the maximum number of attributes added
    * @param <T>
    */
-  private <T> void addAttributes(Span span, T obj, TagExtractor<T> tagExtractor) {
+  private <T> void addAttributes(RequestSpan span, T obj, TagExtractor<T> tagExtractor, int max) {
+    if (lazyTags != null) {
+      lazyTags.defer(span, obj, tagExtractor);
+      return;
+    }
     int len = tagExtractor.len(obj);
+    int added = 0;
     for (int idx = 0; idx < len; idx++) {
-      span.setAttribute(tagExtractor.name(obj, idx), tagExtractor.value(obj, idx));
+      String name = tagExtractor.name(obj, idx);
+      if (tagAllowlist.isEmpty() || tagAllowlist.contains(name)) {
+        if (added == max) {
+          limits.attributesDropped(1);
+          continue;
+        }
+        span.setAttribute(name, limits.value(name, tagExtractor.value(obj, idx)));
+        added++;
+      }
     }
   }
 
@@ -157,37 +520,102 @@ public class OpenTelemetryTracer implements io.vertx.core.spi.tracing.VertxTrace
    * In an HTTP Context check for HTTP Error in the response to add an error event to the Span
    * @param response The response
    * @param span The span
+   * @param events The number of events already added to the span
    * @param <R> HTTP Server / Client or EventBus response
+   * @return {@code true} if an error was reported
    */
-  private <R> void reportResponseError(R response, Span span) {
+  private <R> boolean reportResponseError(R response, RequestSpan span, int events) {
     if (response instanceof HttpServerResponse) {
       HttpServerResponse resp = (HttpServerResponse) response;
       if (resp.getStatusCode() == 500) {
-        reportError(span, "Functional", resp.getStatusMessage());
+        reportError(span, "Functional", resp.getStatusMessage(), events);
+        return true;
       }
     } else if (response instanceof HttpClientResponse) {
       HttpClientResponse resp = (HttpClientResponse) response;
       if (resp.statusCode() == 500) {
-        reportError(span, "Functional", resp.statusMessage());
+        reportError(span, "Functional", resp.statusMessage(), events);
+        return true;
       }
     }
+    return false;
+  }
+
+  /**
+   * Report the failure of an event bus request on the span of the sender. The consumer span does not see it: Vert.x
+   * ends it without the failure when the consumer calls {@link Message#fail}.
+   * @param span the sender span
+   * @param failure the timeout, the missing handlers or the failure of the recipient
+   */
+  private void reportReplyFailure(RequestSpan span, ReplyException failure) {
+    String message = limits.truncate(failure.getMessage());
+    reportError(span, failure.getClass().getName(), message, 0);
+    span.setAttribute("message_bus.failure_type", failure.failureType().name());
+    span.setAttribute("message_bus.failure_code", failure.failureCode());
+    switch (failure.failureType()) {
+      case TIMEOUT:
+        span.setStatus(Status.DEADLINE_EXCEEDED.withDescription(message));
+        break;
+      case NO_HANDLERS:
+        span.setStatus(Status.NOT_FOUND.withDescription(message));
+        break;
+      default:
+        span.setStatus(Status.UNKNOWN.withDescription(message));
+    }
+  }
+
+  private static boolean hasParent(io.grpc.Context context) {
+    Span parent = TracingContextUtils.getSpanWithoutDefault(context);
+    return parent != null && parent.getContext().isValid();
+  }
+
+  /**
+   * @return the event bus address of a message, the span name otherwise
+   */
+  private static <R> String metricsOperation(R request, String operation) {
+    return request instanceof Message ? ((Message<?>) request).address() : operation;
+  }
+
+  /**
+   * Record the request of the span in the metrics, keyed by the status code of an HTTP response
+   * @param response the response, {@code null} on failure
+   * @param span the span
+   * @param failure the failure or {@code null}
+   * @param <R> HTTP Server / Client or EventBus response
+   */
+  private <R> void recordMetrics(R response, RequestSpan span, Throwable failure) {
+    int statusCode = 0;
+    if (response instanceof HttpServerResponse) {
+      statusCode = ((HttpServerResponse) response).getStatusCode();
+    } else if (response instanceof HttpClientResponse) {
+      statusCode = ((HttpClientResponse) response).statusCode();
+    }
+    metrics.end(span.endpoint, span.start, statusCode, failure != null || statusCode >= 500);
   }
 
   /**
-   * Add an error event to the given span and mark the flag the span as error
+   * Add an error event to the given span and mark the flag the span as error, the event is dropped when the span has
+   * the maximum number of events. A lean span builds the attributes of the event when it is exported.
    * @param span the Span
    * @param errorKind The error kind
    * @param message The error message
+   * @param events The number of events already added to the span
    */
-  private void reportError(Span span, String errorKind, String message) {
-    Map<String, AttributeValue> errorEvent = new HashMap<>();
-    errorEvent.put("event", AttributeValue.stringAttributeValue("error"));
-    errorEvent.put("error.kind", AttributeValue.stringAttributeValue(errorKind));
-    // TODO replace by error.object regarding the current spec ?
-    // see https://github.com/open-telemetry/opentelemetry-specification/issues/67
-    errorEvent.put("message", AttributeValue.stringAttributeValue(message));
+  private void reportError(RequestSpan span, String errorKind, String message, int events) {
+    if (events >= limits.maxEvents) {
+      limits.eventDropped();
+    } else if (span.span instanceof LeanSpan) {
+      span.addErrorEvent(errorKind, limits.truncate(message));
+    } else {
+      Map<String, AttributeValue> errorEvent = new HashMap<>();
+      errorEvent.put("event", AttributeValue.stringAttributeValue("error"));
+      errorEvent.put("error.kind", AttributeValue.stringAttributeValue(errorKind));
+      // TODO replace by error.object regarding the current spec ?
+      // see https://github.com/open-telemetry/opentelemetry-specification/issues/67
+      errorEvent.put("message", AttributeValue.stringAttributeValue(limits.truncate(message)));
 
-    span.addEvent("error", errorEvent);
+      span.addEvent("error", errorEvent);
+    }
     span.setAttribute("error", "true");
     span.setStatus(Status.INTERNAL);
   }
@@ -197,5 +625,17 @@ public class OpenTelemetryTracer implements io.vertx.core.spi.tracing.VertxTrace
     if (closeTracer && tracer != null) {
       tracer.getCurrentSpan().end();
     }
+    stats.stop();
+    // export the pending spans before releasing the exporters
+    if (provider != null) {
+      provider.shutdown();
+    } else {
+      for (SpanProcessor processor : processors) {
+        processor.shutdown();
+      }
+    }
+    for (BackendExporter exporter : exporters) {
+      exporter.shutdown();
+    }
   }
 }
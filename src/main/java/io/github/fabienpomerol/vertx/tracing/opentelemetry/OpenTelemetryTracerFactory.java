@@ -13,7 +13,8 @@ public class OpenTelemetryTracerFactory implements VertxTracerFactory {
     if (options instanceof OpenTelemetryOptions) {
       openTelemetryOptions = (OpenTelemetryOptions) options;
     } else {
-      openTelemetryOptions = new OpenTelemetryOptions();
+      // e.g. VertxOptions created from JSON, the options keep their JSON form
+      openTelemetryOptions = new OpenTelemetryOptions(options.toJson());
     }
     return openTelemetryOptions.buildTracer();
   }
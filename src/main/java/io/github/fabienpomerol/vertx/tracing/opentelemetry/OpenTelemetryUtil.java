@@ -1,28 +1,57 @@
 package io.github.fabienpomerol.vertx.tracing.opentelemetry;
 
+import io.opentelemetry.context.Scope;
 import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.TracingContextUtils;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 /**
  * Add helpers for associating and disassociating spans with the current {@link Context}
+ * <p>
+ * The spans of a context are kept in a stack: the span of the request being handled is active, a span set with
+ * {@link #setSpan(Span)} hides it until {@link #clearContext()} is called.
+ * <p>
+ * The {@code wrap} helpers carry the active span to the code running on another thread: the span is captured once when
+ * the task is wrapped and restored on the thread running it, both for {@link #getSpan()} and the Vert.x clients, and as
+ * the current span of the OpenTelemetry API. The child spans then keep the right parent:
+ * <pre>
+ * vertx.executeBlocking(OpenTelemetryUtil.wrapHandler(promise -&gt; ...));
+ * CompletableFuture.supplyAsync(OpenTelemetryUtil.wrapSupplier(() -&gt; ...), pool);
+ * ExecutorService pool = OpenTelemetryUtil.wrap(Executors.newFixedThreadPool(4));
+ * </pre>
+ * A task wrapped without an active span is returned as is.
  */
 public final class OpenTelemetryUtil {
 
-  static final String ACTIVE_SPAN = "vertx.tracing.opentelemetry.span";
-
   /**
-   * Get the active span from the current {@link Context}
+   * Get the active span from the current {@link Context}, or the span restored on the current thread by a wrapped
+   * task
    *
    * @return a {@link Span} or null
    */
   public static Span getSpan() {
+    Span restored = SpanStack.restored();
+    if (restored != null) {
+      return restored;
+    }
     Context c = Vertx.currentContext();
-    return c == null ? null : c.getLocal(ACTIVE_SPAN);
+    return c == null ? null : SpanStack.active(c);
   }
 
   /**
-   * Set the span as active on the context.
+   * Set the span as active on the context, until {@link #clearContext()} is called. It must be called from the context
+   * thread, blocking code only reads the span of its context.
    *
    * @param span the span to associate with the context.
    */
@@ -30,18 +59,221 @@ public final class OpenTelemetryUtil {
     if (span != null) {
       Context c = Vertx.currentContext();
       if (c != null) {
-        c.putLocal(ACTIVE_SPAN, span);
+        SpanStack.getOrCreate(c).push(span);
       }
     }
   }
 
   /**
-   * Remove any active span on the context.
+   * Remove the span set with {@link #setSpan(Span)} from the context, the previously active span becomes active again.
+   * It must be called from the context thread.
    */
   public static void clearContext() {
     Context c = Vertx.currentContext();
     if (c != null) {
-      c.removeLocal(ACTIVE_SPAN);
+      SpanStack stack = SpanStack.get(c);
+      if (stack != null) {
+        stack.pop();
+      }
+    }
+  }
+
+  /**
+   * @param task the task
+   * @return the task running with the active span
+   */
+  public static Runnable wrap(Runnable task) {
+    Span span = capture();
+    if (span == null) {
+      return task;
+    }
+    return () -> {
+      try (Scope scope = restore(span)) {
+        task.run();
+      }
+    };
+  }
+
+  /**
+   * @param task the task
+   * @return the task running with the active span
+   */
+  public static <T> Callable<T> wrap(Callable<T> task) {
+    Span span = capture();
+    if (span == null) {
+      return task;
+    }
+    return () -> {
+      try (Scope scope = restore(span)) {
+        return task.call();
+      }
+    };
+  }
+
+  /**
+   * Wrap the blocking code of {@code executeBlocking} or the handler of a {@link Promise} completed from another
+   * thread.
+   * <p>
+   * The promise of the blocking code is completed once the handler returns and the span is no longer restored, since
+   * the result handler may run on the same thread.
+   *
+   * @param handler the handler
+   * @return the handler called with the active span
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Handler<T> wrapHandler(Handler<T> handler) {
+    Span span = capture();
+    if (span == null) {
+      return handler;
+    }
+    return event -> {
+      // a result handler gets a completed future, which may be a promise too
+      if (event instanceof Promise && !((Promise<?>) event).future().isComplete()) {
+        DeferredPromise<?> promise = new DeferredPromise<>((Promise<?>) event);
+        try {
+          try (Scope scope = restore(span)) {
+            handler.handle((T) promise);
+          }
+        } finally {
+          promise.release();
+        }
+      } else {
+        try (Scope scope = restore(span)) {
+          handler.handle(event);
+        }
+      }
+    };
+  }
+
+  /**
+   * Wrap the supplier of {@link java.util.concurrent.CompletableFuture#supplyAsync}.
+   *
+   * @param supplier the supplier
+   * @return the supplier called with the active span
+   */
+  public static <T> Supplier<T> wrapSupplier(Supplier<T> supplier) {
+    Span span = capture();
+    if (span == null) {
+      return supplier;
+    }
+    return () -> {
+      try (Scope scope = restore(span)) {
+        return supplier.get();
+      }
+    };
+  }
+
+  /**
+   * Wrap a stage of a {@link java.util.concurrent.CompletableFuture}, e.g. {@code thenApply}.
+   *
+   * @param function the function
+   * @return the function called with the active span
+   */
+  public static <T, R> Function<T, R> wrapFunction(Function<T, R> function) {
+    Span span = capture();
+    if (span == null) {
+      return function;
+    }
+    return value -> {
+      try (Scope scope = restore(span)) {
+        return function.apply(value);
+      }
+    };
+  }
+
+  /**
+   * @param executor the executor
+   * @return an executor running each task with the span active when the task is submitted
+   */
+  public static Executor wrap(Executor executor) {
+    return command -> executor.execute(wrap(command));
+  }
+
+  /**
+   * @param executor the executor
+   * @return an executor running each task with the span active when the task is submitted
+   */
+  public static ExecutorService wrap(ExecutorService executor) {
+    return new SpanPropagatingExecutorService(executor);
+  }
+
+  /**
+   * @return the active span, or the current span of the OpenTelemetry API outside of Vert.x
+   */
+  private static Span capture() {
+    Span span = getSpan();
+    if (span == null) {
+      span = TracingContextUtils.getSpanWithoutDefault(io.grpc.Context.current());
+    }
+    return span;
+  }
+
+  private static Scope restore(Span span) {
+    Span previous = SpanStack.restore(span);
+    Scope scope = TracingContextUtils.currentContextWith(span);
+    return () -> {
+      scope.close();
+      SpanStack.reset(previous);
+    };
+  }
+
+  /**
+   * A promise holding the result set while its handler runs until {@link #release()}, the result set afterwards
+   * completes the promise directly.
+   */
+  private static final class DeferredPromise<T> implements Promise<T> {
+
+    private final Promise<T> promise;
+
+    // guarded by this
+    private boolean deferring = true;
+    private AsyncResult<T> result;
+
+    DeferredPromise(Promise<T> promise) {
+      this.promise = promise;
+    }
+
+    @Override
+    public boolean tryComplete(T value) {
+      return tryHandle(Future.succeededFuture(value));
+    }
+
+    @Override
+    public boolean tryFail(Throwable cause) {
+      return tryHandle(Future.failedFuture(cause));
+    }
+
+    @Override
+    public Future<T> future() {
+      return promise.future();
+    }
+
+    private boolean tryHandle(AsyncResult<T> result) {
+      synchronized (this) {
+        if (deferring) {
+          if (this.result != null || promise.future().isComplete()) {
+            return false;
+          }
+          this.result = result;
+          return true;
+        }
+      }
+      return forward(result);
+    }
+
+    void release() {
+      AsyncResult<T> result;
+      synchronized (this) {
+        deferring = false;
+        result = this.result;
+      }
+      if (result != null) {
+        forward(result);
+      }
+    }
+
+    private boolean forward(AsyncResult<T> result) {
+      return result.succeeded() ? promise.tryComplete(result.result()) : promise.tryFail(result.cause());
     }
   }
 }
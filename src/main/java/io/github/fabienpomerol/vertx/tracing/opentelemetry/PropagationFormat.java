@@ -0,0 +1,12 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+/**
+ * The headers carrying the trace context of the HTTP requests and of the event bus messages, see
+ * {@link OpenTelemetryOptions#addPropagationFormat(PropagationFormat)}.
+ */
+public enum PropagationFormat {
+  /** The W3C {@code traceparent} and {@code tracestate} headers */
+  W3C,
+  /** The single {@code b3} header of Zipkin */
+  B3
+}
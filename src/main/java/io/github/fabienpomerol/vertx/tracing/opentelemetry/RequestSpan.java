@@ -0,0 +1,168 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.SpanMetrics;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.trace.EndSpanOptions;
+import io.opentelemetry.trace.Event;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.Status;
+
+import java.util.Map;
+
+/**
+ * The span of a request, handed to Vert.x by the {@link OpenTelemetryTracer} and given back when the request ends.
+ * <p>
+ * It carries what the tracer keeps for the request besides the span itself, so that nothing is looked up by span in a
+ * shared map. The calls of the application are forwarded to the span until it ends, and never after: a {@link LeanSpan}
+ * is recycled for another request once exported, while the application may still hold this span, e.g. in a wrapped
+ * task. The context of the span is kept for the children started later.
+ */
+final class RequestSpan implements Span {
+
+  final Span span;
+  private final SpanContext context;
+  // guarded by this, read without the lock by isRecording()
+  private volatile boolean ended;
+  // the tags of the request and of the response resolved when the span is exported, null when set eagerly
+  LazyTagsSpanProcessor.Tags tags;
+  // the series group of the request in the metrics and its start time, null when the metrics are disabled
+  SpanMetrics.Endpoint endpoint;
+  long start;
+
+  RequestSpan(Span span) {
+    this.span = span;
+    this.context = span.getContext();
+  }
+
+  @Override
+  public synchronized void setAttribute(String key, String value) {
+    if (!ended) {
+      span.setAttribute(key, value);
+    }
+  }
+
+  @Override
+  public synchronized void setAttribute(String key, long value) {
+    if (!ended) {
+      span.setAttribute(key, value);
+    }
+  }
+
+  @Override
+  public synchronized void setAttribute(String key, double value) {
+    if (!ended) {
+      span.setAttribute(key, value);
+    }
+  }
+
+  @Override
+  public synchronized void setAttribute(String key, boolean value) {
+    if (!ended) {
+      span.setAttribute(key, value);
+    }
+  }
+
+  @Override
+  public synchronized void setAttribute(String key, AttributeValue value) {
+    if (!ended) {
+      span.setAttribute(key, value);
+    }
+  }
+
+  @Override
+  public synchronized void addEvent(String name) {
+    if (!ended) {
+      span.addEvent(name);
+    }
+  }
+
+  @Override
+  public synchronized void addEvent(String name, long timestamp) {
+    if (!ended) {
+      span.addEvent(name, timestamp);
+    }
+  }
+
+  @Override
+  public synchronized void addEvent(String name, Map<String, AttributeValue> attributes) {
+    if (!ended) {
+      span.addEvent(name, attributes);
+    }
+  }
+
+  @Override
+  public synchronized void addEvent(String name, Map<String, AttributeValue> attributes, long timestamp) {
+    if (!ended) {
+      span.addEvent(name, attributes, timestamp);
+    }
+  }
+
+  @Override
+  public synchronized void addEvent(Event event) {
+    if (!ended) {
+      span.addEvent(event);
+    }
+  }
+
+  @Override
+  public synchronized void addEvent(Event event, long timestamp) {
+    if (!ended) {
+      span.addEvent(event, timestamp);
+    }
+  }
+
+  @Override
+  public synchronized void setStatus(Status status) {
+    if (!ended) {
+      span.setStatus(status);
+    }
+  }
+
+  @Override
+  public synchronized void updateName(String name) {
+    if (!ended) {
+      span.updateName(name);
+    }
+  }
+
+  /**
+   * Add an error event to a lean span without building its attributes, see {@link LeanSpan#addErrorEvent}.
+   */
+  synchronized void addErrorEvent(String errorKind, String message) {
+    if (!ended) {
+      ((LeanSpan) span).addErrorEvent(errorKind, message);
+    }
+  }
+
+  @Override
+  public synchronized void end() {
+    if (!ended) {
+      ended = true;
+      span.end();
+    }
+  }
+
+  @Override
+  public synchronized void end(EndSpanOptions endOptions) {
+    if (!ended) {
+      ended = true;
+      span.end(endOptions);
+    }
+  }
+
+  @Override
+  public SpanContext getContext() {
+    return context;
+  }
+
+  @Override
+  public boolean isRecording() {
+    return !ended && span.isRecording();
+  }
+
+  @Override
+  public String toString() {
+    return "RequestSpan{" + context + "}";
+  }
+}
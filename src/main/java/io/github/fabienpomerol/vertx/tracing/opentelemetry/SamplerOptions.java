@@ -0,0 +1,150 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers.ParentBasedSampler;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers.RateLimitingSampler;
+import io.opentelemetry.sdk.trace.Sampler;
+import io.opentelemetry.sdk.trace.Samplers;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Locale;
+
+/**
+ * Sampling configuration, decides which traces are recorded and exported.
+ * <p>
+ * The sampler applies to the spans starting a trace. By default it is parent based: a span whose parent, local or
+ * propagated by the caller, is sampled is sampled as well and vice versa.
+ * <p>
+ * JSON form: <pre>{ "type": "rate_limiting", "tracesPerSecond": 50, "parentBased": true }</pre>
+ */
+public class SamplerOptions {
+
+  public enum Type {
+    /** Sample every trace */
+    ALWAYS_ON,
+    /** Sample no trace */
+    ALWAYS_OFF,
+    /** Sample a fixed ratio of the traces based on their trace id */
+    PROBABILITY,
+    /** Sample at most a fixed number of traces per second per Vert.x instance */
+    RATE_LIMITING
+  }
+
+  public static final Type DEFAULT_TYPE = Type.ALWAYS_ON;
+  public static final double DEFAULT_PROBABILITY = 1.0;
+  public static final double DEFAULT_TRACES_PER_SECOND = 100;
+  public static final boolean DEFAULT_PARENT_BASED = true;
+
+  private Type type = DEFAULT_TYPE;
+  private double probability = DEFAULT_PROBABILITY;
+  private double tracesPerSecond = DEFAULT_TRACES_PER_SECOND;
+  private boolean parentBased = DEFAULT_PARENT_BASED;
+
+  public SamplerOptions() {
+  }
+
+  public SamplerOptions(SamplerOptions other) {
+    this.type = other.type;
+    this.probability = other.probability;
+    this.tracesPerSecond = other.tracesPerSecond;
+    this.parentBased = other.parentBased;
+  }
+
+  public SamplerOptions(JsonObject json) {
+    String type = json.getString("type");
+    if (type != null) {
+      setType(Type.valueOf(type.toUpperCase(Locale.ROOT)));
+    }
+    setProbability(json.getDouble("probability", DEFAULT_PROBABILITY));
+    setTracesPerSecond(json.getDouble("tracesPerSecond", DEFAULT_TRACES_PER_SECOND));
+    setParentBased(json.getBoolean("parentBased", DEFAULT_PARENT_BASED));
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public SamplerOptions setType(Type type) {
+    this.type = type;
+    return this;
+  }
+
+  public double getProbability() {
+    return probability;
+  }
+
+  /**
+   * Set the ratio of traces sampled with the {@link Type#PROBABILITY} sampler.
+   *
+   * @param probability a value between 0 and 1
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SamplerOptions setProbability(double probability) {
+    if (probability < 0 || probability > 1) {
+      throw new IllegalArgumentException("probability must be in range [0, 1]");
+    }
+    this.probability = probability;
+    return this;
+  }
+
+  public double getTracesPerSecond() {
+    return tracesPerSecond;
+  }
+
+  /**
+   * Set the maximum number of traces per second sampled with the {@link Type#RATE_LIMITING} sampler.
+   *
+   * @param tracesPerSecond the rate
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SamplerOptions setTracesPerSecond(double tracesPerSecond) {
+    if (!(tracesPerSecond > 0)) {
+      throw new IllegalArgumentException("tracesPerSecond must be > 0");
+    }
+    this.tracesPerSecond = tracesPerSecond;
+    return this;
+  }
+
+  public boolean isParentBased() {
+    return parentBased;
+  }
+
+  /**
+   * Set whether a span having a parent follows the decision of its parent instead of applying the sampler.
+   *
+   * @param parentBased {@code true} to follow the parent decision
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SamplerOptions setParentBased(boolean parentBased) {
+    this.parentBased = parentBased;
+    return this;
+  }
+
+  public JsonObject toJson() {
+    return new JsonObject()
+      .put("type", type.name().toLowerCase(Locale.ROOT))
+      .put("probability", probability)
+      .put("tracesPerSecond", tracesPerSecond)
+      .put("parentBased", parentBased);
+  }
+
+  /**
+   * @return a new sampler instance for this configuration
+   */
+  Sampler createSampler() {
+    Sampler sampler;
+    switch (type) {
+      case ALWAYS_OFF:
+        sampler = Samplers.alwaysOff();
+        break;
+      case PROBABILITY:
+        sampler = Samplers.probability(probability);
+        break;
+      case RATE_LIMITING:
+        sampler = new RateLimitingSampler(tracesPerSecond);
+        break;
+      default:
+        sampler = Samplers.alwaysOn();
+    }
+    return parentBased ? new ParentBasedSampler(sampler) : sampler;
+  }
+}
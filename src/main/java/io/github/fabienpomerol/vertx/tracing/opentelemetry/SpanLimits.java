@@ -0,0 +1,160 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+
+/**
+ * The tracer side of the {@link SpanLimitsOptions}: the values are normalized and truncated before they are set on a
+ * span and each dropped, truncated or normalized item is counted.
+ * <p>
+ * The URL is scanned once without regular expression and a new string is only built when it changes.
+ */
+final class SpanLimits {
+
+  static final String URL_TAG = "http.url";
+  static final String ID = "{id}";
+
+  private static final int UUID_LENGTH = 36;
+  // shorter hexadecimal segments are likely words, e.g. "cafe"
+  private static final int MIN_HEX_ID_LENGTH = 16;
+
+  final int maxAttributes;
+  final int maxEvents;
+  private final int maxAttributeLength;
+  private final boolean stripQueryString;
+  private final boolean collapseIds;
+  private final TracerStats stats;
+
+  SpanLimits(SpanLimitsOptions options, TracerStats stats) {
+    this.maxAttributes = options.getMaxAttributes();
+    this.maxEvents = options.getMaxEvents();
+    this.maxAttributeLength = options.getMaxAttributeLength();
+    this.stripQueryString = options.isStripQueryString();
+    this.collapseIds = options.isCollapseIds();
+    this.stats = stats;
+  }
+
+  /**
+   * @return the value of the attribute {@code name} to set on the span, normalized when it is the URL and truncated
+   */
+  String value(String name, String value) {
+    if (value != null && (stripQueryString || collapseIds) && URL_TAG.equals(name)) {
+      String normalized = normalizeUrl(value);
+      if (normalized != value) {
+        stats.urlNormalized();
+        value = normalized;
+      }
+    }
+    return truncate(value);
+  }
+
+  /**
+   * @return {@code value} truncated to the maximum attribute length
+   */
+  String truncate(String value) {
+    if (value != null && value.length() > maxAttributeLength) {
+      stats.attributeTruncated();
+      return value.substring(0, maxAttributeLength);
+    }
+    return value;
+  }
+
+  void attributesDropped(int count) {
+    stats.attributesDropped(count);
+  }
+
+  void eventDropped() {
+    stats.eventDropped();
+  }
+
+  /**
+   * @return {@code url} without its query string and with its id segments collapsed as configured, the same instance
+   * when nothing changes
+   */
+  String normalizeUrl(String url) {
+    int end = url.length();
+    int query = indexOfQuery(url);
+    if (stripQueryString && query >= 0) {
+      end = query;
+    }
+    if (!collapseIds) {
+      return end == url.length() ? url : url.substring(0, end);
+    }
+    int pathEnd = query >= 0 ? query : end;
+    int scheme = url.indexOf("://");
+    int start = scheme >= 0 ? url.indexOf('/', scheme + 3) : url.indexOf('/');
+    if (start < 0 || start > pathEnd) {
+      start = pathEnd;
+    }
+    StringBuilder normalized = null;
+    int copied = 0;
+    // start is on a '/' until the end of the path
+    while (start < pathEnd) {
+      int segmentStart = start + 1;
+      int segmentEnd = url.indexOf('/', segmentStart);
+      if (segmentEnd < 0 || segmentEnd > pathEnd) {
+        segmentEnd = pathEnd;
+      }
+      if (isId(url, segmentStart, segmentEnd)) {
+        if (normalized == null) {
+          normalized = new StringBuilder(end);
+        }
+        normalized.append(url, copied, segmentStart).append(ID);
+        copied = segmentEnd;
+      }
+      start = segmentEnd;
+    }
+    if (normalized == null) {
+      return end == url.length() ? url : url.substring(0, end);
+    }
+    return normalized.append(url, copied, end).toString();
+  }
+
+  private static int indexOfQuery(String url) {
+    for (int idx = 0; idx < url.length(); idx++) {
+      char c = url.charAt(idx);
+      if (c == '?' || c == '#') {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return whether the segment is a number, a UUID or a long hexadecimal string
+   */
+  static boolean isId(String s, int from, int to) {
+    int length = to - from;
+    if (length == 0) {
+      return false;
+    }
+    boolean digits = true;
+    boolean hex = true;
+    for (int idx = from; idx < to; idx++) {
+      char c = s.charAt(idx);
+      if (c < '0' || c > '9') {
+        digits = false;
+        if (!(c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+          hex = false;
+        }
+      }
+    }
+    if (digits || hex && length >= MIN_HEX_ID_LENGTH) {
+      return true;
+    }
+    return length == UUID_LENGTH && isUuid(s, from);
+  }
+
+  private static boolean isUuid(String s, int from) {
+    for (int idx = 0; idx < UUID_LENGTH; idx++) {
+      char c = s.charAt(from + idx);
+      if (idx == 8 || idx == 13 || idx == 18 || idx == 23) {
+        if (c != '-') {
+          return false;
+        }
+      } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
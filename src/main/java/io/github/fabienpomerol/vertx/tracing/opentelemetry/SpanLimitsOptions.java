@@ -0,0 +1,150 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Limits of the data the tracer records on a span, so that huge URLs, exception messages or tag extractors producing
+ * many tags do not make the spans large.
+ * <ul>
+ *   <li>The tags of a request or a response beyond {@code maxAttributes} are dropped before their value is
+ *   extracted.</li>
+ *   <li>The error events beyond {@code maxEvents} are dropped.</li>
+ *   <li>The attribute values and error messages longer than {@code maxAttributeLength} are truncated before they are
+ *   set on the span.</li>
+ *   <li>The {@code http.url} attribute can be normalized: its query string stripped and the path segments looking
+ *   like ids (numbers, UUIDs, long hexadecimal strings) replaced by {@code {id}}.</li>
+ * </ul>
+ * Each dropped, truncated or normalized item is counted in the {@link
+ * io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats}. The tracer provider of each Vert.x instance
+ * also applies {@code maxAttributes} and {@code maxEvents} to the span as a whole.
+ * <p>
+ * JSON form: <pre>{ "maxAttributes": 32, "maxEvents": 128, "maxAttributeLength": 1024, "stripQueryString": false,
+ * "collapseIds": false }</pre>
+ */
+public class SpanLimitsOptions {
+
+  public static final int DEFAULT_MAX_ATTRIBUTES = 32;
+  public static final int DEFAULT_MAX_EVENTS = 128;
+  public static final int DEFAULT_MAX_ATTRIBUTE_LENGTH = 1024;
+  public static final boolean DEFAULT_STRIP_QUERY_STRING = false;
+  public static final boolean DEFAULT_COLLAPSE_IDS = false;
+
+  private int maxAttributes = DEFAULT_MAX_ATTRIBUTES;
+  private int maxEvents = DEFAULT_MAX_EVENTS;
+  private int maxAttributeLength = DEFAULT_MAX_ATTRIBUTE_LENGTH;
+  private boolean stripQueryString = DEFAULT_STRIP_QUERY_STRING;
+  private boolean collapseIds = DEFAULT_COLLAPSE_IDS;
+
+  public SpanLimitsOptions() {
+  }
+
+  public SpanLimitsOptions(SpanLimitsOptions other) {
+    this.maxAttributes = other.maxAttributes;
+    this.maxEvents = other.maxEvents;
+    this.maxAttributeLength = other.maxAttributeLength;
+    this.stripQueryString = other.stripQueryString;
+    this.collapseIds = other.collapseIds;
+  }
+
+  public SpanLimitsOptions(JsonObject json) {
+    setMaxAttributes(json.getInteger("maxAttributes", DEFAULT_MAX_ATTRIBUTES));
+    setMaxEvents(json.getInteger("maxEvents", DEFAULT_MAX_EVENTS));
+    setMaxAttributeLength(json.getInteger("maxAttributeLength", DEFAULT_MAX_ATTRIBUTE_LENGTH));
+    setStripQueryString(json.getBoolean("stripQueryString", DEFAULT_STRIP_QUERY_STRING));
+    setCollapseIds(json.getBoolean("collapseIds", DEFAULT_COLLAPSE_IDS));
+  }
+
+  public int getMaxAttributes() {
+    return maxAttributes;
+  }
+
+  /**
+   * Set the maximum number of attributes of a span.
+   *
+   * @param maxAttributes the number of attributes
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SpanLimitsOptions setMaxAttributes(int maxAttributes) {
+    if (maxAttributes < 1) {
+      throw new IllegalArgumentException("maxAttributes must be > 0");
+    }
+    this.maxAttributes = maxAttributes;
+    return this;
+  }
+
+  public int getMaxEvents() {
+    return maxEvents;
+  }
+
+  /**
+   * Set the maximum number of events of a span, {@code 0} to record no error event.
+   *
+   * @param maxEvents the number of events
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SpanLimitsOptions setMaxEvents(int maxEvents) {
+    if (maxEvents < 0) {
+      throw new IllegalArgumentException("maxEvents must be >= 0");
+    }
+    this.maxEvents = maxEvents;
+    return this;
+  }
+
+  public int getMaxAttributeLength() {
+    return maxAttributeLength;
+  }
+
+  /**
+   * Set the maximum number of characters of an attribute value or an error message, longer ones are truncated.
+   *
+   * @param maxAttributeLength the number of characters
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SpanLimitsOptions setMaxAttributeLength(int maxAttributeLength) {
+    if (maxAttributeLength < 1) {
+      throw new IllegalArgumentException("maxAttributeLength must be > 0");
+    }
+    this.maxAttributeLength = maxAttributeLength;
+    return this;
+  }
+
+  public boolean isStripQueryString() {
+    return stripQueryString;
+  }
+
+  /**
+   * Set whether the query string and the fragment of the {@code http.url} attribute are removed.
+   *
+   * @param stripQueryString {@code true} to remove them
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SpanLimitsOptions setStripQueryString(boolean stripQueryString) {
+    this.stripQueryString = stripQueryString;
+    return this;
+  }
+
+  public boolean isCollapseIds() {
+    return collapseIds;
+  }
+
+  /**
+   * Set whether the path segments of the {@code http.url} attribute looking like ids are replaced by {@code {id}},
+   * e.g. {@code /orders/12345} becomes {@code /orders/{id}}.
+   *
+   * @param collapseIds {@code true} to replace them
+   * @return a reference to this, so the API can be used fluently
+   */
+  public SpanLimitsOptions setCollapseIds(boolean collapseIds) {
+    this.collapseIds = collapseIds;
+    return this;
+  }
+
+  public JsonObject toJson() {
+    return new JsonObject()
+      .put("maxAttributes", maxAttributes)
+      .put("maxEvents", maxEvents)
+      .put("maxAttributeLength", maxAttributeLength)
+      .put("stripQueryString", stripQueryString)
+      .put("collapseIds", collapseIds);
+  }
+}
@@ -0,0 +1,143 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.trace.Span;
+import io.vertx.core.Context;
+
+/**
+ * The active spans of a {@link Context}, the last one pushed and not removed yet is the active span.
+ * <p>
+ * The stack is stored once in the context locals, pushing and removing a span does not touch the locals map anymore.
+ * Vert.x handles each HTTP request and event bus message on a context duplicated for it, with locals of its own: the
+ * tracer pushes the span of a request on the stack of its context, so that the requests handled concurrently by an event
+ * loop never see each other's span. When several requests share a context a request ending removes its own span and
+ * leaves the span of the others.
+ * <p>
+ * The stack is confined to the context thread which pushes and removes the spans, the active span is published in a
+ * volatile field for the blocking code run from the context, which only reads it.
+ * <p>
+ * A task wrapped by {@link OpenTelemetryUtil} restores the span captured when it was wrapped on the thread running it,
+ * this span takes precedence over the stack of the context: blocking code sees the span of its request and not the
+ * span active on the event loop at that time.
+ */
+final class SpanStack {
+
+  static final String KEY = "vertx.tracing.opentelemetry.spans";
+
+  private static final ThreadLocal<Span> RESTORED = new ThreadLocal<>();
+  // the thread local is not read until a span is restored for the first time
+  private static volatile boolean restoring;
+
+  private Span[] spans = new Span[4];
+  private int size;
+  // the top of the stack, read from any thread
+  private volatile Span active;
+
+  /**
+   * @return the stack of the {@code context} or {@code null} when no span was ever pushed on it
+   */
+  static SpanStack get(Context context) {
+    return context.getLocal(KEY);
+  }
+
+  /**
+   * @return the stack of the {@code context}, created on first use
+   */
+  static SpanStack getOrCreate(Context context) {
+    SpanStack stack = context.getLocal(KEY);
+    if (stack == null) {
+      // the tasks of a context are serialized, no other stack can be created concurrently
+      stack = new SpanStack();
+      context.putLocal(KEY, stack);
+    }
+    return stack;
+  }
+
+  /**
+   * @return the active span of the {@code context} or {@code null}
+   */
+  static Span active(Context context) {
+    Span restored = restored();
+    if (restored != null) {
+      return restored;
+    }
+    SpanStack stack = context.getLocal(KEY);
+    return stack == null ? null : stack.peek();
+  }
+
+  /**
+   * @return the span restored on the current thread or {@code null}
+   */
+  static Span restored() {
+    return restoring ? RESTORED.get() : null;
+  }
+
+  /**
+   * Restore {@code span} on the current thread until {@link #reset} is called.
+   *
+   * @return the span previously restored on the thread, to reset
+   */
+  static Span restore(Span span) {
+    if (!restoring) {
+      restoring = true;
+    }
+    Span previous = RESTORED.get();
+    RESTORED.set(span);
+    return previous;
+  }
+
+  static void reset(Span previous) {
+    if (previous == null) {
+      RESTORED.remove();
+    } else {
+      RESTORED.set(previous);
+    }
+  }
+
+  void push(Span span) {
+    if (size == spans.length) {
+      Span[] copy = new Span[size * 2];
+      System.arraycopy(spans, 0, copy, 0, size);
+      spans = copy;
+    }
+    spans[size++] = span;
+    active = span;
+  }
+
+  /**
+   * @return the active span, may be called from any thread
+   */
+  Span peek() {
+    return active;
+  }
+
+  Span pop() {
+    if (size == 0) {
+      return null;
+    }
+    Span span = spans[--size];
+    spans[size] = null;
+    active = size == 0 ? null : spans[size - 1];
+    return span;
+  }
+
+  /**
+   * Remove {@code span} wherever it is in the stack.
+   *
+   * @return {@code true} if the span was in the stack
+   */
+  boolean remove(Span span) {
+    for (int idx = size - 1; idx >= 0; idx--) {
+      if (spans[idx] == span) {
+        System.arraycopy(spans, idx + 1, spans, idx, size - idx - 1);
+        spans[--size] = null;
+        active = size == 0 ? null : spans[size - 1];
+        return true;
+      }
+    }
+    return false;
+  }
+
+  int size() {
+    return size;
+  }
+}
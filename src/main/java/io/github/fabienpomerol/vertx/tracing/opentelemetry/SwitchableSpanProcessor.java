@@ -0,0 +1,63 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+/**
+ * A {@link SpanProcessor} forwarding the spans to the processor of an exporter only while it is enabled, so that an
+ * exporter can be turned off and on at runtime.
+ * <p>
+ * The flag is a volatile field read when a span starts and ends, the spans ended while the exporter is off are not
+ * exported. Turning the exporter off does not release it, the spans already queued are still exported.
+ */
+final class SwitchableSpanProcessor implements SpanProcessor {
+
+  private final SpanProcessor processor;
+  private volatile boolean enabled = true;
+
+  SwitchableSpanProcessor(SpanProcessor processor) {
+    this.processor = processor;
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Override
+  public void onStart(ReadableSpan span) {
+    if (enabled) {
+      processor.onStart(span);
+    }
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return processor.isStartRequired();
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    if (enabled) {
+      processor.onEnd(span);
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return processor.isEndRequired();
+  }
+
+  @Override
+  public void shutdown() {
+    processor.shutdown();
+  }
+
+  @Override
+  public void forceFlush() {
+    processor.forceFlush();
+  }
+}
@@ -0,0 +1,152 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tail sampling configuration: finished spans are buffered per trace and the whole trace is exported only when one of
+ * its spans failed, was slower than a threshold or carries a given attribute value.
+ * <p>
+ * A trace is decided when its local root span ends, or when it stayed buffered longer than the decision wait.
+ * When the buffer is full the oldest traces are decided early, its size is estimated from the number of spans and
+ * their names.
+ * <p>
+ * The status of a span ended by the tracer is the one the tracer reports, read without converting the span. The
+ * spans of a trace are converted to match the attribute rules only when no other rule kept the trace.
+ * <p>
+ * JSON form: <pre>{ "decisionWait": 10000, "maxBufferedBytes": 10485760, "keepErrors": true, "latencyThreshold": 500,
+ * "attributes": { "http.status_code": "429" } }</pre>
+ */
+public class TailSamplingOptions {
+
+  public static final long DEFAULT_DECISION_WAIT = 10_000; // ms
+  public static final long DEFAULT_MAX_BUFFERED_BYTES = 10 * 1024 * 1024;
+  public static final boolean DEFAULT_KEEP_ERRORS = true;
+  public static final long DEFAULT_LATENCY_THRESHOLD = 0; // ms, disabled
+
+  private long decisionWait = DEFAULT_DECISION_WAIT;
+  private long maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+  private boolean keepErrors = DEFAULT_KEEP_ERRORS;
+  private long latencyThreshold = DEFAULT_LATENCY_THRESHOLD;
+  private Map<String, String> attributes = new LinkedHashMap<>();
+
+  public TailSamplingOptions() {
+  }
+
+  public TailSamplingOptions(TailSamplingOptions other) {
+    this.decisionWait = other.decisionWait;
+    this.maxBufferedBytes = other.maxBufferedBytes;
+    this.keepErrors = other.keepErrors;
+    this.latencyThreshold = other.latencyThreshold;
+    this.attributes = new LinkedHashMap<>(other.attributes);
+  }
+
+  public TailSamplingOptions(JsonObject json) {
+    setDecisionWait(json.getLong("decisionWait", DEFAULT_DECISION_WAIT));
+    setMaxBufferedBytes(json.getLong("maxBufferedBytes", DEFAULT_MAX_BUFFERED_BYTES));
+    setKeepErrors(json.getBoolean("keepErrors", DEFAULT_KEEP_ERRORS));
+    setLatencyThreshold(json.getLong("latencyThreshold", DEFAULT_LATENCY_THRESHOLD));
+    JsonObject attributes = json.getJsonObject("attributes");
+    if (attributes != null) {
+      attributes.forEach(entry -> addAttribute(entry.getKey(), String.valueOf(entry.getValue())));
+    }
+  }
+
+  public long getDecisionWait() {
+    return decisionWait;
+  }
+
+  /**
+   * Set the maximum time in ms a trace stays buffered waiting for its local root span.
+   *
+   * @param decisionWait the delay in ms
+   * @return a reference to this, so the API can be used fluently
+   */
+  public TailSamplingOptions setDecisionWait(long decisionWait) {
+    if (decisionWait < 1) {
+      throw new IllegalArgumentException("decisionWait must be > 0");
+    }
+    this.decisionWait = decisionWait;
+    return this;
+  }
+
+  public long getMaxBufferedBytes() {
+    return maxBufferedBytes;
+  }
+
+  /**
+   * Set the maximum estimated size in bytes of the finished spans kept in memory, the oldest traces are decided when
+   * it is reached.
+   *
+   * @param maxBufferedBytes the buffer capacity in bytes
+   * @return a reference to this, so the API can be used fluently
+   */
+  public TailSamplingOptions setMaxBufferedBytes(long maxBufferedBytes) {
+    if (maxBufferedBytes < 1) {
+      throw new IllegalArgumentException("maxBufferedBytes must be > 0");
+    }
+    this.maxBufferedBytes = maxBufferedBytes;
+    return this;
+  }
+
+  public boolean isKeepErrors() {
+    return keepErrors;
+  }
+
+  /**
+   * Set whether traces having a span with an error status are kept.
+   *
+   * @param keepErrors {@code true} to keep the failed traces
+   * @return a reference to this, so the API can be used fluently
+   */
+  public TailSamplingOptions setKeepErrors(boolean keepErrors) {
+    this.keepErrors = keepErrors;
+    return this;
+  }
+
+  public long getLatencyThreshold() {
+    return latencyThreshold;
+  }
+
+  /**
+   * Set the latency in ms above which a span makes its trace kept, {@code 0} disables the rule.
+   *
+   * @param latencyThreshold the threshold in ms
+   * @return a reference to this, so the API can be used fluently
+   */
+  public TailSamplingOptions setLatencyThreshold(long latencyThreshold) {
+    if (latencyThreshold < 0) {
+      throw new IllegalArgumentException("latencyThreshold must be >= 0");
+    }
+    this.latencyThreshold = latencyThreshold;
+    return this;
+  }
+
+  public Map<String, String> getAttributes() {
+    return Collections.unmodifiableMap(attributes);
+  }
+
+  /**
+   * Keep the traces having a span with the given attribute value.
+   *
+   * @param name the attribute name
+   * @param value the attribute value
+   * @return a reference to this, so the API can be used fluently
+   */
+  public TailSamplingOptions addAttribute(String name, String value) {
+    this.attributes.put(name, value);
+    return this;
+  }
+
+  public JsonObject toJson() {
+    return new JsonObject()
+      .put("decisionWait", decisionWait)
+      .put("maxBufferedBytes", maxBufferedBytes)
+      .put("keepErrors", keepErrors)
+      .put("latencyThreshold", latencyThreshold)
+      .put("attributes", new JsonObject(new LinkedHashMap<>(attributes)));
+  }
+}
@@ -0,0 +1,62 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.sdk.trace.IdsGenerator;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceId;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An {@link IdsGenerator} drawing the ids from the {@link ThreadLocalRandom} of the calling thread: each event loop has
+ * a generator of its own, seeded when the thread first uses it, and generating an id is neither contended nor boxed.
+ * <p>
+ * With timestamps the first 8 hex digits of a trace id are the epoch second it was generated at, as in AWS X-Ray, and
+ * the trace ids sort by time. The 96 other bits are random.
+ */
+@ThreadSafe
+public final class ThreadLocalIdsGenerator implements IdsGenerator {
+
+  private final boolean timestamped;
+
+  public ThreadLocalIdsGenerator() {
+    this(false);
+  }
+
+  /**
+   * @param timestamped {@code true} to start the trace ids with the epoch second
+   */
+  public ThreadLocalIdsGenerator(boolean timestamped) {
+    this.timestamped = timestamped;
+  }
+
+  public boolean isTimestamped() {
+    return timestamped;
+  }
+
+  @Override
+  public SpanId generateSpanId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long id;
+    do {
+      id = random.nextLong();
+    } while (id == 0);
+    return new SpanId(id);
+  }
+
+  @Override
+  public TraceId generateTraceId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (timestamped) {
+      long seconds = System.currentTimeMillis() / 1000;
+      return new TraceId(seconds << 32 | (random.nextInt() & 0xffffffffL), random.nextLong());
+    }
+    long high;
+    long low;
+    do {
+      high = random.nextLong();
+      low = random.nextLong();
+    } while (high == 0 && low == 0);
+    return new TraceId(high, low);
+  }
+}
@@ -0,0 +1,319 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.TraceState;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The trace context headers of the configured {@link PropagationFormat}s, read and written without the propagators of
+ * the OpenTelemetry API.
+ * <p>
+ * The ids are decoded from the header value straight into longs, without substrings nor byte arrays, and the outbound
+ * values are written in a char buffer reused by the thread. The context of an inbound request is read from the first
+ * format found in its headers, an outbound request carries all of them.
+ * <p>
+ * The {@code b3} header is read as {@code {traceId}-{spanId}-{sampled}-{parentSpanId}}, a 64 bits trace id is padded
+ * and a missing sampling state is read as not sampled. It is written with the sampling state and without the parent.
+ */
+final class TracePropagation {
+
+  static final String TRACEPARENT = "traceparent";
+  static final String TRACESTATE = "tracestate";
+  static final String B3 = "b3";
+
+  private static final int TRACE_ID_LENGTH = 32;
+  private static final int SPAN_ID_LENGTH = 16;
+  // 00-{trace id}-{span id}-{flags}
+  private static final int TRACE_ID_OFFSET = 3;
+  private static final int SPAN_ID_OFFSET = TRACE_ID_OFFSET + TRACE_ID_LENGTH + 1;
+  private static final int FLAGS_OFFSET = SPAN_ID_OFFSET + SPAN_ID_LENGTH + 1;
+  private static final int TRACEPARENT_LENGTH = FLAGS_OFFSET + 2;
+  private static final int MAX_TRACESTATE_MEMBERS = 32;
+
+  private static final TraceFlags SAMPLED = TraceFlags.builder().setIsSampled(true).build();
+  private static final TraceFlags NOT_SAMPLED = TraceFlags.getDefault();
+
+  private static final byte[] HEX = new byte[128];
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  static {
+    Arrays.fill(HEX, (byte) -1);
+    for (int idx = 0; idx < HEX_DIGITS.length; idx++) {
+      HEX[HEX_DIGITS[idx]] = (byte) idx;
+    }
+  }
+
+  private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[TRACEPARENT_LENGTH]);
+
+  private final PropagationFormat[] formats;
+
+  /**
+   * @param formats the formats by order of precedence when reading the headers
+   */
+  TracePropagation(Collection<PropagationFormat> formats) {
+    this.formats = formats.toArray(new PropagationFormat[0]);
+  }
+
+  /**
+   * @return the remote span context of {@code headers} or {@code null} when there is none
+   */
+  SpanContext extract(Iterable<Map.Entry<String, String>> headers) {
+    for (PropagationFormat format : formats) {
+      SpanContext spanContext;
+      switch (format) {
+        case W3C:
+          String traceparent = HeadersGetter.INSTANCE.get(headers, TRACEPARENT);
+          spanContext = traceparent == null ? null :
+            parseTraceparent(traceparent, HeadersGetter.INSTANCE.get(headers, TRACESTATE));
+          break;
+        case B3:
+          String b3 = HeadersGetter.INSTANCE.get(headers, B3);
+          spanContext = b3 == null ? null : parseB3(b3);
+          break;
+        default:
+          throw new AssertionError(format);
+      }
+      if (spanContext != null) {
+        return spanContext;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Write the headers of each format for {@code spanContext}.
+   */
+  void inject(SpanContext spanContext, BiConsumer<String, String> headers) {
+    for (PropagationFormat format : formats) {
+      switch (format) {
+        case W3C:
+          headers.accept(TRACEPARENT, formatTraceparent(spanContext));
+          List<TraceState.Entry> entries = spanContext.getTraceState().getEntries();
+          if (!entries.isEmpty()) {
+            headers.accept(TRACESTATE, formatTraceState(entries));
+          }
+          break;
+        case B3:
+          headers.accept(B3, formatB3(spanContext));
+          break;
+        default:
+          throw new AssertionError(format);
+      }
+    }
+  }
+
+  /**
+   * @param value      the {@code traceparent} value
+   * @param traceState the {@code tracestate} value or {@code null}
+   * @return the remote span context or {@code null} when the {@code traceparent} is malformed
+   */
+  static SpanContext parseTraceparent(CharSequence value, CharSequence traceState) {
+    int length = value.length();
+    if (length < TRACEPARENT_LENGTH || !isHex(value, 0, 2) || value.charAt(2) != '-'
+      || value.charAt(SPAN_ID_OFFSET - 1) != '-' || value.charAt(FLAGS_OFFSET - 1) != '-') {
+      return null;
+    }
+    int version = (int) readHex(value, 0, 2);
+    // the fields of a later version follow the ones of version 00
+    if (version == 0xff || (version == 0 && length != TRACEPARENT_LENGTH)
+      || (length > TRACEPARENT_LENGTH && value.charAt(TRACEPARENT_LENGTH) != '-')) {
+      return null;
+    }
+    if (!isHex(value, TRACE_ID_OFFSET, TRACE_ID_LENGTH) || !isHex(value, SPAN_ID_OFFSET, SPAN_ID_LENGTH)
+      || !isHex(value, FLAGS_OFFSET, 2)) {
+      return null;
+    }
+    long traceIdHigh = readHex(value, TRACE_ID_OFFSET, 16);
+    long traceIdLow = readHex(value, TRACE_ID_OFFSET + 16, 16);
+    long spanId = readHex(value, SPAN_ID_OFFSET, SPAN_ID_LENGTH);
+    if ((traceIdHigh == 0 && traceIdLow == 0) || spanId == 0) {
+      return null;
+    }
+    TraceFlags flags = flags((byte) readHex(value, FLAGS_OFFSET, 2));
+    return SpanContext.createFromRemoteParent(new TraceId(traceIdHigh, traceIdLow), new SpanId(spanId), flags,
+      traceState == null ? TraceState.getDefault() : parseTraceState(traceState));
+  }
+
+  /**
+   * @return the trace state of the {@code tracestate} value, the default one when it is malformed
+   */
+  static TraceState parseTraceState(CharSequence value) {
+    TraceState.Builder builder = TraceState.builder();
+    int members = 0;
+    // the builder adds each member in front of the others
+    int end = value.length();
+    while (end >= 0) {
+      int start = lastIndexOf(value, ',', end - 1) + 1;
+      int from = start;
+      int to = end;
+      while (from < to && isWhitespace(value.charAt(from))) {
+        from++;
+      }
+      while (to > from && isWhitespace(value.charAt(to - 1))) {
+        to--;
+      }
+      // empty members are allowed
+      if (from < to) {
+        int equals = indexOf(value, '=', from, to);
+        if (equals <= from || ++members > MAX_TRACESTATE_MEMBERS) {
+          return TraceState.getDefault();
+        }
+        try {
+          builder.set(value.subSequence(from, equals).toString(), value.subSequence(equals + 1, to).toString());
+        } catch (IllegalArgumentException e) {
+          return TraceState.getDefault();
+        }
+      }
+      end = start - 1;
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return the remote span context of the {@code b3} value or {@code null} when it is malformed or only carries a
+   * sampling state
+   */
+  static SpanContext parseB3(CharSequence value) {
+    int length = value.length();
+    int traceIdLength = indexOf(value, '-', 0, length);
+    if (traceIdLength != TRACE_ID_LENGTH && traceIdLength != 16) {
+      return null;
+    }
+    int spanIdOffset = traceIdLength + 1;
+    int spanIdEnd = spanIdOffset + SPAN_ID_LENGTH;
+    if (length < spanIdEnd || !isHex(value, 0, traceIdLength) || !isHex(value, spanIdOffset, SPAN_ID_LENGTH)) {
+      return null;
+    }
+    TraceFlags flags = NOT_SAMPLED;
+    if (length > spanIdEnd) {
+      if (length < spanIdEnd + 2 || value.charAt(spanIdEnd) != '-') {
+        return null;
+      }
+      switch (value.charAt(spanIdEnd + 1)) {
+        case '1':
+        case 'd':
+          flags = SAMPLED;
+          break;
+        case '0':
+          break;
+        default:
+          return null;
+      }
+      int parentOffset = spanIdEnd + 3;
+      if (length > spanIdEnd + 2 && (length != parentOffset + SPAN_ID_LENGTH
+        || value.charAt(spanIdEnd + 2) != '-' || !isHex(value, parentOffset, SPAN_ID_LENGTH))) {
+        return null;
+      }
+    }
+    long traceIdHigh = traceIdLength == TRACE_ID_LENGTH ? readHex(value, 0, 16) : 0;
+    long traceIdLow = readHex(value, traceIdLength - 16, 16);
+    long spanId = readHex(value, spanIdOffset, SPAN_ID_LENGTH);
+    if ((traceIdHigh == 0 && traceIdLow == 0) || spanId == 0) {
+      return null;
+    }
+    return SpanContext.createFromRemoteParent(new TraceId(traceIdHigh, traceIdLow), new SpanId(spanId), flags,
+      TraceState.getDefault());
+  }
+
+  static String formatTraceparent(SpanContext spanContext) {
+    char[] buffer = BUFFER.get();
+    buffer[0] = '0';
+    buffer[1] = '0';
+    buffer[TRACE_ID_OFFSET - 1] = '-';
+    spanContext.getTraceId().copyLowerBase16To(buffer, TRACE_ID_OFFSET);
+    buffer[SPAN_ID_OFFSET - 1] = '-';
+    spanContext.getSpanId().copyLowerBase16To(buffer, SPAN_ID_OFFSET);
+    buffer[FLAGS_OFFSET - 1] = '-';
+    byte flags = spanContext.getTraceFlags().getByte();
+    buffer[FLAGS_OFFSET] = HEX_DIGITS[(flags >> 4) & 0xf];
+    buffer[FLAGS_OFFSET + 1] = HEX_DIGITS[flags & 0xf];
+    return new String(buffer, 0, TRACEPARENT_LENGTH);
+  }
+
+  static String formatB3(SpanContext spanContext) {
+    char[] buffer = BUFFER.get();
+    spanContext.getTraceId().copyLowerBase16To(buffer, 0);
+    buffer[TRACE_ID_LENGTH] = '-';
+    int spanIdOffset = TRACE_ID_LENGTH + 1;
+    spanContext.getSpanId().copyLowerBase16To(buffer, spanIdOffset);
+    buffer[spanIdOffset + SPAN_ID_LENGTH] = '-';
+    buffer[spanIdOffset + SPAN_ID_LENGTH + 1] = spanContext.getTraceFlags().isSampled() ? '1' : '0';
+    return new String(buffer, 0, spanIdOffset + SPAN_ID_LENGTH + 2);
+  }
+
+  private static String formatTraceState(List<TraceState.Entry> entries) {
+    StringBuilder sb = new StringBuilder(entries.size() * 16);
+    for (TraceState.Entry entry : entries) {
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      sb.append(entry.getKey()).append('=').append(entry.getValue());
+    }
+    return sb.toString();
+  }
+
+  private static TraceFlags flags(byte flags) {
+    switch (flags) {
+      case 0:
+        return NOT_SAMPLED;
+      case 1:
+        return SAMPLED;
+      default:
+        return TraceFlags.fromByte(flags);
+    }
+  }
+
+  /**
+   * @return whether the {@code length} characters at {@code offset} are lower case hex digits
+   */
+  private static boolean isHex(CharSequence value, int offset, int length) {
+    for (int idx = offset; idx < offset + length; idx++) {
+      char c = value.charAt(idx);
+      if (c >= HEX.length || HEX[c] < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the value of at most 16 hex digits checked with {@link #isHex}
+   */
+  private static long readHex(CharSequence value, int offset, int length) {
+    long l = 0;
+    for (int idx = offset; idx < offset + length; idx++) {
+      l = (l << 4) | HEX[value.charAt(idx)];
+    }
+    return l;
+  }
+
+  private static int indexOf(CharSequence value, char c, int from, int to) {
+    for (int idx = from; idx < to; idx++) {
+      if (value.charAt(idx) == c) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  private static int lastIndexOf(CharSequence value, char c, int from) {
+    for (int idx = from; idx >= 0; idx--) {
+      if (value.charAt(idx) == c) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t';
+  }
+}
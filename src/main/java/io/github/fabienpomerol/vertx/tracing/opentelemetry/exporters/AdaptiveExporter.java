@@ -0,0 +1,209 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Vertx;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wrap an exporter so that a slow or failing backend never slows down the threads ending the spans.
+ * <p>
+ * The spans are exported by a background worker from a bounded queue, handing a batch over costs a queue insertion
+ * whatever the state of the backend and the batches exceeding the queue are shed. The worker tracks the latency and the
+ * failures of the exports, a degraded backend opens a circuit shedding the spans without queueing them until a trial
+ * export succeeds.
+ * <p>
+ * {@link #getPressure()} reports how close the exporter is to shedding, the tracer lowers the sampling rate of the new
+ * traces while it is high, see {@link io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers.PressureSampler}.
+ */
+@ThreadSafe
+public final class AdaptiveExporter implements BackendExporter {
+
+  private static final int FAILURE_THRESHOLD_DEFAULT = 5;
+  private static final long SLOW_EXPORT_THRESHOLD_DEFAULT = 500; // ms
+  private static final long OPEN_DURATION_DEFAULT = 10_000; // ms
+  private static final int MAX_PENDING_SPANS_DEFAULT = 4096;
+
+  /**
+   * The state of the circuit.
+   */
+  public enum State {
+    /** The spans are exported */
+    CLOSED,
+    /** The backend is degraded, the spans are shed */
+    OPEN,
+    /** A trial export decides whether the circuit closes */
+    HALF_OPEN
+  }
+
+  private final BackendExporter exporter;
+  private final AdaptiveSpanExporter spanExporter;
+
+  private AdaptiveExporter(BackendExporter exporter, AdaptiveSpanExporter spanExporter) {
+    this.exporter = exporter;
+    this.spanExporter = spanExporter;
+  }
+
+  @Override
+  public SpanExporter getSpanExporter() {
+    return spanExporter;
+  }
+
+  @Override
+  public void start(Vertx vertx) {
+    exporter.start(vertx);
+    spanExporter.start();
+  }
+
+  @Override
+  public boolean reportCompletions(TracerStats.Exporter stats) {
+    spanExporter.setStats(stats);
+    return true;
+  }
+
+  public State getState() {
+    return spanExporter.getState();
+  }
+
+  /**
+   * @return between {@code 0} with an empty queue and {@code 1} with a full queue or an open circuit
+   */
+  public double getPressure() {
+    return spanExporter.getPressure();
+  }
+
+  /**
+   * @return the number of spans successfully exported by the wrapped exporter
+   */
+  public long getExportedSpans() {
+    return spanExporter.getExportedSpans();
+  }
+
+  /**
+   * @return the number of spans the wrapped exporter failed to export
+   */
+  public long getFailedSpans() {
+    return spanExporter.getFailedSpans();
+  }
+
+  /**
+   * @return the number of spans shed because the queue was full or the circuit open
+   */
+  public long getShedSpans() {
+    return spanExporter.getShedSpans();
+  }
+
+  /**
+   * @return the number of spans waiting to be exported
+   */
+  public int getPendingSpans() {
+    return spanExporter.getPendingSpans();
+  }
+
+  /**
+   * @return the moving average of the export latency in ms
+   */
+  public double getAverageLatency() {
+    return spanExporter.getAverageLatency();
+  }
+
+  @Override
+  public void flush() {
+    exporter.flush();
+  }
+
+  @Override
+  public void shutdown() {
+    exporter.shutdown();
+  }
+
+  @Override
+  public Map<String, Long> stats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("exportedSpans", getExportedSpans());
+    stats.put("failedSpans", getFailedSpans());
+    stats.put("shedSpans", getShedSpans());
+    stats.put("pendingSpans", (long) getPendingSpans());
+    return stats;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private BackendExporter exporter;
+    private int failureThreshold = FAILURE_THRESHOLD_DEFAULT;
+    private long slowExportThreshold = SLOW_EXPORT_THRESHOLD_DEFAULT;
+    private long openDuration = OPEN_DURATION_DEFAULT;
+    private int maxPendingSpans = MAX_PENDING_SPANS_DEFAULT;
+
+    /**
+     * Set the wrapped exporter.
+     */
+    public Builder setExporter(BackendExporter exporter) {
+      this.exporter = exporter;
+      return this;
+    }
+
+    /**
+     * Set the number of consecutive failed or slow exports opening the circuit.
+     */
+    public Builder setFailureThreshold(int failureThreshold) {
+      if (failureThreshold < 1) {
+        throw new IllegalArgumentException("failureThreshold must be > 0");
+      }
+      this.failureThreshold = failureThreshold;
+      return this;
+    }
+
+    /**
+     * Set the duration in ms above which a successful export counts as a failure.
+     */
+    public Builder setSlowExportThreshold(long slowExportThreshold) {
+      if (slowExportThreshold < 1) {
+        throw new IllegalArgumentException("slowExportThreshold must be > 0");
+      }
+      this.slowExportThreshold = slowExportThreshold;
+      return this;
+    }
+
+    /**
+     * Set the duration in ms the circuit stays open before a trial export.
+     */
+    public Builder setOpenDuration(long openDuration) {
+      if (openDuration < 0) {
+        throw new IllegalArgumentException("openDuration must be >= 0");
+      }
+      this.openDuration = openDuration;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of spans waiting to be exported, the batches above are shed.
+     */
+    public Builder setMaxPendingSpans(int maxPendingSpans) {
+      if (maxPendingSpans < 1) {
+        throw new IllegalArgumentException("maxPendingSpans must be > 0");
+      }
+      this.maxPendingSpans = maxPendingSpans;
+      return this;
+    }
+
+    /**
+     * Constructs a new instance of the exporter based on the builder's values.
+     *
+     * @return a new exporter's instance
+     */
+    public AdaptiveExporter build() {
+      if (exporter == null) {
+        throw new IllegalArgumentException("exporter must be set");
+      }
+      return new AdaptiveExporter(exporter, new AdaptiveSpanExporter(exporter.getSpanExporter(), failureThreshold,
+        slowExportThreshold, openDuration, maxPendingSpans));
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hand the spans to a worker exporting them to a delegate exporter, behind a circuit breaker.
+ * <p>
+ * {@link #export(Collection)} only queues the batch, the caller never waits for the delegate: the batch is shed when
+ * the queue holds {@code maxPendingSpans} spans or when the circuit is open. The worker measures each export, a failed
+ * export or one slower than {@code slowExportThreshold} is a failure, {@code failureThreshold} consecutive failures
+ * open the circuit. After {@code openDuration} the circuit is half open, the next batch is a trial closing the circuit
+ * when it succeeds and opening it again otherwise.
+ */
+final class AdaptiveSpanExporter implements SpanExporter {
+
+  private static final Logger logger = Logger.getLogger(AdaptiveSpanExporter.class.getName());
+  private static final AtomicInteger WORKER_ID = new AtomicInteger();
+  private static final long POLL_TIMEOUT = 100; // ms
+  // weight of the last export in the average latency
+  private static final double LATENCY_WEIGHT = 0.2;
+
+  private final SpanExporter delegate;
+  private final int failureThreshold;
+  private final long slowExportThreshold;
+  private final long openDuration;
+  private final int maxPendingSpans;
+  private final LinkedBlockingQueue<Collection<SpanData>> queue = new LinkedBlockingQueue<>();
+  private final AtomicInteger pendingSpans = new AtomicInteger();
+
+  // guarded by this
+  private Thread worker;
+
+  private final LongAdder exportedSpans = new LongAdder();
+  private final LongAdder failedSpans = new LongAdder();
+  private final LongAdder shedSpans = new LongAdder();
+
+  // written by the worker only
+  private volatile AdaptiveExporter.State state = AdaptiveExporter.State.CLOSED;
+  private volatile long openedAt;
+  private volatile double averageLatency;
+  private int consecutiveFailures;
+
+  private volatile boolean stopped;
+  private volatile TracerStats.Exporter stats;
+
+  AdaptiveSpanExporter(SpanExporter delegate, int failureThreshold, long slowExportThreshold, long openDuration,
+                       int maxPendingSpans) {
+    this.delegate = delegate;
+    this.failureThreshold = failureThreshold;
+    this.slowExportThreshold = TimeUnit.MILLISECONDS.toNanos(slowExportThreshold);
+    this.openDuration = TimeUnit.MILLISECONDS.toNanos(openDuration);
+    this.maxPendingSpans = maxPendingSpans;
+  }
+
+  /**
+   * Start the worker, the batches exported before are queued.
+   */
+  synchronized void start() {
+    if (worker != null || stopped) {
+      return;
+    }
+    worker = new Thread(this::work, "vertx-opentelemetry-adaptive-" + WORKER_ID.getAndIncrement());
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  void setStats(TracerStats.Exporter stats) {
+    this.stats = stats;
+  }
+
+  @Override
+  public ResultCode export(Collection<SpanData> spans) {
+    if (stopped || state == AdaptiveExporter.State.OPEN && System.nanoTime() - openedAt < openDuration) {
+      shedSpans.add(spans.size());
+      return ResultCode.FAILED_RETRYABLE;
+    }
+    if (pendingSpans.addAndGet(spans.size()) > maxPendingSpans) {
+      pendingSpans.addAndGet(-spans.size());
+      shedSpans.add(spans.size());
+      return ResultCode.FAILED_RETRYABLE;
+    }
+    // the caller may reuse its collection
+    queue.add(new ArrayList<>(spans));
+    return ResultCode.SUCCESS;
+  }
+
+  private void work() {
+    while (!stopped) {
+      Collection<SpanData> batch;
+      try {
+        batch = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (batch != null) {
+        process(batch);
+      }
+    }
+  }
+
+  private void process(Collection<SpanData> batch) {
+    try {
+      if (state == AdaptiveExporter.State.OPEN) {
+        if (System.nanoTime() - openedAt < openDuration) {
+          // queued before the circuit opened
+          shedSpans.add(batch.size());
+          return;
+        }
+        state = AdaptiveExporter.State.HALF_OPEN;
+      }
+      long start = System.nanoTime();
+      ResultCode result;
+      try {
+        result = delegate.export(batch);
+      } catch (RuntimeException e) {
+        logger.log(Level.FINE, "Exporter failed", e);
+        result = ResultCode.FAILED_RETRYABLE;
+      }
+      long latency = System.nanoTime() - start;
+      averageLatency = averageLatency == 0 ? latency : averageLatency + LATENCY_WEIGHT * (latency - averageLatency);
+      if (result == ResultCode.SUCCESS) {
+        exportedSpans.add(batch.size());
+      } else {
+        failedSpans.add(batch.size());
+      }
+      TracerStats.Exporter stats = this.stats;
+      if (stats != null) {
+        stats.completed(batch.size(), result == ResultCode.SUCCESS, latency);
+      }
+      if (result == ResultCode.SUCCESS && latency <= slowExportThreshold) {
+        consecutiveFailures = 0;
+        state = AdaptiveExporter.State.CLOSED;
+      } else if (state == AdaptiveExporter.State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+        open();
+      }
+    } finally {
+      pendingSpans.addAndGet(-batch.size());
+    }
+  }
+
+  private void open() {
+    if (state != AdaptiveExporter.State.OPEN) {
+      logger.log(Level.WARNING, "Exporter degraded, shedding the spans for " +
+        TimeUnit.NANOSECONDS.toMillis(openDuration) + " ms");
+    }
+    consecutiveFailures = 0;
+    openedAt = System.nanoTime();
+    state = AdaptiveExporter.State.OPEN;
+  }
+
+  AdaptiveExporter.State getState() {
+    return state;
+  }
+
+  /**
+   * @return the queue fill ratio, {@code 1} while the circuit is open
+   */
+  double getPressure() {
+    if (state == AdaptiveExporter.State.OPEN) {
+      return 1;
+    }
+    return Math.min(1, (double) pendingSpans.get() / maxPendingSpans);
+  }
+
+  long getExportedSpans() {
+    return exportedSpans.sum();
+  }
+
+  long getFailedSpans() {
+    return failedSpans.sum();
+  }
+
+  long getShedSpans() {
+    return shedSpans.sum();
+  }
+
+  int getPendingSpans() {
+    return pendingSpans.get();
+  }
+
+  double getAverageLatency() {
+    return averageLatency / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public void shutdown() {
+    Thread worker;
+    synchronized (this) {
+      if (stopped) {
+        return;
+      }
+      stopped = true;
+      worker = this.worker;
+    }
+    if (worker != null) {
+      try {
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    Collection<SpanData> batch;
+    while ((batch = queue.poll()) != null) {
+      process(batch);
+    }
+    delegate.shutdown();
+  }
+}
@@ -1,5 +1,65 @@
 package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
 
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Vertx;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A backend receiving the finished spans and its lifecycle.
+ * <p>
+ * The tracer starts the exporters with the traced Vert.x instance. When Vert.x is closed, it shuts down the span
+ * processors, which export the pending spans and shut down the span exporters, then it shuts down the exporters.
+ */
 public interface BackendExporter {
 
+  /**
+   * @return the exporter receiving the finished spans, wired by the tracer either directly or through a batch
+   */
+  SpanExporter getSpanExporter();
+
+  /**
+   * Called once with the traced Vert.x instance when the tracer starts its first span, exporters sending their spans
+   * with Vert.x can bind to it.
+   *
+   * @param vertx the Vert.x instance
+   */
+  default void start(Vertx vertx) {
+  }
+
+  /**
+   * Called once by the tracer with the counters of the exporter, before {@link #start(Vertx)}. An exporter whose span
+   * exporter only queues the spans reports each send to its backend with {@link TracerStats.Exporter#completed}, the
+   * tracer then does not time the calls to {@link SpanExporter#export}.
+   *
+   * @param stats the counters of the exporter
+   * @return {@code true} when the exporter reports its sends
+   */
+  default boolean reportCompletions(TracerStats.Exporter stats) {
+    return false;
+  }
+
+  /**
+   * Send the spans buffered by the exporter itself without waiting for its schedule, it does not wait for them to be
+   * sent. The spans buffered by a batch are flushed by its span processor, {@code OpenTelemetryTracer#flush()} flushes
+   * the span processors before the exporters.
+   */
+  default void flush() {
+  }
+
+  /**
+   * Release the resources of the exporter other than its span exporter, e.g. a wrapped exporter. The tracer calls it
+   * when Vert.x is closed, once the span processors have shut down the span exporter.
+   */
+  default void shutdown() {
+  }
+
+  /**
+   * @return the current values of the counters of the exporter, e.g. {@code exportedSpans}, read without lock
+   */
+  default Map<String, Long> stats() {
+    return Collections.emptyMap();
+  }
 }
@@ -0,0 +1,226 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Locale;
+
+/**
+ * Create the exporters from their JSON configuration, the keys are the names of the builder setters:
+ * <pre>
+ * { "type": "jaeger", "serviceName": "MyService", "ip": "127.0.0.1", "port": 14250, "deadline": 1000 }
+ * { "type": "otlp", "protocol": "http_protobuf", "host": "collector", "compression": true, "maxRetries": 5 }
+ * { "type": "zipkin", "serviceName": "MyService", "host": "zipkin", "batchSize": 512 }
+ * { "type": "logging" }
+ * { "type": "file", "directory": "/var/log/spans", "maxFileSize": 104857600, "compression": true }
+ * { "type": "in_memory", "capacity": 8192, "overflowPolicy": "drop_newest" }
+ * { "type": "spooling", "directory": "/var/spool/spans", "maxSize": 268435456, "exporter": { "type": "otlp" } }
+ * { "type": "adaptive", "failureThreshold": 5, "exporter": { "type": "otlp" } }
+ * </pre>
+ * The keys not set keep the defaults of the builders.
+ */
+public final class BackendExporters {
+
+  private BackendExporters() {
+  }
+
+  /**
+   * @param json the configuration of the exporter
+   * @return a new exporter
+   * @throws IllegalArgumentException when the type is missing or unknown, or a value is invalid
+   */
+  public static BackendExporter fromJson(JsonObject json) {
+    String type = json.getString("type");
+    if (type == null) {
+      throw new IllegalArgumentException("exporter type must be set");
+    }
+    switch (type.toLowerCase(Locale.ROOT)) {
+      case "jaeger":
+        return jaeger(json);
+      case "otlp":
+        return otlp(json);
+      case "zipkin":
+        return zipkin(json);
+      case "logging":
+        return LoggingExporter.newBuilder().build();
+      case "file":
+        return file(json);
+      case "in_memory":
+      case "inmemory":
+        return inMemory(json);
+      case "spooling":
+        return spooling(json);
+      case "adaptive":
+        return adaptive(json);
+      default:
+        throw new IllegalArgumentException("Unknown exporter type " + type);
+    }
+  }
+
+  private static JaegerExporter jaeger(JsonObject json) {
+    JaegerExporter.Builder builder = JaegerExporter.newBuilder()
+      .setServiceName(json.getString("serviceName"));
+    if (json.containsKey("ip")) {
+      builder.setIp(json.getString("ip"));
+    }
+    if (json.containsKey("port")) {
+      builder.setPort(json.getInteger("port"));
+    }
+    if (json.containsKey("deadline")) {
+      builder.setDeadline(json.getLong("deadline"));
+    }
+    return builder.build();
+  }
+
+  private static OtlpExporter otlp(JsonObject json) {
+    OtlpExporter.Builder builder = OtlpExporter.newBuilder();
+    if (json.containsKey("protocol")) {
+      builder.setProtocol(OtlpExporter.Protocol.valueOf(json.getString("protocol").toUpperCase(Locale.ROOT)));
+    }
+    if (json.containsKey("host")) {
+      builder.setHost(json.getString("host"));
+    }
+    if (json.containsKey("port")) {
+      builder.setPort(json.getInteger("port"));
+    }
+    if (json.containsKey("path")) {
+      builder.setPath(json.getString("path"));
+    }
+    if (json.containsKey("compression")) {
+      builder.setCompression(json.getBoolean("compression"));
+    }
+    if (json.containsKey("maxConcurrentExports")) {
+      builder.setMaxConcurrentExports(json.getInteger("maxConcurrentExports"));
+    }
+    if (json.containsKey("maxRetries")) {
+      builder.setMaxRetries(json.getInteger("maxRetries"));
+    }
+    if (json.containsKey("initialBackoff")) {
+      builder.setInitialBackoff(json.getLong("initialBackoff"));
+    }
+    if (json.containsKey("maxBackoff")) {
+      builder.setMaxBackoff(json.getLong("maxBackoff"));
+    }
+    if (json.containsKey("timeout")) {
+      builder.setTimeout(json.getLong("timeout"));
+    }
+    return builder.build();
+  }
+
+  private static ZipkinExporter zipkin(JsonObject json) {
+    ZipkinExporter.Builder builder = ZipkinExporter.newBuilder()
+      .setServiceName(json.getString("serviceName"));
+    if (json.containsKey("host")) {
+      builder.setHost(json.getString("host"));
+    }
+    if (json.containsKey("port")) {
+      builder.setPort(json.getInteger("port"));
+    }
+    if (json.containsKey("path")) {
+      builder.setPath(json.getString("path"));
+    }
+    if (json.containsKey("compression")) {
+      builder.setCompression(json.getBoolean("compression"));
+    }
+    if (json.containsKey("batchSize")) {
+      builder.setBatchSize(json.getInteger("batchSize"));
+    }
+    if (json.containsKey("flushInterval")) {
+      builder.setFlushInterval(json.getLong("flushInterval"));
+    }
+    if (json.containsKey("maxQueueSize")) {
+      builder.setMaxQueueSize(json.getInteger("maxQueueSize"));
+    }
+    if (json.containsKey("timeout")) {
+      builder.setTimeout(json.getLong("timeout"));
+    }
+    return builder.build();
+  }
+
+  private static FileExporter file(JsonObject json) {
+    FileExporter.Builder builder = FileExporter.newBuilder();
+    if (json.containsKey("directory")) {
+      builder.setDirectory(json.getString("directory"));
+    }
+    if (json.containsKey("fileName")) {
+      builder.setFileName(json.getString("fileName"));
+    }
+    if (json.containsKey("maxFileSize")) {
+      builder.setMaxFileSize(json.getLong("maxFileSize"));
+    }
+    if (json.containsKey("rotationInterval")) {
+      builder.setRotationInterval(json.getLong("rotationInterval"));
+    }
+    if (json.containsKey("compression")) {
+      builder.setCompression(json.getBoolean("compression"));
+    }
+    if (json.containsKey("maxFiles")) {
+      builder.setMaxFiles(json.getInteger("maxFiles"));
+    }
+    if (json.containsKey("maxQueueSize")) {
+      builder.setMaxQueueSize(json.getInteger("maxQueueSize"));
+    }
+    if (json.containsKey("timeout")) {
+      builder.setTimeout(json.getLong("timeout"));
+    }
+    return builder.build();
+  }
+
+  private static InMemoryExporter inMemory(JsonObject json) {
+    InMemoryExporter.Builder builder = InMemoryExporter.newBuilder();
+    if (json.containsKey("capacity")) {
+      builder.setCapacity(json.getInteger("capacity"));
+    }
+    if (json.containsKey("overflowPolicy")) {
+      builder.setOverflowPolicy(RingBufferSpanExporter.OverflowPolicy.valueOf(
+        json.getString("overflowPolicy").toUpperCase(Locale.ROOT)));
+    }
+    return builder.build();
+  }
+
+  private static SpoolingExporter spooling(JsonObject json) {
+    SpoolingExporter.Builder builder = SpoolingExporter.newBuilder()
+      .setExporter(delegate(json));
+    if (json.containsKey("directory")) {
+      builder.setDirectory(json.getString("directory"));
+    }
+    if (json.containsKey("segmentSize")) {
+      builder.setSegmentSize(json.getInteger("segmentSize"));
+    }
+    if (json.containsKey("maxSize")) {
+      builder.setMaxSize(json.getLong("maxSize"));
+    }
+    if (json.containsKey("replayRate")) {
+      builder.setReplayRate(json.getLong("replayRate"));
+    }
+    if (json.containsKey("retryInterval")) {
+      builder.setRetryInterval(json.getLong("retryInterval"));
+    }
+    return builder.build();
+  }
+
+  private static AdaptiveExporter adaptive(JsonObject json) {
+    AdaptiveExporter.Builder builder = AdaptiveExporter.newBuilder()
+      .setExporter(delegate(json));
+    if (json.containsKey("failureThreshold")) {
+      builder.setFailureThreshold(json.getInteger("failureThreshold"));
+    }
+    if (json.containsKey("slowExportThreshold")) {
+      builder.setSlowExportThreshold(json.getLong("slowExportThreshold"));
+    }
+    if (json.containsKey("openDuration")) {
+      builder.setOpenDuration(json.getLong("openDuration"));
+    }
+    if (json.containsKey("maxPendingSpans")) {
+      builder.setMaxPendingSpans(json.getInteger("maxPendingSpans"));
+    }
+    return builder.build();
+  }
+
+  private static BackendExporter delegate(JsonObject json) {
+    JsonObject exporter = json.getJsonObject("exporter");
+    if (exporter == null) {
+      throw new IllegalArgumentException("exporter must be set");
+    }
+    return fromJson(exporter);
+  }
+}
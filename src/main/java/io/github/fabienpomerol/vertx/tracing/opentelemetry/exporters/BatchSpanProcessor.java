@@ -0,0 +1,191 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.BatchOptions;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link SpanProcessor} queuing finished spans in a bounded queue and exporting them in batches from a
+ * dedicated worker thread, so that {@code span.end()} never waits for the exporter.
+ * <p>
+ * Spans ended while the queue is full are dropped and counted.
+ */
+@ThreadSafe
+public final class BatchSpanProcessor implements SpanProcessor {
+
+  private static final Logger logger = Logger.getLogger(BatchSpanProcessor.class.getName());
+  private static final AtomicInteger WORKER_ID = new AtomicInteger();
+
+  private final SpanExporter exporter;
+  private final BlockingQueue<ReadableSpan> queue;
+  private final int maxExportBatchSize;
+  private final long scheduleDelay;
+  private final Thread worker;
+  private final Object monitor = new Object();
+
+  private final LongAdder droppedSpans = new LongAdder();
+  private final LongAdder exportedSpans = new LongAdder();
+  private final LongAdder failedSpans = new LongAdder();
+
+  private volatile boolean stopped;
+
+  public BatchSpanProcessor(SpanExporter exporter, BatchOptions options) {
+    this.exporter = exporter;
+    this.queue = new ArrayBlockingQueue<>(options.getMaxQueueSize());
+    this.maxExportBatchSize = Math.min(options.getMaxExportBatchSize(), options.getMaxQueueSize());
+    this.scheduleDelay = options.getScheduleDelay();
+    this.worker = new Thread(this::work, "vertx-opentelemetry-batch-" + WORKER_ID.getAndIncrement());
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  @Override
+  public void onStart(ReadableSpan span) {
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    if (!span.getSpanContext().getTraceFlags().isSampled()) {
+      return;
+    }
+    if (stopped || !queue.offer(span)) {
+      droppedSpans.increment();
+    } else if (queue.size() >= maxExportBatchSize) {
+      synchronized (monitor) {
+        monitor.notify();
+      }
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+
+  /**
+   * Export all the queued spans from the calling thread.
+   */
+  @Override
+  public void forceFlush() {
+    List<ReadableSpan> batch = new ArrayList<>(maxExportBatchSize);
+    while (queue.drainTo(batch, maxExportBatchSize) > 0) {
+      export(batch);
+    }
+  }
+
+  /**
+   * Stop accepting spans, export the queued ones and shutdown the exporter once the worker no longer exports.
+   */
+  @Override
+  public void shutdown() {
+    if (stopped) {
+      return;
+    }
+    synchronized (monitor) {
+      stopped = true;
+      monitor.notify();
+    }
+    try {
+      worker.join(scheduleDelay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    forceFlush();
+    // a span ended concurrently may pass the stopped check of onEnd and be queued after the flush
+    droppedSpans.add(queue.drainTo(new ArrayList<>()));
+    // the worker may still be exporting when the join timed out
+    synchronized (exporter) {
+      exporter.shutdown();
+    }
+  }
+
+  /**
+   * @return the number of spans dropped because the queue was full or the processor stopped
+   */
+  public long getDroppedSpans() {
+    return droppedSpans.sum();
+  }
+
+  /**
+   * @return the number of spans successfully exported
+   */
+  public long getExportedSpans() {
+    return exportedSpans.sum();
+  }
+
+  /**
+   * @return the number of spans the exporter failed to export
+   */
+  public long getFailedSpans() {
+    return failedSpans.sum();
+  }
+
+  /**
+   * @return the number of spans currently waiting in the queue
+   */
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  private void work() {
+    List<ReadableSpan> batch = new ArrayList<>(maxExportBatchSize);
+    while (!stopped) {
+      if (queue.size() < maxExportBatchSize) {
+        synchronized (monitor) {
+          if (!stopped) {
+            try {
+              monitor.wait(scheduleDelay);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+            }
+          }
+        }
+      }
+      while (queue.drainTo(batch, maxExportBatchSize) > 0) {
+        export(batch);
+      }
+    }
+  }
+
+  private void export(List<ReadableSpan> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<SpanData> spans = new ArrayList<>(batch.size());
+    for (ReadableSpan span : batch) {
+      spans.add(span.toSpanData());
+    }
+    batch.clear();
+    // the worker and forceFlush() may export concurrently, exporters are not required to be thread safe
+    synchronized (exporter) {
+      try {
+        if (exporter.export(spans) == SpanExporter.ResultCode.SUCCESS) {
+          exportedSpans.add(spans.size());
+        } else {
+          failedSpans.add(spans.size());
+        }
+      } catch (Exception e) {
+        failedSpans.add(spans.size());
+        logger.log(Level.WARNING, "Exception thrown by the export", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Vertx;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Write the spans as newline-delimited JSON to a file, one span per line, e.g. for environments shipping the traces
+ * with their log files.
+ * <p>
+ * Exporting only queues the spans: a dedicated thread encodes them in batches into a direct buffer and appends them to
+ * {@code <fileName>.ndjson} with a {@link java.nio.channels.FileChannel}. The file is rotated by size and optionally
+ * by age to {@code <fileName>-<epoch millis>.ndjson}, compressed with gzip when enabled, and the oldest rotated files
+ * are deleted. It does not need batch options. The directory is created and the thread started with the tracer, see
+ * {@link #start(Vertx)}.
+ */
+@ThreadSafe
+public final class FileExporter implements BackendExporter {
+
+  private static final String FILE_NAME_DEFAULT = "spans";
+  private static final long MAX_FILE_SIZE_DEFAULT = 100L * 1024 * 1024;
+  private static final int MAX_FILES_DEFAULT = 10;
+
+  private final FileSpanExporter exporter;
+
+  private FileExporter(FileSpanExporter exporter) {
+    this.exporter = exporter;
+  }
+
+  @Override
+  public SpanExporter getSpanExporter() {
+    return exporter;
+  }
+
+  /**
+   * Create the directory and start the writer thread, the spans exported before are queued.
+   */
+  @Override
+  public void start(Vertx vertx) {
+    exporter.start();
+  }
+
+  @Override
+  public boolean reportCompletions(TracerStats.Exporter stats) {
+    exporter.setStats(stats);
+    return true;
+  }
+
+  /**
+   * @return the number of spans written to the file
+   */
+  public long getExportedSpans() {
+    return exporter.getExportedSpans();
+  }
+
+  /**
+   * @return the number of spans not written because of an I/O error
+   */
+  public long getFailedSpans() {
+    return exporter.getFailedSpans();
+  }
+
+  /**
+   * @return the number of spans dropped because the queue was full
+   */
+  public long getDroppedSpans() {
+    return exporter.getDroppedSpans();
+  }
+
+  /**
+   * @return the number of bytes written to the files
+   */
+  public long getWrittenBytes() {
+    return exporter.getWrittenBytes();
+  }
+
+  /**
+   * @return the number of files rotated
+   */
+  public long getRotatedFiles() {
+    return exporter.getRotatedFiles();
+  }
+
+  @Override
+  public Map<String, Long> stats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("exportedSpans", getExportedSpans());
+    stats.put("failedSpans", getFailedSpans());
+    stats.put("droppedSpans", getDroppedSpans());
+    stats.put("writtenBytes", getWrittenBytes());
+    stats.put("rotatedFiles", getRotatedFiles());
+    return stats;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private Path directory;
+    private String fileName = FILE_NAME_DEFAULT;
+    private long maxFileSize = MAX_FILE_SIZE_DEFAULT;
+    private long rotationInterval; // ms
+    private boolean compression;
+    private int maxFiles = MAX_FILES_DEFAULT;
+    private int maxQueueSize = 8192;
+    private long timeout = 10_000; // ms
+
+    /**
+     * Set the directory of the files, it should not be shared with another exporter using the same file name.
+     */
+    public Builder setDirectory(Path directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    public Builder setDirectory(String directory) {
+      return setDirectory(Paths.get(directory));
+    }
+
+    /**
+     * Set the name of the files without extension, {@code spans} by default.
+     */
+    public Builder setFileName(String fileName) {
+      if (fileName == null || fileName.isEmpty()) {
+        throw new IllegalArgumentException("fileName must not be empty");
+      }
+      this.fileName = fileName;
+      return this;
+    }
+
+    /**
+     * Set the size in bytes from which the file is rotated, 100 MiB by default.
+     */
+    public Builder setMaxFileSize(long maxFileSize) {
+      if (maxFileSize < 1) {
+        throw new IllegalArgumentException("maxFileSize must be > 0");
+      }
+      this.maxFileSize = maxFileSize;
+      return this;
+    }
+
+    /**
+     * Set the age in ms from which the file is rotated, {@code 0} by default to rotate by size only.
+     */
+    public Builder setRotationInterval(long rotationInterval) {
+      if (rotationInterval < 0) {
+        throw new IllegalArgumentException("rotationInterval must be >= 0");
+      }
+      this.rotationInterval = rotationInterval;
+      return this;
+    }
+
+    /**
+     * Set whether the rotated files are compressed with gzip.
+     */
+    public Builder setCompression(boolean compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of rotated files kept, 10 by default, {@code 0} to keep all of them.
+     */
+    public Builder setMaxFiles(int maxFiles) {
+      if (maxFiles < 0) {
+        throw new IllegalArgumentException("maxFiles must be >= 0");
+      }
+      this.maxFiles = maxFiles;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of spans waiting to be written, the spans ended while the queue is full are dropped.
+     */
+    public Builder setMaxQueueSize(int maxQueueSize) {
+      if (maxQueueSize < 1) {
+        throw new IllegalArgumentException("maxQueueSize must be > 0");
+      }
+      this.maxQueueSize = maxQueueSize;
+      return this;
+    }
+
+    /**
+     * Set the time in ms the shutdown waits for the queued spans to be written.
+     */
+    public Builder setTimeout(long timeout) {
+      if (timeout < 1) {
+        throw new IllegalArgumentException("timeout must be > 0");
+      }
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+     * Constructs a new instance of the exporter based on the builder's values, spans are appended to the file left in
+     * the directory once it starts.
+     *
+     * @return a new exporter's instance
+     */
+    public FileExporter build() {
+      if (directory == null) {
+        throw new IllegalArgumentException("directory must be set");
+      }
+      return new FileExporter(new FileSpanExporter(directory, fileName, maxFileSize, rotationInterval, compression,
+        maxFiles, maxQueueSize, timeout));
+    }
+  }
+}
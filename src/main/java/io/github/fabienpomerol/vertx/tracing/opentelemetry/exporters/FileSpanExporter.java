@@ -0,0 +1,390 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Queue the spans and append them as newline-delimited JSON to a file from a writer thread.
+ * <p>
+ * {@link #export} only queues the spans, the spans ended while the queue is full are dropped. The writer thread drains
+ * the queue in batches, encodes a batch into a direct buffer it reuses and writes it with a single {@link FileChannel}
+ * write, without forcing it to disk.
+ * <p>
+ * The file is rotated before a batch once it reaches the maximum size or, when a rotation interval is set, once it is
+ * older than the interval: it is renamed with the time of the rotation, compressed with gzip when enabled, and the
+ * oldest rotated files beyond the maximum number are deleted. The compression runs on a thread of its own, so that the
+ * writer thread keeps draining the queue meanwhile. Only the files named {@code <fileName>-<millis>[-<n>].ndjson[.gz]}
+ * are deleted, the files of another exporter writing to the same directory are left alone.
+ */
+final class FileSpanExporter implements SpanExporter {
+
+  private static final Logger logger = Logger.getLogger(FileSpanExporter.class.getName());
+  private static final AtomicInteger WRITER_ID = new AtomicInteger();
+  private static final AtomicInteger COMPRESSOR_ID = new AtomicInteger();
+  private static final long TICK = 50; // ms
+  private static final int BATCH_SIZE = 512;
+  static final String SUFFIX = ".ndjson";
+  static final String GZIP_SUFFIX = ".gz";
+
+  private final Path directory;
+  private final String fileName;
+  private final Path file;
+  // the rotated files, their time and index
+  private final Pattern rotatedName;
+  private final long maxFileSize;
+  private final long rotationInterval;
+  private final boolean compression;
+  private final int maxFiles;
+  private final long timeout;
+  private final BlockingQueue<SpanData> queue;
+
+  // guarded by this
+  private Thread writer;
+  // compresses the rotated files and deletes the oldest, when the compression is enabled
+  private ExecutorService compressor;
+
+  private final LongAdder exportedSpans = new LongAdder();
+  private final LongAdder failedSpans = new LongAdder();
+  private final LongAdder droppedSpans = new LongAdder();
+  private final LongAdder writtenBytes = new LongAdder();
+  private final LongAdder rotatedFiles = new LongAdder();
+
+  private volatile boolean stopped;
+  private volatile TracerStats.Exporter stats;
+
+  // confined to the writer thread
+  private final NdjsonEncoder encoder = new NdjsonEncoder();
+  private final List<SpanData> batch = new ArrayList<>(BATCH_SIZE);
+  private final ByteBuf buffer = Unpooled.directBuffer(64 * 1024);
+  private FileChannel channel;
+  private long size;
+  private long openedAt;
+
+  FileSpanExporter(Path directory, String fileName, long maxFileSize, long rotationInterval, boolean compression,
+                   int maxFiles, int maxQueueSize, long timeout) {
+    this.directory = directory;
+    this.fileName = fileName;
+    this.file = directory.resolve(fileName + SUFFIX);
+    // the millis of the rotation, so that the live file of an exporter named e.g. spans-2024 does not match
+    this.rotatedName = Pattern.compile(Pattern.quote(fileName) + "-(\\d{13})(?:-(\\d+))?" + Pattern.quote(SUFFIX) +
+      "(?:" + Pattern.quote(GZIP_SUFFIX) + ")?");
+    this.maxFileSize = maxFileSize;
+    this.rotationInterval = rotationInterval;
+    this.compression = compression;
+    this.maxFiles = maxFiles;
+    this.timeout = timeout;
+    this.queue = new ArrayBlockingQueue<>(maxQueueSize);
+  }
+
+  /**
+   * Create the directory and start the writer thread, the spans exported before are queued.
+   */
+  synchronized void start() {
+    if (writer != null || stopped) {
+      return;
+    }
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      // the writes fail and are counted until the directory can be created
+      logger.log(Level.WARNING, "Could not create the directory " + directory, e);
+    }
+    if (compression) {
+      compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "vertx-opentelemetry-file-gzip-" + COMPRESSOR_ID.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    writer = new Thread(this::work, "vertx-opentelemetry-file-" + WRITER_ID.getAndIncrement());
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  void setStats(TracerStats.Exporter stats) {
+    this.stats = stats;
+  }
+
+  @Override
+  public ResultCode export(Collection<SpanData> spans) {
+    if (stopped) {
+      droppedSpans.add(spans.size());
+      return ResultCode.FAILED_NOT_RETRYABLE;
+    }
+    int dropped = 0;
+    for (SpanData span : spans) {
+      if (!queue.offer(span)) {
+        dropped++;
+      }
+    }
+    if (dropped > 0) {
+      droppedSpans.add(dropped);
+    }
+    return dropped > 0 ? ResultCode.FAILED_RETRYABLE : ResultCode.SUCCESS;
+  }
+
+  private void work() {
+    try {
+      while (true) {
+        SpanData span = queue.poll(TICK, TimeUnit.MILLISECONDS);
+        if (span != null) {
+          batch.add(span);
+          queue.drainTo(batch, BATCH_SIZE - 1);
+          write();
+        } else if (stopped) {
+          break;
+        } else {
+          rotateIfNeeded();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      failedSpans.add(queue.size());
+      queue.clear();
+      close();
+      buffer.release();
+    }
+  }
+
+  private void write() {
+    int count = batch.size();
+    long start = System.nanoTime();
+    try {
+      buffer.clear();
+      for (SpanData span : batch) {
+        encoder.encode(span, buffer);
+      }
+      rotateIfNeeded();
+      if (channel == null) {
+        open();
+      }
+      int length = buffer.readableBytes();
+      while (buffer.isReadable()) {
+        buffer.readBytes(channel, buffer.readableBytes());
+      }
+      size += length;
+      writtenBytes.add(length);
+      exportedSpans.add(count);
+      report(count, true, start);
+    } catch (IOException | RuntimeException e) {
+      failedSpans.add(count);
+      report(count, false, start);
+      logger.log(Level.WARNING, "Could not write the spans to " + file, e);
+      // reopened for the next batch
+      close();
+    } finally {
+      batch.clear();
+    }
+  }
+
+  /**
+   * Report an export started at {@code start} to the tracer stats, once set.
+   */
+  private void report(int count, boolean success, long start) {
+    TracerStats.Exporter stats = this.stats;
+    if (stats != null) {
+      stats.completed(count, success, System.nanoTime() - start);
+    }
+  }
+
+  private void open() throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    size = channel.size();
+    openedAt = System.currentTimeMillis();
+  }
+
+  private void close() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.log(Level.FINE, "Could not close " + file, e);
+      }
+      channel = null;
+    }
+  }
+
+  private void rotateIfNeeded() {
+    if (channel == null || size == 0) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (size < maxFileSize && (rotationInterval == 0 || now - openedAt < rotationInterval)) {
+      return;
+    }
+    close();
+    Path rotated = directory.resolve(fileName + "-" + now + SUFFIX);
+    try {
+      for (int idx = 1; Files.exists(rotated) || Files.exists(gzipped(rotated)); idx++) {
+        rotated = directory.resolve(fileName + "-" + now + "-" + idx + SUFFIX);
+      }
+      Files.move(file, rotated);
+      rotatedFiles.increment();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not rotate " + file, e);
+      return;
+    }
+    if (compressor != null) {
+      Path compressed = rotated;
+      Runnable task = () -> {
+        try {
+          gzip(compressed);
+        } catch (IOException e) {
+          logger.log(Level.WARNING, "Could not compress " + compressed, e);
+        }
+        deleteOldest();
+      };
+      try {
+        compressor.execute(task);
+      } catch (RejectedExecutionException e) {
+        // the shutdown stopped waiting for the writer
+        task.run();
+      }
+    } else {
+      deleteOldest();
+    }
+  }
+
+  private static Path gzipped(Path path) {
+    return path.resolveSibling(path.getFileName() + GZIP_SUFFIX);
+  }
+
+  private static void gzip(Path path) throws IOException {
+    Path gzipped = gzipped(path);
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipped), 64 * 1024)) {
+      Files.copy(path, out);
+    }
+    Files.delete(path);
+  }
+
+  /**
+   * Delete the oldest rotated files beyond the maximum number, by rotation time and index.
+   */
+  private void deleteOldest() {
+    if (maxFiles == 0) {
+      return;
+    }
+    List<Path> rotated = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+      path -> rotatedName.matcher(path.getFileName().toString()).matches())) {
+      for (Path path : files) {
+        rotated.add(path);
+      }
+      if (rotated.size() <= maxFiles) {
+        return;
+      }
+      rotated.sort(Comparator.comparingLong((Path path) -> rotation(path, 1))
+        .thenComparingLong(path -> rotation(path, 2)));
+      for (int idx = 0; idx < rotated.size() - maxFiles; idx++) {
+        Files.deleteIfExists(rotated.get(idx));
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not delete the oldest files rotated from " + file, e);
+    }
+  }
+
+  /**
+   * @return the time or the index of a rotated file, {@code 0} without index
+   */
+  private long rotation(Path path, int group) {
+    Matcher matcher = rotatedName.matcher(path.getFileName().toString());
+    matcher.matches();
+    String value = matcher.group(group);
+    return value == null ? 0 : Long.parseLong(value);
+  }
+
+  /**
+   * Write the queued spans and wait up to the timeout for the writer thread, then for the rotated files to be
+   * compressed.
+   */
+  @Override
+  public void shutdown() {
+    Thread writer;
+    ExecutorService compressor;
+    boolean wasStopped;
+    synchronized (this) {
+      wasStopped = stopped;
+      stopped = true;
+      writer = this.writer;
+      compressor = this.compressor;
+    }
+    if (writer == null) {
+      // never started, the buffer is released by the first shutdown only
+      if (!wasStopped) {
+        failedSpans.add(queue.size());
+        queue.clear();
+        buffer.release();
+      }
+    } else if (Thread.currentThread() != writer) {
+      try {
+        writer.join(timeout);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (writer.isAlive()) {
+        logger.log(Level.WARNING, "Could not write the queued spans before the timeout");
+      }
+    }
+    if (compressor != null) {
+      compressor.shutdown();
+      if (Thread.currentThread() != writer) {
+        try {
+          if (!compressor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+            logger.log(Level.WARNING, "Could not compress the rotated files before the timeout");
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  long getExportedSpans() {
+    return exportedSpans.sum();
+  }
+
+  long getFailedSpans() {
+    return failedSpans.sum();
+  }
+
+  long getDroppedSpans() {
+    return droppedSpans.sum();
+  }
+
+  long getWrittenBytes() {
+    return writtenBytes.sum();
+  }
+
+  long getRotatedFiles() {
+    return rotatedFiles.sum();
+  }
+}
@@ -1,19 +1,19 @@
 package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
 
-import io.opentelemetry.exporters.inmemory.InMemorySpanExporter;
-import io.opentelemetry.sdk.OpenTelemetrySdk;
-import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Keep the finished spans in a bounded {@link RingBufferSpanExporter}, for tests and load tests.
+ */
 public class InMemoryExporter implements BackendExporter {
 
-  InMemorySpanExporter exporter;
+  private static final int CAPACITY_DEFAULT = 8192;
 
-  private InMemoryExporter() {
+  RingBufferSpanExporter exporter;
 
-    exporter = InMemorySpanExporter.create();
-
-    OpenTelemetrySdk.getTracerProvider()
-      .addSpanProcessor(SimpleSpansProcessor.newBuilder(exporter).build());
+  private InMemoryExporter(int capacity, RingBufferSpanExporter.OverflowPolicy overflowPolicy) {
+    exporter = new RingBufferSpanExporter(capacity, overflowPolicy);
   }
 
   public static InMemoryExporter.Builder newBuilder() {
@@ -21,17 +21,55 @@ public class InMemoryExporter implements BackendExporter {
   }
 
   public static class Builder {
+    private int capacity = CAPACITY_DEFAULT;
+    private RingBufferSpanExporter.OverflowPolicy overflowPolicy = RingBufferSpanExporter.OverflowPolicy.OVERWRITE_OLDEST;
+
+    /**
+     * Set the maximum number of spans kept, rounded up to a power of two, 8192 by default.
+     */
+    public Builder setCapacity(int capacity) {
+      if (capacity < 1 || capacity > 1 << 30) {
+        throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+      }
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Set what happens to the spans exported when the buffer is full, the oldest span is overwritten by default.
+     */
+    public Builder setOverflowPolicy(RingBufferSpanExporter.OverflowPolicy overflowPolicy) {
+      if (overflowPolicy == null) {
+        throw new IllegalArgumentException("overflowPolicy must not be null");
+      }
+      this.overflowPolicy = overflowPolicy;
+      return this;
+    }
+
     /**
      * Constructs a new instance of the exporter based on the builder's values.
      *
      * @return a new exporter's instance
      */
     public InMemoryExporter build() {
-      return new InMemoryExporter();
+      return new InMemoryExporter(capacity, overflowPolicy);
     }
   }
 
-  public InMemorySpanExporter getSpanExporter() {
+  @Override
+  public Map<String, Long> stats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("exportedSpans", exporter.getExportedSpans());
+    stats.put("droppedSpans", exporter.getDroppedSpans());
+    return stats;
+  }
+
+  /**
+   * @return the ring buffer of the spans, it replaces the {@code InMemorySpanExporter} of OpenTelemetry returned by
+   * the previous versions, with the same {@code getFinishedSpanItems()} and {@code reset()}
+   */
+  @Override
+  public RingBufferSpanExporter getSpanExporter() {
     return this.exporter;
   }
 }
@@ -3,32 +3,95 @@ package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.opentelemetry.exporters.jaeger.JaegerGrpcSpanExporter;
-import io.opentelemetry.sdk.OpenTelemetrySdk;
-import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
 
 import javax.annotation.concurrent.ThreadSafe;
-
+import java.util.Collection;
+
+/**
+ * Export the spans to a Jaeger collector over gRPC.
+ * <p>
+ * The gRPC channel is created with the first export rather than by {@link Builder#build()}, an exporter configured
+ * for a Vert.x instance which never traces a request costs nothing.
+ */
 @ThreadSafe
 public final class JaegerExporter implements BackendExporter {
 
   private static final String IP_DEFAULT = "0.0.0.0";
   private static final int PORT_DEFAULT = 14250;
 
+  private final String serviceName;
+  private final String ip;
+  private final int port;
+  private final long deadline;
+  private final SpanExporter exporter = new SpanExporter() {
+    @Override
+    public ResultCode export(Collection<SpanData> spans) {
+      JaegerGrpcSpanExporter delegate = delegate();
+      return delegate != null ? delegate.export(spans) : ResultCode.FAILED_NOT_RETRYABLE;
+    }
+
+    @Override
+    public void shutdown() {
+      JaegerGrpcSpanExporter delegate;
+      synchronized (JaegerExporter.this) {
+        delegate = JaegerExporter.this.delegate;
+        shutdown = true;
+      }
+      if (delegate != null) {
+        delegate.shutdown();
+      }
+    }
+  };
+  private volatile JaegerGrpcSpanExporter delegate;
+  private boolean shutdown;
+
   private JaegerExporter(String serviceName, String ip, int port, long deadline) {
-    ManagedChannel channel = ManagedChannelBuilder
-      .forAddress(ip, port)
-      .usePlaintext()
-      .build();
+    this.serviceName = serviceName;
+    this.ip = ip;
+    this.port = port;
+    this.deadline = deadline;
+  }
 
-    JaegerGrpcSpanExporter exporter = JaegerGrpcSpanExporter.newBuilder()
-      .setServiceName(serviceName)
-      .setChannel(channel)
-      .setDeadlineMs(deadline)
-      .build();
+  /**
+   * @return the exporter, created on the first call, or {@code null} once shut down
+   */
+  private JaegerGrpcSpanExporter delegate() {
+    JaegerGrpcSpanExporter delegate = this.delegate;
+    if (delegate == null) {
+      synchronized (this) {
+        delegate = this.delegate;
+        if (delegate == null) {
+          if (shutdown) {
+            return null;
+          }
+          ManagedChannel channel = ManagedChannelBuilder
+            .forAddress(ip, port)
+            .usePlaintext()
+            .build();
+          delegate = JaegerGrpcSpanExporter.newBuilder()
+            .setServiceName(serviceName)
+            .setChannel(channel)
+            .setDeadlineMs(deadline)
+            .build();
+          this.delegate = delegate;
+        }
+      }
+    }
+    return delegate;
+  }
 
-    OpenTelemetrySdk.getTracerProvider()
-      .addSpanProcessor(SimpleSpansProcessor.newBuilder(exporter).build());
+  @Override
+  public SpanExporter getSpanExporter() {
+    return exporter;
+  }
 
+  /**
+   * @return whether the gRPC channel was created, i.e. spans were exported
+   */
+  public boolean isConnected() {
+    return delegate != null;
   }
 
   public static Builder newBuilder() {
@@ -71,7 +134,4 @@ public final class JaegerExporter implements BackendExporter {
     }
 
   }
-
-
-
 }
@@ -1,17 +1,18 @@
 package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
 
-import io.opentelemetry.sdk.OpenTelemetrySdk;
-import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 
 public class LoggingExporter implements BackendExporter {
 
-  private LoggingExporter() {
+  private final SpanExporter exporter;
 
-    SpanExporter exporter = new io.opentelemetry.exporters.logging.LoggingSpanExporter();
+  private LoggingExporter() {
+    exporter = new io.opentelemetry.exporters.logging.LoggingSpanExporter();
+  }
 
-    OpenTelemetrySdk.getTracerProvider()
-      .addSpanProcessor(SimpleSpansProcessor.newBuilder(exporter).build());
+  @Override
+  public SpanExporter getSpanExporter() {
+    return exporter;
   }
 
   public static LoggingExporter.Builder newBuilder() {
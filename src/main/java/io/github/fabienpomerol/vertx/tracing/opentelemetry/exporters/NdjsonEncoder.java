@@ -0,0 +1,169 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.netty.buffer.ByteBuf;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceId;
+
+import java.util.List;
+import java.util.Map;
+
+import static io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.ZipkinJsonEncoder.ascii;
+import static io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.ZipkinJsonEncoder.string;
+
+/**
+ * Write each span as a JSON object on a line of its own, straight into a buffer:
+ * <pre>
+ * {"traceId":"...","spanId":"...","parentSpanId":"...","name":"GET","kind":"SERVER","startTimeUnixNano":...,
+ *  "endTimeUnixNano":...,"attributes":{"http.status_code":500},"events":[{"timeUnixNano":...,"name":"error",
+ *  "attributes":{...}}],"links":[{"traceId":"...","spanId":"..."}],"status":{"code":"INTERNAL","description":"..."}}
+ * </pre>
+ * The parent, the attributes, the events, the links and the status of a successful span are omitted when empty. The
+ * attributes keep their JSON type, the doubles not representable in JSON are written as strings.
+ * <p>
+ * An encoder keeps scratch arrays and is not thread safe.
+ */
+final class NdjsonEncoder {
+
+  private final char[] ids = new char[TraceId.getSize() * 2];
+  private final byte[] digits = new byte[20];
+
+  void encode(SpanData span, ByteBuf out) {
+    ascii(out, "{\"traceId\":\"");
+    traceId(span.getTraceId(), out);
+    ascii(out, "\",\"spanId\":\"");
+    spanId(span.getSpanId(), out);
+    out.writeByte('"');
+    if (span.getParentSpanId().isValid()) {
+      ascii(out, ",\"parentSpanId\":\"");
+      spanId(span.getParentSpanId(), out);
+      out.writeByte('"');
+    }
+    ascii(out, ",\"name\":");
+    string(out, span.getName());
+    ascii(out, ",\"kind\":\"");
+    ascii(out, span.getKind().name());
+    ascii(out, "\",\"startTimeUnixNano\":");
+    number(out, span.getStartEpochNanos());
+    ascii(out, ",\"endTimeUnixNano\":");
+    number(out, span.getEndEpochNanos());
+    if (!span.getAttributes().isEmpty()) {
+      ascii(out, ",\"attributes\":");
+      attributes(span.getAttributes(), out);
+    }
+    List<SpanData.TimedEvent> events = span.getTimedEvents();
+    if (!events.isEmpty()) {
+      ascii(out, ",\"events\":[");
+      for (int i = 0; i < events.size(); i++) {
+        SpanData.TimedEvent event = events.get(i);
+        ascii(out, i == 0 ? "{\"timeUnixNano\":" : ",{\"timeUnixNano\":");
+        number(out, event.getEpochNanos());
+        ascii(out, ",\"name\":");
+        string(out, event.getName());
+        if (!event.getAttributes().isEmpty()) {
+          ascii(out, ",\"attributes\":");
+          attributes(event.getAttributes(), out);
+        }
+        out.writeByte('}');
+      }
+      out.writeByte(']');
+    }
+    List<SpanData.Link> links = span.getLinks();
+    if (!links.isEmpty()) {
+      ascii(out, ",\"links\":[");
+      for (int i = 0; i < links.size(); i++) {
+        SpanData.Link link = links.get(i);
+        ascii(out, i == 0 ? "{\"traceId\":\"" : ",{\"traceId\":\"");
+        traceId(link.getContext().getTraceId(), out);
+        ascii(out, "\",\"spanId\":\"");
+        spanId(link.getContext().getSpanId(), out);
+        ascii(out, "\"}");
+      }
+      out.writeByte(']');
+    }
+    Status status = span.getStatus();
+    if (!status.isOk()) {
+      ascii(out, ",\"status\":{\"code\":\"");
+      ascii(out, status.getCanonicalCode().name());
+      out.writeByte('"');
+      if (status.getDescription() != null) {
+        ascii(out, ",\"description\":");
+        string(out, status.getDescription());
+      }
+      out.writeByte('}');
+    }
+    ascii(out, "}\n");
+  }
+
+  private void attributes(Map<String, AttributeValue> attributes, ByteBuf out) {
+    out.writeByte('{');
+    boolean first = true;
+    for (Map.Entry<String, AttributeValue> attribute : attributes.entrySet()) {
+      if (!first) {
+        out.writeByte(',');
+      }
+      first = false;
+      string(out, attribute.getKey());
+      out.writeByte(':');
+      value(attribute.getValue(), out);
+    }
+    out.writeByte('}');
+  }
+
+  private void value(AttributeValue value, ByteBuf out) {
+    switch (value.getType()) {
+      case STRING:
+        string(out, value.getStringValue());
+        break;
+      case BOOLEAN:
+        ascii(out, value.getBooleanValue() ? "true" : "false");
+        break;
+      case LONG:
+        number(out, value.getLongValue());
+        break;
+      case DOUBLE:
+        double d = value.getDoubleValue();
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+          string(out, Double.toString(d));
+        } else {
+          ascii(out, Double.toString(d));
+        }
+        break;
+    }
+  }
+
+  private void traceId(TraceId traceId, ByteBuf out) {
+    traceId.copyLowerBase16To(ids, 0);
+    chars(out, TraceId.getSize() * 2);
+  }
+
+  private void spanId(SpanId spanId, ByteBuf out) {
+    spanId.copyLowerBase16To(ids, 0);
+    chars(out, SpanId.getSize() * 2);
+  }
+
+  private void chars(ByteBuf out, int length) {
+    for (int i = 0; i < length; i++) {
+      out.writeByte(ids[i]);
+    }
+  }
+
+  private void number(ByteBuf out, long value) {
+    if (value < 0) {
+      if (value == Long.MIN_VALUE) {
+        ascii(out, Long.toString(value));
+        return;
+      }
+      out.writeByte('-');
+      value = -value;
+    }
+    int pos = digits.length;
+    do {
+      digits[--pos] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    out.writeBytes(digits, pos, digits.length - pos);
+  }
+}
@@ -0,0 +1,150 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import com.google.protobuf.ByteString;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.opentelemetry.proto.common.v1.AttributeKeyValue;
+import io.opentelemetry.proto.common.v1.InstrumentationLibrary;
+import io.opentelemetry.proto.trace.v1.InstrumentationLibrarySpans;
+import io.opentelemetry.proto.trace.v1.ResourceSpans;
+import io.opentelemetry.proto.trace.v1.Span;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.TraceState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Convert an OTLP export request written by {@link OtlpEncoder} back to SDK spans.
+ * <p>
+ * OTLP carries neither the trace flags nor whether the parent was remote: the spans were exported so they are
+ * sampled, and their parent is considered local.
+ */
+final class OtlpDecoder {
+
+  private static final TraceFlags SAMPLED = TraceFlags.builder().setIsSampled(true).build();
+  private static final Status.CanonicalCode[] CODES = Status.CanonicalCode.values();
+
+  private OtlpDecoder() {
+  }
+
+  static List<SpanData> decode(ExportTraceServiceRequest request) {
+    List<SpanData> spans = new ArrayList<>();
+    for (ResourceSpans resourceSpans : request.getResourceSpansList()) {
+      Resource resource = Resource.create(attributes(resourceSpans.getResource().getAttributesList()));
+      for (InstrumentationLibrarySpans librarySpans : resourceSpans.getInstrumentationLibrarySpansList()) {
+        InstrumentationLibrary library = librarySpans.getInstrumentationLibrary();
+        InstrumentationLibraryInfo info = InstrumentationLibraryInfo.create(library.getName(),
+          library.getVersion().isEmpty() ? null : library.getVersion());
+        for (Span span : librarySpans.getSpansList()) {
+          spans.add(span(span, resource, info));
+        }
+      }
+    }
+    return spans;
+  }
+
+  private static SpanData span(Span span, Resource resource, InstrumentationLibraryInfo info) {
+    Map<String, AttributeValue> attributes = attributes(span.getAttributesList());
+    List<SpanData.TimedEvent> events = new ArrayList<>(span.getEventsCount());
+    for (Span.Event event : span.getEventsList()) {
+      Map<String, AttributeValue> eventAttributes = attributes(event.getAttributesList());
+      events.add(SpanData.TimedEvent.create(event.getTimeUnixNano(), event.getName(), eventAttributes,
+        eventAttributes.size() + event.getDroppedAttributesCount()));
+    }
+    List<SpanData.Link> links = new ArrayList<>(span.getLinksCount());
+    for (Span.Link link : span.getLinksList()) {
+      SpanContext context = SpanContext.create(traceId(link.getTraceId()), spanId(link.getSpanId()), SAMPLED,
+        TraceState.getDefault());
+      links.add(SpanData.Link.create(context, attributes(link.getAttributesList())));
+    }
+    return SpanData.newBuilder()
+      .setTraceId(traceId(span.getTraceId()))
+      .setSpanId(spanId(span.getSpanId()))
+      .setParentSpanId(span.getParentSpanId().isEmpty() ? SpanId.getInvalid() : spanId(span.getParentSpanId()))
+      .setTraceFlags(SAMPLED)
+      .setTraceState(TraceState.getDefault())
+      .setResource(resource)
+      .setInstrumentationLibraryInfo(info)
+      .setName(span.getName())
+      .setKind(kind(span.getKind()))
+      .setStartEpochNanos(span.getStartTimeUnixNano())
+      .setEndEpochNanos(span.getEndTimeUnixNano())
+      .setStatus(status(span.getStatus()))
+      .setAttributes(attributes)
+      .setTotalAttributeCount(attributes.size() + span.getDroppedAttributesCount())
+      .setTimedEvents(events)
+      .setTotalRecordedEvents(events.size() + span.getDroppedEventsCount())
+      .setLinks(links)
+      .setTotalRecordedLinks(links.size() + span.getDroppedLinksCount())
+      .setHasRemoteParent(false)
+      .setHasEnded(true)
+      .build();
+  }
+
+  private static TraceId traceId(ByteString bytes) {
+    return TraceId.fromBytes(bytes.toByteArray(), 0);
+  }
+
+  private static SpanId spanId(ByteString bytes) {
+    return SpanId.fromBytes(bytes.toByteArray(), 0);
+  }
+
+  private static io.opentelemetry.trace.Span.Kind kind(Span.SpanKind kind) {
+    switch (kind) {
+      case SERVER:
+        return io.opentelemetry.trace.Span.Kind.SERVER;
+      case CLIENT:
+        return io.opentelemetry.trace.Span.Kind.CLIENT;
+      case PRODUCER:
+        return io.opentelemetry.trace.Span.Kind.PRODUCER;
+      case CONSUMER:
+        return io.opentelemetry.trace.Span.Kind.CONSUMER;
+      default:
+        return io.opentelemetry.trace.Span.Kind.INTERNAL;
+    }
+  }
+
+  private static Status status(io.opentelemetry.proto.trace.v1.Status status) {
+    Status result = Status.OK;
+    for (Status.CanonicalCode code : CODES) {
+      if (code.value() == status.getCodeValue()) {
+        result = code.toStatus();
+        break;
+      }
+    }
+    return status.getMessage().isEmpty() ? result : result.withDescription(status.getMessage());
+  }
+
+  private static Map<String, AttributeValue> attributes(List<AttributeKeyValue> attributes) {
+    Map<String, AttributeValue> map = new HashMap<>(attributes.size() * 2);
+    for (AttributeKeyValue attribute : attributes) {
+      switch (attribute.getType()) {
+        case STRING:
+          map.put(attribute.getKey(), AttributeValue.stringAttributeValue(attribute.getStringValue()));
+          break;
+        case BOOL:
+          map.put(attribute.getKey(), AttributeValue.booleanAttributeValue(attribute.getBoolValue()));
+          break;
+        case INT:
+          map.put(attribute.getKey(), AttributeValue.longAttributeValue(attribute.getIntValue()));
+          break;
+        case DOUBLE:
+          map.put(attribute.getKey(), AttributeValue.doubleAttributeValue(attribute.getDoubleValue()));
+          break;
+        default:
+          break;
+      }
+    }
+    return map;
+  }
+}
@@ -0,0 +1,160 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.opentelemetry.proto.common.v1.AttributeKeyValue;
+import io.opentelemetry.proto.common.v1.InstrumentationLibrary;
+import io.opentelemetry.proto.trace.v1.InstrumentationLibrarySpans;
+import io.opentelemetry.proto.trace.v1.ResourceSpans;
+import io.opentelemetry.proto.trace.v1.Span;
+import io.opentelemetry.proto.trace.v1.Status;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.Link;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceId;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Convert the SDK spans to an OTLP export request, the spans are grouped by resource and instrumentation library.
+ */
+final class OtlpEncoder {
+
+  private OtlpEncoder() {
+  }
+
+  static ExportTraceServiceRequest encode(Collection<SpanData> spans) {
+    Map<Resource, Map<InstrumentationLibraryInfo, InstrumentationLibrarySpans.Builder>> grouped = new LinkedHashMap<>();
+    for (SpanData span : spans) {
+      grouped.computeIfAbsent(span.getResource(), resource -> new HashMap<>())
+        .computeIfAbsent(span.getInstrumentationLibraryInfo(), OtlpEncoder::instrumentationLibrarySpans)
+        .addSpans(span(span));
+    }
+    ExportTraceServiceRequest.Builder request = ExportTraceServiceRequest.newBuilder();
+    for (Map.Entry<Resource, Map<InstrumentationLibraryInfo, InstrumentationLibrarySpans.Builder>> entry : grouped.entrySet()) {
+      ResourceSpans.Builder resourceSpans = ResourceSpans.newBuilder().setResource(resource(entry.getKey()));
+      for (InstrumentationLibrarySpans.Builder librarySpans : entry.getValue().values()) {
+        resourceSpans.addInstrumentationLibrarySpans(librarySpans);
+      }
+      request.addResourceSpans(resourceSpans);
+    }
+    return request.build();
+  }
+
+  private static InstrumentationLibrarySpans.Builder instrumentationLibrarySpans(InstrumentationLibraryInfo info) {
+    InstrumentationLibrary.Builder library = InstrumentationLibrary.newBuilder().setName(info.getName());
+    if (info.getVersion() != null) {
+      library.setVersion(info.getVersion());
+    }
+    return InstrumentationLibrarySpans.newBuilder().setInstrumentationLibrary(library);
+  }
+
+  private static io.opentelemetry.proto.resource.v1.Resource resource(Resource resource) {
+    io.opentelemetry.proto.resource.v1.Resource.Builder builder = io.opentelemetry.proto.resource.v1.Resource.newBuilder();
+    for (Map.Entry<String, AttributeValue> attribute : resource.getAttributes().entrySet()) {
+      builder.addAttributes(attribute(attribute.getKey(), attribute.getValue()));
+    }
+    return builder.build();
+  }
+
+  static Span span(SpanData data) {
+    Span.Builder span = Span.newBuilder()
+      .setTraceId(traceId(data.getTraceId()))
+      .setSpanId(spanId(data.getSpanId()))
+      .setName(data.getName())
+      .setKind(kind(data.getKind()))
+      .setStartTimeUnixNano(data.getStartEpochNanos())
+      .setEndTimeUnixNano(data.getEndEpochNanos())
+      .setStatus(Status.newBuilder()
+        .setCodeValue(data.getStatus().getCanonicalCode().value())
+        .setMessage(data.getStatus().getDescription() == null ? "" : data.getStatus().getDescription()));
+    if (data.getParentSpanId().isValid()) {
+      span.setParentSpanId(spanId(data.getParentSpanId()));
+    }
+    Map<String, AttributeValue> attributes = data.getAttributes();
+    for (Map.Entry<String, AttributeValue> attribute : attributes.entrySet()) {
+      span.addAttributes(attribute(attribute.getKey(), attribute.getValue()));
+    }
+    span.setDroppedAttributesCount(data.getTotalAttributeCount() - attributes.size());
+    List<SpanData.TimedEvent> events = data.getTimedEvents();
+    for (SpanData.TimedEvent event : events) {
+      Span.Event.Builder builder = Span.Event.newBuilder()
+        .setTimeUnixNano(event.getEpochNanos())
+        .setName(event.getName());
+      for (Map.Entry<String, AttributeValue> attribute : event.getAttributes().entrySet()) {
+        builder.addAttributes(attribute(attribute.getKey(), attribute.getValue()));
+      }
+      builder.setDroppedAttributesCount(event.getTotalAttributeCount() - event.getAttributes().size());
+      span.addEvents(builder);
+    }
+    span.setDroppedEventsCount(data.getTotalRecordedEvents() - events.size());
+    List<SpanData.Link> links = data.getLinks();
+    for (Link link : links) {
+      Span.Link.Builder builder = Span.Link.newBuilder()
+        .setTraceId(traceId(link.getContext().getTraceId()))
+        .setSpanId(spanId(link.getContext().getSpanId()));
+      for (Map.Entry<String, AttributeValue> attribute : link.getAttributes().entrySet()) {
+        builder.addAttributes(attribute(attribute.getKey(), attribute.getValue()));
+      }
+      span.addLinks(builder);
+    }
+    span.setDroppedLinksCount(data.getTotalRecordedLinks() - links.size());
+    return span.build();
+  }
+
+  private static ByteString traceId(TraceId traceId) {
+    byte[] bytes = new byte[TraceId.getSize()];
+    traceId.copyBytesTo(bytes, 0);
+    return UnsafeByteOperations.unsafeWrap(bytes);
+  }
+
+  private static ByteString spanId(SpanId spanId) {
+    byte[] bytes = new byte[SpanId.getSize()];
+    spanId.copyBytesTo(bytes, 0);
+    return UnsafeByteOperations.unsafeWrap(bytes);
+  }
+
+  private static Span.SpanKind kind(io.opentelemetry.trace.Span.Kind kind) {
+    switch (kind) {
+      case SERVER:
+        return Span.SpanKind.SERVER;
+      case CLIENT:
+        return Span.SpanKind.CLIENT;
+      case PRODUCER:
+        return Span.SpanKind.PRODUCER;
+      case CONSUMER:
+        return Span.SpanKind.CONSUMER;
+      case INTERNAL:
+        return Span.SpanKind.INTERNAL;
+      default:
+        return Span.SpanKind.SPAN_KIND_UNSPECIFIED;
+    }
+  }
+
+  private static AttributeKeyValue attribute(String key, AttributeValue value) {
+    AttributeKeyValue.Builder builder = AttributeKeyValue.newBuilder().setKey(key);
+    switch (value.getType()) {
+      case STRING:
+        builder.setType(AttributeKeyValue.ValueType.STRING).setStringValue(value.getStringValue());
+        break;
+      case BOOLEAN:
+        builder.setType(AttributeKeyValue.ValueType.BOOL).setBoolValue(value.getBooleanValue());
+        break;
+      case LONG:
+        builder.setType(AttributeKeyValue.ValueType.INT).setIntValue(value.getLongValue());
+        break;
+      case DOUBLE:
+        builder.setType(AttributeKeyValue.ValueType.DOUBLE).setDoubleValue(value.getDoubleValue());
+        break;
+    }
+    return builder.build();
+  }
+}
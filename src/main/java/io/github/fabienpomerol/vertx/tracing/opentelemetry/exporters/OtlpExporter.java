@@ -0,0 +1,231 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Vertx;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Export the spans to an OpenTelemetry collector with the OTLP protocol, over gRPC or over HTTP with a protobuf body.
+ * <p>
+ * The HTTP transport uses the Vert.x {@link io.vertx.core.http.HttpClient} of the traced Vert.x instance, it is bound
+ * to it when the first span is started or with {@link Builder#setVertx(Vertx)}. It should be added with batch options
+ * so that the spans are sent in batches.
+ */
+@ThreadSafe
+public final class OtlpExporter implements BackendExporter {
+
+  public enum Protocol {
+    GRPC,
+    HTTP_PROTOBUF
+  }
+
+  private static final String HOST_DEFAULT = "localhost";
+  private static final int GRPC_PORT_DEFAULT = 4317;
+  private static final int HTTP_PORT_DEFAULT = 4318;
+  private static final String PATH_DEFAULT = "/v1/traces";
+
+  private final OtlpSpanExporter exporter;
+
+  private OtlpExporter(OtlpSpanExporter exporter) {
+    this.exporter = exporter;
+  }
+
+  @Override
+  public SpanExporter getSpanExporter() {
+    return exporter;
+  }
+
+  @Override
+  public void start(Vertx vertx) {
+    exporter.getTransport().start(vertx);
+  }
+
+  @Override
+  public boolean reportCompletions(TracerStats.Exporter stats) {
+    exporter.setStats(stats);
+    return true;
+  }
+
+  /**
+   * @return the number of spans accepted by the collector
+   */
+  public long getExportedSpans() {
+    return exporter.getExportedSpans();
+  }
+
+  /**
+   * @return the number of spans rejected by the collector or still failing after the retries
+   */
+  public long getFailedSpans() {
+    return exporter.getFailedSpans();
+  }
+
+  /**
+   * @return the number of spans dropped because too many requests were in flight or the exporter was not bound
+   */
+  public long getDroppedSpans() {
+    return exporter.getDroppedSpans();
+  }
+
+  /**
+   * @return the number of retried requests
+   */
+  public long getRetries() {
+    return exporter.getRetries();
+  }
+
+  /**
+   * @return the number of requests in flight or waiting for a retry
+   */
+  public int getInFlightExports() {
+    return exporter.getInFlightExports();
+  }
+
+  @Override
+  public Map<String, Long> stats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("exportedSpans", getExportedSpans());
+    stats.put("failedSpans", getFailedSpans());
+    stats.put("droppedSpans", getDroppedSpans());
+    stats.put("retries", getRetries());
+    stats.put("inFlightExports", (long) getInFlightExports());
+    return stats;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private Protocol protocol = Protocol.GRPC;
+    private String host = HOST_DEFAULT;
+    private int port = -1;
+    private String path = PATH_DEFAULT;
+    private boolean compression;
+    private int maxConcurrentExports = 2;
+    private int maxRetries = 5;
+    private long initialBackoff = 100; // ms
+    private long maxBackoff = 5_000; // ms
+    private long timeout = 10_000; // ms
+    private Vertx vertx;
+
+    public Builder setProtocol(Protocol protocol) {
+      this.protocol = protocol;
+      return this;
+    }
+
+    public Builder setHost(String host) {
+      this.host = host;
+      return this;
+    }
+
+    /**
+     * Set the collector port, 4317 for gRPC and 4318 for HTTP by default.
+     */
+    public Builder setPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * Set the path of the HTTP endpoint, {@code /v1/traces} by default.
+     */
+    public Builder setPath(String path) {
+      this.path = path;
+      return this;
+    }
+
+    /**
+     * Set whether the requests are compressed with gzip.
+     */
+    public Builder setCompression(boolean compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of export requests in flight, including the ones waiting for a retry.
+     */
+    public Builder setMaxConcurrentExports(int maxConcurrentExports) {
+      if (maxConcurrentExports < 1) {
+        throw new IllegalArgumentException("maxConcurrentExports must be > 0");
+      }
+      this.maxConcurrentExports = maxConcurrentExports;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of times a request is sent again when the collector is unavailable, {@code 0} to
+     * disable the retries.
+     */
+    public Builder setMaxRetries(int maxRetries) {
+      if (maxRetries < 0) {
+        throw new IllegalArgumentException("maxRetries must be >= 0");
+      }
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * Set the delay in ms before the first retry, it is doubled on each retry up to the max backoff.
+     */
+    public Builder setInitialBackoff(long initialBackoff) {
+      if (initialBackoff < 1) {
+        throw new IllegalArgumentException("initialBackoff must be > 0");
+      }
+      this.initialBackoff = initialBackoff;
+      return this;
+    }
+
+    public Builder setMaxBackoff(long maxBackoff) {
+      if (maxBackoff < 1) {
+        throw new IllegalArgumentException("maxBackoff must be > 0");
+      }
+      this.maxBackoff = maxBackoff;
+      return this;
+    }
+
+    /**
+     * Set the timeout in ms of a request.
+     */
+    public Builder setTimeout(long timeout) {
+      if (timeout < 1) {
+        throw new IllegalArgumentException("timeout must be > 0");
+      }
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+     * Bind the HTTP transport to a Vert.x instance instead of the traced one.
+     */
+    public Builder setVertx(Vertx vertx) {
+      this.vertx = vertx;
+      return this;
+    }
+
+    /**
+     * Constructs a new instance of the exporter based on the builder's values.
+     *
+     * @return a new exporter's instance
+     */
+    public OtlpExporter build() {
+      OtlpTransport<?> transport;
+      if (protocol == Protocol.HTTP_PROTOBUF) {
+        transport = new OtlpHttpTransport(host, port < 0 ? HTTP_PORT_DEFAULT : port, path, compression, timeout,
+          maxConcurrentExports);
+      } else {
+        transport = new OtlpGrpcTransport(host, port < 0 ? GRPC_PORT_DEFAULT : port, compression, timeout);
+      }
+      if (vertx != null) {
+        transport.start(vertx);
+      }
+      return new OtlpExporter(new OtlpSpanExporter(transport, maxConcurrentExports, maxRetries, initialBackoff,
+        maxBackoff, timeout));
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceResponse;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * OTLP over gRPC, the channel keeps its connection alive between the exports. The channel and the retry scheduler are
+ * created with the first export.
+ */
+final class OtlpGrpcTransport implements OtlpTransport<ExportTraceServiceRequest> {
+
+  // declared here rather than taken from the generated TraceServiceGrpc which needs a more recent grpc-stub
+  static final MethodDescriptor<ExportTraceServiceRequest, ExportTraceServiceResponse> EXPORT_METHOD =
+    MethodDescriptor.<ExportTraceServiceRequest, ExportTraceServiceResponse>newBuilder()
+      .setType(MethodDescriptor.MethodType.UNARY)
+      .setFullMethodName(MethodDescriptor.generateFullMethodName("opentelemetry.proto.collector.trace.v1.TraceService", "Export"))
+      .setRequestMarshaller(ProtoUtils.marshaller(ExportTraceServiceRequest.getDefaultInstance()))
+      .setResponseMarshaller(ProtoUtils.marshaller(ExportTraceServiceResponse.getDefaultInstance()))
+      .build();
+
+  private static final AtomicInteger SCHEDULER_ID = new AtomicInteger();
+
+  private final String host;
+  private final int port;
+  private final CallOptions callOptions;
+  private final long timeout;
+  private volatile ManagedChannel channel;
+  private volatile ScheduledExecutorService scheduler;
+  private boolean closed;
+
+  OtlpGrpcTransport(String host, int port, boolean compression, long timeout) {
+    this.host = host;
+    this.port = port;
+    this.callOptions = compression ? CallOptions.DEFAULT.withCompression("gzip") : CallOptions.DEFAULT;
+    this.timeout = timeout;
+  }
+
+  private ManagedChannel channel() {
+    ManagedChannel channel = this.channel;
+    if (channel == null) {
+      synchronized (this) {
+        channel = this.channel;
+        if (channel == null) {
+          channel = ManagedChannelBuilder
+            .forAddress(host, port)
+            .usePlaintext()
+            .keepAliveTime(30, TimeUnit.SECONDS)
+            .keepAliveTimeout(timeout, TimeUnit.MILLISECONDS)
+            .build();
+          if (closed) {
+            channel.shutdownNow();
+          } else {
+            this.channel = channel;
+          }
+        }
+      }
+    }
+    return channel;
+  }
+
+  private ScheduledExecutorService scheduler() {
+    ScheduledExecutorService scheduler = this.scheduler;
+    if (scheduler == null) {
+      synchronized (this) {
+        scheduler = this.scheduler;
+        if (scheduler == null) {
+          scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "vertx-opentelemetry-otlp-retry-" + SCHEDULER_ID.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+          });
+          if (closed) {
+            scheduler.shutdownNow();
+          } else {
+            this.scheduler = scheduler;
+          }
+        }
+      }
+    }
+    return scheduler;
+  }
+
+  @Override
+  public ExportTraceServiceRequest encode(ExportTraceServiceRequest request) {
+    return request;
+  }
+
+  @Override
+  public void send(ExportTraceServiceRequest payload, Consumer<Result> callback) {
+    ListenableFuture<ExportTraceServiceResponse> future = ClientCalls.futureUnaryCall(
+      channel().newCall(EXPORT_METHOD, callOptions.withDeadlineAfter(timeout, TimeUnit.MILLISECONDS)),
+      payload);
+    future.addListener(() -> {
+      try {
+        future.get();
+        callback.accept(Result.SUCCESS);
+      } catch (ExecutionException e) {
+        callback.accept(result(Status.fromThrowable(e.getCause()).getCode()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        callback.accept(Result.FAILED);
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  private static Result result(Status.Code code) {
+    switch (code) {
+      case CANCELLED:
+      case DEADLINE_EXCEEDED:
+      case RESOURCE_EXHAUSTED:
+      case ABORTED:
+      case OUT_OF_RANGE:
+      case UNAVAILABLE:
+      case DATA_LOSS:
+        return Result.RETRYABLE;
+      default:
+        return Result.FAILED;
+    }
+  }
+
+  @Override
+  public void schedule(long delay, Runnable task) {
+    scheduler().schedule(task, delay, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void close() {
+    ManagedChannel channel;
+    synchronized (this) {
+      closed = true;
+      channel = this.channel;
+      if (scheduler != null) {
+        scheduler.shutdownNow();
+      }
+    }
+    if (channel == null) {
+      return;
+    }
+    channel.shutdown();
+    try {
+      channel.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
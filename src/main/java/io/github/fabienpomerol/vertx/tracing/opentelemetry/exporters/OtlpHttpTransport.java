@@ -0,0 +1,125 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.vertx.core.Context;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.impl.VertxInternal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * OTLP over HTTP with a protobuf body, sent with the Vert.x {@link HttpClient} of the traced Vert.x instance.
+ * <p>
+ * The requests are sent from a dedicated event loop context: no span is active on it, so the exporter requests are
+ * not traced themselves.
+ */
+final class OtlpHttpTransport implements OtlpTransport<Buffer> {
+
+  private final boolean compression;
+  private final int maxPoolSize;
+  private final RequestOptions requestOptions;
+
+  private volatile Vertx vertx;
+  private volatile Context context;
+  private volatile HttpClient client;
+
+  OtlpHttpTransport(String host, int port, String path, boolean compression, long timeout, int maxPoolSize) {
+    this.compression = compression;
+    this.maxPoolSize = maxPoolSize;
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap().add("content-type", "application/x-protobuf");
+    if (compression) {
+      headers.add("content-encoding", "gzip");
+    }
+    this.requestOptions = new RequestOptions()
+      .setMethod(HttpMethod.POST)
+      .setHost(host)
+      .setPort(port)
+      .setURI(path)
+      .setTimeout(timeout)
+      .setHeaders(headers);
+  }
+
+  @Override
+  public synchronized void start(Vertx vertx) {
+    if (this.vertx != null) {
+      return;
+    }
+    this.vertx = vertx;
+    this.context = ((VertxInternal) vertx).createEventLoopContext(null, null, null, getClass().getClassLoader());
+    this.client = vertx.createHttpClient(new HttpClientOptions()
+      .setMaxPoolSize(maxPoolSize)
+      .setKeepAlive(true));
+  }
+
+  @Override
+  public boolean isReady() {
+    return client != null;
+  }
+
+  @Override
+  public Buffer encode(ExportTraceServiceRequest request) {
+    if (!compression) {
+      return Buffer.buffer(request.toByteArray());
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(request.getSerializedSize() / 2 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      request.writeTo(gzip);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return Buffer.buffer(out.toByteArray());
+  }
+
+  @Override
+  public void send(Buffer payload, Consumer<Result> callback) {
+    context.runOnContext(v -> client.send(requestOptions, payload, ar -> {
+      if (ar.failed()) {
+        // connection refused, reset or timeout
+        callback.accept(Result.RETRYABLE);
+        return;
+      }
+      int status = ar.result().statusCode();
+      // the connection closed while reading the response, the collector may not have stored the spans
+      ar.result().body(body -> callback.accept(body.succeeded() ? result(status) : Result.RETRYABLE));
+    }));
+  }
+
+  private static Result result(int status) {
+    if (status >= 200 && status < 300) {
+      return Result.SUCCESS;
+    }
+    switch (status) {
+      case 408:
+      case 429:
+      case 502:
+      case 503:
+      case 504:
+        return Result.RETRYABLE;
+      default:
+        return Result.FAILED;
+    }
+  }
+
+  @Override
+  public void schedule(long delay, Runnable task) {
+    context.runOnContext(v -> vertx.setTimer(delay, id -> task.run()));
+  }
+
+  @Override
+  public void close() {
+    HttpClient client = this.client;
+    if (client != null) {
+      client.close();
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Context;
+
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Export the spans to an OTLP collector without waiting for its response.
+ * <p>
+ * At most {@code maxConcurrentExports} requests are in flight, including the ones waiting for a retry. When they are
+ * all used, an export called from a worker thread waits for a slot up to the timeout and an export called from an
+ * event loop drops its spans. Failed requests are retried with an exponential backoff when the collector is
+ * unavailable or overloaded.
+ */
+final class OtlpSpanExporter implements SpanExporter {
+
+  private static final Logger logger = Logger.getLogger(OtlpSpanExporter.class.getName());
+
+  private final OtlpTransport<?> transport;
+  private final int maxConcurrentExports;
+  private final Semaphore inFlight;
+  private final int maxRetries;
+  private final long initialBackoff;
+  private final long maxBackoff;
+  private final long timeout;
+
+  private final LongAdder exportedSpans = new LongAdder();
+  private final LongAdder failedSpans = new LongAdder();
+  private final LongAdder droppedSpans = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+
+  private volatile boolean stopped;
+  private volatile TracerStats.Exporter stats;
+
+  OtlpSpanExporter(OtlpTransport<?> transport, int maxConcurrentExports, int maxRetries, long initialBackoff,
+                   long maxBackoff, long timeout) {
+    this.transport = transport;
+    this.maxConcurrentExports = maxConcurrentExports;
+    this.inFlight = new Semaphore(maxConcurrentExports);
+    this.maxRetries = maxRetries;
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+    this.timeout = timeout;
+  }
+
+  OtlpTransport<?> getTransport() {
+    return transport;
+  }
+
+  void setStats(TracerStats.Exporter stats) {
+    this.stats = stats;
+  }
+
+  @Override
+  public ResultCode export(Collection<SpanData> spans) {
+    if (stopped) {
+      droppedSpans.add(spans.size());
+      return ResultCode.FAILED_NOT_RETRYABLE;
+    }
+    if (!transport.isReady() || !acquire()) {
+      droppedSpans.add(spans.size());
+      return ResultCode.FAILED_RETRYABLE;
+    }
+    long start = System.nanoTime();
+    try {
+      send(transport, OtlpEncoder.encode(spans), spans.size(), start);
+    } catch (RuntimeException e) {
+      inFlight.release();
+      failedSpans.add(spans.size());
+      report(spans.size(), false, start);
+      logger.log(Level.WARNING, "Could not encode the spans", e);
+      return ResultCode.FAILED_NOT_RETRYABLE;
+    }
+    return ResultCode.SUCCESS;
+  }
+
+  private boolean acquire() {
+    if (Context.isOnEventLoopThread()) {
+      // never block an event loop
+      return inFlight.tryAcquire();
+    }
+    try {
+      return inFlight.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private <P> void send(OtlpTransport<P> transport, ExportTraceServiceRequest request, int count, long start) {
+    send(transport, transport.encode(request), count, start, 0);
+  }
+
+  private <P> void send(OtlpTransport<P> transport, P payload, int count, long start, int attempt) {
+    transport.send(payload, result -> {
+      if (result == OtlpTransport.Result.RETRYABLE && attempt < maxRetries) {
+        retries.increment();
+        try {
+          transport.schedule(backoff(attempt), () -> send(transport, payload, count, start, attempt + 1));
+          return;
+        } catch (RejectedExecutionException e) {
+          // closed meanwhile
+        }
+      }
+      if (result == OtlpTransport.Result.SUCCESS) {
+        exportedSpans.add(count);
+      } else {
+        failedSpans.add(count);
+      }
+      // the retries included
+      report(count, result == OtlpTransport.Result.SUCCESS, start);
+      inFlight.release();
+    });
+  }
+
+  /**
+   * Report an export started at {@code start} to the tracer stats, once set.
+   */
+  private void report(int count, boolean success, long start) {
+    TracerStats.Exporter stats = this.stats;
+    if (stats != null) {
+      stats.completed(count, success, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * @return the delay before the retry following {@code attempt}, doubled on each attempt with a random jitter
+   */
+  long backoff(int attempt) {
+    long delay = Math.min(maxBackoff, initialBackoff << Math.min(attempt, 30));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  /**
+   * Stop accepting spans and wait up to the timeout for the requests in flight.
+   */
+  @Override
+  public void shutdown() {
+    if (stopped) {
+      return;
+    }
+    stopped = true;
+    if (!Context.isOnEventLoopThread()) {
+      try {
+        if (inFlight.tryAcquire(maxConcurrentExports, timeout, TimeUnit.MILLISECONDS)) {
+          inFlight.release(maxConcurrentExports);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    transport.close();
+  }
+
+  long getExportedSpans() {
+    return exportedSpans.sum();
+  }
+
+  long getFailedSpans() {
+    return failedSpans.sum();
+  }
+
+  long getDroppedSpans() {
+    return droppedSpans.sum();
+  }
+
+  long getRetries() {
+    return retries.sum();
+  }
+
+  int getInFlightExports() {
+    return maxConcurrentExports - inFlight.availablePermits();
+  }
+}
@@ -0,0 +1,51 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.vertx.core.Vertx;
+
+import java.util.function.Consumer;
+
+/**
+ * Send the OTLP export requests to a collector.
+ *
+ * @param <P> the encoded form of a request, kept to send it again on retries
+ */
+interface OtlpTransport<P> {
+
+  enum Result {
+    SUCCESS,
+    /** the collector is unavailable or overloaded, the request can be sent again */
+    RETRYABLE,
+    FAILED
+  }
+
+  /**
+   * Bind the transport to the Vert.x instance of the tracer.
+   */
+  default void start(Vertx vertx) {
+  }
+
+  /**
+   * @return {@code true} when requests can be sent
+   */
+  default boolean isReady() {
+    return true;
+  }
+
+  /**
+   * Encode the request, called on the exporting thread.
+   */
+  P encode(ExportTraceServiceRequest request);
+
+  /**
+   * Send an encoded request, {@code callback} is called once with the outcome.
+   */
+  void send(P payload, Consumer<Result> callback);
+
+  /**
+   * Run {@code task} after {@code delay} ms.
+   */
+  void schedule(long delay, Runnable task);
+
+  void close();
+}
@@ -0,0 +1,300 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.TraceId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keep the last finished spans in memory, for tests and load tests.
+ * <p>
+ * The spans are stored in a ring buffer of fixed capacity. A span claims its slot with an atomic increment of the
+ * write sequence, so that the exporting threads never wait for each other; when the buffer is full the oldest span is
+ * overwritten or the new span is dropped, depending on the {@link OverflowPolicy}.
+ * <p>
+ * The spans are indexed by trace id and by name as they are added, the spans overwritten are removed from the index.
+ * {@link #awaitSpans} and {@link #whenSpans} wait for a number of spans without polling.
+ */
+public final class RingBufferSpanExporter implements SpanExporter {
+
+  /**
+   * What happens to a span exported while the buffer is full.
+   */
+  public enum OverflowPolicy {
+    /**
+     * The oldest span is replaced.
+     */
+    OVERWRITE_OLDEST,
+    /**
+     * The new span is dropped.
+     */
+    DROP_NEWEST
+  }
+
+  private final int capacity;
+  private final int mask;
+  private final OverflowPolicy overflowPolicy;
+  private final AtomicReferenceArray<Entry> slots;
+  // sequence of the next span
+  private final AtomicLong tail = new AtomicLong();
+  // sequence of the first span since the last reset
+  private volatile long head;
+  // number of sequences stored in their slot or lost, a claimed sequence is not visible until then
+  private final AtomicLong published = new AtomicLong();
+  // number of sequences published at the last reset
+  private volatile long publishedHead;
+  private final ConcurrentHashMap<TraceId, Queue<Entry>> byTraceId = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Queue<Entry>> byName = new ConcurrentHashMap<>();
+  private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+  private final LongAdder droppedSpans = new LongAdder();
+  private volatile boolean stopped;
+
+  RingBufferSpanExporter(int capacity, OverflowPolicy overflowPolicy) {
+    // a power of two, the slot of a sequence is then a mask
+    int size = Integer.highestOneBit(capacity);
+    this.capacity = size < capacity ? size << 1 : size;
+    this.mask = this.capacity - 1;
+    this.overflowPolicy = overflowPolicy;
+    this.slots = new AtomicReferenceArray<>(this.capacity);
+  }
+
+  @Override
+  public ResultCode export(Collection<SpanData> spans) {
+    if (stopped) {
+      return ResultCode.FAILED_NOT_RETRYABLE;
+    }
+    for (SpanData span : spans) {
+      add(span);
+    }
+    if (!waiters.isEmpty()) {
+      notifyWaiters();
+    }
+    return ResultCode.SUCCESS;
+  }
+
+  private void add(SpanData span) {
+    long seq;
+    if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+      do {
+        seq = tail.get();
+        if (seq - head >= capacity) {
+          droppedSpans.increment();
+          return;
+        }
+      } while (!tail.compareAndSet(seq, seq + 1));
+    } else {
+      seq = tail.getAndIncrement();
+    }
+    store(seq, span);
+    // the waiters count the spans once they can be read
+    published.incrementAndGet();
+  }
+
+  private void store(long seq, SpanData span) {
+    Entry entry = new Entry(seq, span);
+    int idx = (int) (seq & mask);
+    while (true) {
+      Entry previous = slots.get(idx);
+      if (previous != null && previous.seq > seq) {
+        // a writer lapping this one already stored a newer span
+        droppedSpans.increment();
+        return;
+      }
+      if (slots.compareAndSet(idx, previous, entry)) {
+        if (previous != null) {
+          if (previous.seq >= head) {
+            droppedSpans.increment();
+          }
+          unindex(previous);
+        }
+        break;
+      }
+    }
+    index(entry);
+  }
+
+  private void index(Entry entry) {
+    byTraceId.compute(entry.span.getTraceId(), (traceId, entries) -> {
+      if (entries == null) {
+        entries = new ConcurrentLinkedQueue<>();
+      }
+      entries.add(entry);
+      return entries;
+    });
+    byName.computeIfAbsent(entry.span.getName(), name -> new ConcurrentLinkedQueue<>()).add(entry);
+  }
+
+  private void unindex(Entry evicted) {
+    // the spans of a key are queued in sequence order, the evicted span and the spans before it are gone
+    byTraceId.computeIfPresent(evicted.span.getTraceId(), (traceId, entries) -> {
+      evict(entries, evicted.seq);
+      return entries.isEmpty() ? null : entries;
+    });
+    Queue<Entry> entries = byName.get(evicted.span.getName());
+    if (entries != null) {
+      evict(entries, evicted.seq);
+    }
+  }
+
+  private static void evict(Queue<Entry> entries, long seq) {
+    Entry entry;
+    while ((entry = entries.peek()) != null && entry.seq <= seq) {
+      entries.remove(entry);
+    }
+  }
+
+  private boolean isLive(Entry entry) {
+    return entry.seq >= head && slots.get((int) (entry.seq & mask)) == entry;
+  }
+
+  /**
+   * @return the spans in the buffer, in the order they were exported
+   */
+  public List<SpanData> getFinishedSpanItems() {
+    long end = tail.get();
+    long start = Math.max(head, end - capacity);
+    List<SpanData> spans = new ArrayList<>((int) (end - start));
+    for (long seq = start; seq < end; seq++) {
+      Entry entry = slots.get((int) (seq & mask));
+      // skip the slots not written yet or written again meanwhile
+      if (entry != null && entry.seq == seq) {
+        spans.add(entry.span);
+      }
+    }
+    return spans;
+  }
+
+  /**
+   * @return the spans in the buffer of the trace {@code traceId}
+   */
+  public List<SpanData> getSpansByTraceId(TraceId traceId) {
+    return lookup(byTraceId.get(traceId));
+  }
+
+  /**
+   * @return the spans in the buffer named {@code name}
+   */
+  public List<SpanData> getSpansByName(String name) {
+    return lookup(byName.get(name));
+  }
+
+  private List<SpanData> lookup(Queue<Entry> entries) {
+    if (entries == null) {
+      return Collections.emptyList();
+    }
+    List<SpanData> spans = new ArrayList<>();
+    for (Entry entry : entries) {
+      if (isLive(entry)) {
+        spans.add(entry.span);
+      }
+    }
+    return spans;
+  }
+
+  /**
+   * @return the number of spans exported since the last reset, including the spans overwritten
+   */
+  public long getExportedSpans() {
+    return Math.max(0, published.get() - publishedHead);
+  }
+
+  /**
+   * @return the number of spans lost because the buffer was full: dropped or overwritten
+   */
+  public long getDroppedSpans() {
+    return droppedSpans.sum();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Wait until {@code count} spans have been exported since the last reset.
+   *
+   * @return the spans in the buffer
+   * @throws TimeoutException when fewer spans have been exported after {@code timeout}
+   */
+  public List<SpanData> awaitSpans(int count, long timeout, TimeUnit unit)
+    throws InterruptedException, TimeoutException {
+    try {
+      return whenSpans(count).get(timeout, unit);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } catch (TimeoutException e) {
+      throw new TimeoutException("Expected " + count + " spans, got " + getExportedSpans());
+    }
+  }
+
+  /**
+   * @return a future completed with the spans in the buffer once {@code count} spans have been exported since the
+   * last reset, completed by the exporting thread
+   */
+  public CompletableFuture<List<SpanData>> whenSpans(int count) {
+    Waiter waiter = new Waiter(count);
+    waiters.add(waiter);
+    // the spans may have been exported before the waiter was added
+    notifyWaiters();
+    return waiter.future;
+  }
+
+  private void notifyWaiters() {
+    long exported = getExportedSpans();
+    for (Waiter waiter : waiters) {
+      if (exported >= waiter.count && waiters.remove(waiter)) {
+        waiter.future.complete(getFinishedSpanItems());
+      }
+    }
+  }
+
+  /**
+   * Forget the spans exported so far.
+   */
+  public void reset() {
+    publishedHead = published.get();
+    head = tail.get();
+    byTraceId.clear();
+    byName.clear();
+  }
+
+  @Override
+  public void shutdown() {
+    stopped = true;
+    reset();
+  }
+
+  private static final class Entry {
+
+    private final long seq;
+    private final SpanData span;
+
+    private Entry(long seq, SpanData span) {
+      this.seq = seq;
+      this.span = span;
+    }
+  }
+
+  private static final class Waiter {
+
+    private final int count;
+    private final CompletableFuture<List<SpanData>> future = new CompletableFuture<>();
+
+    private Waiter(int count) {
+      this.count = count;
+    }
+  }
+}
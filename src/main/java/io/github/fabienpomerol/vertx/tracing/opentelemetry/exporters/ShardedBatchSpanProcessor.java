@@ -0,0 +1,409 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.BatchOptions;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Context;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link SpanProcessor} giving each Vert.x event loop its own bounded buffer, so that the event loops do not contend
+ * on a shared queue. The other threads, e.g. the worker pools, are not bounded in number: they share a single buffer.
+ * <p>
+ * The buffer of an event loop has a single producer, the event loop: {@code span.end()} stores the span and publishes
+ * it with an ordered write, without lock nor CAS. A few worker threads drain the buffers, each worker owns a subset of
+ * them, and export the spans in batches. Spans ended while their buffer is full, or once the processor is shut down,
+ * are dropped and counted.
+ * <p>
+ * {@link #getShardStats()} reports the spans queued and dropped per buffer, to see the imbalance between the event
+ * loops.
+ */
+@ThreadSafe
+public final class ShardedBatchSpanProcessor implements SpanProcessor {
+
+  /**
+   * The name of the buffer shared by the threads other than the event loops in the {@link #getShardStats()}.
+   */
+  public static final String SHARED = "shared";
+
+  private static final Logger logger = Logger.getLogger(ShardedBatchSpanProcessor.class.getName());
+  private static final AtomicInteger WORKER_ID = new AtomicInteger();
+
+  private final SpanExporter exporter;
+  private final int shardCapacity;
+  private final int maxExportBatchSize;
+  private final long scheduleDelay;
+  private final Thread[] workers;
+  private final Object[] locks;
+  private final List<Shard> shards = new CopyOnWriteArrayList<>();
+  private final AtomicInteger shardIds = new AtomicInteger();
+  private final Predicate<Thread> ownShard;
+  private final Shard shared;
+  private final ThreadLocal<Shard> localShard = ThreadLocal.withInitial(this::createShard);
+
+  private final LongAdder exportedSpans = new LongAdder();
+  private final LongAdder failedSpans = new LongAdder();
+  private final LongAdder droppedSpans = new LongAdder();
+
+  private volatile boolean stopped;
+
+  public ShardedBatchSpanProcessor(SpanExporter exporter, BatchOptions options) {
+    this(exporter, options, thread -> Context.isOnEventLoopThread());
+  }
+
+  /**
+   * @param ownShard tells whether the current thread, ending a span for the first time, gets a buffer of its own
+   */
+  public ShardedBatchSpanProcessor(SpanExporter exporter, BatchOptions options, Predicate<Thread> ownShard) {
+    this.exporter = exporter;
+    this.ownShard = ownShard;
+    // a power of two, the slot of a sequence is then a mask
+    int capacity = Integer.highestOneBit(options.getMaxQueueSize());
+    this.shardCapacity = capacity < options.getMaxQueueSize() ? capacity << 1 : capacity;
+    this.maxExportBatchSize = Math.min(options.getMaxExportBatchSize(), shardCapacity);
+    this.scheduleDelay = options.getScheduleDelay();
+    this.workers = new Thread[options.getExportWorkers()];
+    this.locks = new Object[workers.length];
+    for (int idx = 0; idx < workers.length; idx++) {
+      int worker = idx;
+      locks[idx] = new Object();
+      workers[idx] = new Thread(() -> work(worker), "vertx-opentelemetry-shard-" + WORKER_ID.getAndIncrement());
+      workers[idx].setDaemon(true);
+      workers[idx].start();
+    }
+    this.shared = new Shard(shardIds.getAndIncrement(), null, shardCapacity, workers[0]);
+    shards.add(shared);
+  }
+
+  private Shard createShard() {
+    Thread thread = Thread.currentThread();
+    if (!ownShard.test(thread)) {
+      return shared;
+    }
+    int id = shardIds.getAndIncrement();
+    Shard shard = new Shard(id, thread, shardCapacity, workers[id % workers.length]);
+    shards.add(shard);
+    return shard;
+  }
+
+  @Override
+  public void onStart(ReadableSpan span) {
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    if (!span.getSpanContext().getTraceFlags().isSampled()) {
+      return;
+    }
+    if (stopped) {
+      droppedSpans.increment();
+      return;
+    }
+    Shard shard = localShard.get();
+    int size = shard == shared ? shard.sharedOffer(span) : shard.offer(span);
+    if (size < 0) {
+      droppedSpans.increment();
+    } else if (stopped) {
+      // stopped during the offer, the final flush may be over already
+      discard(shard);
+    } else if (size == maxExportBatchSize) {
+      LockSupport.unpark(shard.worker);
+    }
+  }
+
+  /**
+   * Drop the spans left in {@code shard} once the processor is stopped, so that none stays in it uncounted.
+   */
+  private void discard(Shard shard) {
+    synchronized (locks[shard.id % workers.length]) {
+      while (shard.poll() != null) {
+        shard.dropped.increment();
+        droppedSpans.increment();
+      }
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+
+  /**
+   * Export all the buffered spans from the calling thread.
+   */
+  @Override
+  public void forceFlush() {
+    List<ReadableSpan> batch = new ArrayList<>(maxExportBatchSize);
+    for (int worker = 0; worker < workers.length; worker++) {
+      drain(worker, batch, false);
+    }
+  }
+
+  /**
+   * Stop accepting spans, export the buffered ones and shutdown the exporter.
+   */
+  @Override
+  public void shutdown() {
+    if (stopped) {
+      return;
+    }
+    stopped = true;
+    for (Thread worker : workers) {
+      LockSupport.unpark(worker);
+    }
+    for (Thread worker : workers) {
+      try {
+        worker.join(scheduleDelay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    forceFlush();
+    exporter.shutdown();
+  }
+
+  /**
+   * @return the number of spans dropped because their buffer was full or the processor stopped
+   */
+  public long getDroppedSpans() {
+    return droppedSpans.sum();
+  }
+
+  /**
+   * @return the number of spans successfully exported
+   */
+  public long getExportedSpans() {
+    return exportedSpans.sum();
+  }
+
+  /**
+   * @return the number of spans the exporter failed to export
+   */
+  public long getFailedSpans() {
+    return failedSpans.sum();
+  }
+
+  /**
+   * @return the statistics of each buffer, in creation order, the shared buffer first
+   */
+  public List<ShardStats> getShardStats() {
+    List<ShardStats> stats = new ArrayList<>(shards.size());
+    for (Shard shard : shards) {
+      stats.add(new ShardStats(shard.name, shard.queued.sum(), shard.dropped.sum(), shard.size()));
+    }
+    return Collections.unmodifiableList(stats);
+  }
+
+  private void work(int worker) {
+    List<ReadableSpan> batch = new ArrayList<>(maxExportBatchSize);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scheduleDelay);
+    while (!stopped) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining > 0 && !hasFullBatch(worker)) {
+        LockSupport.parkNanos(this, remaining);
+        continue;
+      }
+      drain(worker, batch, true);
+      deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scheduleDelay);
+    }
+  }
+
+  private boolean hasFullBatch(int worker) {
+    for (Shard shard : shards) {
+      if (shard.id % workers.length == worker && shard.size() >= maxExportBatchSize) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Export the spans of the shards owned by {@code worker}, {@code prune} removes the drained shards of the threads
+   * gone.
+   */
+  private void drain(int worker, List<ReadableSpan> batch, boolean prune) {
+    // the worker and forceFlush() consume the same shards, a shard has a single consumer at a time
+    synchronized (locks[worker]) {
+      for (Shard shard : shards) {
+        if (shard.id % workers.length != worker) {
+          continue;
+        }
+        ReadableSpan span;
+        while ((span = shard.poll()) != null) {
+          batch.add(span);
+          if (batch.size() == maxExportBatchSize) {
+            export(batch);
+          }
+        }
+        if (prune && shard != shared && !shard.isAlive() && shard.size() == 0) {
+          // the thread is gone, a new thread gets a new shard
+          shards.remove(shard);
+        }
+      }
+      export(batch);
+    }
+  }
+
+  private void export(List<ReadableSpan> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<SpanData> spans = new ArrayList<>(batch.size());
+    for (ReadableSpan span : batch) {
+      spans.add(span.toSpanData());
+    }
+    batch.clear();
+    // the workers convert their spans in parallel, exporters are not required to be thread safe
+    synchronized (exporter) {
+      try {
+        if (exporter.export(spans) == SpanExporter.ResultCode.SUCCESS) {
+          exportedSpans.add(spans.size());
+        } else {
+          failedSpans.add(spans.size());
+        }
+      } catch (Exception e) {
+        failedSpans.add(spans.size());
+        logger.log(Level.WARNING, "Exception thrown by the export", e);
+      }
+    }
+  }
+
+  /**
+   * A single producer, single consumer ring buffer, the producers of the shared buffer take turns.
+   */
+  private static final class Shard {
+
+    private final int id;
+    private final String name;
+    private final WeakReference<Thread> thread;
+    private final Thread worker;
+    private final ReadableSpan[] buffer;
+    private final int mask;
+    // written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+    // written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private Shard(int id, Thread thread, int capacity, Thread worker) {
+      this.id = id;
+      this.name = thread == null ? SHARED : thread.getName();
+      this.thread = new WeakReference<>(thread);
+      this.worker = worker;
+      this.buffer = new ReadableSpan[capacity];
+      this.mask = capacity - 1;
+    }
+
+    /**
+     * @return the number of spans in the buffer, {@code -1} when it is full
+     */
+    private int offer(ReadableSpan span) {
+      long t = tail.get();
+      long size = t - head.get();
+      if (size >= buffer.length) {
+        dropped.increment();
+        return -1;
+      }
+      buffer[(int) (t & mask)] = span;
+      // publishes the slot to the consumer
+      tail.lazySet(t + 1);
+      queued.increment();
+      return (int) size + 1;
+    }
+
+    private synchronized int sharedOffer(ReadableSpan span) {
+      return offer(span);
+    }
+
+    private ReadableSpan poll() {
+      long h = head.get();
+      if (h == tail.get()) {
+        return null;
+      }
+      int idx = (int) (h & mask);
+      ReadableSpan span = buffer[idx];
+      buffer[idx] = null;
+      // frees the slot for the producer
+      head.lazySet(h + 1);
+      return span;
+    }
+
+    private int size() {
+      return (int) (tail.get() - head.get());
+    }
+
+    private boolean isAlive() {
+      Thread t = thread.get();
+      return t != null && t.isAlive();
+    }
+  }
+
+  /**
+   * The statistics of a buffer.
+   */
+  public static final class ShardStats {
+
+    private final String name;
+    private final long queuedSpans;
+    private final long droppedSpans;
+    private final int size;
+
+    private ShardStats(String name, long queuedSpans, long droppedSpans, int size) {
+      this.name = name;
+      this.queuedSpans = queuedSpans;
+      this.droppedSpans = droppedSpans;
+      this.size = size;
+    }
+
+    /**
+     * @return the name of the event loop owning the buffer, e.g. {@code vert.x-eventloop-thread-0}, or {@link
+     * #SHARED} for the buffer of the other threads
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the number of spans accepted by the buffer
+     */
+    public long getQueuedSpans() {
+      return queuedSpans;
+    }
+
+    /**
+     * @return the number of spans dropped because the buffer was full
+     */
+    public long getDroppedSpans() {
+      return droppedSpans;
+    }
+
+    /**
+     * @return the number of spans currently waiting in the buffer
+     */
+    public int getSize() {
+      return size;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A spool file of fixed size, memory-mapped, holding encoded span batches.
+ * <p>
+ * Layout: a header with a magic number and the read position, then records of {@code [length][span count][payload]}.
+ * The length of a record is written last, a zero length marks the end of the written records, so that a record
+ * half-written when the process died is ignored. The read position is stored in the header, the records replayed
+ * before a restart are not replayed again.
+ * <p>
+ * Not thread safe, the spool guards its segments.
+ */
+final class SpoolSegment {
+
+  static final String SUFFIX = ".spool";
+  static final int HEADER_SIZE = 8;
+  static final int RECORD_HEADER_SIZE = 8;
+
+  private static final int MAGIC = 0x76746f73; // "vtos"
+  private static final int READ_POSITION_OFFSET = 4;
+
+  private final Path path;
+  private final long id;
+  private final MappedByteBuffer buffer;
+  private int writePosition;
+  private int readPosition;
+  private int pendingSpans;
+
+  private SpoolSegment(Path path, long id, MappedByteBuffer buffer) {
+    this.path = path;
+    this.id = id;
+    this.buffer = buffer;
+  }
+
+  /**
+   * Create the segment {@code id} in {@code directory}.
+   */
+  static SpoolSegment create(Path directory, long id, int size) throws IOException {
+    Path path = directory.resolve(String.format("%020d%s", id, SUFFIX));
+    SpoolSegment segment = new SpoolSegment(path, id, map(path, size, StandardOpenOption.CREATE_NEW));
+    segment.buffer.putInt(0, MAGIC);
+    segment.buffer.putInt(READ_POSITION_OFFSET, HEADER_SIZE);
+    segment.readPosition = HEADER_SIZE;
+    segment.writePosition = HEADER_SIZE;
+    return segment;
+  }
+
+  /**
+   * Open an existing segment and find its records not replayed yet.
+   *
+   * @return the segment or {@code null} when the file is not a spool segment
+   */
+  static SpoolSegment open(Path path) throws IOException {
+    String name = path.getFileName().toString();
+    long id;
+    try {
+      id = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    long size = Files.size(path);
+    if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+      return null;
+    }
+    SpoolSegment segment = new SpoolSegment(path, id, map(path, (int) size));
+    if (segment.buffer.getInt(0) != MAGIC) {
+      return null;
+    }
+    int readPosition = segment.buffer.getInt(READ_POSITION_OFFSET);
+    int position = HEADER_SIZE;
+    int length;
+    while ((length = segment.length(position)) > 0) {
+      if (position >= readPosition) {
+        segment.pendingSpans += segment.buffer.getInt(position + 4);
+      }
+      position += RECORD_HEADER_SIZE + length;
+    }
+    segment.writePosition = position;
+    segment.readPosition = Math.max(HEADER_SIZE, Math.min(readPosition, position));
+    return segment;
+  }
+
+  private static MappedByteBuffer map(Path path, int size, StandardOpenOption... options) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, union(options))) {
+      // the mapping stays valid once the channel is closed
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private static Set<StandardOpenOption> union(StandardOpenOption... options) {
+    Set<StandardOpenOption> set = EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE);
+    set.addAll(Arrays.asList(options));
+    return set;
+  }
+
+  /**
+   * @return the length of the record at {@code position}, {@code 0} when there is none
+   */
+  private int length(int position) {
+    if (position + RECORD_HEADER_SIZE > buffer.capacity()) {
+      return 0;
+    }
+    int length = buffer.getInt(position);
+    return length > 0 && position + RECORD_HEADER_SIZE + length <= buffer.capacity() ? length : 0;
+  }
+
+  long id() {
+    return id;
+  }
+
+  /**
+   * @return the number of spans written and not replayed
+   */
+  int pendingSpans() {
+    return pendingSpans;
+  }
+
+  /**
+   * @return {@code true} when the records written so far have been replayed
+   */
+  boolean isDrained() {
+    return readPosition == writePosition;
+  }
+
+  /**
+   * Append a record.
+   *
+   * @return {@code false} when the segment has no room left for it
+   */
+  boolean append(byte[] payload, int spans) {
+    int position = writePosition;
+    if (position + RECORD_HEADER_SIZE + payload.length > buffer.capacity()) {
+      return false;
+    }
+    buffer.putInt(position + 4, spans);
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(position + RECORD_HEADER_SIZE);
+    slice.put(payload);
+    buffer.putInt(position, payload.length);
+    writePosition = position + RECORD_HEADER_SIZE + payload.length;
+    pendingSpans += spans;
+    return true;
+  }
+
+  /**
+   * @return the payload of the next record to replay or {@code null}
+   */
+  byte[] peek() {
+    if (readPosition == writePosition) {
+      return null;
+    }
+    byte[] payload = new byte[buffer.getInt(readPosition)];
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(readPosition + RECORD_HEADER_SIZE);
+    slice.get(payload);
+    return payload;
+  }
+
+  /**
+   * @return the number of spans of the next record to replay
+   */
+  int peekSpans() {
+    return buffer.getInt(readPosition + 4);
+  }
+
+  /**
+   * Move past the record returned by {@link #peek()}.
+   */
+  void commit() {
+    pendingSpans -= peekSpans();
+    readPosition += RECORD_HEADER_SIZE + buffer.getInt(readPosition);
+    buffer.putInt(READ_POSITION_OFFSET, readPosition);
+  }
+
+  void force() {
+    buffer.force();
+  }
+
+  /**
+   * Delete the file. The mapping is released when the buffer is garbage collected.
+   */
+  void delete() throws IOException {
+    Files.deleteIfExists(path);
+  }
+}
@@ -0,0 +1,201 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Vertx;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wrap an exporter so that the spans it fails to export are spooled to disk and replayed once it recovers, e.g.
+ * during a collector outage.
+ * <p>
+ * The spans are spooled in memory-mapped segment files of a fixed size in a directory, the oldest segments are
+ * deleted when the spool exceeds its maximum size. The replay is throttled to a number of spans per second so that a
+ * recovering collector is not flooded. The spool survives a restart when the directory is kept.
+ */
+@ThreadSafe
+public final class SpoolingExporter implements BackendExporter {
+
+  private static final int SEGMENT_SIZE_DEFAULT = 4 * 1024 * 1024;
+  private static final long MAX_SIZE_DEFAULT = 256L * 1024 * 1024;
+
+  private final BackendExporter exporter;
+  private final SpoolingSpanExporter spanExporter;
+
+  private SpoolingExporter(BackendExporter exporter, SpoolingSpanExporter spanExporter) {
+    this.exporter = exporter;
+    this.spanExporter = spanExporter;
+  }
+
+  @Override
+  public SpanExporter getSpanExporter() {
+    return spanExporter;
+  }
+
+  @Override
+  public void start(Vertx vertx) {
+    exporter.start(vertx);
+    spanExporter.start();
+  }
+
+  /**
+   * @return {@code false} from a failure of the wrapped exporter until a replay succeeds
+   */
+  public boolean isHealthy() {
+    return spanExporter.isHealthy();
+  }
+
+  /**
+   * @return the number of spans exported directly by the wrapped exporter
+   */
+  public long getExportedSpans() {
+    return spanExporter.getExportedSpans();
+  }
+
+  /**
+   * @return the number of spans written to the spool
+   */
+  public long getSpooledSpans() {
+    return spanExporter.getSpooledSpans();
+  }
+
+  /**
+   * @return the number of spooled spans exported by the wrapped exporter
+   */
+  public long getReplayedSpans() {
+    return spanExporter.getReplayedSpans();
+  }
+
+  /**
+   * @return the number of spans lost: deleted with the oldest segments, too large for a segment or unreadable
+   */
+  public long getDiscardedSpans() {
+    return spanExporter.getDiscardedSpans();
+  }
+
+  /**
+   * @return the number of spooled spans waiting to be replayed
+   */
+  public long getPendingSpans() {
+    return spanExporter.getPendingSpans();
+  }
+
+  @Override
+  public void flush() {
+    exporter.flush();
+  }
+
+  @Override
+  public void shutdown() {
+    exporter.shutdown();
+  }
+
+  @Override
+  public Map<String, Long> stats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("exportedSpans", getExportedSpans());
+    stats.put("spooledSpans", getSpooledSpans());
+    stats.put("replayedSpans", getReplayedSpans());
+    stats.put("discardedSpans", getDiscardedSpans());
+    stats.put("pendingSpans", getPendingSpans());
+    return stats;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private BackendExporter exporter;
+    private Path directory;
+    private int segmentSize = SEGMENT_SIZE_DEFAULT;
+    private long maxSize = MAX_SIZE_DEFAULT;
+    private long replayRate = 1_000; // spans/s
+    private long retryInterval = 5_000; // ms
+
+    /**
+     * Set the wrapped exporter.
+     */
+    public Builder setExporter(BackendExporter exporter) {
+      this.exporter = exporter;
+      return this;
+    }
+
+    /**
+     * Set the directory of the spool files, it should not be shared with another exporter.
+     */
+    public Builder setDirectory(Path directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    public Builder setDirectory(String directory) {
+      return setDirectory(Paths.get(directory));
+    }
+
+    /**
+     * Set the size in bytes of a spool file, 4 MiB by default.
+     */
+    public Builder setSegmentSize(int segmentSize) {
+      if (segmentSize < 1024) {
+        throw new IllegalArgumentException("segmentSize must be >= 1024");
+      }
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * Set the maximum size in bytes of the spool, 256 MiB by default. The oldest files are deleted above.
+     */
+    public Builder setMaxSize(long maxSize) {
+      if (maxSize < 1) {
+        throw new IllegalArgumentException("maxSize must be > 0");
+      }
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of spooled spans replayed per second.
+     */
+    public Builder setReplayRate(long replayRate) {
+      if (replayRate < 1) {
+        throw new IllegalArgumentException("replayRate must be > 0");
+      }
+      this.replayRate = replayRate;
+      return this;
+    }
+
+    /**
+     * Set the delay in ms between two replay attempts while the wrapped exporter fails.
+     */
+    public Builder setRetryInterval(long retryInterval) {
+      if (retryInterval < 0) {
+        throw new IllegalArgumentException("retryInterval must be >= 0");
+      }
+      this.retryInterval = retryInterval;
+      return this;
+    }
+
+    /**
+     * Constructs a new instance of the exporter based on the builder's values, the spool files left in the directory
+     * are replayed once it starts.
+     *
+     * @return a new exporter's instance
+     */
+    public SpoolingExporter build() {
+      if (exporter == null) {
+        throw new IllegalArgumentException("exporter must be set");
+      }
+      if (directory == null) {
+        throw new IllegalArgumentException("directory must be set");
+      }
+      return new SpoolingExporter(exporter, new SpoolingSpanExporter(exporter.getSpanExporter(), directory,
+        segmentSize, Math.max(maxSize, segmentSize), replayRate, retryInterval));
+    }
+  }
+}
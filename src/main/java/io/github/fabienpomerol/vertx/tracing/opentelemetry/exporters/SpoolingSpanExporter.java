@@ -0,0 +1,347 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Export the spans to a delegate exporter and spool them to disk while it fails.
+ * <p>
+ * While the delegate is healthy and the spool is empty the spans are exported directly. The first failure marks the
+ * delegate unhealthy: the following batches are encoded with OTLP and appended to memory-mapped segment files without
+ * calling the delegate, so that the callers do not wait for a collector known to be down. The oldest segments are
+ * deleted when the spool exceeds its size.
+ * <p>
+ * A worker thread replays the spool to the delegate, oldest batch first, at a bounded rate in spans per second. While
+ * the delegate is unhealthy it only tries one batch per retry interval. The new batches are spooled until the spool
+ * is drained, so that the recovery never exceeds the replay rate. The segments left by a previous process in the same
+ * directory are replayed too.
+ */
+final class SpoolingSpanExporter implements SpanExporter {
+
+  private static final Logger logger = Logger.getLogger(SpoolingSpanExporter.class.getName());
+  private static final AtomicInteger WORKER_ID = new AtomicInteger();
+  private static final long TICK = 50; // ms
+
+  private final SpanExporter delegate;
+  private final Path directory;
+  private final int segmentSize;
+  private final int maxSegments;
+  private final long replayRate;
+  private final long retryInterval;
+  private final Object monitor = new Object();
+
+  // guarded by this
+  private Thread worker;
+  private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+  private long nextSegmentId;
+
+  private final LongAdder exportedSpans = new LongAdder();
+  private final LongAdder spooledSpans = new LongAdder();
+  private final LongAdder replayedSpans = new LongAdder();
+  private final LongAdder discardedSpans = new LongAdder();
+
+  private volatile long pendingSpans;
+  private volatile boolean healthy = true;
+  private volatile boolean stopped;
+
+  SpoolingSpanExporter(SpanExporter delegate, Path directory, int segmentSize, long maxSize, long replayRate,
+                       long retryInterval) {
+    this.delegate = delegate;
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.maxSegments = (int) Math.max(1, maxSize / segmentSize);
+    this.replayRate = replayRate;
+    this.retryInterval = retryInterval;
+  }
+
+  /**
+   * Recover the spool left in the directory and start the worker replaying it, before the first batch is spooled
+   * at the latest.
+   */
+  synchronized void start() {
+    if (worker != null || stopped) {
+      return;
+    }
+    try {
+      Files.createDirectories(directory);
+      recover();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not recover the spool from " + directory, e);
+    }
+    worker = new Thread(this::work, "vertx-opentelemetry-spool-" + WORKER_ID.getAndIncrement());
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  private void recover() throws IOException {
+    List<SpoolSegment> found = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SpoolSegment.SUFFIX)) {
+      for (Path file : files) {
+        SpoolSegment segment = SpoolSegment.open(file);
+        if (segment != null) {
+          found.add(segment);
+        }
+      }
+    }
+    found.sort(Comparator.comparingLong(SpoolSegment::id));
+    for (SpoolSegment segment : found) {
+      segments.add(segment);
+      nextSegmentId = segment.id() + 1;
+    }
+    trim();
+    updatePending();
+  }
+
+  @Override
+  public ResultCode export(Collection<SpanData> spans) {
+    if (stopped) {
+      return ResultCode.FAILED_NOT_RETRYABLE;
+    }
+    if (healthy && pendingSpans == 0) {
+      ResultCode result = export(delegate, spans);
+      if (result == ResultCode.SUCCESS) {
+        exportedSpans.add(spans.size());
+        return result;
+      }
+      healthy = false;
+    }
+    // the new segments follow the recovered ones
+    start();
+    return spool(spans);
+  }
+
+  private static ResultCode export(SpanExporter delegate, Collection<SpanData> spans) {
+    try {
+      return delegate.export(spans);
+    } catch (RuntimeException e) {
+      logger.log(Level.FINE, "Exporter failed", e);
+      return ResultCode.FAILED_RETRYABLE;
+    }
+  }
+
+  /**
+   * Append the spans to the spool, a batch too large for a segment is split.
+   */
+  private ResultCode spool(Collection<SpanData> spans) {
+    byte[] payload = OtlpEncoder.encode(spans).toByteArray();
+    if (SpoolSegment.HEADER_SIZE + SpoolSegment.RECORD_HEADER_SIZE + payload.length > segmentSize) {
+      if (spans.size() == 1) {
+        discardedSpans.increment();
+        return ResultCode.FAILED_NOT_RETRYABLE;
+      }
+      List<SpanData> list = new ArrayList<>(spans);
+      int half = list.size() / 2;
+      ResultCode first = spool(list.subList(0, half));
+      ResultCode second = spool(list.subList(half, list.size()));
+      return first == ResultCode.SUCCESS ? second : first;
+    }
+    try {
+      append(payload, spans.size());
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not spool the spans to " + directory, e);
+      discardedSpans.add(spans.size());
+      return ResultCode.FAILED_NOT_RETRYABLE;
+    }
+    spooledSpans.add(spans.size());
+    return ResultCode.SUCCESS;
+  }
+
+  private synchronized void append(byte[] payload, int spans) throws IOException {
+    SpoolSegment last = segments.peekLast();
+    if (last == null || !last.append(payload, spans)) {
+      last = SpoolSegment.create(directory, nextSegmentId++, segmentSize);
+      segments.add(last);
+      trim();
+      last.append(payload, spans);
+    }
+    updatePending();
+  }
+
+  /**
+   * Delete the oldest segments above the size of the spool, with their spans not replayed yet.
+   */
+  private void trim() throws IOException {
+    while (segments.size() > maxSegments) {
+      SpoolSegment oldest = segments.poll();
+      discardedSpans.add(oldest.pendingSpans());
+      oldest.delete();
+    }
+  }
+
+  private void updatePending() {
+    long pending = 0;
+    for (SpoolSegment segment : segments) {
+      pending += segment.pendingSpans();
+    }
+    pendingSpans = pending;
+  }
+
+  private void work() {
+    double tokens = replayRate;
+    long last = System.nanoTime();
+    long nextAttempt = last;
+    while (!stopped) {
+      long now = System.nanoTime();
+      // at most one second of burst
+      tokens = Math.min(replayRate, tokens + (double) (now - last) * replayRate / TimeUnit.SECONDS.toNanos(1));
+      last = now;
+      while (!stopped && tokens > 0 && pendingSpans > 0 && (healthy || now - nextAttempt >= 0)) {
+        int replayed = replay();
+        if (replayed < 0) {
+          healthy = false;
+          nextAttempt = now + TimeUnit.MILLISECONDS.toNanos(retryInterval);
+          break;
+        }
+        if (replayed == 0) {
+          break;
+        }
+        healthy = true;
+        tokens -= replayed;
+      }
+      synchronized (monitor) {
+        if (!stopped) {
+          try {
+            monitor.wait(TICK);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Replay the oldest batch of the spool.
+   *
+   * @return the number of spans replayed, {@code -1} when the delegate failed
+   */
+  private int replay() {
+    SpoolSegment segment;
+    byte[] payload;
+    int spans;
+    synchronized (this) {
+      segment = oldestPending();
+      if (segment == null) {
+        updatePending();
+        return 0;
+      }
+      payload = segment.peek();
+      spans = segment.peekSpans();
+    }
+    List<SpanData> batch;
+    try {
+      batch = OtlpDecoder.decode(ExportTraceServiceRequest.parseFrom(payload));
+    } catch (InvalidProtocolBufferException e) {
+      logger.log(Level.WARNING, "Discarding a corrupted spooled batch", e);
+      batch = null;
+    }
+    if (batch != null && export(delegate, batch) != ResultCode.SUCCESS) {
+      return -1;
+    }
+    synchronized (this) {
+      // the segment may have been deleted by trim() meanwhile
+      if (segments.peekFirst() == segment) {
+        segment.commit();
+        updatePending();
+      }
+    }
+    if (batch == null) {
+      discardedSpans.add(spans);
+    } else {
+      replayedSpans.add(spans);
+    }
+    return spans;
+  }
+
+  /**
+   * @return the oldest segment with a batch to replay, the segments replayed are deleted
+   */
+  private SpoolSegment oldestPending() {
+    SpoolSegment segment;
+    while ((segment = segments.peekFirst()) != null && segment.isDrained()) {
+      if (segment == segments.peekLast()) {
+        // still written
+        return null;
+      }
+      segments.poll();
+      try {
+        segment.delete();
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Could not delete the spool segment " + segment.id(), e);
+      }
+    }
+    return segment;
+  }
+
+  boolean isHealthy() {
+    return healthy;
+  }
+
+  long getExportedSpans() {
+    return exportedSpans.sum();
+  }
+
+  long getSpooledSpans() {
+    return spooledSpans.sum();
+  }
+
+  long getReplayedSpans() {
+    return replayedSpans.sum();
+  }
+
+  long getDiscardedSpans() {
+    return discardedSpans.sum();
+  }
+
+  long getPendingSpans() {
+    return pendingSpans;
+  }
+
+  @Override
+  public void shutdown() {
+    Thread worker;
+    synchronized (this) {
+      if (stopped) {
+        return;
+      }
+      stopped = true;
+      worker = this.worker;
+    }
+    synchronized (monitor) {
+      monitor.notify();
+    }
+    if (worker != null) {
+      try {
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    // the spans left are replayed by the next exporter spooling to this directory
+    synchronized (this) {
+      for (SpoolSegment segment : segments) {
+        segment.force();
+      }
+    }
+    delegate.shutdown();
+  }
+}
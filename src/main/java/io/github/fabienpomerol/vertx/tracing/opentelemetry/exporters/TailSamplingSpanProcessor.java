@@ -0,0 +1,430 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.TailSamplingOptions;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.TraceId;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link SpanProcessor} buffering the finished spans per trace id and forwarding a trace to the exporter processors
+ * only when one of its spans matches a rule of the {@link TailSamplingOptions}.
+ * <p>
+ * A trace is decided when its local root span ends (a span without parent or with a remote parent), when it stayed
+ * buffered longer than the decision wait, or early when the estimated size of the buffered spans reaches its maximum.
+ * Spans of a trace ending after its decision are buffered as a new trace.
+ * <p>
+ * The tracer reports with {@link #ending} whether the span it ends is a local root and failed, the span is then
+ * buffered as is and converted with {@link ReadableSpan#toSpanData()} by the exporters of the kept traces only. The
+ * other spans are converted once when they end and forwarded with their converted data.
+ */
+@ThreadSafe
+public final class TailSamplingSpanProcessor implements SpanProcessor {
+
+  // the estimated size of an ended span with a few attributes and events, its name excluded
+  static final int SPAN_BYTES = 1_024;
+
+  private static final AtomicInteger SWEEPER_ID = new AtomicInteger();
+
+  private final List<SpanProcessor> processors;
+  private final long decisionWait;
+  private final long maxBufferedBytes;
+  private final boolean keepErrors;
+  private final long latencyThreshold;
+  private final Map<String, String> attributes;
+
+  private final ConcurrentHashMap<TraceId, TraceBuffer> traces = new ConcurrentHashMap<>();
+  // buffers in creation order, decided buffers are removed lazily when they reach the head
+  private final ConcurrentLinkedQueue<TraceBuffer> order = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger bufferedSpans = new AtomicInteger();
+  private final AtomicLong bufferedBytes = new AtomicLong();
+  private final ScheduledExecutorService sweeper;
+  // the span reported by the tracer of this processor on each thread
+  private final ThreadLocal<Ending> ending = ThreadLocal.withInitial(Ending::new);
+
+  private final LongAdder keptTraces = new LongAdder();
+  private final LongAdder droppedTraces = new LongAdder();
+  private final LongAdder timedOutTraces = new LongAdder();
+  private final LongAdder evictedTraces = new LongAdder();
+
+  private volatile boolean stopped;
+
+  /**
+   * @param processors the processors of the exporters receiving the kept traces
+   * @param options the sampling rules
+   */
+  public TailSamplingSpanProcessor(List<SpanProcessor> processors, TailSamplingOptions options) {
+    this.processors = new ArrayList<>(processors);
+    this.decisionWait = TimeUnit.MILLISECONDS.toNanos(options.getDecisionWait());
+    this.maxBufferedBytes = options.getMaxBufferedBytes();
+    this.keepErrors = options.isKeepErrors();
+    this.latencyThreshold = TimeUnit.MILLISECONDS.toNanos(options.getLatencyThreshold());
+    this.attributes = options.getAttributes();
+    this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "vertx-opentelemetry-tail-sampling-" + SWEEPER_ID.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(1, Math.min(options.getDecisionWait() / 10, 1_000));
+    sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Report the span about to be ended on the calling thread, read by this processor when the {@code end()} of the span
+   * calls it instead of converting the span. Only the tracer owning the processor calls it.
+   *
+   * @param context   the context of the span
+   * @param localRoot whether the span has no parent or a remote parent
+   * @param error     whether the span has an error status
+   */
+  public void ending(SpanContext context, boolean localRoot, boolean error) {
+    Ending ending = this.ending.get();
+    ending.context = context;
+    ending.localRoot = localRoot;
+    ending.error = error;
+  }
+
+  @Override
+  public void onStart(ReadableSpan span) {
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    SpanContext context = span.getSpanContext();
+    Ending ending = this.ending.get();
+    boolean reported = ending.context == context;
+    ending.context = null;
+    if (stopped || !context.getTraceFlags().isSampled()) {
+      return;
+    }
+    boolean match;
+    boolean localRoot;
+    long bytes;
+    if (reported) {
+      match = keepErrors && ending.error;
+      localRoot = ending.localRoot;
+      bytes = SPAN_BYTES + 2L * span.getName().length();
+    } else {
+      // not ended by the tracer, converted once here and by none of the exporters
+      SpanData data = span.toSpanData();
+      span = new ConvertedSpan(context, data);
+      match = (keepErrors && !data.getStatus().isOk()) || matchesAttributes(data);
+      localRoot = !data.getParentSpanId().isValid() || data.getHasRemoteParent();
+      bytes = estimatedBytes(data);
+    }
+    match |= latencyThreshold > 0 && span.getLatencyNanos() >= latencyThreshold;
+
+    TraceBuffer buffer;
+    while (true) {
+      buffer = traces.computeIfAbsent(context.getTraceId(), this::newBuffer);
+      synchronized (buffer) {
+        if (buffer.spans != null) {
+          buffer.spans.add(span);
+          buffer.bytes += bytes;
+          buffer.keep |= match;
+          break;
+        }
+      }
+      // decided concurrently, the next iteration creates a new buffer
+      traces.remove(buffer.traceId, buffer);
+    }
+    bufferedSpans.incrementAndGet();
+    bufferedBytes.addAndGet(bytes);
+
+    if (localRoot) {
+      decide(buffer);
+    }
+    while (bufferedBytes.get() > maxBufferedBytes) {
+      TraceBuffer oldest = order.poll();
+      if (oldest == null) {
+        break;
+      }
+      if (decide(oldest)) {
+        evictedTraces.increment();
+      }
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+
+  /**
+   * Decide all the buffered traces and flush the exporter processors.
+   */
+  @Override
+  public void forceFlush() {
+    TraceBuffer buffer;
+    while ((buffer = order.poll()) != null) {
+      decide(buffer);
+    }
+    for (SpanProcessor processor : processors) {
+      processor.forceFlush();
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    if (stopped) {
+      return;
+    }
+    stopped = true;
+    sweeper.shutdownNow();
+    forceFlush();
+    for (SpanProcessor processor : processors) {
+      processor.shutdown();
+    }
+  }
+
+  /**
+   * @return the number of traces currently buffered
+   */
+  public int getBufferedTraces() {
+    return traces.size();
+  }
+
+  /**
+   * @return the number of spans currently buffered
+   */
+  public int getBufferedSpans() {
+    return bufferedSpans.get();
+  }
+
+  /**
+   * @return the estimated size in bytes of the spans currently buffered
+   */
+  public long getBufferedBytes() {
+    return bufferedBytes.get();
+  }
+
+  /**
+   * @return the number of traces forwarded to the exporters
+   */
+  public long getKeptTraces() {
+    return keptTraces.sum();
+  }
+
+  /**
+   * @return the number of traces discarded because no rule matched
+   */
+  public long getDroppedTraces() {
+    return droppedTraces.sum();
+  }
+
+  /**
+   * @return the number of traces decided after the decision wait, without their local root span
+   */
+  public long getTimedOutTraces() {
+    return timedOutTraces.sum();
+  }
+
+  /**
+   * @return the number of traces decided early because the buffer was full
+   */
+  public long getEvictedTraces() {
+    return evictedTraces.sum();
+  }
+
+  private TraceBuffer newBuffer(TraceId traceId) {
+    TraceBuffer buffer = new TraceBuffer(traceId, System.nanoTime());
+    order.add(buffer);
+    return buffer;
+  }
+
+  /**
+   * @return the estimated size of a converted span
+   */
+  static long estimatedBytes(SpanData data) {
+    long bytes = SPAN_BYTES + 2L * data.getName().length();
+    // beyond the few attributes and events of the base size
+    bytes += 64L * Math.max(0, data.getAttributes().size() - 8);
+    bytes += 128L * Math.max(0, data.getTimedEvents().size() - 2);
+    return bytes;
+  }
+
+  private boolean matchesAttributes(SpanData data) {
+    if (!attributes.isEmpty()) {
+      Map<String, AttributeValue> spanAttributes = data.getAttributes();
+      for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+        AttributeValue value = spanAttributes.get(attribute.getKey());
+        if (value != null && attribute.getValue().equals(toString(value))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String toString(AttributeValue value) {
+    switch (value.getType()) {
+      case STRING:
+        return value.getStringValue();
+      case BOOLEAN:
+        return Boolean.toString(value.getBooleanValue());
+      case LONG:
+        return Long.toString(value.getLongValue());
+      case DOUBLE:
+        return Double.toString(value.getDoubleValue());
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Decide the trace once, forwarding its spans to the exporters when it is kept. The spans reported by the tracer are
+   * converted to match the attribute rules only when no other rule kept the trace.
+   *
+   * @return {@code true} if the trace was decided by this call
+   */
+  private boolean decide(TraceBuffer buffer) {
+    List<ReadableSpan> spans;
+    boolean keep;
+    long bytes;
+    synchronized (buffer) {
+      spans = buffer.spans;
+      if (spans == null) {
+        return false;
+      }
+      keep = buffer.keep;
+      bytes = buffer.bytes;
+      buffer.spans = null;
+    }
+    traces.remove(buffer.traceId, buffer);
+    bufferedSpans.addAndGet(-spans.size());
+    bufferedBytes.addAndGet(-bytes);
+    if (!keep && !attributes.isEmpty()) {
+      for (int idx = 0; idx < spans.size(); idx++) {
+        ReadableSpan span = spans.get(idx);
+        if (!(span instanceof ConvertedSpan)) {
+          ConvertedSpan converted = new ConvertedSpan(span.getSpanContext(), span.toSpanData());
+          spans.set(idx, converted);
+          keep |= matchesAttributes(converted.data);
+        }
+      }
+    }
+    if (keep) {
+      keptTraces.increment();
+      for (ReadableSpan span : spans) {
+        for (SpanProcessor processor : processors) {
+          processor.onEnd(span);
+        }
+      }
+    } else {
+      droppedTraces.increment();
+    }
+    return true;
+  }
+
+  private void sweep() {
+    long now = System.nanoTime();
+    TraceBuffer buffer;
+    while ((buffer = order.peek()) != null) {
+      if (buffer.isDecided()) {
+        order.remove(buffer);
+      } else if (now - buffer.createdAt >= decisionWait) {
+        order.remove(buffer);
+        if (decide(buffer)) {
+          timedOutTraces.increment();
+        }
+      } else {
+        break;
+      }
+    }
+  }
+
+  private static final class TraceBuffer {
+
+    final TraceId traceId;
+    final long createdAt;
+    // guarded by this, null once decided
+    List<ReadableSpan> spans = new ArrayList<>(4);
+    long bytes;
+    boolean keep;
+
+    TraceBuffer(TraceId traceId, long createdAt) {
+      this.traceId = traceId;
+      this.createdAt = createdAt;
+    }
+
+    synchronized boolean isDecided() {
+      return spans == null;
+    }
+  }
+
+  /**
+   * The span reported by the tracer on a thread, until its processors are called.
+   */
+  private static final class Ending {
+
+    SpanContext context;
+    boolean localRoot;
+    boolean error;
+  }
+
+  /**
+   * A span converted by this processor, the exporters get its data without converting it again. The span itself is not
+   * retained.
+   */
+  private static final class ConvertedSpan implements ReadableSpan {
+
+    private final SpanContext context;
+    private final SpanData data;
+
+    ConvertedSpan(SpanContext context, SpanData data) {
+      this.context = context;
+      this.data = data;
+    }
+
+    @Override
+    public SpanContext getSpanContext() {
+      return context;
+    }
+
+    @Override
+    public String getName() {
+      return data.getName();
+    }
+
+    @Override
+    public SpanData toSpanData() {
+      return data;
+    }
+
+    @Override
+    public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+      return data.getInstrumentationLibraryInfo();
+    }
+
+    @Override
+    public boolean hasEnded() {
+      return data.getHasEnded();
+    }
+
+    @Override
+    public long getLatencyNanos() {
+      return data.getEndEpochNanos() - data.getStartEpochNanos();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Vertx;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Export the spans to a Zipkin collector with the JSON v2 encoding.
+ * <p>
+ * The exporter batches the spans itself and posts them with the Vert.x {@link io.vertx.core.http.HttpClient} of the
+ * traced Vert.x instance, it is bound to it when the first span is started or with {@link Builder#setVertx(Vertx)}.
+ * It does not need batch options: ending a span only queues it.
+ */
+@ThreadSafe
+public final class ZipkinExporter implements BackendExporter {
+
+  private static final String HOST_DEFAULT = "localhost";
+  private static final int PORT_DEFAULT = 9411;
+  private static final String PATH_DEFAULT = "/api/v2/spans";
+
+  private final ZipkinSpanExporter exporter;
+
+  private ZipkinExporter(ZipkinSpanExporter exporter) {
+    this.exporter = exporter;
+  }
+
+  @Override
+  public SpanExporter getSpanExporter() {
+    return exporter;
+  }
+
+  @Override
+  public void start(Vertx vertx) {
+    exporter.start(vertx);
+  }
+
+  /**
+   * @return the number of spans accepted by the collector
+   */
+  public long getExportedSpans() {
+    return exporter.getExportedSpans();
+  }
+
+  /**
+   * @return the number of spans rejected by the collector or not sent because of a connection failure
+   */
+  public long getFailedSpans() {
+    return exporter.getFailedSpans();
+  }
+
+  /**
+   * @return the number of spans dropped because the queue was full
+   */
+  public long getDroppedSpans() {
+    return exporter.getDroppedSpans();
+  }
+
+  @Override
+  public boolean reportCompletions(TracerStats.Exporter stats) {
+    exporter.setStats(stats);
+    return true;
+  }
+
+  @Override
+  public void flush() {
+    exporter.requestFlush();
+  }
+
+  @Override
+  public Map<String, Long> stats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("exportedSpans", getExportedSpans());
+    stats.put("failedSpans", getFailedSpans());
+    stats.put("droppedSpans", getDroppedSpans());
+    return stats;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private String serviceName;
+    private String host = HOST_DEFAULT;
+    private int port = PORT_DEFAULT;
+    private String path = PATH_DEFAULT;
+    private boolean compression;
+    private int batchSize = 512;
+    private long flushInterval = 1_000; // ms
+    private int maxQueueSize = 2048;
+    private long timeout = 10_000; // ms
+    private Vertx vertx;
+
+    public Builder setServiceName(String serviceName) {
+      this.serviceName = serviceName;
+      return this;
+    }
+
+    public Builder setHost(String host) {
+      this.host = host;
+      return this;
+    }
+
+    public Builder setPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * Set the path of the collector endpoint, {@code /api/v2/spans} by default.
+     */
+    public Builder setPath(String path) {
+      this.path = path;
+      return this;
+    }
+
+    /**
+     * Set whether the requests are compressed with gzip.
+     */
+    public Builder setCompression(boolean compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of spans sent in a request, a request is sent as soon as the queue holds a full batch.
+     */
+    public Builder setBatchSize(int batchSize) {
+      if (batchSize < 1) {
+        throw new IllegalArgumentException("batchSize must be > 0");
+      }
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Set the delay in ms after which the queued spans are sent even if they do not fill a batch.
+     */
+    public Builder setFlushInterval(long flushInterval) {
+      if (flushInterval < 1) {
+        throw new IllegalArgumentException("flushInterval must be > 0");
+      }
+      this.flushInterval = flushInterval;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of spans waiting to be sent, the spans ended while the queue is full are dropped.
+     */
+    public Builder setMaxQueueSize(int maxQueueSize) {
+      if (maxQueueSize < 1) {
+        throw new IllegalArgumentException("maxQueueSize must be > 0");
+      }
+      this.maxQueueSize = maxQueueSize;
+      return this;
+    }
+
+    /**
+     * Set the timeout in ms of a request.
+     */
+    public Builder setTimeout(long timeout) {
+      if (timeout < 1) {
+        throw new IllegalArgumentException("timeout must be > 0");
+      }
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+     * Bind the exporter to a Vert.x instance instead of the traced one.
+     */
+    public Builder setVertx(Vertx vertx) {
+      this.vertx = vertx;
+      return this;
+    }
+
+    /**
+     * Constructs a new instance of the exporter based on the builder's values.
+     *
+     * @return a new exporter's instance
+     */
+    public ZipkinExporter build() {
+      ZipkinSpanExporter exporter = new ZipkinSpanExporter(serviceName, host, port, path, compression, batchSize,
+        flushInterval, maxQueueSize, timeout);
+      if (vertx != null) {
+        exporter.start(vertx);
+      }
+      return new ZipkinExporter(exporter);
+    }
+  }
+}
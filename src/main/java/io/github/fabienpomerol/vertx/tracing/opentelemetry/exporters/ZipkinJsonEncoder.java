@@ -0,0 +1,256 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceId;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write the spans as a Zipkin JSON v2 array straight into a buffer, without building a JSON tree or intermediate
+ * strings for the ids and the numbers.
+ * <p>
+ * An encoder keeps scratch arrays and is not thread safe.
+ */
+final class ZipkinJsonEncoder {
+
+  private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+  // quoted and escaped once
+  private final byte[] serviceName;
+  private final char[] ids = new char[TraceId.getSize() * 2];
+  private final byte[] digits = new byte[20];
+
+  /**
+   * @param serviceName the local endpoint service name, {@code null} to omit the local endpoint
+   */
+  ZipkinJsonEncoder(String serviceName) {
+    if (serviceName != null) {
+      ByteBuf buf = Unpooled.buffer();
+      string(buf, serviceName);
+      this.serviceName = ByteBufUtil.getBytes(buf);
+    } else {
+      this.serviceName = null;
+    }
+  }
+
+  void encode(List<SpanData> spans, ByteBuf out) {
+    out.writeByte('[');
+    for (int i = 0; i < spans.size(); i++) {
+      if (i > 0) {
+        out.writeByte(',');
+      }
+      span(spans.get(i), out);
+    }
+    out.writeByte(']');
+  }
+
+  private void span(SpanData span, ByteBuf out) {
+    ascii(out, "{\"traceId\":\"");
+    span.getTraceId().copyLowerBase16To(ids, 0);
+    chars(out, ids, TraceId.getSize() * 2);
+    ascii(out, "\",\"id\":\"");
+    spanId(span.getSpanId(), out);
+    out.writeByte('"');
+    if (span.getParentSpanId().isValid()) {
+      ascii(out, ",\"parentId\":\"");
+      spanId(span.getParentSpanId(), out);
+      out.writeByte('"');
+    }
+    String kind = kind(span.getKind());
+    if (kind != null) {
+      ascii(out, ",\"kind\":\"");
+      ascii(out, kind);
+      out.writeByte('"');
+    }
+    ascii(out, ",\"name\":");
+    string(out, span.getName());
+    long start = span.getStartEpochNanos() / 1000;
+    ascii(out, ",\"timestamp\":");
+    number(out, start);
+    ascii(out, ",\"duration\":");
+    number(out, Math.max(1, span.getEndEpochNanos() / 1000 - start));
+    if (serviceName != null) {
+      ascii(out, ",\"localEndpoint\":{\"serviceName\":");
+      out.writeBytes(serviceName);
+      out.writeByte('}');
+    }
+    List<SpanData.TimedEvent> events = span.getTimedEvents();
+    if (!events.isEmpty()) {
+      ascii(out, ",\"annotations\":[");
+      for (int i = 0; i < events.size(); i++) {
+        SpanData.TimedEvent event = events.get(i);
+        ascii(out, i == 0 ? "{\"timestamp\":" : ",{\"timestamp\":");
+        number(out, event.getEpochNanos() / 1000);
+        ascii(out, ",\"value\":");
+        string(out, event.getName());
+        out.writeByte('}');
+      }
+      out.writeByte(']');
+    }
+    Map<String, AttributeValue> attributes = span.getAttributes();
+    Status status = span.getStatus();
+    if (!attributes.isEmpty() || !status.isOk()) {
+      ascii(out, ",\"tags\":{");
+      boolean first = true;
+      for (Map.Entry<String, AttributeValue> attribute : attributes.entrySet()) {
+        if (!first) {
+          out.writeByte(',');
+        }
+        first = false;
+        string(out, attribute.getKey());
+        out.writeByte(':');
+        value(out, attribute.getValue());
+      }
+      if (!status.isOk()) {
+        ascii(out, first ? "\"error\":" : ",\"error\":");
+        string(out, status.getDescription() != null ? status.getDescription() : status.getCanonicalCode().name());
+      }
+      out.writeByte('}');
+    }
+    out.writeByte('}');
+  }
+
+  private static String kind(io.opentelemetry.trace.Span.Kind kind) {
+    switch (kind) {
+      case SERVER:
+        return "SERVER";
+      case CLIENT:
+        return "CLIENT";
+      case PRODUCER:
+        return "PRODUCER";
+      case CONSUMER:
+        return "CONSUMER";
+      default:
+        // local spans have no kind in Zipkin
+        return null;
+    }
+  }
+
+  private void spanId(SpanId spanId, ByteBuf out) {
+    spanId.copyLowerBase16To(ids, 0);
+    chars(out, ids, SpanId.getSize() * 2);
+  }
+
+  // Zipkin tags are strings
+  private void value(ByteBuf out, AttributeValue value) {
+    switch (value.getType()) {
+      case STRING:
+        string(out, value.getStringValue());
+        break;
+      case BOOLEAN:
+        ascii(out, value.getBooleanValue() ? "\"true\"" : "\"false\"");
+        break;
+      case LONG:
+        out.writeByte('"');
+        number(out, value.getLongValue());
+        out.writeByte('"');
+        break;
+      case DOUBLE:
+        out.writeByte('"');
+        ascii(out, Double.toString(value.getDoubleValue()));
+        out.writeByte('"');
+        break;
+    }
+  }
+
+  static void ascii(ByteBuf out, String s) {
+    for (int i = 0; i < s.length(); i++) {
+      out.writeByte(s.charAt(i));
+    }
+  }
+
+  private static void chars(ByteBuf out, char[] chars, int length) {
+    for (int i = 0; i < length; i++) {
+      out.writeByte(chars[i]);
+    }
+  }
+
+  private void number(ByteBuf out, long value) {
+    if (value < 0) {
+      if (value == Long.MIN_VALUE) {
+        ascii(out, Long.toString(value));
+        return;
+      }
+      out.writeByte('-');
+      value = -value;
+    }
+    int pos = digits.length;
+    do {
+      digits[--pos] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    out.writeBytes(digits, pos, digits.length - pos);
+  }
+
+  /**
+   * Write a quoted and escaped JSON string encoded in UTF-8.
+   */
+  static void string(ByteBuf out, String s) {
+    out.writeByte('"');
+    int length = s.length();
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        if (c == '"' || c == '\\') {
+          out.writeByte('\\');
+          out.writeByte(c);
+        } else if (c < 0x20) {
+          escape(out, c);
+        } else {
+          out.writeByte(c);
+        }
+      } else if (c < 0x800) {
+        out.writeByte(0xc0 | (c >> 6));
+        out.writeByte(0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, s.charAt(++i));
+        out.writeByte(0xf0 | (codePoint >> 18));
+        out.writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+        out.writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+        out.writeByte(0x80 | (codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        // unpaired surrogate
+        out.writeByte('?');
+      } else {
+        out.writeByte(0xe0 | (c >> 12));
+        out.writeByte(0x80 | ((c >> 6) & 0x3f));
+        out.writeByte(0x80 | (c & 0x3f));
+      }
+    }
+    out.writeByte('"');
+  }
+
+  private static void escape(ByteBuf out, char c) {
+    out.writeByte('\\');
+    switch (c) {
+      case '\n':
+        out.writeByte('n');
+        break;
+      case '\r':
+        out.writeByte('r');
+        break;
+      case '\t':
+        out.writeByte('t');
+        break;
+      case '\b':
+        out.writeByte('b');
+        break;
+      case '\f':
+        out.writeByte('f');
+        break;
+      default:
+        out.writeByte('u');
+        out.writeByte('0');
+        out.writeByte('0');
+        out.writeByte(HEX[c >> 4]);
+        out.writeByte(HEX[c & 0xf]);
+    }
+  }
+}
@@ -0,0 +1,315 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Context;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.impl.VertxInternal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Queue the spans and post them in batches to a Zipkin collector with the Vert.x {@link HttpClient}.
+ * <p>
+ * {@link #export} only queues the spans. A batch is encoded and sent from a dedicated event loop context when the
+ * queue holds a full batch or when the flush interval elapses. One request is in flight at a time, which lets the
+ * context reuse the same buffers for every batch: the queue absorbs the spans ended meanwhile and the spans ended
+ * while it is full are dropped.
+ */
+final class ZipkinSpanExporter implements SpanExporter {
+
+  private static final Logger logger = Logger.getLogger(ZipkinSpanExporter.class.getName());
+  private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+  private final ZipkinJsonEncoder encoder;
+  private final BlockingQueue<SpanData> queue;
+  private final int batchSize;
+  private final long flushInterval;
+  private final long timeout;
+  private final boolean compression;
+  private final RequestOptions requestOptions;
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+  private final LongAdder exportedSpans = new LongAdder();
+  private final LongAdder failedSpans = new LongAdder();
+  private final LongAdder droppedSpans = new LongAdder();
+
+  private volatile Vertx vertx;
+  private volatile Context context;
+  private volatile HttpClient client;
+  private volatile boolean stopped;
+  private volatile TracerStats.Exporter stats;
+
+  // confined to the context
+  private final List<SpanData> batch = new ArrayList<>();
+  private ByteBuf json;
+  private Buffer jsonBody;
+  private ByteBuf gzip;
+  private Buffer gzipBody;
+  private Deflater deflater;
+  private final CRC32 crc = new CRC32();
+  private long timerId = -1;
+  private boolean sending;
+  private long sendStart;
+
+  ZipkinSpanExporter(String serviceName, String host, int port, String path, boolean compression, int batchSize,
+                     long flushInterval, int maxQueueSize, long timeout) {
+    this.encoder = new ZipkinJsonEncoder(serviceName);
+    this.queue = new ArrayBlockingQueue<>(maxQueueSize);
+    this.batchSize = Math.min(batchSize, maxQueueSize);
+    this.flushInterval = flushInterval;
+    this.timeout = timeout;
+    this.compression = compression;
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap().add("content-type", "application/json");
+    if (compression) {
+      headers.add("content-encoding", "gzip");
+    }
+    this.requestOptions = new RequestOptions()
+      .setMethod(HttpMethod.POST)
+      .setHost(host)
+      .setPort(port)
+      .setURI(path)
+      .setTimeout(timeout)
+      .setHeaders(headers);
+  }
+
+  void setStats(TracerStats.Exporter stats) {
+    this.stats = stats;
+  }
+
+  synchronized void start(Vertx vertx) {
+    if (this.vertx != null || stopped) {
+      return;
+    }
+    this.vertx = vertx;
+    this.client = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true));
+    // the tracer is closed once the event loops are stopped, the queued spans are sent before
+    ((VertxInternal) vertx).addCloseHook(this::closeHook);
+    Context context = ((VertxInternal) vertx).createEventLoopContext(null, null, null, getClass().getClassLoader());
+    context.runOnContext(v -> {
+      json = Unpooled.buffer(4096);
+      jsonBody = Buffer.buffer(json);
+      if (compression) {
+        gzip = Unpooled.buffer(1024);
+        gzipBody = Buffer.buffer(gzip);
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      }
+      timerId = vertx.setPeriodic(flushInterval, id -> flush());
+      this.context = context;
+      flush();
+    });
+  }
+
+  @Override
+  public ResultCode export(Collection<SpanData> spans) {
+    if (stopped) {
+      droppedSpans.add(spans.size());
+      return ResultCode.FAILED_NOT_RETRYABLE;
+    }
+    int dropped = 0;
+    for (SpanData span : spans) {
+      if (!queue.offer(span)) {
+        dropped++;
+      }
+    }
+    if (dropped > 0) {
+      droppedSpans.add(dropped);
+    }
+    Context context = this.context;
+    if (context != null && queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+      context.runOnContext(v -> flush());
+    }
+    return dropped > 0 ? ResultCode.FAILED_RETRYABLE : ResultCode.SUCCESS;
+  }
+
+  /**
+   * Schedule a flush on the exporter context, once bound.
+   */
+  void requestFlush() {
+    Context context = this.context;
+    if (context != null && flushRequested.compareAndSet(false, true)) {
+      context.runOnContext(v -> flush());
+    }
+  }
+
+  private void flush() {
+    flushRequested.set(false);
+    if (sending) {
+      // flushed again when the response is received
+      return;
+    }
+    if (queue.isEmpty()) {
+      if (stopped) {
+        close();
+      }
+      return;
+    }
+    queue.drainTo(batch, batchSize);
+    int count = batch.size();
+    sendStart = System.nanoTime();
+    Buffer body;
+    try {
+      json.clear();
+      encoder.encode(batch, json);
+      body = compression ? gzip() : jsonBody;
+    } catch (RuntimeException e) {
+      failedSpans.add(count);
+      report(count, false, sendStart);
+      logger.log(Level.WARNING, "Could not encode the spans", e);
+      context.runOnContext(v -> flush());
+      return;
+    } finally {
+      batch.clear();
+    }
+    sending = true;
+    client.send(requestOptions, body, ar -> {
+      if (ar.failed()) {
+        completed(count, false);
+      } else {
+        int status = ar.result().statusCode();
+        // the body is read for the connection to be reused, a failure reading it fails the batch
+        ar.result().body(v -> completed(count, v.succeeded() && status >= 200 && status < 300));
+      }
+    });
+  }
+
+  private void completed(int count, boolean success) {
+    sending = false;
+    if (success) {
+      exportedSpans.add(count);
+    } else {
+      failedSpans.add(count);
+    }
+    report(count, success, sendStart);
+    if (stopped || queue.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Report an export started at {@code start} to the tracer stats, once set.
+   */
+  private void report(int count, boolean success, long start) {
+    TracerStats.Exporter stats = this.stats;
+    if (stats != null) {
+      stats.completed(count, success, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Compress the JSON body with a reused deflater, writing the gzip header and trailer around the raw deflate data.
+   */
+  private Buffer gzip() {
+    gzip.clear();
+    gzip.writeBytes(GZIP_HEADER);
+    int length = json.readableBytes();
+    crc.reset();
+    crc.update(json.array(), json.arrayOffset() + json.readerIndex(), length);
+    deflater.reset();
+    deflater.setInput(json.array(), json.arrayOffset() + json.readerIndex(), length);
+    deflater.finish();
+    while (!deflater.finished()) {
+      gzip.ensureWritable(512);
+      int written = deflater.deflate(gzip.array(), gzip.arrayOffset() + gzip.writerIndex(), gzip.writableBytes());
+      gzip.writerIndex(gzip.writerIndex() + written);
+    }
+    gzip.writeIntLE((int) crc.getValue());
+    gzip.writeIntLE(length);
+    return gzipBody;
+  }
+
+  // on the context, once the queue is drained
+  private void close() {
+    if (closed.isDone()) {
+      return;
+    }
+    if (timerId != -1) {
+      vertx.cancelTimer(timerId);
+      timerId = -1;
+    }
+    if (deflater != null) {
+      deflater.end();
+      deflater = null;
+    }
+    client.close();
+    closed.complete(null);
+  }
+
+  private void closeHook(Promise<Void> promise) {
+    stop();
+    closed.whenComplete((v, e) -> promise.complete());
+  }
+
+  private void stop() {
+    Context context;
+    synchronized (this) {
+      if (stopped) {
+        return;
+      }
+      stopped = true;
+      context = this.context;
+    }
+    if (context != null) {
+      context.runOnContext(v -> flush());
+    } else if (vertx == null) {
+      droppedSpans.add(queue.size());
+      queue.clear();
+      closed.complete(null);
+    }
+    // otherwise the context is starting and closes once the queue is drained
+  }
+
+  /**
+   * Send the queued spans and wait up to the timeout for the last request.
+   */
+  @Override
+  public void shutdown() {
+    stop();
+    if (!Context.isOnEventLoopThread()) {
+      try {
+        closed.get(timeout, TimeUnit.MILLISECONDS);
+      } catch (ExecutionException | TimeoutException e) {
+        logger.log(Level.WARNING, "Could not send the queued spans before the timeout");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  long getExportedSpans() {
+    return exportedSpans.sum();
+  }
+
+  long getFailedSpans() {
+    return failedSpans.sum();
+  }
+
+  long getDroppedSpans() {
+    return droppedSpans.sum();
+  }
+}
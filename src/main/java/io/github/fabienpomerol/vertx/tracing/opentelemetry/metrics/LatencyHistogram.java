@@ -0,0 +1,43 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed bucket bounds, each bucket is a striped counter so that recording never blocks nor
+ * allocates.
+ */
+final class LatencyHistogram {
+
+  // upper bounds in ns, inclusive, sorted
+  private final long[] bounds;
+  // one more bucket for the values above the last bound
+  private final LongAdder[] counts;
+  private final LongAdder sum = new LongAdder();
+
+  LatencyHistogram(long[] bounds) {
+    this.bounds = bounds;
+    this.counts = new LongAdder[bounds.length + 1];
+    for (int idx = 0; idx < counts.length; idx++) {
+      counts[idx] = new LongAdder();
+    }
+  }
+
+  void record(long nanos) {
+    int idx = Arrays.binarySearch(bounds, nanos);
+    counts[idx < 0 ? -idx - 1 : idx].increment();
+    sum.add(nanos);
+  }
+
+  long[] counts() {
+    long[] snapshot = new long[counts.length];
+    for (int idx = 0; idx < counts.length; idx++) {
+      snapshot[idx] = counts[idx].sum();
+    }
+    return snapshot;
+  }
+
+  long sum() {
+    return sum.sum();
+  }
+}
@@ -0,0 +1,347 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics;
+
+import io.opentelemetry.trace.Span;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request rate, errors and latency (RED) metrics derived from the server and client spans of the tracer, so that the
+ * requests do not need a second instrumentation.
+ * <p>
+ * The metrics are keyed by operation, span kind and status code. Sampled or not, every span started by the tracer is
+ * measured. The tracer keeps the {@link Endpoint} of a request and its start time with the span of the request, ended
+ * on any context. Once a series exists, recording a request only increments striped counters and allocates nothing.
+ * {@link #snapshot()} returns the current values, to scrape or log them.
+ * <p>
+ * The number of operations is bounded, the requests of the operations above the limit are recorded under
+ * {@link #OTHER_OPERATION}.
+ */
+@ThreadSafe
+public final class SpanMetrics {
+
+  public static final String OTHER_OPERATION = "other";
+  public static final long[] DEFAULT_LATENCY_BUCKETS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000}; // ms
+  public static final int DEFAULT_MAX_OPERATIONS = 1_000;
+
+  // status codes above are recorded as 0
+  private static final int MAX_STATUS_CODE = 599;
+  private static final Span.Kind[] KINDS = Span.Kind.values();
+
+  private final long[] latencyBuckets;
+  private final long[] bounds;
+  private final int maxOperations;
+  private final ConcurrentHashMap<String, Operation> operations = new ConcurrentHashMap<>();
+  // the operations created or being created, bounds the operations map
+  private final AtomicInteger operationCount = new AtomicInteger();
+  private final Operation other = new Operation(OTHER_OPERATION);
+
+  private SpanMetrics(long[] latencyBuckets, int maxOperations) {
+    this.latencyBuckets = latencyBuckets;
+    this.bounds = new long[latencyBuckets.length];
+    for (int idx = 0; idx < latencyBuckets.length; idx++) {
+      bounds[idx] = TimeUnit.MILLISECONDS.toNanos(latencyBuckets[idx]);
+    }
+    this.maxOperations = maxOperations;
+  }
+
+  /**
+   * Start measuring a request, called by the tracer when it starts a server or client span.
+   *
+   * @param operation the span name
+   * @param kind      the span kind
+   * @return the series group to pass to {@link #end} with the start time of the request
+   */
+  public Endpoint start(String operation, Span.Kind kind) {
+    return operation(operation).endpoint(kind);
+  }
+
+  /**
+   * Record a request, called by the tracer when it ends a span.
+   *
+   * @param endpoint   the series group returned by {@link #start}
+   * @param start      the {@link System#nanoTime()} when the request started
+   * @param statusCode the response status code, {@code 0} when the response has none
+   * @param error      whether the request failed
+   */
+  public void end(Endpoint endpoint, long start, int statusCode, boolean error) {
+    endpoint.record(statusCode, error, System.nanoTime() - start);
+  }
+
+  private Operation operation(String name) {
+    Operation operation = operations.get(name);
+    if (operation == null) {
+      // reserve a slot first, concurrent requests of new operations cannot exceed the limit
+      if (operationCount.incrementAndGet() > maxOperations) {
+        operationCount.decrementAndGet();
+        return other;
+      }
+      Operation created = new Operation(name);
+      operation = operations.putIfAbsent(name, created);
+      if (operation == null) {
+        operation = created;
+      } else {
+        operationCount.decrementAndGet();
+      }
+    }
+    return operation;
+  }
+
+  /**
+   * @return the current values of the metrics, sorted by operation, kind and status code
+   */
+  public Snapshot snapshot() {
+    List<Snapshot.Series> series = new ArrayList<>();
+    List<Operation> operations = new ArrayList<>(this.operations.values());
+    operations.sort((a, b) -> a.name.compareTo(b.name));
+    operations.add(other);
+    for (Operation operation : operations) {
+      for (Span.Kind kind : KINDS) {
+        Endpoint endpoint = operation.endpoints.get(kind.ordinal());
+        if (endpoint != null) {
+          for (int status = 0; status <= MAX_STATUS_CODE; status++) {
+            Series values = endpoint.statuses.get(status);
+            if (values != null) {
+              series.add(new Snapshot.Series(operation.name, kind, status, values.requests.sum(), values.errors.sum(),
+                values.latency.counts(), values.latency.sum()));
+            }
+          }
+        }
+      }
+    }
+    return new Snapshot(latencyBuckets.clone(), series);
+  }
+
+  private final class Operation {
+
+    private final String name;
+    private final AtomicReferenceArray<Endpoint> endpoints = new AtomicReferenceArray<>(KINDS.length);
+
+    private Operation(String name) {
+      this.name = name;
+    }
+
+    private Endpoint endpoint(Span.Kind kind) {
+      Endpoint endpoint = endpoints.get(kind.ordinal());
+      if (endpoint == null) {
+        endpoints.compareAndSet(kind.ordinal(), null, new Endpoint());
+        endpoint = endpoints.get(kind.ordinal());
+      }
+      return endpoint;
+    }
+  }
+
+  /**
+   * The series of an operation and a span kind, indexed by status code.
+   */
+  public final class Endpoint {
+
+    private final AtomicReferenceArray<Series> statuses = new AtomicReferenceArray<>(MAX_STATUS_CODE + 1);
+
+    private Endpoint() {
+    }
+
+    private void record(int statusCode, boolean error, long nanos) {
+      int idx = statusCode < 0 || statusCode > MAX_STATUS_CODE ? 0 : statusCode;
+      Series series = statuses.get(idx);
+      if (series == null) {
+        statuses.compareAndSet(idx, null, new Series(bounds));
+        series = statuses.get(idx);
+      }
+      series.requests.increment();
+      if (error) {
+        series.errors.increment();
+      }
+      series.latency.record(nanos);
+    }
+  }
+
+  private static final class Series {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latency;
+
+    private Series(long[] bounds) {
+      this.latency = new LatencyHistogram(bounds);
+    }
+  }
+
+  /**
+   * The values of the metrics at a point in time.
+   */
+  public static final class Snapshot {
+
+    private final long[] latencyBuckets;
+    private final List<Series> series;
+
+    private Snapshot(long[] latencyBuckets, List<Series> series) {
+      this.latencyBuckets = latencyBuckets;
+      this.series = Collections.unmodifiableList(series);
+    }
+
+    /**
+     * @return the upper bounds in ms of the latency buckets, the last bucket of a series counts the requests above
+     */
+    public long[] getLatencyBuckets() {
+      return latencyBuckets.clone();
+    }
+
+    public List<Series> getSeries() {
+      return series;
+    }
+
+    /**
+     * @return the series of {@code operation}, {@code kind} and {@code statusCode} or {@code null}
+     */
+    public Series getSeries(String operation, Span.Kind kind, int statusCode) {
+      for (Series s : series) {
+        if (s.operation.equals(operation) && s.kind == kind && s.statusCode == statusCode) {
+          return s;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return the snapshot as JSON: <pre>{ "latencyBuckets": [1, 2, 5, ...], "series": [{ "operation": "GET",
+     * "kind": "SERVER", "statusCode": 200, "requests": 10, "errors": 0, "latencyCounts": [0, 3, 7, ...],
+     * "latencySum": 12.5 }] }</pre> with the latency sum in ms
+     */
+    public JsonObject toJson() {
+      JsonArray buckets = new JsonArray();
+      for (long bucket : latencyBuckets) {
+        buckets.add(bucket);
+      }
+      JsonArray array = new JsonArray();
+      for (Series s : series) {
+        JsonArray counts = new JsonArray();
+        for (long count : s.latencyCounts) {
+          counts.add(count);
+        }
+        array.add(new JsonObject()
+          .put("operation", s.operation)
+          .put("kind", s.kind.name())
+          .put("statusCode", s.statusCode)
+          .put("requests", s.requests)
+          .put("errors", s.errors)
+          .put("latencyCounts", counts)
+          .put("latencySum", s.latencySum / 1_000_000d));
+      }
+      return new JsonObject().put("latencyBuckets", buckets).put("series", array);
+    }
+
+    public static final class Series {
+
+      private final String operation;
+      private final Span.Kind kind;
+      private final int statusCode;
+      private final long requests;
+      private final long errors;
+      private final long[] latencyCounts;
+      private final long latencySum;
+
+      private Series(String operation, Span.Kind kind, int statusCode, long requests, long errors,
+                     long[] latencyCounts, long latencySum) {
+        this.operation = operation;
+        this.kind = kind;
+        this.statusCode = statusCode;
+        this.requests = requests;
+        this.errors = errors;
+        this.latencyCounts = latencyCounts;
+        this.latencySum = latencySum;
+      }
+
+      public String getOperation() {
+        return operation;
+      }
+
+      public Span.Kind getKind() {
+        return kind;
+      }
+
+      /**
+       * @return the response status code, {@code 0} when the responses have none
+       */
+      public int getStatusCode() {
+        return statusCode;
+      }
+
+      public long getRequests() {
+        return requests;
+      }
+
+      public long getErrors() {
+        return errors;
+      }
+
+      /**
+       * @return the number of requests per latency bucket, not cumulative
+       */
+      public long[] getLatencyCounts() {
+        return latencyCounts.clone();
+      }
+
+      /**
+       * @return the sum of the latencies in ns
+       */
+      public long getLatencySum() {
+        return latencySum;
+      }
+    }
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private long[] latencyBuckets = DEFAULT_LATENCY_BUCKETS;
+    private int maxOperations = DEFAULT_MAX_OPERATIONS;
+
+    /**
+     * Set the upper bounds in ms of the latency histogram buckets.
+     */
+    public Builder setLatencyBuckets(long... latencyBuckets) {
+      if (latencyBuckets.length == 0) {
+        throw new IllegalArgumentException("latencyBuckets must not be empty");
+      }
+      for (int idx = 0; idx < latencyBuckets.length; idx++) {
+        if (latencyBuckets[idx] < 1 || (idx > 0 && latencyBuckets[idx] <= latencyBuckets[idx - 1])) {
+          throw new IllegalArgumentException("latencyBuckets must be positive and increasing");
+        }
+      }
+      this.latencyBuckets = latencyBuckets.clone();
+      return this;
+    }
+
+    /**
+     * Set the maximum number of operations with their own series.
+     */
+    public Builder setMaxOperations(int maxOperations) {
+      if (maxOperations < 0) {
+        throw new IllegalArgumentException("maxOperations must be >= 0");
+      }
+      this.maxOperations = maxOperations;
+      return this;
+    }
+
+    /**
+     * Constructs a new instance of the metrics based on the builder's values.
+     *
+     * @return a new metrics' instance
+     */
+    public SpanMetrics build() {
+      return new SpanMetrics(latencyBuckets, maxOperations);
+    }
+  }
+}
@@ -0,0 +1,629 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.BackendExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.TailSamplingSpanProcessor;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters of the tracer itself: the spans it starts, ends and samples out, the span data it limits, the traces
+ * buffered and decided by the tail sampling, and for each exporter the spans queued, exported, dropped and failed with
+ * the latency of the exports.
+ * <p>
+ * Recording increments striped counters, {@link #snapshot()} reads them without lock. The snapshot can be published
+ * periodically on the event bus.
+ */
+@ThreadSafe
+public final class TracerStats {
+
+  public static final long DEFAULT_PUBLISH_PERIOD = 10_000; // ms
+
+  private final LongAdder startedSpans = new LongAdder();
+  private final LongAdder endedSpans = new LongAdder();
+  private final LongAdder sampledOutSpans = new LongAdder();
+  private final LongAdder droppedAttributes = new LongAdder();
+  private final LongAdder truncatedAttributes = new LongAdder();
+  private final LongAdder droppedEvents = new LongAdder();
+  private final LongAdder normalizedUrls = new LongAdder();
+  private final List<Exporter> exporters = new CopyOnWriteArrayList<>();
+  private volatile TailSamplingSpanProcessor tailSampling;
+  private final long[] latencyBuckets;
+  private final long[] bounds;
+  private final String publishAddress;
+  private final long publishPeriod;
+  private Vertx vertx;
+  private long timerId = -1;
+
+  /**
+   * Stats not published.
+   */
+  public TracerStats() {
+    this(null, DEFAULT_PUBLISH_PERIOD);
+  }
+
+  /**
+   * @param publishAddress the event bus address the snapshots are published to, {@code null} to not publish them
+   * @param publishPeriod  the period in ms of the publication
+   */
+  public TracerStats(String publishAddress, long publishPeriod) {
+    this.latencyBuckets = SpanMetrics.DEFAULT_LATENCY_BUCKETS;
+    this.bounds = new long[latencyBuckets.length];
+    for (int idx = 0; idx < latencyBuckets.length; idx++) {
+      bounds[idx] = TimeUnit.MILLISECONDS.toNanos(latencyBuckets[idx]);
+    }
+    this.publishAddress = publishAddress;
+    this.publishPeriod = publishPeriod;
+  }
+
+  /**
+   * Record a span started by the tracer.
+   *
+   * @param sampled whether the span is sampled
+   */
+  public void spanStarted(boolean sampled) {
+    startedSpans.increment();
+    if (!sampled) {
+      sampledOutSpans.increment();
+    }
+  }
+
+  /**
+   * Record a span ended by the tracer.
+   */
+  public void spanEnded() {
+    endedSpans.increment();
+  }
+
+  /**
+   * Record attributes not set on a span because of the span limits.
+   *
+   * @param count the number of attributes
+   */
+  public void attributesDropped(int count) {
+    droppedAttributes.add(count);
+  }
+
+  /**
+   * Record an attribute value or an error message truncated because of the span limits.
+   */
+  public void attributeTruncated() {
+    truncatedAttributes.increment();
+  }
+
+  /**
+   * Record an event not added to a span because of the span limits.
+   */
+  public void eventDropped() {
+    droppedEvents.increment();
+  }
+
+  /**
+   * Record a URL attribute normalized.
+   */
+  public void urlNormalized() {
+    normalizedUrls.increment();
+  }
+
+  /**
+   * Add the counters of an exporter, the tracer then wraps its span exporter and its span processor with
+   * {@link Exporter#instrument(SpanExporter)} and {@link Exporter#instrument(SpanProcessor)}. An exporter sending its
+   * spans in the background reports its sends instead, see {@link BackendExporter#reportCompletions(Exporter)}.
+   *
+   * @param name     the name of the exporter in the snapshots
+   * @param exporter the exporter
+   * @return the counters
+   */
+  public Exporter addExporter(String name, BackendExporter exporter) {
+    Exporter stats = new Exporter(name, exporter);
+    stats.reportsCompletions = exporter.reportCompletions(stats);
+    exporters.add(stats);
+    return stats;
+  }
+
+  /**
+   * Add the buffer occupancy and the decisions of the tail sampling to the snapshots.
+   *
+   * @param tailSampling the tail sampling processor of the tracer
+   */
+  public void setTailSampling(TailSamplingSpanProcessor tailSampling) {
+    this.tailSampling = tailSampling;
+  }
+
+  /**
+   * Start publishing the snapshots on the event bus, when an address is configured.
+   *
+   * @param vertx the traced Vert.x instance
+   */
+  public synchronized void start(Vertx vertx) {
+    if (publishAddress != null && this.vertx == null) {
+      this.vertx = vertx;
+      timerId = vertx.setPeriodic(publishPeriod, id -> vertx.eventBus().publish(publishAddress, snapshot().toJson()));
+    }
+  }
+
+  /**
+   * Stop publishing the snapshots.
+   */
+  public synchronized void stop() {
+    if (vertx != null) {
+      vertx.cancelTimer(timerId);
+      vertx = null;
+    }
+  }
+
+  /**
+   * @return the current values of the counters
+   */
+  public Snapshot snapshot() {
+    List<Snapshot.Exporter> exporters = new ArrayList<>(this.exporters.size());
+    for (Exporter exporter : this.exporters) {
+      exporters.add(new Snapshot.Exporter(exporter.name, exporter.queued.sum(), exporter.exported.sum(),
+        exporter.dropped.getAsLong(), exporter.failed.sum(), exporter.exports.sum(), exporter.latency.counts(),
+        exporter.latency.sum(), exporter.exporter.stats()));
+    }
+    TailSamplingSpanProcessor processor = this.tailSampling;
+    Snapshot.TailSampling tailSampling = processor == null ? null : new Snapshot.TailSampling(
+      processor.getBufferedTraces(), processor.getBufferedSpans(), processor.getBufferedBytes(),
+      processor.getKeptTraces(), processor.getDroppedTraces(), processor.getTimedOutTraces(),
+      processor.getEvictedTraces());
+    return new Snapshot(startedSpans.sum(), endedSpans.sum(), sampledOutSpans.sum(), droppedAttributes.sum(),
+      truncatedAttributes.sum(), droppedEvents.sum(), normalizedUrls.sum(), latencyBuckets.clone(), tailSampling,
+      exporters);
+  }
+
+  /**
+   * The counters of an exporter.
+   */
+  public final class Exporter {
+
+    private final String name;
+    private final BackendExporter exporter;
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder exported = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder exports = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram(bounds);
+    private volatile LongSupplier dropped = () -> 0;
+    private volatile boolean reportsCompletions;
+
+    private Exporter(String name, BackendExporter exporter) {
+      this.name = name;
+      this.exporter = exporter;
+    }
+
+    /**
+     * Set where the number of spans dropped by the span processor is read, e.g. a full batch queue.
+     */
+    public void setDroppedSpans(LongSupplier dropped) {
+      this.dropped = dropped;
+    }
+
+    /**
+     * Record an export completed in the background by an exporter whose {@link SpanExporter#export} only queues the
+     * spans.
+     *
+     * @param count   the number of spans
+     * @param success whether the backend accepted the spans
+     * @param nanos   the latency of the export, from the send to its completion
+     */
+    public void completed(int count, boolean success, long nanos) {
+      if (success) {
+        exported.add(count);
+      } else {
+        failed.add(count);
+      }
+      latency.record(nanos);
+      exports.increment();
+    }
+
+    /**
+     * @return {@code exporter} recording the exported and failed spans with the latency of each export, or
+     * {@code exporter} itself when the exporter reports its exports with {@link #completed}
+     */
+    public SpanExporter instrument(SpanExporter exporter) {
+      if (reportsCompletions) {
+        // export() only queues the spans, timing it would measure the queue
+        return exporter;
+      }
+      return new SpanExporter() {
+        @Override
+        public ResultCode export(Collection<SpanData> spans) {
+          long start = System.nanoTime();
+          ResultCode result;
+          try {
+            result = exporter.export(spans);
+          } catch (RuntimeException e) {
+            failed.add(spans.size());
+            throw e;
+          } finally {
+            latency.record(System.nanoTime() - start);
+            exports.increment();
+          }
+          if (result == ResultCode.SUCCESS) {
+            exported.add(spans.size());
+          } else {
+            failed.add(spans.size());
+          }
+          return result;
+        }
+
+        @Override
+        public void shutdown() {
+          exporter.shutdown();
+        }
+      };
+    }
+
+    /**
+     * @return {@code processor} counting the sampled spans it receives
+     */
+    public SpanProcessor instrument(SpanProcessor processor) {
+      return new SpanProcessor() {
+        @Override
+        public void onStart(ReadableSpan span) {
+          processor.onStart(span);
+        }
+
+        @Override
+        public boolean isStartRequired() {
+          return processor.isStartRequired();
+        }
+
+        @Override
+        public void onEnd(ReadableSpan span) {
+          if (span.getSpanContext().getTraceFlags().isSampled()) {
+            queued.increment();
+          }
+          processor.onEnd(span);
+        }
+
+        @Override
+        public boolean isEndRequired() {
+          return true;
+        }
+
+        @Override
+        public void shutdown() {
+          processor.shutdown();
+        }
+
+        @Override
+        public void forceFlush() {
+          processor.forceFlush();
+        }
+      };
+    }
+  }
+
+  /**
+   * The values of the counters at a point in time.
+   */
+  public static final class Snapshot {
+
+    private final long startedSpans;
+    private final long endedSpans;
+    private final long sampledOutSpans;
+    private final long droppedAttributes;
+    private final long truncatedAttributes;
+    private final long droppedEvents;
+    private final long normalizedUrls;
+    private final long[] latencyBuckets;
+    private final TailSampling tailSampling;
+    private final List<Exporter> exporters;
+
+    private Snapshot(long startedSpans, long endedSpans, long sampledOutSpans, long droppedAttributes,
+                     long truncatedAttributes, long droppedEvents, long normalizedUrls, long[] latencyBuckets,
+                     TailSampling tailSampling, List<Exporter> exporters) {
+      this.startedSpans = startedSpans;
+      this.endedSpans = endedSpans;
+      this.sampledOutSpans = sampledOutSpans;
+      this.droppedAttributes = droppedAttributes;
+      this.truncatedAttributes = truncatedAttributes;
+      this.droppedEvents = droppedEvents;
+      this.normalizedUrls = normalizedUrls;
+      this.latencyBuckets = latencyBuckets;
+      this.tailSampling = tailSampling;
+      this.exporters = Collections.unmodifiableList(exporters);
+    }
+
+    public long getStartedSpans() {
+      return startedSpans;
+    }
+
+    public long getEndedSpans() {
+      return endedSpans;
+    }
+
+    /**
+     * @return the number of spans started but not sampled, they are not exported
+     */
+    public long getSampledOutSpans() {
+      return sampledOutSpans;
+    }
+
+    /**
+     * @return the number of attributes not set on the spans because of the span limits
+     */
+    public long getDroppedAttributes() {
+      return droppedAttributes;
+    }
+
+    /**
+     * @return the number of attribute values and error messages truncated
+     */
+    public long getTruncatedAttributes() {
+      return truncatedAttributes;
+    }
+
+    /**
+     * @return the number of events not added to the spans because of the span limits
+     */
+    public long getDroppedEvents() {
+      return droppedEvents;
+    }
+
+    /**
+     * @return the number of URL attributes normalized
+     */
+    public long getNormalizedUrls() {
+      return normalizedUrls;
+    }
+
+    /**
+     * @return the upper bounds in ms of the export latency buckets, the last bucket counts the exports above
+     */
+    public long[] getLatencyBuckets() {
+      return latencyBuckets.clone();
+    }
+
+    /**
+     * @return the counters of the tail sampling, {@code null} when it is not configured
+     */
+    public TailSampling getTailSampling() {
+      return tailSampling;
+    }
+
+    public List<Exporter> getExporters() {
+      return exporters;
+    }
+
+    /**
+     * @return the exporter named {@code name} or {@code null}
+     */
+    public Exporter getExporter(String name) {
+      for (Exporter exporter : exporters) {
+        if (exporter.name.equals(name)) {
+          return exporter;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return the snapshot as JSON: <pre>{ "startedSpans": 10, "endedSpans": 10, "sampledOutSpans": 2,
+     * "droppedAttributes": 0, "truncatedAttributes": 1, "droppedEvents": 0, "normalizedUrls": 8,
+     * "latencyBuckets": [1, 2, 5, ...], "tailSampling": { "bufferedTraces": 3, "bufferedSpans": 12,
+     * "bufferedBytes": 12288, "keptTraces": 2, "droppedTraces": 40, "timedOutTraces": 1, "evictedTraces": 0 },
+     * "exporters": [{ "name": "OtlpExporter", "queuedSpans": 8, "exportedSpans": 8,
+     * "droppedSpans": 0, "failedSpans": 0, "exports": 1, "latencyCounts": [0, 1, 0, ...], "latencySum": 1.2,
+     * "stats": { "retries": 0 } }] }</pre> with the latency sum in ms
+     */
+    public JsonObject toJson() {
+      JsonArray buckets = new JsonArray();
+      for (long bucket : latencyBuckets) {
+        buckets.add(bucket);
+      }
+      JsonArray array = new JsonArray();
+      for (Exporter exporter : exporters) {
+        JsonArray counts = new JsonArray();
+        for (long count : exporter.latencyCounts) {
+          counts.add(count);
+        }
+        array.add(new JsonObject()
+          .put("name", exporter.name)
+          .put("queuedSpans", exporter.queuedSpans)
+          .put("exportedSpans", exporter.exportedSpans)
+          .put("droppedSpans", exporter.droppedSpans)
+          .put("failedSpans", exporter.failedSpans)
+          .put("exports", exporter.exports)
+          .put("latencyCounts", counts)
+          .put("latencySum", exporter.latencySum / 1_000_000d)
+          .put("stats", new JsonObject(new LinkedHashMap<String, Object>(exporter.stats))));
+      }
+      JsonObject json = new JsonObject()
+        .put("startedSpans", startedSpans)
+        .put("endedSpans", endedSpans)
+        .put("sampledOutSpans", sampledOutSpans)
+        .put("droppedAttributes", droppedAttributes)
+        .put("truncatedAttributes", truncatedAttributes)
+        .put("droppedEvents", droppedEvents)
+        .put("normalizedUrls", normalizedUrls)
+        .put("latencyBuckets", buckets);
+      if (tailSampling != null) {
+        json.put("tailSampling", new JsonObject()
+          .put("bufferedTraces", tailSampling.bufferedTraces)
+          .put("bufferedSpans", tailSampling.bufferedSpans)
+          .put("bufferedBytes", tailSampling.bufferedBytes)
+          .put("keptTraces", tailSampling.keptTraces)
+          .put("droppedTraces", tailSampling.droppedTraces)
+          .put("timedOutTraces", tailSampling.timedOutTraces)
+          .put("evictedTraces", tailSampling.evictedTraces));
+      }
+      return json.put("exporters", array);
+    }
+
+    public static final class TailSampling {
+
+      private final int bufferedTraces;
+      private final int bufferedSpans;
+      private final long bufferedBytes;
+      private final long keptTraces;
+      private final long droppedTraces;
+      private final long timedOutTraces;
+      private final long evictedTraces;
+
+      private TailSampling(int bufferedTraces, int bufferedSpans, long bufferedBytes, long keptTraces,
+                           long droppedTraces, long timedOutTraces, long evictedTraces) {
+        this.bufferedTraces = bufferedTraces;
+        this.bufferedSpans = bufferedSpans;
+        this.bufferedBytes = bufferedBytes;
+        this.keptTraces = keptTraces;
+        this.droppedTraces = droppedTraces;
+        this.timedOutTraces = timedOutTraces;
+        this.evictedTraces = evictedTraces;
+      }
+
+      /**
+       * @return the number of traces waiting for their decision
+       */
+      public int getBufferedTraces() {
+        return bufferedTraces;
+      }
+
+      /**
+       * @return the number of spans waiting for the decision of their trace
+       */
+      public int getBufferedSpans() {
+        return bufferedSpans;
+      }
+
+      /**
+       * @return the estimated size in bytes of the buffered spans
+       */
+      public long getBufferedBytes() {
+        return bufferedBytes;
+      }
+
+      /**
+       * @return the number of traces forwarded to the exporters
+       */
+      public long getKeptTraces() {
+        return keptTraces;
+      }
+
+      /**
+       * @return the number of traces discarded because no rule matched
+       */
+      public long getDroppedTraces() {
+        return droppedTraces;
+      }
+
+      /**
+       * @return the number of traces decided after the decision wait, without their local root span
+       */
+      public long getTimedOutTraces() {
+        return timedOutTraces;
+      }
+
+      /**
+       * @return the number of traces decided early because the buffer was full
+       */
+      public long getEvictedTraces() {
+        return evictedTraces;
+      }
+    }
+
+    public static final class Exporter {
+
+      private final String name;
+      private final long queuedSpans;
+      private final long exportedSpans;
+      private final long droppedSpans;
+      private final long failedSpans;
+      private final long exports;
+      private final long[] latencyCounts;
+      private final long latencySum;
+      private final Map<String, Long> stats;
+
+      private Exporter(String name, long queuedSpans, long exportedSpans, long droppedSpans, long failedSpans,
+                       long exports, long[] latencyCounts, long latencySum, Map<String, Long> stats) {
+        this.name = name;
+        this.queuedSpans = queuedSpans;
+        this.exportedSpans = exportedSpans;
+        this.droppedSpans = droppedSpans;
+        this.failedSpans = failedSpans;
+        this.exports = exports;
+        this.latencyCounts = latencyCounts;
+        this.latencySum = latencySum;
+        this.stats = Collections.unmodifiableMap(stats);
+      }
+
+      public String getName() {
+        return name;
+      }
+
+      /**
+       * @return the number of sampled spans handed to the span processor of the exporter
+       */
+      public long getQueuedSpans() {
+        return queuedSpans;
+      }
+
+      /**
+       * @return the number of spans the exporter accepted
+       */
+      public long getExportedSpans() {
+        return exportedSpans;
+      }
+
+      /**
+       * @return the number of spans dropped by the span processor before reaching the exporter
+       */
+      public long getDroppedSpans() {
+        return droppedSpans;
+      }
+
+      /**
+       * @return the number of spans the exporter rejected
+       */
+      public long getFailedSpans() {
+        return failedSpans;
+      }
+
+      /**
+       * @return the number of calls to the exporter
+       */
+      public long getExports() {
+        return exports;
+      }
+
+      /**
+       * @return the number of exports per latency bucket, not cumulative
+       */
+      public long[] getLatencyCounts() {
+        return latencyCounts.clone();
+      }
+
+      /**
+       * @return the sum of the export latencies in ns
+       */
+      public long getLatencySum() {
+        return latencySum;
+      }
+
+      /**
+       * @return the counters specific to the exporter, see {@link BackendExporter#stats()}
+       */
+      public Map<String, Long> getStats() {
+        return stats;
+      }
+    }
+  }
+}
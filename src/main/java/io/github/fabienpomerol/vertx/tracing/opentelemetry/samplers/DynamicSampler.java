@@ -0,0 +1,55 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.Sampler;
+import io.opentelemetry.trace.Link;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceId;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Sampler} delegating to a sampler replaced at runtime, e.g. to change the sampling rate without restarting.
+ * <p>
+ * The delegate is a volatile field: a decision costs a volatile read, the spans started while it is replaced use
+ * either sampler.
+ */
+@ThreadSafe
+public final class DynamicSampler implements Sampler {
+
+  private volatile Sampler delegate;
+
+  public DynamicSampler(Sampler delegate) {
+    setDelegate(delegate);
+  }
+
+  public Sampler getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * @param delegate the sampler deciding for the spans started from now on
+   */
+  public void setDelegate(Sampler delegate) {
+    if (delegate == null) {
+      throw new IllegalArgumentException("delegate must not be null");
+    }
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Decision shouldSample(@Nullable SpanContext parentContext, TraceId traceId, SpanId spanId, String name,
+                               Span.Kind spanKind, Map<String, AttributeValue> attributes, List<Link> parentLinks) {
+    return delegate.shouldSample(parentContext, traceId, spanId, name, spanKind, attributes, parentLinks);
+  }
+
+  @Override
+  public String getDescription() {
+    return "Dynamic{delegate:" + delegate.getDescription() + "}";
+  }
+}
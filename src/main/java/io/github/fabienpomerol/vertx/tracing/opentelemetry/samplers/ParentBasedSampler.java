@@ -0,0 +1,42 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.Sampler;
+import io.opentelemetry.trace.Link;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceId;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Sampler} following the decision of the parent span, local or propagated from a remote process, and
+ * delegating to a root sampler for the spans starting a trace.
+ */
+@ThreadSafe
+public final class ParentBasedSampler implements Sampler {
+
+  private final Sampler root;
+
+  public ParentBasedSampler(Sampler root) {
+    this.root = root;
+  }
+
+  @Override
+  public Decision shouldSample(@Nullable SpanContext parentContext, TraceId traceId, SpanId spanId, String name,
+                               Span.Kind spanKind, Map<String, AttributeValue> attributes, List<Link> parentLinks) {
+    if (parentContext != null && parentContext.isValid()) {
+      return parentContext.getTraceFlags().isSampled() ? SamplingDecision.SAMPLED : SamplingDecision.NOT_SAMPLED;
+    }
+    return root.shouldSample(parentContext, traceId, spanId, name, spanKind, attributes, parentLinks);
+  }
+
+  @Override
+  public String getDescription() {
+    return "ParentBased{root:" + root.getDescription() + "}";
+  }
+}
@@ -0,0 +1,60 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.Sampler;
+import io.opentelemetry.trace.Link;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceId;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A {@link Sampler} lowering the sampling rate of the new traces while the export pressure is high.
+ * <p>
+ * The pressure is a value between {@code 0} and {@code 1}, e.g. the fill ratio of an exporter queue. Below the
+ * watermark the delegate decides alone, above the traces it samples are kept with a probability decreasing linearly
+ * down to {@code 0} at full pressure. Spans having a parent follow the delegate, so that started traces are not cut.
+ */
+@ThreadSafe
+public final class PressureSampler implements Sampler {
+
+  private final Sampler delegate;
+  private final DoubleSupplier pressure;
+  private final double watermark;
+
+  public PressureSampler(Sampler delegate, DoubleSupplier pressure, double watermark) {
+    if (watermark < 0 || watermark >= 1) {
+      throw new IllegalArgumentException("watermark must be in range [0, 1)");
+    }
+    this.delegate = delegate;
+    this.pressure = pressure;
+    this.watermark = watermark;
+  }
+
+  @Override
+  public Decision shouldSample(@Nullable SpanContext parentContext, TraceId traceId, SpanId spanId, String name,
+                               Span.Kind spanKind, Map<String, AttributeValue> attributes, List<Link> parentLinks) {
+    Decision decision = delegate.shouldSample(parentContext, traceId, spanId, name, spanKind, attributes, parentLinks);
+    if (!decision.isSampled() || parentContext != null && parentContext.isValid()) {
+      return decision;
+    }
+    double current = pressure.getAsDouble();
+    if (current <= watermark) {
+      return decision;
+    }
+    double probability = (1 - current) / (1 - watermark);
+    return ThreadLocalRandom.current().nextDouble() < probability ? decision : SamplingDecision.NOT_SAMPLED;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Pressure{" + watermark + ", delegate:" + delegate.getDescription() + "}";
+  }
+}
@@ -0,0 +1,65 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.Sampler;
+import io.opentelemetry.trace.Link;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceId;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Sampler} keeping at most a fixed number of traces per second, with bursts up to one second of credits.
+ * <p>
+ * The token bucket is implemented lock-free as a theoretical arrival time updated with a CAS, each sampled trace
+ * pushing it by {@code 1 / tracesPerSecond}.
+ */
+@ThreadSafe
+public final class RateLimitingSampler implements Sampler {
+
+  private final double tracesPerSecond;
+  private final long interval;
+  private final long burst;
+  private final AtomicLong theoreticalArrival;
+
+  public RateLimitingSampler(double tracesPerSecond) {
+    if (!(tracesPerSecond > 0)) {
+      throw new IllegalArgumentException("tracesPerSecond must be > 0");
+    }
+    this.tracesPerSecond = tracesPerSecond;
+    this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tracesPerSecond));
+    this.burst = (Math.max(1, (long) Math.ceil(tracesPerSecond)) - 1) * interval;
+    this.theoreticalArrival = new AtomicLong(System.nanoTime());
+  }
+
+  @Override
+  public Decision shouldSample(@Nullable SpanContext parentContext, TraceId traceId, SpanId spanId, String name,
+                               Span.Kind spanKind, Map<String, AttributeValue> attributes, List<Link> parentLinks) {
+    return tryAcquire(System.nanoTime()) ? SamplingDecision.SAMPLED : SamplingDecision.NOT_SAMPLED;
+  }
+
+  boolean tryAcquire(long now) {
+    while (true) {
+      long tat = theoreticalArrival.get();
+      long base = tat - now > 0 ? tat : now;
+      if (base - now > burst) {
+        return false;
+      }
+      if (theoreticalArrival.compareAndSet(tat, base + interval)) {
+        return true;
+      }
+    }
+  }
+
+  @Override
+  public String getDescription() {
+    return "RateLimiting{" + tracesPerSecond + "}";
+  }
+}
@@ -0,0 +1,32 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.Sampler;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Attribute-less sampling decisions shared by the samplers of this package.
+ */
+final class SamplingDecision implements Sampler.Decision {
+
+  static final SamplingDecision SAMPLED = new SamplingDecision(true);
+  static final SamplingDecision NOT_SAMPLED = new SamplingDecision(false);
+
+  private final boolean sampled;
+
+  private SamplingDecision(boolean sampled) {
+    this.sampled = sampled;
+  }
+
+  @Override
+  public boolean isSampled() {
+    return sampled;
+  }
+
+  @Override
+  public Map<String, AttributeValue> attributes() {
+    return Collections.emptyMap();
+  }
+}
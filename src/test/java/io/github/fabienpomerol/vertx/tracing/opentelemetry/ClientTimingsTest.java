@@ -0,0 +1,152 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.Span;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class ClientTimingsTest {
+
+  private static final long DELAY = 100; // ms
+
+  private Vertx vertx;
+  private InMemoryExporter exporter;
+
+  @Before
+  public void before(TestContext ctx) {
+    exporter = InMemoryExporter.newBuilder().build();
+    vertx = Vertx.vertx(new VertxOptions()
+      .setMetricsOptions(ClientTimingMetrics.options())
+      .setTracingOptions(new OpenTelemetryOptions()
+        .setClientTimings(true)
+        .addExporter(exporter)
+        .setEnabled(true)));
+    // a single connection, the second of two concurrent requests waits for the first one
+    HttpClient client = vertx.createHttpClient(new HttpClientOptions().setMaxPoolSize(1));
+    Async listen = ctx.async();
+    vertx.createHttpServer()
+      .requestHandler(req -> {
+        if (req.path().equals("/downstream")) {
+          vertx.setTimer(DELAY, id -> req.response().end());
+        } else {
+          int requests = Integer.parseInt(req.getParam("requests"));
+          List<Future<Void>> responses = new ArrayList<>(requests);
+          for (int idx = 0; idx < requests; idx++) {
+            Promise<Void> response = Promise.promise();
+            responses.add(response.future());
+            client.get(8086, "localhost", "/downstream", ctx.asyncAssertSuccess(resp -> response.complete()));
+          }
+          CompositeFuture.all(new ArrayList<>(responses)).onComplete(ctx.asyncAssertSuccess(v -> req.response().end()));
+        }
+      })
+      .listen(8086, ctx.asyncAssertSuccess(v -> listen.complete()));
+    listen.awaitSuccess();
+  }
+
+  @After
+  public void after(TestContext ctx) {
+    vertx.close(ctx.asyncAssertSuccess());
+  }
+
+  /**
+   * @return the client spans of an upstream request sending {@code requests} downstream requests, by start time
+   */
+  private List<SpanData> clientSpans(TestContext ctx, int requests) throws Exception {
+    exporter.getSpanExporter().reset();
+    Async response = ctx.async();
+    vertx.createHttpClient().get(8086, "localhost", "/?requests=" + requests,
+      ctx.asyncAssertSuccess(resp -> response.complete()));
+    response.awaitSuccess();
+    // the upstream server span, the downstream client and server spans
+    List<SpanData> spans = exporter.getSpanExporter().awaitSpans(1 + 2 * requests, 10, TimeUnit.SECONDS);
+    return spans.stream()
+      .filter(span -> span.getKind() == Span.Kind.CLIENT)
+      .sorted((a, b) -> Long.compare(a.getStartEpochNanos(), b.getStartEpochNanos()))
+      .collect(Collectors.toList());
+  }
+
+  private static List<String> eventNames(SpanData span) {
+    return span.getTimedEvents().stream().map(SpanData.TimedEvent::getName).collect(Collectors.toList());
+  }
+
+  private static long eventTime(SpanData span, String name) {
+    return span.getTimedEvents().stream().filter(event -> event.getName().equals(name)).findFirst().get()
+      .getEpochNanos();
+  }
+
+  @Test
+  public void client_spans_should_get_the_timings(TestContext ctx) throws Exception {
+    List<SpanData> spans = clientSpans(ctx, 2);
+
+    assertEquals(2, spans.size());
+    SpanData first = spans.get(0);
+    SpanData second = spans.get(1);
+    // the connection has been opened for the first request and then kept alive for the second one
+    assertEquals(Arrays.asList(ClientTimings.CONNECTION_CONNECTED, ClientTimings.CONNECTION_ACQUIRED,
+      ClientTimings.REQUEST_WRITTEN, ClientTimings.RESPONSE_FIRST_BYTE), eventNames(first));
+    assertEquals(Arrays.asList(ClientTimings.CONNECTION_ACQUIRED, ClientTimings.REQUEST_WRITTEN,
+      ClientTimings.RESPONSE_FIRST_BYTE), eventNames(second));
+    for (SpanData span : spans) {
+      long previous = span.getStartEpochNanos();
+      for (SpanData.TimedEvent event : span.getTimedEvents()) {
+        assertTrue(event.getName(), event.getEpochNanos() >= previous);
+        previous = event.getEpochNanos();
+      }
+      assertTrue(span.getEndEpochNanos() >= previous);
+      assertTrue(eventTime(span, ClientTimings.RESPONSE_FIRST_BYTE) - eventTime(span, ClientTimings.REQUEST_WRITTEN)
+        >= TimeUnit.MILLISECONDS.toNanos(DELAY));
+    }
+    // the second request waited for the connection of the first one
+    assertTrue(eventTime(second, ClientTimings.CONNECTION_ACQUIRED) - second.getStartEpochNanos()
+      >= TimeUnit.MILLISECONDS.toNanos(DELAY));
+  }
+
+  @Test
+  public void client_timings_should_be_switched_at_runtime(TestContext ctx) throws Exception {
+    clientSpans(ctx, 1);
+    OpenTelemetryTracer tracer = (OpenTelemetryTracer) ((ContextInternal) vertx.getOrCreateContext()).tracer();
+    assertTrue(tracer.isClientTimingsEnabled());
+
+    tracer.reconfigure(new JsonObject().put("clientTimings", false));
+
+    assertFalse(tracer.isClientTimingsEnabled());
+    assertEquals(Collections.emptyList(), eventNames(clientSpans(ctx, 1).get(0)));
+
+    tracer.setClientTimingsEnabled(true);
+
+    assertTrue(eventNames(clientSpans(ctx, 1).get(0)).contains(ClientTimings.RESPONSE_FIRST_BYTE));
+  }
+
+  @Test
+  public void client_timings_should_be_read_from_json() {
+    assertTrue(new OpenTelemetryOptions(new JsonObject().put("clientTimings", true)).isClientTimings());
+    assertFalse(new OpenTelemetryOptions().isClientTimings());
+    // until a tracer with client timings turns them on
+    assertFalse(new ClientTimingMetrics().isEnabled());
+  }
+}
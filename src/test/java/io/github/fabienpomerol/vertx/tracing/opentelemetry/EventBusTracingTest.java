@@ -0,0 +1,214 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.TraceState;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class EventBusTracingTest {
+
+  private Vertx vertx;
+  private InMemoryExporter exporter;
+
+  private void start(EventBusTracingOptions eventBus) {
+    exporter = InMemoryExporter.newBuilder().build();
+    vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions(OpenTelemetryTracer.createDefaultTracer())
+        .setEventBus(eventBus)
+        .addExporter(exporter)
+        .setEnabled(true)
+    ));
+  }
+
+  @After
+  public void after(TestContext ctx) {
+    if (vertx != null) {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  private List<SpanData> waitUntil(int expected) throws Exception {
+    List<SpanData> spans = exporter.getSpanExporter().awaitSpans(expected, 10, TimeUnit.SECONDS);
+    assertEquals(expected, spans.size());
+    return spans;
+  }
+
+  /**
+   * Send a request to {@code address} from the handler of an HTTP request, so that the message has a parent span.
+   */
+  private void request(TestContext ctx, String address, DeliveryOptions options) {
+    Async listen = ctx.async();
+    vertx.createHttpServer().requestHandler(req ->
+      vertx.eventBus().request(address, "ping", options, ar -> req.response().end())
+    ).listen(8080, ctx.asyncAssertSuccess(v -> listen.complete()));
+    listen.awaitSuccess();
+    Async response = ctx.async();
+    vertx.createHttpClient().get(8080, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+    response.awaitSuccess();
+  }
+
+  private static SpanData span(List<SpanData> spans, Span.Kind kind) {
+    List<SpanData> found = spans.stream().filter(span -> span.getKind() == kind).collect(Collectors.toList());
+    assertEquals(1, found.size());
+    return found.get(0);
+  }
+
+  @Test
+  public void binary_header_should_round_trip() {
+    SpanContext spanContext = SpanContext.create(new TraceId(0x0123456789abcdefL, 0xfedcba9876543210L),
+      new SpanId(0x00ff00ff00ff00ffL), TraceFlags.builder().setIsSampled(true).build(), TraceState.getDefault());
+
+    String header = EventBusTracing.encode(spanContext);
+    SpanContext decoded = EventBusTracing.decode(MultiMap.caseInsensitiveMultiMap().add(EventBusTracing.HEADER, header));
+
+    assertEquals(26, header.length());
+    assertEquals(spanContext.getTraceId(), decoded.getTraceId());
+    assertEquals(spanContext.getSpanId(), decoded.getSpanId());
+    assertTrue(decoded.getTraceFlags().isSampled());
+    assertTrue(decoded.isRemote());
+    assertNull(EventBusTracing.decode("00-malformed"));
+    assertNull(EventBusTracing.decode(MultiMap.caseInsensitiveMultiMap()));
+  }
+
+  @Test
+  public void messages_should_be_traced_by_a_producer_and_a_consumer_span(TestContext ctx) throws Exception {
+    start(new EventBusTracingOptions());
+    AtomicReference<MultiMap> headers = new AtomicReference<>();
+    vertx.eventBus().consumer("orders", msg -> {
+      headers.set(msg.headers());
+      msg.reply("pong");
+    });
+
+    request(ctx, "orders", new DeliveryOptions());
+
+    List<SpanData> spans = waitUntil(3);
+    assertEquals(1, spans.stream().map(SpanData::getTraceId).distinct().count());
+    SpanData server = span(spans, Span.Kind.SERVER);
+    SpanData producer = span(spans, Span.Kind.PRODUCER);
+    SpanData consumer = span(spans, Span.Kind.CONSUMER);
+    assertEquals("send", producer.getName());
+    assertEquals(server.getSpanId(), producer.getParentSpanId());
+    assertEquals(producer.getSpanId(), consumer.getParentSpanId());
+    assertNotNull(headers.get().get(EventBusTracing.HEADER));
+    assertNull(headers.get().get("traceparent"));
+  }
+
+  @Test
+  public void excluded_addresses_should_not_be_traced(TestContext ctx) throws Exception {
+    start(new EventBusTracingOptions().addExcludedAddress("metrics.*"));
+    AtomicReference<MultiMap> headers = new AtomicReference<>();
+    vertx.eventBus().consumer("metrics.cpu", msg -> {
+      headers.set(msg.headers());
+      msg.reply("pong");
+    });
+
+    request(ctx, "metrics.cpu", new DeliveryOptions());
+
+    List<SpanData> spans = waitUntil(1);
+    assertEquals(Span.Kind.SERVER, spans.get(0).getKind());
+    assertTrue(headers.get().isEmpty());
+  }
+
+  @Test
+  public void sampling_should_apply_to_the_messages_starting_a_trace(TestContext ctx) throws Exception {
+    start(new EventBusTracingOptions().addSampling("noisy", 0));
+    Async received = ctx.async(11);
+    vertx.eventBus().consumer("noisy", msg -> received.countDown());
+    vertx.eventBus().consumer("kept", msg -> received.countDown());
+
+    for (int i = 0; i < 10; i++) {
+      vertx.eventBus().send("noisy", "ping");
+    }
+    vertx.eventBus().send("kept", "ping");
+    received.awaitSuccess();
+
+    List<SpanData> spans = waitUntil(1);
+    assertEquals(Span.Kind.CONSUMER, spans.get(0).getKind());
+  }
+
+  @Test
+  public void recipient_failure_should_be_reported_on_the_sender_span(TestContext ctx) throws Exception {
+    start(new EventBusTracingOptions());
+    vertx.eventBus().consumer("orders", msg -> msg.fail(42, "boom"));
+
+    request(ctx, "orders", new DeliveryOptions());
+
+    SpanData producer = span(waitUntil(3), Span.Kind.PRODUCER);
+    assertEquals(Status.CanonicalCode.UNKNOWN, producer.getStatus().getCanonicalCode());
+    assertEquals("boom", producer.getStatus().getDescription());
+    assertEquals("RECIPIENT_FAILURE", producer.getAttributes().get("message_bus.failure_type").getStringValue());
+    assertEquals(42, producer.getAttributes().get("message_bus.failure_code").getLongValue());
+    assertEquals(1, producer.getTimedEvents().size());
+  }
+
+  @Test
+  public void timeout_should_be_reported_on_the_sender_span(TestContext ctx) throws Exception {
+    start(new EventBusTracingOptions());
+    vertx.eventBus().consumer("orders", msg -> {
+      // never replies
+    });
+
+    request(ctx, "orders", new DeliveryOptions().setSendTimeout(50));
+
+    // the consumer span ends with the reply
+    SpanData producer = span(waitUntil(2), Span.Kind.PRODUCER);
+    assertEquals(Status.CanonicalCode.DEADLINE_EXCEEDED, producer.getStatus().getCanonicalCode());
+    assertEquals("TIMEOUT", producer.getAttributes().get("message_bus.failure_type").getStringValue());
+  }
+
+  @Test
+  public void missing_handlers_should_be_reported_on_the_sender_span(TestContext ctx) throws Exception {
+    start(new EventBusTracingOptions());
+
+    request(ctx, "nowhere", new DeliveryOptions());
+
+    SpanData producer = span(waitUntil(2), Span.Kind.PRODUCER);
+    assertEquals(Status.CanonicalCode.NOT_FOUND, producer.getStatus().getCanonicalCode());
+    assertEquals("NO_HANDLERS", producer.getAttributes().get("message_bus.failure_type").getStringValue());
+  }
+
+  @Test
+  public void event_bus_tracing_should_be_configured_from_json() {
+    OpenTelemetryOptions options = new OpenTelemetryOptions(new JsonObject()
+      .put("eventBus", new JsonObject()
+        .put("binaryPropagation", false)
+        .put("excludedAddresses", new JsonArray().add("metrics.*"))
+        .put("sampling", new JsonObject().put("orders.created", 0.1))));
+
+    EventBusTracingOptions eventBus = options.getEventBus();
+    assertFalse(eventBus.isBinaryPropagation());
+    assertTrue(eventBus.getExcludedAddresses().contains("metrics.*"));
+    assertEquals(0.1, eventBus.getSampling().get("orders.created"), 0);
+    assertEquals(eventBus.toJson(), new EventBusTracingOptions(eventBus.toJson()).toJson());
+
+    EventBusTracing tracing = new EventBusTracing(eventBus);
+    assertTrue(tracing.rule("metrics.cpu").excluded);
+    assertEquals(0.1, tracing.rule("orders.created").probability, 0);
+    assertSame(EventBusTracing.TRACED, tracing.rule("orders.deleted"));
+  }
+}
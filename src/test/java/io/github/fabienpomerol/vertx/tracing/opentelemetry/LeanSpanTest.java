@@ -0,0 +1,231 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.Samplers;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.DefaultSpan;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.Status;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.spi.tracing.TagExtractor;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class LeanSpanTest {
+
+  private static class ConvertingSpanProcessor implements SpanProcessor {
+
+    final List<SpanData> spans = new ArrayList<>();
+
+    @Override
+    public void onStart(ReadableSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+      return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+      spans.add(span.toSpanData());
+    }
+
+    @Override
+    public boolean isEndRequired() {
+      return true;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void forceFlush() {
+    }
+  }
+
+  @Test
+  public void spans_should_be_recycled_once_converted() {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    ConvertingSpanProcessor processor = new ConvertingSpanProcessor();
+    LeanTracer tracer = new LeanTracer(provider, Collections.singletonList(processor), 16, null);
+
+    Span parent = tracer.spanBuilder("parent").setSpanKind(Span.Kind.SERVER).startSpan();
+    Span child = tracer.spanBuilder("child").setParent(parent).startSpan();
+    child.setAttribute("http.method", "GET");
+    child.setAttribute("http.status_code", 500L);
+    child.setAttribute("cached", false);
+    ((LeanSpan) child).addErrorEvent("Functional", "Internal Server Error");
+    child.setStatus(Status.INTERNAL);
+    child.end();
+    assertEquals(1, tracer.getPooledSpans());
+
+    SpanData data = processor.spans.get(0);
+    assertEquals("child", data.getName());
+    assertEquals(parent.getContext().getTraceId(), data.getTraceId());
+    assertEquals(parent.getContext().getSpanId(), data.getParentSpanId());
+    assertEquals("GET", data.getAttributes().get("http.method").getStringValue());
+    assertEquals(500L, data.getAttributes().get("http.status_code").getLongValue());
+    assertFalse(data.getAttributes().get("cached").getBooleanValue());
+    assertEquals(Status.INTERNAL, data.getStatus());
+    SpanData.TimedEvent event = data.getTimedEvents().get(0);
+    assertEquals("error", event.getName());
+    assertEquals("Functional", event.getAttributes().get("error.kind").getStringValue());
+    assertEquals("Internal Server Error", event.getAttributes().get("message").getStringValue());
+    assertTrue(data.getEndEpochNanos() >= data.getStartEpochNanos());
+
+    // the next span reuses the converted one
+    Span next = tracer.spanBuilder("next").startSpan();
+    assertSame(child, next);
+    assertEquals(0, tracer.getPooledSpans());
+    assertEquals(0, next.toString().indexOf("LeanSpan{name=next"));
+    next.end();
+    parent.end();
+    assertTrue(processor.spans.get(1).getAttributes().isEmpty());
+    assertEquals(2, tracer.getPooledSpans());
+  }
+
+  @Test
+  public void spans_not_sampled_should_only_carry_their_context() {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    provider.updateActiveTraceConfig(provider.getActiveTraceConfig().toBuilder()
+      .setSampler(Samplers.alwaysOff())
+      .build());
+    ConvertingSpanProcessor processor = new ConvertingSpanProcessor();
+    LeanTracer tracer = new LeanTracer(provider, Collections.singletonList(processor), 16, null);
+
+    Span span = tracer.spanBuilder("span").startSpan();
+    assertTrue(span instanceof DefaultSpan);
+    assertTrue(span.getContext().isValid());
+    assertFalse(span.getContext().getTraceFlags().isSampled());
+    span.end();
+    assertTrue(processor.spans.isEmpty());
+  }
+
+  @Test
+  public void attributes_should_be_limited_by_the_trace_config() {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    provider.updateActiveTraceConfig(provider.getActiveTraceConfig().toBuilder()
+      .setMaxNumberOfAttributes(2)
+      .build());
+    ConvertingSpanProcessor processor = new ConvertingSpanProcessor();
+    LeanTracer tracer = new LeanTracer(provider, Collections.singletonList(processor), 16, null);
+
+    Span span = tracer.spanBuilder("span").startSpan();
+    span.setAttribute("a", "1");
+    span.setAttribute("b", "2");
+    span.setAttribute("c", "3");
+    span.setAttribute("a", AttributeValue.stringAttributeValue("4"));
+    span.end();
+
+    SpanData data = processor.spans.get(0);
+    assertEquals(2, data.getAttributes().size());
+    assertEquals("4", data.getAttributes().get("a").getStringValue());
+    assertFalse(data.getAttributes().containsKey("c"));
+    assertEquals(4, data.getTotalAttributeCount());
+  }
+
+  @Test
+  public void a_wrapped_task_should_keep_its_parent_once_the_span_is_recycled(TestContext ctx) {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    ConvertingSpanProcessor processor = new ConvertingSpanProcessor();
+    OpenTelemetryTracer tracer = new OpenTelemetryTracer(false,
+      new LeanTracer(provider, Collections.singletonList(processor), 16, null));
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+    Vertx vertx = Vertx.vertx();
+    Async async = ctx.async();
+    vertx.runOnContext(ignored -> {
+      ContextInternal context = (ContextInternal) Vertx.currentContext();
+      ContextInternal first = context.duplicate();
+      ContextInternal second = context.duplicate();
+      first.runOnContext(v1 -> {
+        Span firstSpan = tracer.receiveRequest(first, "first", "GET", headers, TagExtractor.empty());
+        List<Span> children = new ArrayList<>();
+        Runnable task = OpenTelemetryUtil.wrap((Runnable) () -> children.add(
+          tracer.sendRequest(Vertx.currentContext(), "child", "GET", (k, v) -> {}, TagExtractor.empty())));
+        tracer.sendResponse(first, "first", firstSpan, null, TagExtractor.empty());
+
+        second.runOnContext(v2 -> {
+          Span secondSpan = tracer.receiveRequest(second, "second", "GET", headers, TagExtractor.empty());
+          // the lean span of the first request is reused by the second one
+          ctx.assertTrue(((RequestSpan) firstSpan).span == ((RequestSpan) secondSpan).span);
+          firstSpan.setAttribute("late", "true");
+          task.run();
+          tracer.receiveResponse(second, "child", children.get(0), null, TagExtractor.empty());
+          tracer.sendResponse(second, "second", secondSpan, null, TagExtractor.empty());
+
+          SpanData child = processor.spans.get(1);
+          ctx.assertEquals(children.get(0).getContext().getSpanId(), child.getSpanId());
+          ctx.assertEquals(firstSpan.getContext().getSpanId(), child.getParentSpanId());
+          ctx.assertEquals(firstSpan.getContext().getTraceId(), child.getTraceId());
+          SpanData request = processor.spans.get(2);
+          ctx.assertEquals(secondSpan.getContext().getSpanId(), request.getSpanId());
+          ctx.assertFalse(request.getAttributes().containsKey("late"));
+          vertx.close(ctx.asyncAssertSuccess(v -> async.complete()));
+        });
+      });
+    });
+  }
+
+  @Test
+  public void lean_spans_should_be_exported(TestContext ctx) throws Exception {
+    InMemoryExporter exporter = InMemoryExporter.newBuilder().build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .setLeanSpans(true)
+        .addExporter(exporter)
+        .setEnabled(true)
+    ));
+    try {
+      Async listen = ctx.async();
+      vertx.createHttpServer()
+        .requestHandler(req -> {
+          if (req.path().equals("/fail")) {
+            req.response().setStatusCode(500).end();
+          } else {
+            vertx.createHttpClient().get(8084, "localhost", "/fail", ctx.asyncAssertSuccess(resp ->
+              req.response().end()));
+          }
+        })
+        .listen(8084, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      Async response = ctx.async();
+      vertx.createHttpClient().get(8084, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+      response.awaitSuccess();
+
+      // the server span of "/", the client span of "/fail" and its server span
+      List<SpanData> spans = exporter.getSpanExporter().awaitSpans(3, 10, TimeUnit.SECONDS);
+      assertEquals(3, spans.size());
+      assertEquals(1, spans.stream().map(SpanData::getTraceId).distinct().count());
+      SpanData failed = spans.stream()
+        .filter(span -> span.getKind() == Span.Kind.SERVER && "500".equals(
+          span.getAttributes().get("http.status_code").getStringValue()))
+        .findFirst()
+        .get();
+      assertEquals("vertx", failed.getAttributes().get("component").getStringValue());
+      assertEquals("true", failed.getAttributes().get("error").getStringValue());
+      assertEquals("Functional", failed.getTimedEvents().get(0).getAttributes().get("error.kind").getStringValue());
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+}
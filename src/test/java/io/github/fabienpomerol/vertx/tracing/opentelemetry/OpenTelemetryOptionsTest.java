@@ -0,0 +1,197 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.BackendExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.LoggingExporter;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.config.TraceConfig;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class OpenTelemetryOptionsTest {
+
+  @Test
+  public void exporters_sampler_and_batching_should_be_read_from_json() {
+    OpenTelemetryOptions options = new OpenTelemetryOptions(new JsonObject()
+      .put("enabled", true)
+      .put("sampler", new JsonObject().put("type", "probability").put("probability", 0.25))
+      .put("tagAllowlist", new JsonArray().add("http.method"))
+      .put("exporters", new JsonArray()
+        .add(new JsonObject().put("type", "in_memory").put("capacity", 16)
+          .put("batch", new JsonObject().put("maxQueueSize", 128).put("scheduleDelay", 100)))
+        .add(new JsonObject().put("type", "logging"))));
+
+    assertEquals(SamplerOptions.Type.PROBABILITY, options.getSampler().getType());
+    assertEquals(0.25, options.getSampler().getProbability(), 0);
+    assertTrue(options.getTagAllowlist().contains("http.method"));
+    List<Map.Entry<BackendExporter, BatchOptions>> exporters = new ArrayList<>(options.getExporters().entrySet());
+    assertEquals(2, exporters.size());
+    assertTrue(exporters.get(0).getKey() instanceof InMemoryExporter);
+    assertEquals(128, exporters.get(0).getValue().getMaxQueueSize());
+    assertEquals(100, exporters.get(0).getValue().getScheduleDelay());
+    assertEquals(BatchOptions.DEFAULT_MAX_EXPORT_BATCH_SIZE, exporters.get(0).getValue().getMaxExportBatchSize());
+    assertTrue(exporters.get(1).getKey() instanceof LoggingExporter);
+    assertNull(exporters.get(1).getValue());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknown_exporter_type_should_be_rejected() {
+    new OpenTelemetryOptions(new JsonObject()
+      .put("exporters", new JsonArray().add(new JsonObject().put("type", "carrier-pigeon"))));
+  }
+
+  @Test
+  public void the_provider_of_a_given_tracer_should_be_left_alone(TestContext ctx) throws Exception {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    TraceConfig traceConfig = provider.getActiveTraceConfig();
+    InMemoryExporter exporter = InMemoryExporter.newBuilder().build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions(provider.get("app"))
+        .addExporter(exporter)
+        .setEnabled(true)
+    ));
+    try {
+      Async listen = ctx.async();
+      vertx.createHttpServer()
+        .requestHandler(req -> req.response().end())
+        .listen(8087, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      Async response = ctx.async();
+      vertx.createHttpClient().get(8087, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+      response.awaitSuccess();
+
+      // the tracer hands its spans to the exporters, the provider has no processor of the options
+      assertEquals(1, exporter.getSpanExporter().awaitSpans(1, 10, TimeUnit.SECONDS).size());
+      provider.get("app").spanBuilder("app").startSpan().end();
+      assertSame(traceConfig, provider.getActiveTraceConfig());
+      assertEquals(1, exporter.getSpanExporter().getFinishedSpanItems().size());
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+      provider.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void a_sampler_should_be_rejected_with_a_given_tracer() {
+    new OpenTelemetryOptions(TracerSdkProvider.builder().build().get("app"))
+      .setSampler(new SamplerOptions().setType(SamplerOptions.Type.ALWAYS_OFF))
+      .buildTracer();
+  }
+
+  @Test
+  public void sampler_and_exporters_should_be_reconfigured_at_runtime(TestContext ctx) throws Exception {
+    InMemoryExporter exporter = InMemoryExporter.newBuilder().build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .setSampler(new SamplerOptions().setType(SamplerOptions.Type.ALWAYS_OFF))
+        .addExporter(exporter)
+        .setEnabled(true)
+    ));
+    try {
+      Async listen = ctx.async();
+      vertx.createHttpServer()
+        .requestHandler(req -> req.response().end())
+        .listen(8083, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      OpenTelemetryTracer tracer = (OpenTelemetryTracer) ((ContextInternal) vertx.getOrCreateContext()).tracer();
+
+      get(ctx, vertx);
+      assertEquals(1, tracer.getStats().snapshot().getSampledOutSpans());
+      assertEquals(0, exporter.getSpanExporter().getFinishedSpanItems().size());
+
+      tracer.reconfigure(new JsonObject().put("sampler", new JsonObject().put("type", "always_on")));
+      get(ctx, vertx);
+      assertEquals(1, exporter.getSpanExporter().awaitSpans(1, 10, TimeUnit.SECONDS).size());
+
+      assertEquals(1, tracer.getExporterNames().size());
+      tracer.reconfigure(new JsonObject().put("exporters", new JsonObject().put("InMemoryExporter", false)));
+      assertFalse(tracer.isExporterEnabled("InMemoryExporter"));
+      get(ctx, vertx);
+      assertEquals(3, tracer.getStats().snapshot().getEndedSpans());
+      assertEquals(1, exporter.getSpanExporter().getFinishedSpanItems().size());
+
+      tracer.setExporterEnabled("InMemoryExporter", true);
+      get(ctx, vertx);
+      assertEquals(2, exporter.getSpanExporter().awaitSpans(2, 10, TimeUnit.SECONDS).size());
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  @Test
+  public void exporters_should_be_flushed_and_shut_down_by_the_tracer(TestContext ctx) throws Exception {
+    InMemoryExporter memory = InMemoryExporter.newBuilder().build();
+    AtomicInteger flushes = new AtomicInteger();
+    AtomicInteger shutdowns = new AtomicInteger();
+    BackendExporter exporter = new BackendExporter() {
+      @Override
+      public SpanExporter getSpanExporter() {
+        return memory.getSpanExporter();
+      }
+
+      @Override
+      public void flush() {
+        flushes.incrementAndGet();
+      }
+
+      @Override
+      public void shutdown() {
+        shutdowns.incrementAndGet();
+      }
+    };
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .addExporter(exporter, new BatchOptions().setScheduleDelay(60000))
+        .setEnabled(true)
+    ));
+    Async listen = ctx.async();
+    vertx.createHttpServer()
+      .requestHandler(req -> req.response().end())
+      .listen(8088, ctx.asyncAssertSuccess(v -> listen.complete()));
+    listen.awaitSuccess();
+    OpenTelemetryTracer tracer = (OpenTelemetryTracer) ((ContextInternal) vertx.getOrCreateContext()).tracer();
+    Async response = ctx.async();
+    vertx.createHttpClient().get(8088, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+    response.awaitSuccess();
+
+    // the batch waits for its schedule, the flush exports it before flushing the exporter
+    long now = System.currentTimeMillis();
+    while (tracer.getStats().snapshot().getEndedSpans() < 1 && System.currentTimeMillis() - now < 10000) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, memory.getSpanExporter().getFinishedSpanItems().size());
+    tracer.flush();
+    assertEquals(1, memory.getSpanExporter().getFinishedSpanItems().size());
+    assertEquals(1, flushes.get());
+    assertEquals(0, shutdowns.get());
+
+    Async close = ctx.async();
+    vertx.close(ctx.asyncAssertSuccess(v -> close.complete()));
+    close.awaitSuccess();
+    assertEquals(1, shutdowns.get());
+  }
+
+  private static void get(TestContext ctx, Vertx vertx) {
+    Async response = ctx.async();
+    vertx.createHttpClient().get(8083, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+    response.awaitSuccess();
+  }
+}
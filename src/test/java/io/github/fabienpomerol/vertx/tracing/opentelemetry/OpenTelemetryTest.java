@@ -9,6 +9,7 @@ import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.JaegerExporter;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -16,6 +17,7 @@ import org.junit.runner.RunWith;
 import org.omg.CosNaming.NamingContextExtPackage.StringNameHelper;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -43,12 +45,9 @@ public class OpenTelemetryTest {
   }
 
   public List<SpanData> waitUntil(int expected) throws Exception {
-    long now = System.currentTimeMillis();
-    while (exporter.getSpanExporter().getFinishedSpanItems().size() < expected && (System.currentTimeMillis() - now) < 10000 ) {
-      Thread.sleep(10);
-    }
-    assertEquals(expected, exporter.getSpanExporter().getFinishedSpanItems().size());
-    return exporter.getSpanExporter().getFinishedSpanItems();
+    List<SpanData> spans = exporter.getSpanExporter().awaitSpans(expected, 10, TimeUnit.SECONDS);
+    assertEquals(expected, spans.size());
+    return spans;
   }
 
   void assertSingleTrace(List<SpanData> spans) {
@@ -166,4 +165,38 @@ public class OpenTelemetryTest {
     assertEquals("send", span.getName());
     assertEquals("the-address", span.getAttributes().get("peer.service").getStringValue());
   }
+
+  @Test
+  public void vertx_instances_should_not_share_their_exporters(TestContext ctx) throws Exception {
+    InMemoryExporter exporter1 = InMemoryExporter.newBuilder().build();
+    InMemoryExporter exporter2 = InMemoryExporter.newBuilder().build();
+    Vertx vertx1 = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions().addExporter(exporter1).setEnabled(true)));
+    Vertx vertx2 = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions().addExporter(exporter2).setEnabled(true)));
+    try {
+      Async listenLatch = ctx.async();
+      vertx1.createHttpServer().requestHandler(req -> req.response().end())
+        .listen(8082, ctx.asyncAssertSuccess(v -> listenLatch.complete()));
+      listenLatch.awaitSuccess();
+      Async responseLatch = ctx.async();
+      vertx1.createHttpClient().get(8082, "localhost", "/", ctx.asyncAssertSuccess(resp -> responseLatch.complete()));
+      responseLatch.awaitSuccess();
+
+      assertEquals(1, exporter1.getSpanExporter().awaitSpans(1, 10, TimeUnit.SECONDS).size());
+      assertEquals(0, exporter2.getSpanExporter().getFinishedSpanItems().size());
+    } finally {
+      vertx1.close(ctx.asyncAssertSuccess());
+      vertx2.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  @Test
+  public void exporters_should_not_connect_before_the_first_export(TestContext ctx) {
+    JaegerExporter exporter = JaegerExporter.newBuilder().setServiceName("test").build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions().addExporter(exporter).setEnabled(true)));
+    assertFalse(exporter.isConnected());
+    vertx.close(ctx.asyncAssertSuccess(v -> ctx.assertFalse(exporter.isConnected())));
+  }
 }
@@ -3,12 +3,21 @@ package io.github.fabienpomerol.vertx.tracing.opentelemetry;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
 import io.opentelemetry.trace.DefaultTracer;
 import io.opentelemetry.trace.Tracer;
 import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanId;
 import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxOptions;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.spi.tracing.TagExtractor;
+import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.After;
@@ -16,6 +25,12 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 @RunWith(VertxUnitRunner.class)
 public class OpenTelemetryUtilTest {
 
@@ -39,7 +54,7 @@ public class OpenTelemetryUtilTest {
     vertx.runOnContext(ignored -> {
       assertNull(OpenTelemetryUtil.getSpan());
       Context context = Vertx.currentContext();
-      context.putLocal(OpenTelemetryUtil.ACTIVE_SPAN, span);
+      SpanStack.getOrCreate(context).push(span);
 
       assertSame(span, OpenTelemetryUtil.getSpan());
     });
@@ -60,7 +75,7 @@ public class OpenTelemetryUtilTest {
       OpenTelemetryUtil.setSpan(span);
 
       Context context = Vertx.currentContext();
-      assertSame(span, context.getLocal(OpenTelemetryUtil.ACTIVE_SPAN));
+      assertSame(span, SpanStack.get(context).peek());
     });
   }
 
@@ -75,4 +90,137 @@ public class OpenTelemetryUtilTest {
       assertNull(OpenTelemetryUtil.getSpan());
     });
   }
+
+  @Test
+  public void setSpan_should_hide_the_active_span_until_the_context_is_cleared(TestContext ctx) {
+    Span requestSpan = tracer.spanBuilder("request").startSpan();
+    Span span = tracer.spanBuilder("test").startSpan();
+    Async async = ctx.async();
+    vertx.runOnContext(ignored -> {
+      OpenTelemetryUtil.setSpan(requestSpan);
+      OpenTelemetryUtil.setSpan(span);
+      ctx.assertEquals(span, OpenTelemetryUtil.getSpan());
+
+      OpenTelemetryUtil.clearContext();
+      ctx.assertEquals(requestSpan, OpenTelemetryUtil.getSpan());
+      OpenTelemetryUtil.clearContext();
+      ctx.assertNull(OpenTelemetryUtil.getSpan());
+      async.complete();
+    });
+  }
+
+  @Test
+  public void concurrent_requests_on_a_context_should_not_overwrite_their_span(TestContext ctx) {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    OpenTelemetryTracer openTelemetryTracer = new OpenTelemetryTracer(false, provider.get("test"));
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+    Async async = ctx.async();
+    vertx.runOnContext(ignored -> {
+      // Vert.x handles each request on a context duplicated from the event loop context
+      ContextInternal context = (ContextInternal) Vertx.currentContext();
+      ContextInternal firstContext = context.duplicate();
+      ContextInternal secondContext = context.duplicate();
+      Span first = openTelemetryTracer.receiveRequest(firstContext, "first", "GET", headers, TagExtractor.empty());
+      Span second = openTelemetryTracer.receiveRequest(secondContext, "second", "GET", headers, TagExtractor.empty());
+
+      Span firstChild = openTelemetryTracer.sendRequest(firstContext, "first", "GET", (k, v) -> {}, TagExtractor.empty());
+      Span secondChild = openTelemetryTracer.sendRequest(secondContext, "second", "GET", (k, v) -> {}, TagExtractor.empty());
+      ctx.assertEquals(first.getContext().getSpanId(), parentSpanId(firstChild));
+      ctx.assertEquals(second.getContext().getSpanId(), parentSpanId(secondChild));
+
+      openTelemetryTracer.receiveResponse(firstContext, "first", firstChild, null, TagExtractor.empty());
+      openTelemetryTracer.sendResponse(firstContext, "first", first, null, TagExtractor.empty());
+      ctx.assertEquals(0, SpanStack.get(firstContext).size());
+      ctx.assertEquals(second, SpanStack.active(secondContext));
+
+      openTelemetryTracer.receiveResponse(secondContext, "second", secondChild, null, TagExtractor.empty());
+      openTelemetryTracer.sendResponse(secondContext, "second", second, null, TagExtractor.empty());
+      ctx.assertEquals(0, SpanStack.get(secondContext).size());
+      ctx.assertNull(SpanStack.get(context));
+      provider.shutdown();
+      async.complete();
+    });
+  }
+
+  private static SpanId parentSpanId(Span span) {
+    return ((ReadableSpan) ((RequestSpan) span).span).toSpanData().getParentSpanId();
+  }
+
+  @Test
+  public void blocking_code_should_keep_the_span_of_its_request(TestContext ctx) {
+    Span requestSpan = tracer.spanBuilder("request").startSpan();
+    Span otherSpan = tracer.spanBuilder("other").startSpan();
+    CountDownLatch activated = new CountDownLatch(1);
+    Async async = ctx.async();
+    vertx.runOnContext(ignored -> {
+      OpenTelemetryUtil.setSpan(requestSpan);
+      vertx.<Span>executeBlocking(OpenTelemetryUtil.wrapHandler(promise -> {
+        try {
+          activated.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        promise.complete(OpenTelemetryUtil.getSpan());
+      }), ctx.asyncAssertSuccess(span -> {
+        ctx.assertEquals(requestSpan, span);
+        ctx.assertEquals(otherSpan, OpenTelemetryUtil.getSpan());
+        async.complete();
+      }));
+      // another request becomes active on the event loop meanwhile
+      OpenTelemetryUtil.clearContext();
+      OpenTelemetryUtil.setSpan(otherSpan);
+      activated.countDown();
+    });
+  }
+
+  @Test
+  public void a_promise_should_be_completed_once_the_span_is_no_longer_restored(TestContext ctx) {
+    Span requestSpan = tracer.spanBuilder("request").startSpan();
+    Span otherSpan = tracer.spanBuilder("other").startSpan();
+    Async async = ctx.async();
+    vertx.runOnContext(ignored -> {
+      OpenTelemetryUtil.setSpan(requestSpan);
+      Handler<Promise<Span>> handler = OpenTelemetryUtil.wrapHandler(
+        promise -> promise.complete(OpenTelemetryUtil.getSpan()));
+      OpenTelemetryUtil.clearContext();
+      OpenTelemetryUtil.setSpan(otherSpan);
+      // a promise without a context calls its handlers on the thread completing it
+      Promise<Span> promise = Promise.promise();
+      promise.future().onComplete(ctx.asyncAssertSuccess(span -> {
+        ctx.assertEquals(requestSpan, span);
+        ctx.assertEquals(otherSpan, OpenTelemetryUtil.getSpan());
+        async.complete();
+      }));
+      handler.handle(promise);
+    });
+  }
+
+  @Test
+  public void spans_started_on_an_executor_should_keep_their_parent(TestContext ctx) throws Exception {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    Tracer sdkTracer = provider.get("test");
+    ExecutorService pool = OpenTelemetryUtil.wrap(Executors.newSingleThreadExecutor());
+    try {
+      Span parent = sdkTracer.spanBuilder("parent").startSpan();
+      Async async = ctx.async();
+      vertx.runOnContext(ignored -> {
+        OpenTelemetryUtil.setSpan(parent);
+        CompletableFuture
+          .supplyAsync(OpenTelemetryUtil.wrapSupplier(() -> sdkTracer.spanBuilder("child").startSpan()), pool)
+          .thenAcceptAsync(child -> {
+            ctx.assertEquals(parent.getContext().getSpanId(), ((ReadableSpan) child).toSpanData().getParentSpanId());
+            ctx.assertEquals(parent, OpenTelemetryUtil.getSpan());
+            async.complete();
+          }, pool);
+        OpenTelemetryUtil.clearContext();
+      });
+      async.awaitSuccess(10_000);
+
+      // nothing is left on the pool thread
+      ctx.assertNull(pool.submit(OpenTelemetryUtil::getSpan).get());
+    } finally {
+      pool.shutdown();
+      provider.shutdown();
+    }
+  }
 }
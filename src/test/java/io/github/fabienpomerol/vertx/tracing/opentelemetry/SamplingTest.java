@@ -0,0 +1,115 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers.ParentBasedSampler;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers.RateLimitingSampler;
+import io.opentelemetry.sdk.trace.Sampler;
+import io.opentelemetry.sdk.trace.Samplers;
+import io.opentelemetry.trace.DefaultTracer;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.TraceState;
+import io.vertx.core.Context;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.spi.tracing.TagExtractor;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SamplingTest {
+
+  private static final TraceId TRACE_ID = new TraceId(1, 2);
+  private static final SpanId SPAN_ID = new SpanId(3);
+
+  private static boolean sample(Sampler sampler, SpanContext parent) {
+    return sampler.shouldSample(parent, TRACE_ID, SPAN_ID, "test", Span.Kind.SERVER, Collections.emptyMap(),
+      Collections.emptyList()).isSampled();
+  }
+
+  private static SpanContext remoteParent(boolean sampled) {
+    return SpanContext.createFromRemoteParent(new TraceId(4, 5), new SpanId(6),
+      TraceFlags.builder().setIsSampled(sampled).build(), TraceState.getDefault());
+  }
+
+  @Test
+  public void rate_limiting_sampler_should_stop_sampling_when_the_bucket_is_empty() {
+    Sampler sampler = new RateLimitingSampler(10);
+    int sampled = 0;
+    for (int i = 0; i < 100; i++) {
+      if (sample(sampler, null)) {
+        sampled++;
+      }
+    }
+    // one second of credits, plus what was refilled meanwhile
+    assertTrue("sampled " + sampled, sampled >= 10 && sampled < 20);
+  }
+
+  @Test
+  public void parent_based_sampler_should_follow_the_parent_decision() {
+    Sampler sampler = new ParentBasedSampler(Samplers.alwaysOff());
+    assertTrue(sample(sampler, remoteParent(true)));
+    assertFalse(sample(sampler, remoteParent(false)));
+    assertFalse(sample(sampler, null));
+    assertFalse(sample(sampler, SpanContext.getInvalid()));
+
+    sampler = new ParentBasedSampler(Samplers.alwaysOn());
+    assertFalse(sample(sampler, remoteParent(false)));
+    assertTrue(sample(sampler, null));
+  }
+
+  @Test
+  public void sampler_options_should_be_read_from_json() {
+    OpenTelemetryOptions options = new OpenTelemetryOptions(new JsonObject()
+      .put("sampler", new JsonObject()
+        .put("type", "rate_limiting")
+        .put("tracesPerSecond", 25)
+        .put("parentBased", false)));
+
+    SamplerOptions sampler = options.getSampler();
+    assertEquals(SamplerOptions.Type.RATE_LIMITING, sampler.getType());
+    assertEquals(25, sampler.getTracesPerSecond(), 0);
+    assertFalse(sampler.isParentBased());
+    assertTrue(sampler.createSampler() instanceof RateLimitingSampler);
+    assertEquals(sampler.toJson(), new SamplerOptions(sampler.toJson()).toJson());
+  }
+
+  @Test
+  public void sampler_options_should_be_parent_based_by_default() {
+    Sampler sampler = new SamplerOptions().setType(SamplerOptions.Type.PROBABILITY).setProbability(0).createSampler();
+    assertTrue(sampler instanceof ParentBasedSampler);
+    assertTrue(sample(sampler, remoteParent(true)));
+    assertFalse(sample(sampler, null));
+  }
+
+  @Test
+  public void tags_should_not_be_extracted_for_spans_not_sampled() {
+    Vertx vertx = Vertx.vertx();
+    try {
+      AtomicInteger extracted = new AtomicInteger();
+      TagExtractor<Object> tagExtractor = new TagExtractor<Object>() {
+        @Override
+        public int len(Object obj) {
+          extracted.incrementAndGet();
+          return 0;
+        }
+      };
+      // the no-op tracer creates spans that are not recording, like a sampler rejecting a trace
+      OpenTelemetryTracer tracer = new OpenTelemetryTracer(false, DefaultTracer.getInstance());
+      Context context = vertx.getOrCreateContext();
+
+      Span span = tracer.receiveRequest(context, new Object(), "GET", MultiMap.caseInsensitiveMultiMap(), tagExtractor);
+      tracer.sendResponse(context, new Object(), span, new Exception(), tagExtractor);
+      assertFalse(span.isRecording());
+      assertEquals(0, extracted.get());
+    } finally {
+      vertx.close();
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.Span;
+import io.vertx.core.Context;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.spi.tracing.TagExtractor;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class TagsTest {
+
+  private static class CountingTagExtractor implements TagExtractor<String> {
+
+    final AtomicInteger values = new AtomicInteger();
+
+    @Override
+    public int len(String obj) {
+      return 2;
+    }
+
+    @Override
+    public String name(String obj, int index) {
+      return obj + "." + index;
+    }
+
+    @Override
+    public String value(String obj, int index) {
+      values.incrementAndGet();
+      return "value-" + index;
+    }
+  }
+
+  private static class CollectingSpanProcessor implements SpanProcessor {
+
+    final List<ReadableSpan> spans = new ArrayList<>();
+
+    @Override
+    public void onStart(ReadableSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+      return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+      spans.add(span);
+    }
+
+    @Override
+    public boolean isEndRequired() {
+      return true;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void forceFlush() {
+    }
+  }
+
+  @Test
+  public void lazy_tags_should_be_resolved_when_the_span_is_exported() {
+    Vertx vertx = Vertx.vertx();
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    try {
+      CollectingSpanProcessor exported = new CollectingSpanProcessor();
+      TracerStats stats = new TracerStats();
+      SpanLimits limits = new SpanLimits(new SpanLimitsOptions(), stats);
+      LazyTagsSpanProcessor lazyTags = new LazyTagsSpanProcessor(Collections.singletonList(exported),
+        new HashSet<>(Collections.singletonList("request.1")), limits);
+      provider.addSpanProcessor(lazyTags);
+      OpenTelemetryTracer tracer = new OpenTelemetryTracer(false, provider.get("test"),
+        Collections.singletonList(lazyTags), Collections.emptyList(), Collections.emptySet(), lazyTags, null, null,
+        new EventBusTracing(new EventBusTracingOptions()), stats, null, null, null, Collections.emptyMap(), limits,
+        null);
+      Context context = vertx.getOrCreateContext();
+      CountingTagExtractor tagExtractor = new CountingTagExtractor();
+
+      Span span = tracer.receiveRequest(context, "request", "GET", MultiMap.caseInsensitiveMultiMap(), tagExtractor);
+      tracer.sendResponse(context, "response", span, null, tagExtractor);
+
+      // the value of the kept tag is copied while the request is alive
+      assertEquals(1, tagExtractor.values.get());
+      assertEquals(1, exported.spans.size());
+
+      // the request is not read anymore
+      Map<String, AttributeValue> attributes = exported.spans.get(0).toSpanData().getAttributes();
+      assertEquals(1, tagExtractor.values.get());
+      assertEquals("value-1", attributes.get("request.1").getStringValue());
+      assertFalse(attributes.containsKey("request.0"));
+      assertFalse(attributes.containsKey("response.1"));
+      assertTrue(attributes.containsKey("component"));
+    } finally {
+      provider.shutdown();
+      vertx.close();
+    }
+  }
+
+  @Test
+  public void tags_beyond_the_limits_should_be_dropped_or_truncated() {
+    Vertx vertx = Vertx.vertx();
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    try {
+      CollectingSpanProcessor exported = new CollectingSpanProcessor();
+      provider.addSpanProcessor(exported);
+      TracerStats stats = new TracerStats();
+      SpanLimits limits = new SpanLimits(new SpanLimitsOptions().setMaxAttributes(2).setMaxAttributeLength(5), stats);
+      OpenTelemetryTracer tracer = new OpenTelemetryTracer(false, provider.get("test"), Collections.emptyList(),
+        Collections.emptyList(), Collections.emptySet(), null, null, null,
+        new EventBusTracing(new EventBusTracingOptions()), stats, null, null, null, Collections.emptyMap(), limits, null);
+      Context context = vertx.getOrCreateContext();
+      CountingTagExtractor tagExtractor = new CountingTagExtractor();
+
+      Span span = tracer.receiveRequest(context, "request", "GET", MultiMap.caseInsensitiveMultiMap(), tagExtractor);
+      tracer.sendResponse(context, "response", span, null, tagExtractor);
+
+      // the value of a dropped tag is not extracted
+      assertEquals(3, tagExtractor.values.get());
+      Map<String, AttributeValue> attributes = exported.spans.get(0).toSpanData().getAttributes();
+      assertEquals("value", attributes.get("request.0").getStringValue());
+      assertFalse(attributes.containsKey("request.1"));
+      assertEquals("value", attributes.get("response.1").getStringValue());
+      TracerStats.Snapshot snapshot = stats.snapshot();
+      assertEquals(1, snapshot.getDroppedAttributes());
+      assertEquals(3, snapshot.getTruncatedAttributes());
+    } finally {
+      provider.shutdown();
+      vertx.close();
+    }
+  }
+
+  @Test
+  public void urls_should_be_normalized() {
+    SpanLimits limits = new SpanLimits(new SpanLimitsOptions().setStripQueryString(true).setCollapseIds(true),
+      new TracerStats());
+    assertEquals("http://localhost:8080/orders/{id}/items/{id}",
+      limits.normalizeUrl("http://localhost:8080/orders/12345/items/6?page=2#top"));
+    assertEquals("/users/{id}/profile",
+      limits.normalizeUrl("/users/123e4567-e89b-12d3-a456-426614174000/profile"));
+    assertEquals("/blobs/{id}", limits.normalizeUrl("/blobs/0123456789abcdef0123"));
+    String url = "http://localhost:8080/cafe/menu";
+    assertSame(url, limits.normalizeUrl(url));
+    assertEquals("/search", limits.normalizeUrl("/search?q=vertx"));
+
+    SpanLimits ids = new SpanLimits(new SpanLimitsOptions().setCollapseIds(true), new TracerStats());
+    assertEquals("/orders/{id}?id=12345", ids.normalizeUrl("/orders/12345?id=12345"));
+  }
+
+  @Test
+  public void only_allowed_tags_should_be_set(TestContext ctx) throws Exception {
+    InMemoryExporter exporter = InMemoryExporter.newBuilder().build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions(OpenTelemetryTracer.createDefaultTracer())
+        .addExporter(exporter)
+        .addAllowedTag("http.method")
+        .setEnabled(true)
+    ));
+    try {
+      Async listenLatch = ctx.async();
+      vertx.createHttpServer().requestHandler(req -> {
+        req.response().end();
+      }).listen(8080, ctx.asyncAssertSuccess(v -> listenLatch.complete()));
+      listenLatch.awaitSuccess();
+      Async responseLatch = ctx.async();
+      vertx.createHttpClient().get(8080, "localhost", "/", ctx.asyncAssertSuccess(resp -> responseLatch.complete()));
+      responseLatch.awaitSuccess();
+
+      SpanData spanData = exporter.getSpanExporter().awaitSpans(1, 10, TimeUnit.SECONDS).get(0);
+      assertEquals("GET", spanData.getAttributes().get("http.method").getStringValue());
+      assertFalse(spanData.getAttributes().containsKey("http.url"));
+      assertFalse(spanData.getAttributes().containsKey("http.status_code"));
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  @Test
+  public void tag_options_should_be_read_from_json() {
+    OpenTelemetryOptions options = new OpenTelemetryOptions(new JsonObject()
+      .put("lazyTags", true)
+      .put("tagAllowlist", new JsonArray().add("http.method").add("http.status_code"))
+      .put("spanLimits", new JsonObject().put("maxAttributes", 8).put("collapseIds", true)));
+
+    assertTrue(options.isLazyTags());
+    assertEquals(new HashSet<>(Arrays.asList("http.method", "http.status_code")), options.getTagAllowlist());
+    assertEquals(8, options.getSpanLimits().getMaxAttributes());
+    assertEquals(SpanLimitsOptions.DEFAULT_MAX_EVENTS, options.getSpanLimits().getMaxEvents());
+    assertTrue(options.getSpanLimits().isCollapseIds());
+    assertFalse(options.getSpanLimits().isStripQueryString());
+  }
+}
@@ -0,0 +1,54 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.TraceId;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ThreadLocalIdsGeneratorTest {
+
+  @Test
+  public void timestamped_trace_ids_should_start_with_the_epoch_second() {
+    ThreadLocalIdsGenerator generator = new ThreadLocalIdsGenerator(true);
+    long before = System.currentTimeMillis() / 1000;
+    TraceId first = generator.generateTraceId();
+    TraceId second = generator.generateTraceId();
+    long after = System.currentTimeMillis() / 1000;
+
+    long seconds = Long.parseLong(first.toLowerBase16().substring(0, 8), 16);
+    assertTrue(seconds >= before && seconds <= after);
+    assertTrue(first.isValid());
+    assertNotEquals(first, second);
+    assertTrue(generator.generateSpanId().isValid());
+  }
+
+  @Test
+  public void lean_spans_should_use_the_ids_generator() {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    LeanTracer tracer = new LeanTracer(provider, Collections.emptyList(), 16, new ThreadLocalIdsGenerator(true));
+
+    Span span = tracer.spanBuilder("span").startSpan();
+    long seconds = Long.parseLong(span.getContext().getTraceId().toLowerBase16().substring(0, 8), 16);
+    assertEquals(System.currentTimeMillis() / 1000, seconds, 1);
+    span.end();
+  }
+
+  @Test
+  public void ids_generator_should_be_read_from_json() {
+    assertTrue(((ThreadLocalIdsGenerator) new OpenTelemetryOptions(new JsonObject().put("idsGenerator", "timestamped"))
+      .getIdsGenerator()).isTimestamped());
+    assertFalse(((ThreadLocalIdsGenerator) new OpenTelemetryOptions(new JsonObject().put("idsGenerator", "random"))
+      .getIdsGenerator()).isTimestamped());
+    assertNull(new OpenTelemetryOptions().getIdsGenerator());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknown_ids_generator_should_be_rejected() {
+    new OpenTelemetryOptions(new JsonObject().put("idsGenerator", "sequential"));
+  }
+}
@@ -0,0 +1,162 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.TraceState;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class TracePropagationTest {
+
+  private static final String TRACEPARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+  @Test
+  public void traceparent_should_round_trip() {
+    SpanContext spanContext = TracePropagation.parseTraceparent(TRACEPARENT, "rojo=00f067aa0ba902b7, congo=t61rcWkgMzE");
+
+    assertEquals(new TraceId(0x0af7651916cd43ddL, 0x8448eb211c80319cL), spanContext.getTraceId());
+    assertEquals(new SpanId(0xb7ad6b7169203331L), spanContext.getSpanId());
+    assertTrue(spanContext.getTraceFlags().isSampled());
+    assertTrue(spanContext.isRemote());
+    assertEquals("00f067aa0ba902b7", spanContext.getTraceState().get("rojo"));
+    assertEquals("rojo", spanContext.getTraceState().getEntries().get(0).getKey());
+    assertEquals(TRACEPARENT, TracePropagation.formatTraceparent(spanContext));
+
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+    new TracePropagation(Arrays.asList(PropagationFormat.W3C)).inject(spanContext, headers::add);
+    assertEquals(TRACEPARENT, headers.get("traceparent"));
+    assertEquals("rojo=00f067aa0ba902b7,congo=t61rcWkgMzE", headers.get("tracestate"));
+  }
+
+  @Test
+  public void malformed_traceparent_should_be_ignored() {
+    assertNull(TracePropagation.parseTraceparent("00-malformed", null));
+    assertNull(TracePropagation.parseTraceparent(TRACEPARENT.toUpperCase(), null));
+    assertNull(TracePropagation.parseTraceparent(TRACEPARENT + "-00", null));
+    assertNull(TracePropagation.parseTraceparent("ff" + TRACEPARENT.substring(2), null));
+    assertNull(TracePropagation.parseTraceparent("00-00000000000000000000000000000000-b7ad6b7169203331-01", null));
+    assertNull(TracePropagation.parseTraceparent("00-0af7651916cd43dd8448eb211c80319c-0000000000000000-01", null));
+    // the fields of a later version are ignored
+    assertNotNull(TracePropagation.parseTraceparent("01" + TRACEPARENT.substring(2) + "-later", null));
+    assertTrue(TracePropagation.parseTraceparent(TRACEPARENT, "no member").getTraceState().getEntries().isEmpty());
+    assertFalse(TracePropagation.parseTraceparent(
+      "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-00", null).getTraceFlags().isSampled());
+  }
+
+  @Test
+  public void b3_should_round_trip() {
+    SpanContext spanContext = TracePropagation.parseB3("80f198ee56343ba864fe8b2a57d3eff7-e457b5a2e4d86bd1-1-05e3ac9a4f6e3b90");
+
+    assertEquals(new TraceId(0x80f198ee56343ba8L, 0x64fe8b2a57d3eff7L), spanContext.getTraceId());
+    assertEquals(new SpanId(0xe457b5a2e4d86bd1L), spanContext.getSpanId());
+    assertTrue(spanContext.getTraceFlags().isSampled());
+    assertEquals("80f198ee56343ba864fe8b2a57d3eff7-e457b5a2e4d86bd1-1", TracePropagation.formatB3(spanContext));
+
+    SpanContext shortTraceId = TracePropagation.parseB3("64fe8b2a57d3eff7-e457b5a2e4d86bd1");
+    assertEquals(new TraceId(0, 0x64fe8b2a57d3eff7L), shortTraceId.getTraceId());
+    assertFalse(shortTraceId.getTraceFlags().isSampled());
+    assertTrue(TracePropagation.parseB3("64fe8b2a57d3eff7-e457b5a2e4d86bd1-d").getTraceFlags().isSampled());
+    assertNull(TracePropagation.parseB3("0"));
+    assertNull(TracePropagation.parseB3("64fe8b2a57d3eff7-e457b5a2e4d86bd1-x"));
+    assertNull(TracePropagation.parseB3("64fe8b2a57d3eff7-e457b5a2e4d86bd1-1-"));
+  }
+
+  @Test
+  public void first_format_found_should_be_extracted() {
+    TracePropagation propagation = new TracePropagation(Arrays.asList(PropagationFormat.B3, PropagationFormat.W3C));
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+      .add("traceparent", TRACEPARENT)
+      .add("b3", "80f198ee56343ba864fe8b2a57d3eff7-e457b5a2e4d86bd1-1");
+
+    assertEquals(new SpanId(0xe457b5a2e4d86bd1L), propagation.extract(headers).getSpanId());
+    headers.set("b3", "malformed");
+    assertEquals(new SpanId(0xb7ad6b7169203331L), propagation.extract(headers).getSpanId());
+    assertNull(propagation.extract(MultiMap.caseInsensitiveMultiMap()));
+
+    SpanContext spanContext = SpanContext.create(new TraceId(1, 2), new SpanId(3),
+      TraceFlags.getDefault(), TraceState.getDefault());
+    MultiMap injected = MultiMap.caseInsensitiveMultiMap();
+    propagation.inject(spanContext, injected::add);
+    assertEquals("00000000000000010000000000000002-0000000000000003-0", injected.get("b3"));
+    assertEquals("00-00000000000000010000000000000002-0000000000000003-00", injected.get("traceparent"));
+    assertNull(injected.get("tracestate"));
+  }
+
+  @Test
+  public void propagation_formats_should_be_read_from_json() {
+    OpenTelemetryOptions options = new OpenTelemetryOptions(new JsonObject()
+      .put("propagation", new JsonArray().add("b3").add("w3c")));
+
+    assertEquals(Arrays.asList(PropagationFormat.B3, PropagationFormat.W3C),
+      Arrays.asList(options.getPropagationFormats().toArray()));
+    assertTrue(new OpenTelemetryOptions().getPropagationFormats().isEmpty());
+  }
+
+  @Test
+  public void requests_should_carry_the_configured_headers(TestContext ctx) throws Exception {
+    InMemoryExporter exporter = InMemoryExporter.newBuilder().build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .addPropagationFormat(PropagationFormat.W3C)
+        .addPropagationFormat(PropagationFormat.B3)
+        .addExporter(exporter)
+        .setEnabled(true)
+    ));
+    try {
+      AtomicReference<MultiMap> downstream = new AtomicReference<>();
+      Async listen = ctx.async();
+      vertx.createHttpServer()
+        .requestHandler(req -> {
+          if (req.path().equals("/downstream")) {
+            downstream.set(MultiMap.caseInsensitiveMultiMap().addAll(req.headers()));
+            req.response().end();
+          } else {
+            vertx.createHttpClient().get(8085, "localhost", "/downstream", ctx.asyncAssertSuccess(resp ->
+              req.response().end()));
+          }
+        })
+        .listen(8085, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      Async response = ctx.async();
+      vertx.createHttpClient().get(8085, "localhost", "/", MultiMap.caseInsensitiveMultiMap()
+          .add("b3", "80f198ee56343ba864fe8b2a57d3eff7-e457b5a2e4d86bd1-1"),
+        ctx.asyncAssertSuccess(resp -> response.complete()));
+      response.awaitSuccess();
+
+      // the server span of "/", the client span of "/downstream" and its server span
+      List<SpanData> spans = exporter.getSpanExporter().awaitSpans(3, 10, TimeUnit.SECONDS);
+      assertEquals(3, spans.size());
+      TraceId traceId = new TraceId(0x80f198ee56343ba8L, 0x64fe8b2a57d3eff7L);
+      assertTrue(spans.stream().allMatch(span -> span.getTraceId().equals(traceId)));
+      SpanData client = spans.stream().filter(span -> span.getKind() == Span.Kind.CLIENT).findFirst().get();
+      assertTrue(spans.stream().anyMatch(span -> span.getParentSpanId().equals(new SpanId(0xe457b5a2e4d86bd1L))));
+      assertEquals("00-" + traceId.toLowerBase16() + "-" + client.getSpanId().toLowerBase16() + "-01",
+        downstream.get().get("traceparent"));
+      assertEquals(traceId.toLowerBase16() + "-" + client.getSpanId().toLowerBase16() + "-1",
+        downstream.get().get("b3"));
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+}
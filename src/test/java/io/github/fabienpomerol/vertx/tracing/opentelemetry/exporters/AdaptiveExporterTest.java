@@ -0,0 +1,213 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.samplers.PressureSampler;
+import io.opentelemetry.sdk.trace.Samplers;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.Tracer;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveExporterTest {
+
+  private TracerSdkProvider provider;
+  private RingBufferSpanExporter spans;
+  private Vertx vertx;
+  private Tracer tracer;
+  private AdaptiveExporter adaptive;
+
+  @Before
+  public void before() {
+    vertx = Vertx.vertx();
+    provider = TracerSdkProvider.builder().build();
+    spans = InMemoryExporter.newBuilder().build().getSpanExporter();
+    provider.addSpanProcessor(SimpleSpansProcessor.newBuilder(spans).build());
+    tracer = provider.get("test");
+  }
+
+  @After
+  public void after() {
+    provider.shutdown();
+    if (adaptive != null) {
+      adaptive.getSpanExporter().shutdown();
+    }
+    vertx.close();
+  }
+
+  private List<SpanData> batch(int size) {
+    spans.reset();
+    for (int i = 0; i < size; i++) {
+      tracer.spanBuilder("span-" + i).startSpan().end();
+    }
+    return spans.getFinishedSpanItems();
+  }
+
+  private static void waitUntil(BooleanSupplier condition) throws Exception {
+    long now = System.currentTimeMillis();
+    while (!condition.getAsBoolean() && (System.currentTimeMillis() - now) < 10000) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+  @Test
+  public void export_should_not_wait_for_a_slow_backend() throws Exception {
+    ControlledExporter exporter = new ControlledExporter();
+    exporter.latency = 200;
+    adaptive = AdaptiveExporter.newBuilder()
+      .setExporter(exporter)
+      .setSlowExportThreshold(1_000)
+      .build();
+    adaptive.start(vertx);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      assertEquals(SpanExporter.ResultCode.SUCCESS, adaptive.getSpanExporter().export(batch(2)));
+    }
+    assertTrue(System.nanoTime() - start < 150_000_000L);
+
+    waitUntil(() -> adaptive.getExportedSpans() == 10);
+    assertEquals(0, adaptive.getPendingSpans());
+    assertTrue(adaptive.getAverageLatency() >= 200);
+  }
+
+  @Test
+  public void batches_above_the_pending_spans_should_be_shed() throws Exception {
+    ControlledExporter exporter = new ControlledExporter();
+    exporter.latency = 500;
+    adaptive = AdaptiveExporter.newBuilder()
+      .setExporter(exporter)
+      .setSlowExportThreshold(1_000)
+      .setMaxPendingSpans(4)
+      .build();
+    adaptive.start(vertx);
+
+    assertEquals(SpanExporter.ResultCode.SUCCESS, adaptive.getSpanExporter().export(batch(3)));
+    assertEquals(SpanExporter.ResultCode.FAILED_RETRYABLE, adaptive.getSpanExporter().export(batch(2)));
+    assertEquals(SpanExporter.ResultCode.SUCCESS, adaptive.getSpanExporter().export(batch(1)));
+
+    assertEquals(2, adaptive.getShedSpans());
+    assertEquals(1.0, adaptive.getPressure(), 0.0);
+    waitUntil(() -> adaptive.getExportedSpans() == 4);
+    assertEquals(0.0, adaptive.getPressure(), 0.0);
+  }
+
+  @Test
+  public void failures_should_open_the_circuit_until_a_trial_succeeds() throws Exception {
+    ControlledExporter exporter = new ControlledExporter();
+    exporter.failing = true;
+    adaptive = AdaptiveExporter.newBuilder()
+      .setExporter(exporter)
+      .setFailureThreshold(2)
+      .setOpenDuration(300)
+      .build();
+    adaptive.start(vertx);
+
+    adaptive.getSpanExporter().export(batch(1));
+    adaptive.getSpanExporter().export(batch(1));
+    waitUntil(() -> adaptive.getState() == AdaptiveExporter.State.OPEN);
+    assertEquals(2, adaptive.getFailedSpans());
+    assertEquals(1.0, adaptive.getPressure(), 0.0);
+
+    // shed without reaching the backend
+    assertEquals(SpanExporter.ResultCode.FAILED_RETRYABLE, adaptive.getSpanExporter().export(batch(3)));
+    assertEquals(3, adaptive.getShedSpans());
+    assertEquals(2, exporter.calls);
+
+    exporter.failing = false;
+    Thread.sleep(300);
+    assertEquals(SpanExporter.ResultCode.SUCCESS, adaptive.getSpanExporter().export(batch(1)));
+    waitUntil(() -> adaptive.getState() == AdaptiveExporter.State.CLOSED);
+    assertEquals(1, adaptive.getExportedSpans());
+  }
+
+  @Test
+  public void slow_exports_should_open_the_circuit() throws Exception {
+    ControlledExporter exporter = new ControlledExporter();
+    exporter.latency = 50;
+    adaptive = AdaptiveExporter.newBuilder()
+      .setExporter(exporter)
+      .setFailureThreshold(1)
+      .setSlowExportThreshold(10)
+      .build();
+    adaptive.start(vertx);
+
+    adaptive.getSpanExporter().export(batch(1));
+    waitUntil(() -> adaptive.getState() == AdaptiveExporter.State.OPEN);
+    assertEquals(1, adaptive.getExportedSpans());
+  }
+
+  @Test
+  public void sampling_rate_should_decrease_with_the_pressure() {
+    double[] pressure = {0.4};
+    PressureSampler sampler = new PressureSampler(Samplers.alwaysOn(), () -> pressure[0], 0.5);
+    assertEquals(1000, sampled(sampler));
+
+    pressure[0] = 0.75;
+    int sampled = sampled(sampler);
+    assertTrue("sampled " + sampled, sampled > 350 && sampled < 650);
+
+    pressure[0] = 1;
+    assertEquals(0, sampled(sampler));
+  }
+
+  private static int sampled(PressureSampler sampler) {
+    int sampled = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (sampler.shouldSample(null, TraceId.getInvalid(), SpanId.getInvalid(), "span", Span.Kind.SERVER,
+        Collections.emptyMap(), Collections.emptyList()).isSampled()) {
+        sampled++;
+      }
+    }
+    return sampled;
+  }
+
+  /**
+   * An exporter failing or slowing down on demand.
+   */
+  private static class ControlledExporter implements BackendExporter, SpanExporter {
+
+    private volatile boolean failing;
+    private volatile long latency;
+    private volatile int calls;
+
+    @Override
+    public SpanExporter getSpanExporter() {
+      return this;
+    }
+
+    @Override
+    public ResultCode export(Collection<SpanData> spans) {
+      calls++;
+      if (latency > 0) {
+        try {
+          Thread.sleep(latency);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failing) {
+        return ResultCode.FAILED_RETRYABLE;
+      }
+      return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.BatchOptions;
+import io.opentelemetry.exporters.inmemory.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Tracer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BatchSpanProcessorTest {
+
+  private TracerSdkProvider provider;
+  private Tracer tracer;
+
+  @Before
+  public void before() {
+    provider = TracerSdkProvider.builder().build();
+    tracer = provider.get("test");
+  }
+
+  @After
+  public void after() {
+    provider.shutdown();
+  }
+
+  @Test
+  public void spans_should_be_exported_when_the_batch_is_full() throws Exception {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    BatchSpanProcessor processor = new BatchSpanProcessor(exporter, new BatchOptions()
+      .setMaxExportBatchSize(2)
+      .setScheduleDelay(60_000));
+    provider.addSpanProcessor(processor);
+
+    tracer.spanBuilder("one").startSpan().end();
+    tracer.spanBuilder("two").startSpan().end();
+
+    long now = System.currentTimeMillis();
+    while (exporter.getFinishedSpanItems().size() < 2 && (System.currentTimeMillis() - now) < 10000) {
+      Thread.sleep(10);
+    }
+    assertEquals(2, exporter.getFinishedSpanItems().size());
+    assertEquals(2, processor.getExportedSpans());
+  }
+
+  @Test
+  public void spans_should_be_dropped_when_the_queue_is_full() throws Exception {
+    CountDownLatch exporting = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    BlockingExporter exporter = new BlockingExporter(exporting, release);
+    BatchSpanProcessor processor = new BatchSpanProcessor(exporter, new BatchOptions()
+      .setMaxQueueSize(2)
+      .setMaxExportBatchSize(1)
+      .setScheduleDelay(60_000));
+    provider.addSpanProcessor(processor);
+
+    // the worker takes the first span and blocks in the exporter
+    tracer.spanBuilder("exporting").startSpan().end();
+    assertTrue(exporting.await(10, TimeUnit.SECONDS));
+
+    for (int i = 0; i < 5; i++) {
+      tracer.spanBuilder("queued").startSpan().end();
+    }
+    assertEquals(2, processor.getQueueSize());
+    assertEquals(3, processor.getDroppedSpans());
+
+    release.countDown();
+    processor.shutdown();
+    assertEquals(3, processor.getExportedSpans());
+    assertEquals(0, processor.getQueueSize());
+  }
+
+  @Test
+  public void shutdown_should_flush_the_queued_spans() {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    BatchSpanProcessor processor = new BatchSpanProcessor(exporter, new BatchOptions().setScheduleDelay(60_000));
+    provider.addSpanProcessor(processor);
+
+    tracer.spanBuilder("one").startSpan().end();
+    tracer.spanBuilder("two").startSpan().end();
+    processor.shutdown();
+
+    assertEquals(2, processor.getExportedSpans());
+    tracer.spanBuilder("late").startSpan().end();
+    assertEquals(1, processor.getDroppedSpans());
+  }
+
+  @Test
+  public void the_exporter_should_be_shut_down_once_its_export_completed() throws Exception {
+    CountDownLatch exporting = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    BlockingExporter exporter = new BlockingExporter(exporting, release);
+    BatchSpanProcessor processor = new BatchSpanProcessor(exporter, new BatchOptions()
+      .setMaxExportBatchSize(1)
+      .setScheduleDelay(10));
+    provider.addSpanProcessor(processor);
+
+    tracer.spanBuilder("exporting").startSpan().end();
+    assertTrue(exporting.await(10, TimeUnit.SECONDS));
+
+    // the shutdown stops waiting for the worker after the schedule delay
+    Thread shutdown = new Thread(processor::shutdown);
+    shutdown.start();
+    shutdown.join(100);
+    assertFalse(exporter.shutdown);
+
+    release.countDown();
+    shutdown.join(10000);
+    assertTrue(exporter.shutdown);
+    assertEquals(1, processor.getExportedSpans());
+  }
+
+  private static class BlockingExporter implements SpanExporter {
+
+    private final CountDownLatch exporting;
+    private final CountDownLatch release;
+    private volatile boolean shutdown;
+
+    BlockingExporter(CountDownLatch exporting, CountDownLatch release) {
+      this.exporting = exporting;
+      this.release = release;
+    }
+
+    @Override
+    public ResultCode export(Collection<SpanData> spans) {
+      exporting.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return ResultCode.FAILED_RETRYABLE;
+      }
+      return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public void shutdown() {
+      shutdown = true;
+    }
+  }
+}
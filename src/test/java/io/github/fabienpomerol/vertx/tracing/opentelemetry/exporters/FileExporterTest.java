@@ -0,0 +1,245 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.Tracer;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class FileExporterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private TracerSdkProvider provider;
+  private RingBufferSpanExporter spans;
+  private Vertx vertx;
+  private Tracer tracer;
+  private FileExporter file;
+
+  @Before
+  public void before() {
+    vertx = Vertx.vertx();
+    provider = TracerSdkProvider.builder().build();
+    spans = InMemoryExporter.newBuilder().build().getSpanExporter();
+    provider.addSpanProcessor(SimpleSpansProcessor.newBuilder(spans).build());
+    tracer = provider.get("test");
+  }
+
+  @After
+  public void after() {
+    provider.shutdown();
+    if (file != null) {
+      file.getSpanExporter().shutdown();
+    }
+    vertx.close();
+  }
+
+  private List<SpanData> batch(int size) {
+    spans.reset();
+    Span parent = tracer.spanBuilder("parent").startSpan();
+    for (int i = 0; i < size; i++) {
+      Span span = tracer.spanBuilder("span \"" + i + "\"").setParent(parent).setSpanKind(Span.Kind.SERVER).startSpan();
+      span.setAttribute("http.status_code", 500L);
+      span.setAttribute("error", true);
+      span.addEvent("error");
+      span.setStatus(Status.INTERNAL.withDescription("Internal Server Error"));
+      span.end();
+    }
+    return spans.getFinishedSpanItems();
+  }
+
+  private static void waitUntil(BooleanSupplier condition) throws Exception {
+    long now = System.currentTimeMillis();
+    while (!condition.getAsBoolean() && (System.currentTimeMillis() - now) < 10000) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+  private List<Path> files(String glob) {
+    try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+      return files
+        .filter(path -> path.getFileSystem().getPathMatcher("glob:" + glob).matches(path.getFileName()))
+        .sorted()
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Test
+  public void spans_should_be_written_as_json_lines() throws Exception {
+    file = FileExporter.newBuilder().setDirectory(folder.getRoot().toPath()).build();
+    file.start(vertx);
+    List<SpanData> batch = batch(3);
+
+    assertEquals(SpanExporter.ResultCode.SUCCESS, file.getSpanExporter().export(batch));
+    waitUntil(() -> file.getExportedSpans() == 3);
+
+    List<String> lines = Files.readAllLines(folder.getRoot().toPath().resolve("spans.ndjson"));
+    assertEquals(3, lines.size());
+    JsonObject json = new JsonObject(lines.get(0));
+    SpanData span = batch.get(0);
+    assertEquals(span.getTraceId().toLowerBase16(), json.getString("traceId"));
+    assertEquals(span.getSpanId().toLowerBase16(), json.getString("spanId"));
+    assertEquals(span.getParentSpanId().toLowerBase16(), json.getString("parentSpanId"));
+    assertEquals("span \"0\"", json.getString("name"));
+    assertEquals("SERVER", json.getString("kind"));
+    assertEquals(span.getStartEpochNanos(), (long) json.getLong("startTimeUnixNano"));
+    assertEquals(span.getEndEpochNanos(), (long) json.getLong("endTimeUnixNano"));
+    assertEquals(500L, (long) json.getJsonObject("attributes").getLong("http.status_code"));
+    assertTrue(json.getJsonObject("attributes").getBoolean("error"));
+    assertEquals("error", json.getJsonArray("events").getJsonObject(0).getString("name"));
+    assertEquals("INTERNAL", json.getJsonObject("status").getString("code"));
+    assertEquals("Internal Server Error", json.getJsonObject("status").getString("description"));
+    assertEquals(lines.stream().mapToLong(line -> line.length() + 1).sum(), file.getWrittenBytes());
+  }
+
+  @Test
+  public void files_should_be_rotated_by_size_and_compressed() throws Exception {
+    file = FileExporter.newBuilder()
+      .setDirectory(folder.getRoot().toPath())
+      .setMaxFileSize(1)
+      .setCompression(true)
+      .setMaxFiles(2)
+      .build();
+    file.start(vertx);
+
+    for (int i = 1; i <= 4; i++) {
+      file.getSpanExporter().export(batch(2));
+      long exported = i * 2;
+      waitUntil(() -> file.getExportedSpans() == exported);
+    }
+
+    // each write fills the file, which is rotated before the next write or on the next tick, the writer may take a
+    // batch in several writes; the rotated files are compressed and deleted in the background
+    waitUntil(() -> files("spans.ndjson").isEmpty() && files("spans-*.ndjson").isEmpty() &&
+      files("spans-*.ndjson.gz").size() == 2);
+    assertTrue(file.getRotatedFiles() >= 4);
+    List<Path> rotated = files("spans-*.ndjson.gz");
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+      new GZIPInputStream(Files.newInputStream(rotated.get(1))), StandardCharsets.UTF_8))) {
+      List<String> lines = reader.lines().collect(Collectors.toList());
+      assertFalse(lines.isEmpty());
+      assertEquals("span \"1\"", new JsonObject(lines.get(lines.size() - 1)).getString("name"));
+    }
+  }
+
+  @Test
+  public void files_should_be_rotated_by_age() throws Exception {
+    file = FileExporter.newBuilder()
+      .setDirectory(folder.getRoot().toPath())
+      .setFileName("traces")
+      .setRotationInterval(50)
+      .build();
+    file.start(vertx);
+
+    file.getSpanExporter().export(batch(1));
+    waitUntil(() -> file.getRotatedFiles() == 1);
+
+    assertEquals(1, files("traces-*.ndjson").size());
+    assertEquals(1, file.getExportedSpans());
+  }
+
+  @Test
+  public void only_the_rotated_files_of_the_exporter_should_be_deleted() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    // written by other exporters to the same directory
+    Files.createFile(directory.resolve("spans-orders.ndjson"));
+    Files.createFile(directory.resolve("spans-orders-1600000000000.ndjson.gz"));
+    Files.createFile(directory.resolve("spans-2024.ndjson"));
+    file = FileExporter.newBuilder()
+      .setDirectory(directory)
+      .setMaxFileSize(1)
+      .setMaxFiles(1)
+      .build();
+    file.start(vertx);
+
+    for (int i = 1; i <= 3; i++) {
+      file.getSpanExporter().export(batch(1));
+      long exported = i;
+      waitUntil(() -> file.getExportedSpans() == exported);
+    }
+    waitUntil(() -> file.getRotatedFiles() == 3);
+
+    waitUntil(() -> files("spans-[0-9]*.ndjson").stream()
+      .filter(path -> !path.getFileName().toString().equals("spans-2024.ndjson"))
+      .count() == 1);
+    assertTrue(Files.exists(directory.resolve("spans-orders.ndjson")));
+    assertTrue(Files.exists(directory.resolve("spans-orders-1600000000000.ndjson.gz")));
+    assertTrue(Files.exists(directory.resolve("spans-2024.ndjson")));
+  }
+
+  @Test
+  public void queued_spans_should_be_written_on_shutdown() throws Exception {
+    file = FileExporter.newBuilder().setDirectory(folder.getRoot().toPath()).build();
+    file.start(vertx);
+
+    file.getSpanExporter().export(batch(100));
+    file.getSpanExporter().shutdown();
+
+    assertEquals(100, file.getExportedSpans());
+    assertEquals(100, Files.readAllLines(folder.getRoot().toPath().resolve("spans.ndjson")).size());
+    assertEquals(SpanExporter.ResultCode.FAILED_NOT_RETRYABLE, file.getSpanExporter().export(batch(1)));
+    assertEquals(1, file.getDroppedSpans());
+  }
+
+  @Test
+  public void spans_exported_before_the_start_should_be_written_once_started() throws Exception {
+    Path directory = folder.getRoot().toPath().resolve("traces");
+    file = FileExporter.newBuilder().setDirectory(directory).build();
+
+    assertEquals(SpanExporter.ResultCode.SUCCESS, file.getSpanExporter().export(batch(2)));
+    assertFalse(Files.exists(directory));
+
+    file.start(vertx);
+    waitUntil(() -> file.getExportedSpans() == 2);
+    assertEquals(2, Files.readAllLines(directory.resolve("spans.ndjson")).size());
+  }
+
+  @Test
+  public void an_exporter_never_started_should_be_shut_down_once() {
+    file = FileExporter.newBuilder().setDirectory(folder.getRoot().toPath()).build();
+    file.getSpanExporter().export(batch(2));
+
+    file.getSpanExporter().shutdown();
+    file.getSpanExporter().shutdown();
+    assertEquals(2, file.getFailedSpans());
+  }
+
+  @Test
+  public void file_exporter_should_be_read_from_json() {
+    file = (FileExporter) BackendExporters.fromJson(new JsonObject()
+      .put("type", "file")
+      .put("directory", folder.getRoot().getAbsolutePath())
+      .put("maxFileSize", 1024)
+      .put("compression", true));
+
+    assertEquals(0, (long) file.stats().get("exportedSpans"));
+  }
+}
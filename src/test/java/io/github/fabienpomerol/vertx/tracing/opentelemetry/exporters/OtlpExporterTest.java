@@ -0,0 +1,277 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.BatchOptions;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.OpenTelemetryOptions;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import io.opentelemetry.exporters.inmemory.InMemorySpanExporter;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceResponse;
+import io.opentelemetry.proto.trace.v1.Span;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Tracer;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class OtlpExporterTest {
+
+  private static final int HTTP_PORT = 8194;
+  private static final int GRPC_PORT = 8195;
+
+  // the collector runs on its own Vert.x instance, not traced
+  private Vertx collectorVertx;
+  private List<ExportTraceServiceRequest> received;
+  private List<String> contentEncodings;
+
+  @Before
+  public void before() {
+    collectorVertx = Vertx.vertx();
+    received = new CopyOnWriteArrayList<>();
+    contentEncodings = new CopyOnWriteArrayList<>();
+  }
+
+  @After
+  public void after(TestContext ctx) {
+    collectorVertx.close(ctx.asyncAssertSuccess());
+  }
+
+  private void startHttpCollector(TestContext ctx, Consumer<HttpServerRequest> handler) {
+    Async listen = ctx.async();
+    collectorVertx.createHttpServer().requestHandler(req -> {
+      contentEncodings.add(String.valueOf(req.getHeader("content-encoding")));
+      req.body(ctx.asyncAssertSuccess(body -> {
+        try (InputStream in = "gzip".equals(req.getHeader("content-encoding"))
+          ? new GZIPInputStream(new ByteArrayInputStream(body.getBytes()))
+          : new ByteArrayInputStream(body.getBytes())) {
+          received.add(ExportTraceServiceRequest.parseFrom(in));
+        } catch (IOException e) {
+          ctx.fail(e);
+        }
+        handler.accept(req);
+      }));
+    }).listen(HTTP_PORT, ctx.asyncAssertSuccess(v -> listen.complete()));
+    listen.awaitSuccess();
+  }
+
+  private static List<SpanData> spans(String... names) {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    provider.addSpanProcessor(SimpleSpansProcessor.newBuilder(exporter).build());
+    Tracer tracer = provider.get("test");
+    for (String name : names) {
+      tracer.spanBuilder(name).startSpan().end();
+    }
+    List<SpanData> spans = new ArrayList<>(exporter.getFinishedSpanItems());
+    provider.shutdown();
+    return spans;
+  }
+
+  private static List<Span> receivedSpans(List<ExportTraceServiceRequest> requests) {
+    List<Span> spans = new ArrayList<>();
+    requests.forEach(request -> request.getResourceSpansList().forEach(resourceSpans ->
+      resourceSpans.getInstrumentationLibrarySpansList().forEach(librarySpans ->
+        spans.addAll(librarySpans.getSpansList()))));
+    return spans;
+  }
+
+  private static void waitUntil(BooleanSupplier condition) throws Exception {
+    long now = System.currentTimeMillis();
+    while (!condition.getAsBoolean() && (System.currentTimeMillis() - now) < 10000) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+  @Test
+  public void http_exporter_should_be_bound_to_the_traced_vertx_and_send_gzipped_spans(TestContext ctx) throws Exception {
+    startHttpCollector(ctx, req -> req.response().end());
+    OtlpExporter exporter = OtlpExporter.newBuilder()
+      .setProtocol(OtlpExporter.Protocol.HTTP_PROTOBUF)
+      .setPort(HTTP_PORT)
+      .setCompression(true)
+      .build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .addExporter(exporter, new BatchOptions().setScheduleDelay(10))
+        .setEnabled(true)
+    ));
+    try {
+      Async listen = ctx.async();
+      vertx.createHttpServer().requestHandler(req -> req.response().end())
+        .listen(8080, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      Async response = ctx.async();
+      vertx.createHttpClient().get(8080, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+      response.awaitSuccess();
+
+      waitUntil(() -> exporter.getExportedSpans() == 1);
+      List<Span> spans = receivedSpans(received);
+      assertEquals(1, spans.size());
+      assertEquals("GET", spans.get(0).getName());
+      assertEquals(Span.SpanKind.SERVER, spans.get(0).getKind());
+      assertEquals(16, spans.get(0).getTraceId().size());
+      assertEquals("gzip", contentEncodings.get(0));
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  @Test
+  public void http_exporter_should_retry_when_the_collector_is_unavailable(TestContext ctx) throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    startHttpCollector(ctx, req -> req.response().setStatusCode(requests.incrementAndGet() <= 2 ? 503 : 200).end());
+    OtlpExporter exporter = OtlpExporter.newBuilder()
+      .setProtocol(OtlpExporter.Protocol.HTTP_PROTOBUF)
+      .setPort(HTTP_PORT)
+      .setInitialBackoff(10)
+      .setVertx(collectorVertx)
+      .build();
+
+    assertEquals(SpanExporter.ResultCode.SUCCESS, exporter.getSpanExporter().export(spans("a", "b")));
+
+    waitUntil(() -> exporter.getExportedSpans() == 2);
+    assertEquals(2, exporter.getRetries());
+    assertEquals(0, exporter.getFailedSpans());
+    assertEquals(3, received.size());
+    assertEquals("null", contentEncodings.get(0));
+    assertEquals(0, exporter.getInFlightExports());
+  }
+
+  @Test
+  public void http_exporter_should_retry_when_the_response_body_cannot_be_read(TestContext ctx) throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    startHttpCollector(ctx, req -> {
+      if (requests.incrementAndGet() == 1) {
+        req.response().setChunked(true).write("partial");
+        req.connection().close();
+      } else {
+        req.response().end();
+      }
+    });
+    OtlpExporter exporter = OtlpExporter.newBuilder()
+      .setProtocol(OtlpExporter.Protocol.HTTP_PROTOBUF)
+      .setPort(HTTP_PORT)
+      .setInitialBackoff(10)
+      .setVertx(collectorVertx)
+      .build();
+
+    exporter.getSpanExporter().export(spans("a"));
+
+    waitUntil(() -> exporter.getExportedSpans() == 1);
+    assertEquals(1, exporter.getRetries());
+    assertEquals(0, exporter.getFailedSpans());
+  }
+
+  @Test
+  public void http_exporter_should_not_retry_rejected_requests(TestContext ctx) throws Exception {
+    startHttpCollector(ctx, req -> req.response().setStatusCode(400).end());
+    OtlpExporter exporter = OtlpExporter.newBuilder()
+      .setProtocol(OtlpExporter.Protocol.HTTP_PROTOBUF)
+      .setPort(HTTP_PORT)
+      .setVertx(collectorVertx)
+      .build();
+
+    exporter.getSpanExporter().export(spans("a"));
+
+    waitUntil(() -> exporter.getFailedSpans() == 1);
+    assertEquals(0, exporter.getRetries());
+    assertEquals(0, exporter.getExportedSpans());
+  }
+
+  @Test
+  public void exports_should_be_dropped_on_the_event_loop_when_too_many_requests_are_in_flight(TestContext ctx) throws Exception {
+    List<HttpServerRequest> pending = new CopyOnWriteArrayList<>();
+    startHttpCollector(ctx, pending::add);
+    OtlpExporter exporter = OtlpExporter.newBuilder()
+      .setProtocol(OtlpExporter.Protocol.HTTP_PROTOBUF)
+      .setPort(HTTP_PORT)
+      .setMaxConcurrentExports(1)
+      .setVertx(collectorVertx)
+      .build();
+    List<SpanData> spans = spans("a");
+
+    Async exported = ctx.async();
+    collectorVertx.runOnContext(v -> {
+      ctx.assertEquals(SpanExporter.ResultCode.SUCCESS, exporter.getSpanExporter().export(spans));
+      ctx.assertEquals(SpanExporter.ResultCode.FAILED_RETRYABLE, exporter.getSpanExporter().export(spans));
+      exported.complete();
+    });
+    exported.awaitSuccess();
+    assertEquals(1, exporter.getDroppedSpans());
+    assertEquals(1, exporter.getInFlightExports());
+
+    waitUntil(() -> pending.size() == 1);
+    pending.get(0).response().end();
+    waitUntil(() -> exporter.getInFlightExports() == 0);
+    assertEquals(1, exporter.getExportedSpans());
+  }
+
+  @Test
+  public void grpc_exporter_should_send_the_spans_to_the_collector() throws Exception {
+    ServerServiceDefinition service = ServerServiceDefinition.builder("opentelemetry.proto.collector.trace.v1.TraceService")
+      .addMethod(OtlpGrpcTransport.EXPORT_METHOD, ServerCalls.asyncUnaryCall(
+        (ExportTraceServiceRequest request, StreamObserver<ExportTraceServiceResponse> responseObserver) -> {
+          received.add(request);
+          responseObserver.onNext(ExportTraceServiceResponse.getDefaultInstance());
+          responseObserver.onCompleted();
+        }))
+      .build();
+    Server server = ServerBuilder.forPort(GRPC_PORT).addService(service).build().start();
+    OtlpExporter exporter = OtlpExporter.newBuilder()
+      .setPort(GRPC_PORT)
+      .setCompression(true)
+      .build();
+    try {
+      exporter.getSpanExporter().export(spans("a", "b"));
+
+      waitUntil(() -> exporter.getExportedSpans() == 2);
+      List<Span> spans = receivedSpans(received);
+      assertEquals(2, spans.size());
+      assertEquals("a", spans.get(0).getName());
+      assertEquals(8, spans.get(0).getSpanId().size());
+    } finally {
+      exporter.getSpanExporter().shutdown();
+      server.shutdownNow();
+    }
+  }
+
+  @Test
+  public void exporter_without_vertx_should_drop_the_spans() {
+    OtlpExporter exporter = OtlpExporter.newBuilder()
+      .setProtocol(OtlpExporter.Protocol.HTTP_PROTOBUF)
+      .build();
+
+    assertEquals(SpanExporter.ResultCode.FAILED_RETRYABLE, exporter.getSpanExporter().export(spans("a")));
+    assertEquals(1, exporter.getDroppedSpans());
+    assertEquals(Collections.emptyList(), received);
+  }
+}
@@ -0,0 +1,153 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.Tracer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class RingBufferSpanExporterTest {
+
+  private TracerSdkProvider provider;
+  private Tracer tracer;
+
+  @Before
+  public void before() {
+    provider = TracerSdkProvider.builder().build();
+    tracer = provider.get("test");
+  }
+
+  @After
+  public void after() {
+    provider.shutdown();
+  }
+
+  private RingBufferSpanExporter exporter(int capacity, RingBufferSpanExporter.OverflowPolicy overflowPolicy) {
+    InMemoryExporter exporter = InMemoryExporter.newBuilder()
+      .setCapacity(capacity)
+      .setOverflowPolicy(overflowPolicy)
+      .build();
+    provider.addSpanProcessor(SimpleSpansProcessor.newBuilder(exporter.getSpanExporter()).build());
+    return exporter.getSpanExporter();
+  }
+
+  private static List<String> names(List<SpanData> spans) {
+    return spans.stream().map(SpanData::getName).collect(Collectors.toList());
+  }
+
+  @Test
+  public void oldest_spans_should_be_overwritten_when_full() {
+    RingBufferSpanExporter exporter = exporter(4, RingBufferSpanExporter.OverflowPolicy.OVERWRITE_OLDEST);
+    for (int i = 0; i < 6; i++) {
+      tracer.spanBuilder("span-" + i).startSpan().end();
+    }
+
+    assertEquals(4, exporter.getCapacity());
+    assertEquals(Arrays.asList("span-2", "span-3", "span-4", "span-5"), names(exporter.getFinishedSpanItems()));
+    assertEquals(6, exporter.getExportedSpans());
+    assertEquals(2, exporter.getDroppedSpans());
+    assertTrue(exporter.getSpansByName("span-0").isEmpty());
+  }
+
+  @Test
+  public void newest_spans_should_be_dropped_when_full() {
+    RingBufferSpanExporter exporter = exporter(3, RingBufferSpanExporter.OverflowPolicy.DROP_NEWEST);
+    for (int i = 0; i < 6; i++) {
+      tracer.spanBuilder("span-" + i).startSpan().end();
+    }
+
+    // rounded up to a power of two
+    assertEquals(4, exporter.getCapacity());
+    assertEquals(Arrays.asList("span-0", "span-1", "span-2", "span-3"), names(exporter.getFinishedSpanItems()));
+    assertEquals(2, exporter.getDroppedSpans());
+
+    exporter.reset();
+    tracer.spanBuilder("after-reset").startSpan().end();
+    assertEquals(Collections.singletonList("after-reset"), names(exporter.getFinishedSpanItems()));
+  }
+
+  @Test
+  public void spans_should_be_found_by_trace_id_and_name() {
+    RingBufferSpanExporter exporter = exporter(4, RingBufferSpanExporter.OverflowPolicy.OVERWRITE_OLDEST);
+    Span root = tracer.spanBuilder("GET").startSpan();
+    tracer.spanBuilder("send").setParent(root).startSpan().end();
+    root.end();
+    tracer.spanBuilder("GET").startSpan().end();
+
+    assertEquals(Arrays.asList("send", "GET"), names(exporter.getSpansByTraceId(root.getContext().getTraceId())));
+    assertEquals(2, exporter.getSpansByName("GET").size());
+
+    // the spans of the first trace are overwritten
+    for (int i = 0; i < 3; i++) {
+      tracer.spanBuilder("other").startSpan().end();
+    }
+    assertTrue(exporter.getSpansByTraceId(root.getContext().getTraceId()).isEmpty());
+    assertEquals(1, exporter.getSpansByName("GET").size());
+    assertEquals(3, exporter.getSpansByName("other").size());
+  }
+
+  @Test
+  public void awaiting_spans_should_complete_once_they_are_exported() throws Exception {
+    RingBufferSpanExporter exporter = exporter(16, RingBufferSpanExporter.OverflowPolicy.OVERWRITE_OLDEST);
+    CompletableFuture<List<SpanData>> two = exporter.whenSpans(2);
+
+    tracer.spanBuilder("one").startSpan().end();
+    assertFalse(two.isDone());
+    try {
+      exporter.awaitSpans(2, 10, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TimeoutException expected) {
+    }
+    new Thread(() -> tracer.spanBuilder("two").startSpan().end()).start();
+
+    assertEquals(2, exporter.awaitSpans(2, 10, TimeUnit.SECONDS).size());
+    assertEquals(2, two.get(10, TimeUnit.SECONDS).size());
+    // already exported
+    assertTrue(exporter.whenSpans(1).isDone());
+  }
+
+  @Test
+  public void concurrent_exports_should_keep_the_last_spans() throws Exception {
+    RingBufferSpanExporter exporter = exporter(1024, RingBufferSpanExporter.OverflowPolicy.OVERWRITE_OLDEST);
+    int threads = 4;
+    int spans = 10_000;
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      workers[t] = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < spans; i++) {
+          tracer.spanBuilder("span").startSpan().end();
+        }
+      });
+      workers[t].start();
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    assertEquals(threads * spans, exporter.getExportedSpans());
+    assertEquals(1024, exporter.getFinishedSpanItems().size());
+    assertEquals(threads * spans - 1024, exporter.getDroppedSpans());
+    assertEquals(1024, exporter.getSpansByName("span").size());
+  }
+}
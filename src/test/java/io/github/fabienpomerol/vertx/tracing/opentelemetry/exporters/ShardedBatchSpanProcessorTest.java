@@ -0,0 +1,227 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.BatchOptions;
+import io.opentelemetry.exporters.inmemory.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Tracer;
+import io.vertx.core.impl.VertxThread;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ShardedBatchSpanProcessorTest {
+
+  private TracerSdkProvider provider;
+  private Tracer tracer;
+
+  @Before
+  public void before() {
+    provider = TracerSdkProvider.builder().build();
+    tracer = provider.get("test");
+  }
+
+  @After
+  public void after() {
+    provider.shutdown();
+  }
+
+  private static Thread eventLoop(Runnable task, String name) {
+    return new VertxThread(task, name, false, 60, TimeUnit.SECONDS);
+  }
+
+  private void endSpans(String thread, int count) throws Exception {
+    Thread producer = eventLoop(() -> {
+      for (int i = 0; i < count; i++) {
+        tracer.spanBuilder("span").startSpan().end();
+      }
+    }, thread);
+    producer.start();
+    producer.join();
+  }
+
+  @Test
+  public void spans_should_be_exported_when_a_shard_batch_is_full() throws Exception {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    ShardedBatchSpanProcessor processor = new ShardedBatchSpanProcessor(exporter, new BatchOptions()
+      .setMaxExportBatchSize(2)
+      .setScheduleDelay(60_000));
+    provider.addSpanProcessor(processor);
+
+    endSpans("loop-0", 2);
+
+    long now = System.currentTimeMillis();
+    while (exporter.getFinishedSpanItems().size() < 2 && (System.currentTimeMillis() - now) < 10000) {
+      Thread.sleep(10);
+    }
+    assertEquals(2, exporter.getFinishedSpanItems().size());
+    assertEquals(2, processor.getExportedSpans());
+  }
+
+  @Test
+  public void each_event_loop_should_get_its_own_shard() throws Exception {
+    CountDownLatch exporting = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    BlockingExporter exporter = new BlockingExporter(exporting, release);
+    ShardedBatchSpanProcessor processor = new ShardedBatchSpanProcessor(exporter, new BatchOptions()
+      .setMaxQueueSize(8)
+      .setScheduleDelay(60_000)
+      .setExportWorkers(2));
+    provider.addSpanProcessor(processor);
+
+    // the worker of the busy thread takes a full batch and blocks in the exporter
+    Thread busy = eventLoop(() -> {
+      for (int i = 0; i < 20; i++) {
+        tracer.spanBuilder("span").startSpan().end();
+        if (i == 7) {
+          try {
+            exporting.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    }, "busy");
+    busy.start();
+    busy.join();
+    endSpans("idle", 3);
+
+    try {
+      Map<String, ShardedBatchSpanProcessor.ShardStats> stats = processor.getShardStats().stream()
+        .collect(Collectors.toMap(ShardedBatchSpanProcessor.ShardStats::getName, Function.identity()));
+      assertEquals(3, stats.size());
+      assertEquals(0, stats.get(ShardedBatchSpanProcessor.SHARED).getQueuedSpans());
+      assertEquals(16, stats.get("busy").getQueuedSpans());
+      assertEquals(4, stats.get("busy").getDroppedSpans());
+      assertEquals(8, stats.get("busy").getSize());
+      assertEquals(3, stats.get("idle").getQueuedSpans());
+      assertEquals(0, stats.get("idle").getDroppedSpans());
+      assertEquals(3, stats.get("idle").getSize());
+      assertEquals(4, processor.getDroppedSpans());
+    } finally {
+      release.countDown();
+    }
+    processor.forceFlush();
+    assertEquals(19, processor.getExportedSpans());
+  }
+
+  @Test
+  public void concurrent_producers_should_not_lose_spans() throws Exception {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    ShardedBatchSpanProcessor processor = new ShardedBatchSpanProcessor(exporter, new BatchOptions()
+      .setMaxQueueSize(100_000)
+      .setMaxExportBatchSize(64)
+      .setExportWorkers(2));
+    provider.addSpanProcessor(processor);
+
+    Thread[] producers = new Thread[4];
+    CountDownLatch produced = new CountDownLatch(producers.length);
+    // the shards of the threads gone are pruned, the producers stay alive until the stats are read
+    CountDownLatch statsRead = new CountDownLatch(1);
+    for (int i = 0; i < producers.length; i++) {
+      producers[i] = eventLoop(() -> {
+        for (int j = 0; j < 5_000; j++) {
+          tracer.spanBuilder("span").startSpan().end();
+        }
+        produced.countDown();
+        try {
+          statsRead.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }, "loop-" + i);
+      producers[i].start();
+    }
+    assertTrue(produced.await(10, TimeUnit.SECONDS));
+    List<ShardedBatchSpanProcessor.ShardStats> stats = processor.getShardStats();
+    statsRead.countDown();
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    processor.forceFlush();
+
+    assertEquals(0, processor.getDroppedSpans());
+    assertEquals(20_000, processor.getExportedSpans());
+    assertEquals(20_000, exporter.getFinishedSpanItems().size());
+    assertEquals(20_000, stats.stream().mapToLong(ShardedBatchSpanProcessor.ShardStats::getQueuedSpans).sum());
+  }
+
+  @Test
+  public void other_threads_should_share_a_shard() throws Exception {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    ShardedBatchSpanProcessor processor = new ShardedBatchSpanProcessor(exporter, new BatchOptions()
+      .setScheduleDelay(60_000));
+    provider.addSpanProcessor(processor);
+
+    for (int i = 0; i < 3; i++) {
+      Thread worker = new Thread(() -> {
+        for (int j = 0; j < 4; j++) {
+          tracer.spanBuilder("span").startSpan().end();
+        }
+      }, "worker-" + i);
+      worker.start();
+      worker.join();
+    }
+
+    List<ShardedBatchSpanProcessor.ShardStats> stats = processor.getShardStats();
+    assertEquals(1, stats.size());
+    assertEquals(ShardedBatchSpanProcessor.SHARED, stats.get(0).getName());
+    assertEquals(12, stats.get(0).getQueuedSpans());
+    processor.forceFlush();
+    assertEquals(12, processor.getExportedSpans());
+    assertEquals(0, processor.getDroppedSpans());
+  }
+
+  @Test
+  public void shutdown_should_flush_the_queued_spans() throws Exception {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    ShardedBatchSpanProcessor processor = new ShardedBatchSpanProcessor(exporter, new BatchOptions()
+      .setScheduleDelay(60_000));
+    provider.addSpanProcessor(processor);
+
+    endSpans("loop-0", 2);
+    processor.shutdown();
+
+    assertEquals(2, processor.getExportedSpans());
+    tracer.spanBuilder("late").startSpan().end();
+    assertEquals(1, processor.getDroppedSpans());
+  }
+
+  private static class BlockingExporter implements SpanExporter {
+
+    private final CountDownLatch exporting;
+    private final CountDownLatch release;
+
+    BlockingExporter(CountDownLatch exporting, CountDownLatch release) {
+      this.exporting = exporting;
+      this.release = release;
+    }
+
+    @Override
+    public ResultCode export(Collection<SpanData> spans) {
+      exporting.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return ResultCode.FAILED_RETRYABLE;
+      }
+      return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+  }
+}
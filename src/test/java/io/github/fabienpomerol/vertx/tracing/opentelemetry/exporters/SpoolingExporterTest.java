@@ -0,0 +1,228 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.Tracer;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class SpoolingExporterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private TracerSdkProvider provider;
+  private RingBufferSpanExporter spans;
+  private Vertx vertx;
+  private Tracer tracer;
+  private SpoolingExporter spooling;
+
+  @Before
+  public void before() {
+    vertx = Vertx.vertx();
+    provider = TracerSdkProvider.builder().build();
+    spans = InMemoryExporter.newBuilder().build().getSpanExporter();
+    provider.addSpanProcessor(SimpleSpansProcessor.newBuilder(spans).build());
+    tracer = provider.get("test");
+  }
+
+  @After
+  public void after() {
+    provider.shutdown();
+    if (spooling != null) {
+      spooling.getSpanExporter().shutdown();
+    }
+    vertx.close();
+  }
+
+  private List<SpanData> batch(int size) {
+    spans.reset();
+    for (int i = 0; i < size; i++) {
+      Span span = tracer.spanBuilder("span-" + i).setSpanKind(Span.Kind.SERVER).startSpan();
+      span.setAttribute("http.status_code", 200L);
+      span.addEvent("event");
+      span.end();
+    }
+    return spans.getFinishedSpanItems();
+  }
+
+  private SpoolingExporter.Builder builder(FailingExporter exporter) throws Exception {
+    return SpoolingExporter.newBuilder()
+      .setExporter(exporter)
+      .setDirectory(folder.getRoot().toPath())
+      .setRetryInterval(10);
+  }
+
+  private static void waitUntil(BooleanSupplier condition) throws Exception {
+    long now = System.currentTimeMillis();
+    while (!condition.getAsBoolean() && (System.currentTimeMillis() - now) < 10000) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+  private long spoolFiles() throws Exception {
+    try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+      return files.count();
+    }
+  }
+
+  @Test
+  public void spans_should_be_exported_directly_while_the_exporter_is_healthy() throws Exception {
+    FailingExporter exporter = new FailingExporter();
+    spooling = builder(exporter).build();
+    spooling.start(vertx);
+
+    assertEquals(SpanExporter.ResultCode.SUCCESS, spooling.getSpanExporter().export(batch(3)));
+
+    assertEquals(3, exporter.exported.size());
+    assertEquals(3, spooling.getExportedSpans());
+    assertEquals(0, spooling.getSpooledSpans());
+    assertEquals(0, spoolFiles());
+  }
+
+  @Test
+  public void spans_should_be_spooled_during_an_outage_and_replayed_after() throws Exception {
+    FailingExporter exporter = new FailingExporter();
+    exporter.failing = true;
+    spooling = builder(exporter).build();
+    spooling.start(vertx);
+
+    List<SpanData> first = batch(2);
+    spooling.getSpanExporter().export(first);
+    spooling.getSpanExporter().export(batch(3));
+
+    assertFalse(spooling.isHealthy());
+    assertEquals(5, spooling.getSpooledSpans());
+    assertEquals(5, spooling.getPendingSpans());
+    assertTrue(exporter.exported.isEmpty());
+
+    exporter.failing = false;
+    waitUntil(() -> spooling.getReplayedSpans() == 5);
+    assertTrue(spooling.isHealthy());
+    assertEquals(0, spooling.getPendingSpans());
+    assertEquals(5, exporter.exported.size());
+    // oldest first, the spans survive the encoding
+    SpanData replayed = exporter.exported.get(0);
+    assertEquals(first.get(0).getTraceId(), replayed.getTraceId());
+    assertEquals(first.get(0).getSpanId(), replayed.getSpanId());
+    assertEquals("span-0", replayed.getName());
+    assertEquals(Span.Kind.SERVER, replayed.getKind());
+    assertEquals(first.get(0).getStartEpochNanos(), replayed.getStartEpochNanos());
+    assertEquals(AttributeValue.longAttributeValue(200), replayed.getAttributes().get("http.status_code"));
+    assertEquals("event", replayed.getTimedEvents().get(0).getName());
+
+    // back to direct exports once the spool is drained
+    spooling.getSpanExporter().export(batch(1));
+    assertEquals(1, spooling.getExportedSpans());
+  }
+
+  @Test
+  public void replay_should_be_throttled() throws Exception {
+    FailingExporter exporter = new FailingExporter();
+    exporter.failing = true;
+    spooling = builder(exporter).setReplayRate(100).build();
+    spooling.start(vertx);
+    for (int i = 0; i < 30; i++) {
+      spooling.getSpanExporter().export(batch(10));
+    }
+
+    long start = System.currentTimeMillis();
+    exporter.failing = false;
+    waitUntil(() -> spooling.getReplayedSpans() == 300);
+
+    // a burst of one second of replay, then 100 spans/s
+    assertTrue(System.currentTimeMillis() - start >= 1500);
+  }
+
+  @Test
+  public void oldest_segments_should_be_deleted_above_the_maximum_size() throws Exception {
+    FailingExporter exporter = new FailingExporter();
+    exporter.failing = true;
+    spooling = builder(exporter)
+      .setSegmentSize(1024)
+      .setMaxSize(2048)
+      .setRetryInterval(60_000)
+      .build();
+    spooling.start(vertx);
+
+    for (int i = 0; i < 20; i++) {
+      spooling.getSpanExporter().export(batch(2));
+    }
+
+    assertEquals(2, spoolFiles());
+    assertTrue(spooling.getDiscardedSpans() > 0);
+    assertEquals(40, spooling.getDiscardedSpans() + spooling.getPendingSpans());
+  }
+
+  @Test
+  public void spool_should_be_replayed_after_a_restart() throws Exception {
+    FailingExporter exporter = new FailingExporter();
+    exporter.failing = true;
+    spooling = builder(exporter).setRetryInterval(60_000).build();
+    spooling.start(vertx);
+    spooling.getSpanExporter().export(batch(4));
+    spooling.getSpanExporter().shutdown();
+
+    FailingExporter restarted = new FailingExporter();
+    spooling = builder(restarted).build();
+    // recovered once started
+    assertEquals(0, spooling.getPendingSpans());
+    spooling.start(vertx);
+
+    assertEquals(4, spooling.getPendingSpans());
+    waitUntil(() -> restarted.exported.size() == 4);
+    waitUntil(() -> {
+      try {
+        return spoolFiles() == 1 && spooling.getPendingSpans() == 0;
+      } catch (Exception e) {
+        return false;
+      }
+    });
+  }
+
+  /**
+   * An exporter failing on demand.
+   */
+  private static class FailingExporter implements BackendExporter, SpanExporter {
+
+    private final List<SpanData> exported = new CopyOnWriteArrayList<>();
+    private volatile boolean failing;
+
+    @Override
+    public SpanExporter getSpanExporter() {
+      return this;
+    }
+
+    @Override
+    public ResultCode export(Collection<SpanData> spans) {
+      if (failing) {
+        return ResultCode.FAILED_RETRYABLE;
+      }
+      exported.addAll(spans);
+      return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+  }
+}
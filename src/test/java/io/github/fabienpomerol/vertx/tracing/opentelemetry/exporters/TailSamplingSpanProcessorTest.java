@@ -0,0 +1,230 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.TailSamplingOptions;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics.TracerStats;
+import io.opentelemetry.exporters.inmemory.InMemorySpanExporter;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.Tracer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TailSamplingSpanProcessorTest {
+
+  private TracerSdkProvider provider;
+  private Tracer tracer;
+  private InMemorySpanExporter exporter;
+
+  @Before
+  public void before() {
+    provider = TracerSdkProvider.builder().build();
+    tracer = provider.get("test");
+    exporter = InMemorySpanExporter.create();
+  }
+
+  @After
+  public void after() {
+    provider.shutdown();
+  }
+
+  private TailSamplingSpanProcessor processor(TailSamplingOptions options) {
+    TailSamplingSpanProcessor processor = new TailSamplingSpanProcessor(
+      Collections.singletonList(SimpleSpansProcessor.newBuilder(exporter).build()), options);
+    provider.addSpanProcessor(processor);
+    return processor;
+  }
+
+  private Span child(Span parent) {
+    return tracer.spanBuilder("child").setParent(parent).startSpan();
+  }
+
+  @Test
+  public void failed_traces_should_be_exported_when_the_root_span_ends() {
+    TailSamplingSpanProcessor processor = processor(new TailSamplingOptions());
+
+    Span root = tracer.spanBuilder("root").startSpan();
+    Span child = child(root);
+    child.setStatus(Status.INTERNAL);
+    child.end();
+    assertEquals(1, processor.getBufferedSpans());
+    assertEquals(0, exporter.getFinishedSpanItems().size());
+
+    root.end();
+    assertEquals(2, exporter.getFinishedSpanItems().size());
+    assertEquals(1, processor.getKeptTraces());
+    assertEquals(0, processor.getBufferedSpans());
+    assertEquals(0, processor.getBufferedTraces());
+  }
+
+  @Test
+  public void traces_matching_no_rule_should_be_dropped() {
+    TailSamplingSpanProcessor processor = processor(new TailSamplingOptions().setLatencyThreshold(60_000));
+
+    Span root = tracer.spanBuilder("root").startSpan();
+    child(root).end();
+    root.end();
+
+    assertEquals(0, exporter.getFinishedSpanItems().size());
+    assertEquals(1, processor.getDroppedTraces());
+  }
+
+  @Test
+  public void slow_traces_should_be_exported() throws Exception {
+    processor(new TailSamplingOptions().setLatencyThreshold(10));
+
+    Span root = tracer.spanBuilder("root").startSpan();
+    Span child = child(root);
+    Thread.sleep(20);
+    child.end();
+    root.end();
+
+    assertEquals(2, exporter.getFinishedSpanItems().size());
+  }
+
+  @Test
+  public void traces_with_a_matching_attribute_should_be_exported() {
+    processor(new TailSamplingOptions().addAttribute("http.status_code", "429"));
+
+    Span root = tracer.spanBuilder("root").startSpan();
+    root.setAttribute("http.status_code", "200");
+    root.end();
+    assertEquals(0, exporter.getFinishedSpanItems().size());
+
+    root = tracer.spanBuilder("root").startSpan();
+    root.setAttribute("http.status_code", "429");
+    root.end();
+    assertEquals(1, exporter.getFinishedSpanItems().size());
+  }
+
+  @Test
+  public void traces_without_root_span_should_be_decided_after_the_decision_wait() throws Exception {
+    TailSamplingSpanProcessor processor = processor(new TailSamplingOptions().setDecisionWait(50));
+
+    Span root = tracer.spanBuilder("root").startSpan();
+    Span child = child(root);
+    child.setStatus(Status.INTERNAL);
+    child.end();
+
+    long now = System.currentTimeMillis();
+    while (processor.getTimedOutTraces() < 1 && (System.currentTimeMillis() - now) < 10000) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, processor.getTimedOutTraces());
+    assertEquals(1, exporter.getFinishedSpanItems().size());
+    assertEquals(0, processor.getBufferedSpans());
+  }
+
+  @Test
+  public void oldest_traces_should_be_decided_when_the_buffer_is_full() {
+    // room for two child spans
+    long childBytes = TailSamplingSpanProcessor.SPAN_BYTES + 2 * "child".length();
+    TailSamplingSpanProcessor processor = processor(new TailSamplingOptions().setMaxBufferedBytes(2 * childBytes));
+
+    for (int i = 0; i < 5; i++) {
+      Span child = child(tracer.spanBuilder("root").startSpan());
+      child.setStatus(Status.INTERNAL);
+      child.end();
+    }
+
+    assertEquals(2, processor.getBufferedSpans());
+    assertEquals(2 * childBytes, processor.getBufferedBytes());
+    assertEquals(3, processor.getEvictedTraces());
+    assertEquals(3, exporter.getFinishedSpanItems().size());
+
+    TracerStats stats = new TracerStats();
+    stats.setTailSampling(processor);
+    TracerStats.Snapshot.TailSampling snapshot = stats.snapshot().getTailSampling();
+    assertEquals(2, snapshot.getBufferedSpans());
+    assertEquals(2 * childBytes, snapshot.getBufferedBytes());
+    assertEquals(3, snapshot.getEvictedTraces());
+    assertEquals(3L, (long) stats.snapshot().toJson().getJsonObject("tailSampling").getLong("evictedTraces"));
+
+    processor.forceFlush();
+    assertEquals(5, exporter.getFinishedSpanItems().size());
+    assertEquals(0, processor.getBufferedTraces());
+  }
+
+  @Test
+  public void spans_reported_by_the_tracer_should_only_be_converted_when_their_trace_is_kept() {
+    TailSamplingSpanProcessor processor = new TailSamplingSpanProcessor(
+      Collections.singletonList(SimpleSpansProcessor.newBuilder(exporter).build()), new TailSamplingOptions());
+    try {
+      CountingSpan dropped = end(tracer.spanBuilder("root").startSpan(), true, false, processor);
+      assertEquals(1, processor.getDroppedTraces());
+      assertEquals(0, dropped.conversions);
+
+      Span root = tracer.spanBuilder("root").startSpan();
+      CountingSpan child = end(child(root), false, true, processor);
+      CountingSpan kept = end(root, true, false, processor);
+      assertEquals(1, processor.getKeptTraces());
+      assertEquals(2, exporter.getFinishedSpanItems().size());
+      assertEquals(1, child.conversions);
+      assertEquals(1, kept.conversions);
+    } finally {
+      processor.shutdown();
+    }
+  }
+
+  /**
+   * End {@code span} as the tracer does, the provider has no processor: the span is handed to {@code processor}.
+   */
+  private static CountingSpan end(Span span, boolean localRoot, boolean error, TailSamplingSpanProcessor processor) {
+    span.end();
+    CountingSpan counting = new CountingSpan((ReadableSpan) span);
+    processor.ending(span.getContext(), localRoot, error);
+    processor.onEnd(counting);
+    return counting;
+  }
+
+  private static final class CountingSpan implements ReadableSpan {
+
+    private final ReadableSpan span;
+    private int conversions;
+
+    CountingSpan(ReadableSpan span) {
+      this.span = span;
+    }
+
+    @Override
+    public SpanContext getSpanContext() {
+      return span.getSpanContext();
+    }
+
+    @Override
+    public String getName() {
+      return span.getName();
+    }
+
+    @Override
+    public SpanData toSpanData() {
+      conversions++;
+      return span.toSpanData();
+    }
+
+    @Override
+    public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+      return span.getInstrumentationLibraryInfo();
+    }
+
+    @Override
+    public boolean hasEnded() {
+      return span.hasEnded();
+    }
+
+    @Override
+    public long getLatencyNanos() {
+      return span.getLatencyNanos();
+    }
+  }
+}
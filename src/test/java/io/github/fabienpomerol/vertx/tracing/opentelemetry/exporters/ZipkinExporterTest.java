@@ -0,0 +1,270 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.OpenTelemetryOptions;
+import io.opentelemetry.exporters.inmemory.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpansProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.Tracer;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class ZipkinExporterTest {
+
+  private static final int PORT = 8196;
+
+  // the collector runs on its own Vert.x instance, not traced
+  private Vertx collectorVertx;
+  private List<JsonArray> received;
+  private List<String> contentEncodings;
+
+  @Before
+  public void before() {
+    collectorVertx = Vertx.vertx();
+    received = new CopyOnWriteArrayList<>();
+    contentEncodings = new CopyOnWriteArrayList<>();
+  }
+
+  @After
+  public void after(TestContext ctx) {
+    collectorVertx.close(ctx.asyncAssertSuccess());
+  }
+
+  private void startCollector(TestContext ctx, Consumer<HttpServerRequest> handler) {
+    Async listen = ctx.async();
+    collectorVertx.createHttpServer().requestHandler(req -> {
+      contentEncodings.add(String.valueOf(req.getHeader("content-encoding")));
+      req.body(ctx.asyncAssertSuccess(body -> {
+        try (InputStream in = "gzip".equals(req.getHeader("content-encoding"))
+          ? new GZIPInputStream(new ByteArrayInputStream(body.getBytes()))
+          : new ByteArrayInputStream(body.getBytes())) {
+          ByteArrayOutputStream json = new ByteArrayOutputStream();
+          byte[] chunk = new byte[1024];
+          for (int read; (read = in.read(chunk)) != -1; ) {
+            json.write(chunk, 0, read);
+          }
+          received.add(new JsonArray(new String(json.toByteArray(), StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+          ctx.fail(e);
+        }
+        handler.accept(req);
+      }));
+    }).listen(PORT, ctx.asyncAssertSuccess(v -> listen.complete()));
+    listen.awaitSuccess();
+  }
+
+  private static List<SpanData> spans(Consumer<Tracer> creator) {
+    TracerSdkProvider provider = TracerSdkProvider.builder().build();
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    provider.addSpanProcessor(SimpleSpansProcessor.newBuilder(exporter).build());
+    creator.accept(provider.get("test"));
+    List<SpanData> spans = new ArrayList<>(exporter.getFinishedSpanItems());
+    provider.shutdown();
+    return spans;
+  }
+
+  private static List<SpanData> spans(String... names) {
+    return spans(tracer -> {
+      for (String name : names) {
+        tracer.spanBuilder(name).startSpan().end();
+      }
+    });
+  }
+
+  private static List<JsonObject> receivedSpans(List<JsonArray> requests) {
+    List<JsonObject> spans = new ArrayList<>();
+    requests.forEach(request -> request.forEach(span -> spans.add((JsonObject) span)));
+    return spans;
+  }
+
+  private static void waitUntil(BooleanSupplier condition) throws Exception {
+    long now = System.currentTimeMillis();
+    while (!condition.getAsBoolean() && (System.currentTimeMillis() - now) < 10000) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+  @Test
+  public void exporter_should_be_bound_to_the_traced_vertx_and_send_gzipped_spans(TestContext ctx) throws Exception {
+    startCollector(ctx, req -> req.response().setStatusCode(202).end());
+    ZipkinExporter exporter = ZipkinExporter.newBuilder()
+      .setServiceName("my-service")
+      .setPort(PORT)
+      .setCompression(true)
+      .setFlushInterval(10)
+      .build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .addExporter(exporter)
+        .setEnabled(true)
+    ));
+    try {
+      Async listen = ctx.async();
+      vertx.createHttpServer().requestHandler(req -> req.response().end())
+        .listen(8080, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      Async response = ctx.async();
+      vertx.createHttpClient().get(8080, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+      response.awaitSuccess();
+
+      waitUntil(() -> exporter.getExportedSpans() == 1);
+      List<JsonObject> spans = receivedSpans(received);
+      assertEquals(1, spans.size());
+      JsonObject span = spans.get(0);
+      assertEquals("GET", span.getString("name"));
+      assertEquals("SERVER", span.getString("kind"));
+      assertEquals(32, span.getString("traceId").length());
+      assertEquals(16, span.getString("id").length());
+      assertEquals("my-service", span.getJsonObject("localEndpoint").getString("serviceName"));
+      assertEquals("200", span.getJsonObject("tags").getString("http.status_code"));
+      assertTrue(span.getLong("duration") > 0);
+      assertEquals("gzip", contentEncodings.get(0));
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  @Test
+  public void exporter_should_send_full_batches_and_flush_the_rest_on_shutdown(TestContext ctx) throws Exception {
+    startCollector(ctx, req -> req.response().end());
+    ZipkinExporter exporter = ZipkinExporter.newBuilder()
+      .setPort(PORT)
+      .setBatchSize(2)
+      .setFlushInterval(60_000)
+      .setVertx(collectorVertx)
+      .build();
+
+    for (SpanData span : spans("a", "b", "c", "d", "e")) {
+      assertEquals(SpanExporter.ResultCode.SUCCESS, exporter.getSpanExporter().export(Collections.singletonList(span)));
+    }
+    waitUntil(() -> exporter.getExportedSpans() == 4);
+    exporter.getSpanExporter().shutdown();
+
+    assertEquals(5, exporter.getExportedSpans());
+    assertEquals(3, received.size());
+    assertEquals(2, received.get(0).size());
+    assertEquals(1, received.get(2).size());
+    assertEquals("e", received.get(2).getJsonObject(0).getString("name"));
+    assertEquals("null", contentEncodings.get(0));
+    assertEquals(SpanExporter.ResultCode.FAILED_NOT_RETRYABLE, exporter.getSpanExporter().export(spans("f")));
+  }
+
+  @Test
+  public void spans_should_fail_when_the_response_body_cannot_be_read(TestContext ctx) throws Exception {
+    startCollector(ctx, req -> {
+      req.response().setChunked(true).write("partial");
+      req.connection().close();
+    });
+    ZipkinExporter exporter = ZipkinExporter.newBuilder()
+      .setPort(PORT)
+      .setFlushInterval(10)
+      .setVertx(collectorVertx)
+      .build();
+
+    assertEquals(SpanExporter.ResultCode.SUCCESS, exporter.getSpanExporter().export(spans("a")));
+    waitUntil(() -> exporter.getFailedSpans() == 1);
+    assertEquals(0, exporter.getExportedSpans());
+    exporter.getSpanExporter().shutdown();
+  }
+
+  @Test
+  public void exporter_should_encode_the_attributes_events_and_status(TestContext ctx) throws Exception {
+    startCollector(ctx, req -> req.response().end());
+    ZipkinExporter exporter = ZipkinExporter.newBuilder()
+      .setServiceName("quoted \"service\"")
+      .setPort(PORT)
+      .setFlushInterval(10)
+      .setVertx(collectorVertx)
+      .build();
+    List<SpanData> spans = spans(tracer -> {
+      Span parent = tracer.spanBuilder("parent").setSpanKind(Span.Kind.CLIENT).startSpan();
+      Span child = tracer.spanBuilder("child é€😀\n").setParent(parent).startSpan();
+      child.setAttribute("string", "a \"quoted\" \\ value\t");
+      child.setAttribute("long", 42L);
+      child.setAttribute("boolean", true);
+      child.setAttribute("double", 1.5);
+      child.addEvent("event");
+      child.setStatus(Status.NOT_FOUND.withDescription("not found"));
+      child.end();
+      parent.end();
+    });
+
+    exporter.getSpanExporter().export(spans);
+
+    waitUntil(() -> exporter.getExportedSpans() == 2);
+    JsonObject child = received.get(0).getJsonObject(0);
+    JsonObject parent = received.get(0).getJsonObject(1);
+    assertEquals("child é€😀\n", child.getString("name"));
+    assertEquals(parent.getString("id"), child.getString("parentId"));
+    assertEquals(parent.getString("traceId"), child.getString("traceId"));
+    assertFalse(child.containsKey("kind"));
+    assertEquals("CLIENT", parent.getString("kind"));
+    assertFalse(parent.containsKey("parentId"));
+    assertFalse(parent.containsKey("tags"));
+    assertEquals("quoted \"service\"", child.getJsonObject("localEndpoint").getString("serviceName"));
+    JsonObject tags = child.getJsonObject("tags");
+    assertEquals("a \"quoted\" \\ value\t", tags.getString("string"));
+    assertEquals("42", tags.getString("long"));
+    assertEquals("true", tags.getString("boolean"));
+    assertEquals("1.5", tags.getString("double"));
+    assertEquals("not found", tags.getString("error"));
+    assertEquals("event", child.getJsonArray("annotations").getJsonObject(0).getString("value"));
+  }
+
+  @Test
+  public void exporter_should_count_the_rejected_spans(TestContext ctx) throws Exception {
+    startCollector(ctx, req -> req.response().setStatusCode(400).end());
+    ZipkinExporter exporter = ZipkinExporter.newBuilder()
+      .setPort(PORT)
+      .setFlushInterval(10)
+      .setVertx(collectorVertx)
+      .build();
+
+    exporter.getSpanExporter().export(spans("a", "b"));
+
+    waitUntil(() -> exporter.getFailedSpans() == 2);
+    assertEquals(0, exporter.getExportedSpans());
+  }
+
+  @Test
+  public void exporter_should_drop_the_spans_when_the_queue_is_full() {
+    ZipkinExporter exporter = ZipkinExporter.newBuilder()
+      .setMaxQueueSize(2)
+      .build();
+
+    assertEquals(SpanExporter.ResultCode.FAILED_RETRYABLE, exporter.getSpanExporter().export(spans("a", "b", "c")));
+    assertEquals(1, exporter.getDroppedSpans());
+    exporter.getSpanExporter().shutdown();
+    assertEquals(3, exporter.getDroppedSpans());
+  }
+}
@@ -0,0 +1,149 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.OpenTelemetryOptions;
+import io.opentelemetry.trace.Span;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class SpanMetricsTest {
+
+  @Test
+  public void server_requests_should_be_counted_by_operation_kind_and_status_code(TestContext ctx) {
+    SpanMetrics metrics = SpanMetrics.newBuilder().build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .setMetrics(metrics)
+        .setEnabled(true)
+    ));
+    try {
+      Async listen = ctx.async();
+      vertx.createHttpServer()
+        .requestHandler(req -> req.response().setStatusCode(req.path().equals("/ko") ? 500 : 200).end())
+        .listen(8080, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      HttpClient client = vertx.createHttpClient();
+      for (String path : Arrays.asList("/ok", "/ok", "/ko")) {
+        Async response = ctx.async();
+        client.get(8080, "localhost", path, ctx.asyncAssertSuccess(resp -> response.complete()));
+        response.awaitSuccess();
+      }
+
+      SpanMetrics.Snapshot snapshot = metrics.snapshot();
+      SpanMetrics.Snapshot.Series ok = snapshot.getSeries("GET", Span.Kind.SERVER, 200);
+      assertEquals(2, ok.getRequests());
+      assertEquals(0, ok.getErrors());
+      assertEquals(2, Arrays.stream(ok.getLatencyCounts()).sum());
+      assertTrue(ok.getLatencySum() > 0);
+      SpanMetrics.Snapshot.Series ko = snapshot.getSeries("GET", Span.Kind.SERVER, 500);
+      assertEquals(1, ko.getRequests());
+      assertEquals(1, ko.getErrors());
+      assertEquals(2, snapshot.getSeries().size());
+
+      JsonObject json = snapshot.toJson();
+      assertEquals(SpanMetrics.DEFAULT_LATENCY_BUCKETS.length, json.getJsonArray("latencyBuckets").size());
+      JsonObject series = json.getJsonArray("series").getJsonObject(0);
+      assertEquals("GET", series.getString("operation"));
+      assertEquals("SERVER", series.getString("kind"));
+      assertEquals(200, (int) series.getInteger("statusCode"));
+      assertEquals(2L, (long) series.getLong("requests"));
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  @Test
+  public void requests_should_be_measured_when_they_end_in_any_order() {
+    SpanMetrics metrics = SpanMetrics.newBuilder().build();
+    long start = System.nanoTime();
+    SpanMetrics.Endpoint first = metrics.start("send", Span.Kind.PRODUCER);
+    SpanMetrics.Endpoint second = metrics.start("send", Span.Kind.PRODUCER);
+    assertSame(first, second);
+    metrics.end(second, start, 0, false);
+    metrics.end(first, start, 0, true);
+
+    SpanMetrics.Snapshot.Series series = metrics.snapshot().getSeries("send", Span.Kind.PRODUCER, 0);
+    assertEquals(2, series.getRequests());
+    assertEquals(1, series.getErrors());
+    assertEquals(2, Arrays.stream(series.getLatencyCounts()).sum());
+  }
+
+  @Test
+  public void operations_above_the_limit_should_be_recorded_together() {
+    SpanMetrics metrics = SpanMetrics.newBuilder().setMaxOperations(1).build();
+    for (String operation : Arrays.asList("a", "b", "c")) {
+      metrics.end(metrics.start(operation, Span.Kind.SERVER), System.nanoTime(), 200, false);
+    }
+
+    SpanMetrics.Snapshot snapshot = metrics.snapshot();
+    assertEquals(1, snapshot.getSeries("a", Span.Kind.SERVER, 200).getRequests());
+    assertEquals(2, snapshot.getSeries(SpanMetrics.OTHER_OPERATION, Span.Kind.SERVER, 200).getRequests());
+  }
+
+  @Test
+  public void concurrent_new_operations_should_not_exceed_the_limit() throws Exception {
+    SpanMetrics metrics = SpanMetrics.newBuilder().setMaxOperations(10).build();
+    CountDownLatch go = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(() -> {
+        try {
+          go.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int op = 0; op < 100; op++) {
+          metrics.end(metrics.start("op-" + op, Span.Kind.SERVER), System.nanoTime(), 200, false);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    go.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    List<SpanMetrics.Snapshot.Series> series = metrics.snapshot().getSeries();
+    assertEquals(11, series.size());
+    assertEquals(400, series.stream().mapToLong(SpanMetrics.Snapshot.Series::getRequests).sum());
+  }
+
+  @Test
+  public void histogram_should_count_the_latencies_per_bucket() {
+    LatencyHistogram histogram = new LatencyHistogram(new long[]{
+      TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(100)});
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+    histogram.record(TimeUnit.SECONDS.toNanos(1));
+
+    assertArrayEquals(new long[]{2, 1, 1}, histogram.counts());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1061), histogram.sum());
+  }
+
+  @Test
+  public void metrics_should_be_configured_from_json() {
+    OpenTelemetryOptions options = new OpenTelemetryOptions(new JsonObject()
+      .put("metrics", new JsonObject()
+        .put("latencyBuckets", new JsonArray().add(10).add(100))));
+
+    assertArrayEquals(new long[]{10, 100}, options.getMetrics().snapshot().getLatencyBuckets());
+  }
+}
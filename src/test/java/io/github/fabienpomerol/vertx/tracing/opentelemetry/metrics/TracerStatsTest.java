@@ -0,0 +1,179 @@
+package io.github.fabienpomerol.vertx.tracing.opentelemetry.metrics;
+
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.BatchOptions;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.OpenTelemetryOptions;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.OpenTelemetryTracer;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.SamplerOptions;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.FileExporter;
+import io.github.fabienpomerol.vertx.tracing.opentelemetry.exporters.InMemoryExporter;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class TracerStatsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void spans_and_exports_should_be_counted(TestContext ctx) throws Exception {
+    InMemoryExporter exporter = InMemoryExporter.newBuilder().build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .addExporter(exporter, new BatchOptions().setScheduleDelay(10))
+        .setEnabled(true)
+    ));
+    try {
+      Async listen = ctx.async();
+      vertx.createHttpServer()
+        .requestHandler(req -> req.response().end())
+        .listen(8080, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      HttpClient client = vertx.createHttpClient();
+      for (int i = 0; i < 3; i++) {
+        Async response = ctx.async();
+        client.get(8080, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+        response.awaitSuccess();
+      }
+      exporter.getSpanExporter().awaitSpans(3, 10, TimeUnit.SECONDS);
+
+      TracerStats stats = ((OpenTelemetryTracer) ((ContextInternal) vertx.getOrCreateContext()).tracer()).getStats();
+      // the export is counted once the exporter returns, after the spans are visible
+      waitUntil(() -> stats.snapshot().getExporter("InMemoryExporter").getExportedSpans() == 3);
+      TracerStats.Snapshot snapshot = stats.snapshot();
+      assertEquals(3, snapshot.getStartedSpans());
+      assertEquals(3, snapshot.getEndedSpans());
+      assertEquals(0, snapshot.getSampledOutSpans());
+      TracerStats.Snapshot.Exporter inMemory = snapshot.getExporter("InMemoryExporter");
+      assertEquals(3, inMemory.getQueuedSpans());
+      assertEquals(3, inMemory.getExportedSpans());
+      assertEquals(0, inMemory.getDroppedSpans());
+      assertEquals(0, inMemory.getFailedSpans());
+      assertEquals(inMemory.getExports(), Arrays.stream(inMemory.getLatencyCounts()).sum());
+      assertEquals(Long.valueOf(3), inMemory.getStats().get("exportedSpans"));
+
+      JsonObject json = snapshot.toJson();
+      assertEquals(3L, (long) json.getLong("startedSpans"));
+      JsonObject exporterJson = json.getJsonArray("exporters").getJsonObject(0);
+      assertEquals("InMemoryExporter", exporterJson.getString("name"));
+      assertEquals(3L, (long) exporterJson.getJsonObject("stats").getLong("exportedSpans"));
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  @Test
+  public void spans_not_sampled_should_be_counted(TestContext ctx) {
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .setSampler(new SamplerOptions().setType(SamplerOptions.Type.ALWAYS_OFF))
+        .setEnabled(true)
+    ));
+    try {
+      Async listen = ctx.async();
+      vertx.createHttpServer()
+        .requestHandler(req -> req.response().end())
+        .listen(8080, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      Async response = ctx.async();
+      vertx.createHttpClient().get(8080, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+      response.awaitSuccess();
+
+      TracerStats stats = ((OpenTelemetryTracer) ((ContextInternal) vertx.getOrCreateContext()).tracer()).getStats();
+      assertEquals(1, stats.snapshot().getStartedSpans());
+      assertEquals(1, stats.snapshot().getSampledOutSpans());
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  @Test
+  public void exporters_sending_in_the_background_should_report_their_exports(TestContext ctx) throws Exception {
+    Path directory = folder.newFolder().toPath();
+    // the file cannot be opened, every write fails while export() queues the spans successfully
+    Files.createDirectory(directory.resolve("spans.ndjson"));
+    FileExporter exporter = FileExporter.newBuilder().setDirectory(directory).build();
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .addExporter(exporter)
+        .setEnabled(true)
+    ));
+    try {
+      Async listen = ctx.async();
+      vertx.createHttpServer()
+        .requestHandler(req -> req.response().end())
+        .listen(8080, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      HttpClient client = vertx.createHttpClient();
+      for (int i = 0; i < 3; i++) {
+        Async response = ctx.async();
+        client.get(8080, "localhost", "/", ctx.asyncAssertSuccess(resp -> response.complete()));
+        response.awaitSuccess();
+      }
+
+      TracerStats stats = ((OpenTelemetryTracer) ((ContextInternal) vertx.getOrCreateContext()).tracer()).getStats();
+      waitUntil(() -> stats.snapshot().getExporter("FileExporter").getFailedSpans() == 3);
+      TracerStats.Snapshot.Exporter file = stats.snapshot().getExporter("FileExporter");
+      assertEquals(0, file.getExportedSpans());
+      assertEquals(3, file.getQueuedSpans());
+      assertEquals(file.getExports(), Arrays.stream(file.getLatencyCounts()).sum());
+      assertEquals(3, exporter.getFailedSpans());
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  @Test
+  public void snapshots_should_be_published_on_the_event_bus(TestContext ctx) {
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(
+      new OpenTelemetryOptions()
+        .addExporter(InMemoryExporter.newBuilder().build())
+        .setStatsAddress("tracer.stats")
+        .setStatsPeriod(50)
+        .setEnabled(true)
+    ));
+    try {
+      Async published = ctx.async();
+      vertx.eventBus().<JsonObject>consumer("tracer.stats", msg -> {
+        ctx.assertEquals("InMemoryExporter", msg.body().getJsonArray("exporters").getJsonObject(0).getString("name"));
+        published.complete();
+      });
+      // the publication starts with the first traced request
+      Async listen = ctx.async();
+      vertx.createHttpServer()
+        .requestHandler(req -> req.response().end())
+        .listen(8080, ctx.asyncAssertSuccess(v -> listen.complete()));
+      listen.awaitSuccess();
+      vertx.createHttpClient().get(8080, "localhost", "/", ctx.asyncAssertSuccess());
+      published.awaitSuccess(10_000);
+    } finally {
+      vertx.close(ctx.asyncAssertSuccess());
+    }
+  }
+
+  private static void waitUntil(BooleanSupplier condition) throws Exception {
+    long now = System.currentTimeMillis();
+    while (!condition.getAsBoolean() && (System.currentTimeMillis() - now) < 10000) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+}